@@ -772,6 +772,21 @@ public interface Context extends Container, ContextBind {
     void setParallelAnnotationScanning(boolean parallelAnnotationScanning);
 
 
+    /**
+     * @return <code>true</code> if the results of annotation scanning of JARs will be stored in an index in the work
+     *             directory and reused for JARs that have not changed when the Context is next started
+     */
+    boolean getUseAnnotationScanIndex();
+
+    /**
+     * Configure whether the results of annotation scanning of JARs will be stored in an index in the work directory and
+     * reused for JARs that have not changed when the Context is next started.
+     *
+     * @param useAnnotationScanIndex <code>true</code> to use the annotation scan index
+     */
+    void setUseAnnotationScanIndex(boolean useAnnotationScanIndex);
+
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -186,6 +186,35 @@ public final class ApplicationFilterChain implements FilterChain {
     }
 
 
+    /**
+     * Add a set of filters, none of which are already in this chain and which contains no duplicates, to the set of
+     * filters that will be executed in this chain.
+     *
+     * @param filterConfigs The FilterConfigs for the filters to be executed
+     */
+    void addFilters(ApplicationFilterConfig[] filterConfigs) {
+        if (n == 0) {
+            if (filters.length < filterConfigs.length) {
+                filters = new ApplicationFilterConfig[filterConfigs.length];
+            }
+            System.arraycopy(filterConfigs, 0, filters, 0, filterConfigs.length);
+            n = filterConfigs.length;
+        } else {
+            for (ApplicationFilterConfig filterConfig : filterConfigs) {
+                addFilter(filterConfig);
+            }
+        }
+    }
+
+
+    /**
+     * @return a copy of the filters that will be executed in this chain
+     */
+    ApplicationFilterConfig[] getFilters() {
+        return Arrays.copyOf(filters, n);
+    }
+
+
     /**
      * Release references to the filters and wrapper executed by this chain.
      */
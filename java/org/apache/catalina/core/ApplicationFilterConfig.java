@@ -88,6 +88,7 @@ public final class ApplicationFilterConfig implements FilterConfig, Serializable
 
         super();
 
+        long t1 = System.currentTimeMillis();
         this.context = context;
         this.filterDef = filterDef;
         // Allocate a new filter instance if necessary
@@ -98,6 +99,7 @@ public final class ApplicationFilterConfig implements FilterConfig, Serializable
             context.getInstanceManager().newInstance(filter);
             initFilter();
         }
+        loadTime = System.currentTimeMillis() - t1;
     }
 
 
@@ -126,6 +128,11 @@ public final class ApplicationFilterConfig implements FilterConfig, Serializable
      */
     private ObjectName oname;
 
+    /**
+     * Time taken to create and initialize the filter in milliseconds.
+     */
+    private volatile long loadTime = 0;
+
     // --------------------------------------------------- FilterConfig Methods
 
 
@@ -191,6 +198,13 @@ public final class ApplicationFilterConfig implements FilterConfig, Serializable
         return Collections.unmodifiableMap(filterDef.getParameterMap());
     }
 
+    /**
+     * @return the time taken to create and initialize the filter in milliseconds
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
     // -------------------------------------------------------- Package Methods
 
 
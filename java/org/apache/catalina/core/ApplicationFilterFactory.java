@@ -16,6 +16,11 @@
  */
 package org.apache.catalina.core;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Servlet;
 import jakarta.servlet.ServletRequest;
@@ -91,16 +96,37 @@ public final class ApplicationFilterFactory {
         // Acquire the information we will need to match filter mappings
         DispatcherType dispatcher = (DispatcherType) request.getAttribute(Globals.DISPATCHER_TYPE_ATTR);
 
-        String requestPath = FilterUtil.getRequestPath(request) ;
+        String requestPath = FilterUtil.getRequestPath(request);
+
+        // Add the relevant filters to this filter chain
+        ResolvedFilters resolvedFilters = context.getFilterChainCache().get(wrapper, dispatcher, context);
+        resolvedFilters.addTo(filterChain, requestPath);
+
+        // Return the completed filter chain
+        return filterChain;
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    /**
+     * Resolve the filters mapped to the given wrapper for the given dispatcher type, in the order they are to be added
+     * to the filter chain: URL pattern mappings first and servlet name mappings second.
+     */
+    private static ResolvedFilters resolveFilters(StandardContext context, Wrapper wrapper,
+            DispatcherType dispatcher) {
 
+        FilterMap filterMaps[] = context.findFilterMaps();
         String servletName = wrapper.getName();
 
-        // Add the relevant path-mapped filters to this filter chain
+        List<FilterMap> urlMaps = new ArrayList<>();
+        List<ApplicationFilterConfig> urlConfigs = new ArrayList<>();
         for (FilterMap filterMap : filterMaps) {
             if (!matchDispatcher(filterMap, dispatcher)) {
                 continue;
             }
-            if (!FilterUtil.matchFiltersURL(filterMap, requestPath)) {
+            if (!filterMap.getMatchAllUrlPatterns() && filterMap.getURLPatterns().length == 0) {
                 continue;
             }
             ApplicationFilterConfig filterConfig =
@@ -109,10 +135,11 @@ public final class ApplicationFilterFactory {
                 log.warn(sm.getString("applicationFilterFactory.noFilterConfig", filterMap.getFilterName()));
                 continue;
             }
-            filterChain.addFilter(filterConfig);
+            urlMaps.add(filterMap);
+            urlConfigs.add(filterConfig);
         }
 
-        // Add filters that match on servlet name second
+        List<ApplicationFilterConfig> servletConfigs = new ArrayList<>();
         for (FilterMap filterMap : filterMaps) {
             if (!matchDispatcher(filterMap, dispatcher)) {
                 continue;
@@ -126,17 +153,15 @@ public final class ApplicationFilterFactory {
                 log.warn(sm.getString("applicationFilterFactory.noFilterConfig", filterMap.getFilterName()));
                 continue;
             }
-            filterChain.addFilter(filterConfig);
+            servletConfigs.add(filterConfig);
         }
 
-        // Return the completed filter chain
-        return filterChain;
+        return new ResolvedFilters(urlMaps.toArray(new FilterMap[0]),
+                urlConfigs.toArray(new ApplicationFilterConfig[0]),
+                servletConfigs.toArray(new ApplicationFilterConfig[0]));
     }
 
 
-    // -------------------------------------------------------- Private Methods
-
-
     /**
      * Return <code>true</code> if the specified servlet name matches the requirements of the specified filter mapping;
      * otherwise return <code>false</code>.
@@ -199,4 +224,120 @@ public final class ApplicationFilterFactory {
         }
         return false;
     }
+
+
+    /**
+     * Per context cache of the filters mapped to each combination of wrapper and dispatcher type. The cache must be
+     * cleared whenever the filter definitions, filter mappings, filter configurations or wrappers of the context
+     * change.
+     */
+    static final class FilterChainCache {
+
+        private static final int DISPATCHER_TYPE_COUNT = DispatcherType.values().length;
+
+        /*
+         * The map is replaced, rather than cleared, on invalidation. A thread that resolved filters using the previous
+         * configuration adds them to the previous map so they are never visible after the invalidation.
+         */
+        private volatile Map<Wrapper,ResolvedFilters[]> cache = new ConcurrentHashMap<>();
+
+        ResolvedFilters get(Wrapper wrapper, DispatcherType dispatcher, StandardContext context) {
+            Map<Wrapper,ResolvedFilters[]> cache = this.cache;
+            ResolvedFilters[] byDispatcher =
+                    cache.computeIfAbsent(wrapper, k -> new ResolvedFilters[DISPATCHER_TYPE_COUNT]);
+            ResolvedFilters result = byDispatcher[dispatcher.ordinal()];
+            if (result == null) {
+                // A race may resolve the same filters more than once. That is harmless as the result is the same and
+                // ResolvedFilters is immutable.
+                result = resolveFilters(context, wrapper, dispatcher);
+                byDispatcher[dispatcher.ordinal()] = result;
+            }
+            return result;
+        }
+
+        void clear() {
+            cache = new ConcurrentHashMap<>();
+        }
+
+        int size() {
+            return cache.size();
+        }
+    }
+
+
+    /**
+     * The filters mapped to a wrapper for a dispatcher type.
+     */
+    static final class ResolvedFilters {
+
+        // URL pattern mappings, in order, and their filters
+        private final FilterMap[] urlMaps;
+        private final ApplicationFilterConfig[] urlConfigs;
+        // Filters mapped by servlet name, in order
+        private final ApplicationFilterConfig[] servletConfigs;
+
+        /*
+         * If every URL pattern mapping matches any request path then the chain only depends on whether there is a
+         * request path (named dispatches have none) and is fully resolved here. Otherwise, null.
+         */
+        private final ApplicationFilterConfig[] withPath;
+        private final ApplicationFilterConfig[] withoutPath;
+
+        private ResolvedFilters(FilterMap[] urlMaps, ApplicationFilterConfig[] urlConfigs,
+                ApplicationFilterConfig[] servletConfigs) {
+            this.urlMaps = urlMaps;
+            this.urlConfigs = urlConfigs;
+            this.servletConfigs = servletConfigs;
+
+            boolean pathDependent = false;
+            for (FilterMap urlMap : urlMaps) {
+                if (!urlMap.getMatchAllUrlPatterns() && !hasMatchAllPathsPattern(urlMap)) {
+                    pathDependent = true;
+                    break;
+                }
+            }
+            if (pathDependent) {
+                withPath = null;
+                withoutPath = null;
+            } else {
+                withPath = resolve("");
+                withoutPath = resolve(null);
+            }
+        }
+
+        private static boolean hasMatchAllPathsPattern(FilterMap filterMap) {
+            for (String urlPattern : filterMap.getURLPatterns()) {
+                if ("/*".equals(urlPattern)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private ApplicationFilterConfig[] resolve(String requestPath) {
+            ApplicationFilterChain filterChain = new ApplicationFilterChain();
+            addMatching(filterChain, requestPath);
+            return filterChain.getFilters();
+        }
+
+        void addTo(ApplicationFilterChain filterChain, String requestPath) {
+            ApplicationFilterConfig[] resolved = (requestPath == null) ? withoutPath : withPath;
+            if (resolved == null) {
+                addMatching(filterChain, requestPath);
+            } else {
+                filterChain.addFilters(resolved);
+            }
+        }
+
+        private void addMatching(ApplicationFilterChain filterChain, String requestPath) {
+            for (int i = 0; i < urlMaps.length; i++) {
+                if (FilterUtil.matchFiltersURL(urlMaps[i], requestPath)) {
+                    filterChain.addFilter(urlConfigs[i]);
+                }
+            }
+            for (ApplicationFilterConfig servletConfig : servletConfigs) {
+                filterChain.addFilter(servletConfig);
+            }
+        }
+    }
 }
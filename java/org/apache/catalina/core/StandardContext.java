@@ -36,11 +36,19 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -93,6 +101,7 @@ import org.apache.catalina.Loader;
 import org.apache.catalina.Manager;
 import org.apache.catalina.Pipeline;
 import org.apache.catalina.Realm;
+import org.apache.catalina.Service;
 import org.apache.catalina.ThreadBindingListener;
 import org.apache.catalina.Valve;
 import org.apache.catalina.WebResource;
@@ -371,6 +380,13 @@ public class StandardContext extends ContainerBase implements Context, Notificat
      */
     private final ContextFilterMaps filterMaps = new ContextFilterMaps();
 
+
+    /**
+     * The filters that apply to each combination of wrapper and dispatcher type, resolved from the filter mappings.
+     */
+    private final ApplicationFilterFactory.FilterChainCache filterChainCache =
+            new ApplicationFilterFactory.FilterChainCache();
+
     /**
      * Ignore annotations.
      */
@@ -534,6 +550,22 @@ public class StandardContext extends ContainerBase implements Context, Notificat
     private long unloadDelay = 2000;
 
 
+    /**
+     * Should filters and load on startup servlets with the same load on startup value be initialized in parallel?
+     */
+    private boolean parallelLoadOnStartup = false;
+
+
+    /**
+     * Load on startup servlets with a load on startup value greater than or equal to this value are loaded in the
+     * background once the Context has started. A negative value disables background loading.
+     */
+    private int backgroundLoadOnStartup = -1;
+
+    private volatile Future<?> backgroundLoadOnStartupFuture = null;
+    private volatile boolean backgroundLoadOnStartupCancelled = false;
+
+
     /**
      * The watched resources for this application.
      */
@@ -798,6 +830,8 @@ public class StandardContext extends ContainerBase implements Context, Notificat
 
     private boolean parallelAnnotationScanning = false;
 
+    private boolean useAnnotationScanIndex = false;
+
 
     // ----------------------------------------------------- Context Properties
 
@@ -1389,6 +1423,22 @@ public class StandardContext extends ContainerBase implements Context, Notificat
     }
 
 
+    @Override
+    public void setUseAnnotationScanIndex(boolean useAnnotationScanIndex) {
+
+        boolean oldUseAnnotationScanIndex = this.useAnnotationScanIndex;
+        this.useAnnotationScanIndex = useAnnotationScanIndex;
+        support.firePropertyChange("useAnnotationScanIndex", oldUseAnnotationScanIndex, this.useAnnotationScanIndex);
+
+    }
+
+
+    @Override
+    public boolean getUseAnnotationScanIndex() {
+        return this.useAnnotationScanIndex;
+    }
+
+
     /**
      * @return the Locale to character set mapper for this Context.
      */
@@ -2210,6 +2260,58 @@ public class StandardContext extends ContainerBase implements Context, Notificat
     }
 
 
+    /**
+     * @return {@code true} if filters and load on startup servlets with the same load on startup value are initialized
+     *             in parallel
+     */
+    public boolean getParallelLoadOnStartup() {
+        return this.parallelLoadOnStartup;
+    }
+
+
+    /**
+     * Configure whether filters, and load on startup servlets with the same load on startup value, are initialized in
+     * parallel using the utility executor. Servlets with different load on startup values are always initialized in
+     * order.
+     *
+     * @param parallelLoadOnStartup The new value
+     */
+    public void setParallelLoadOnStartup(boolean parallelLoadOnStartup) {
+
+        boolean oldParallelLoadOnStartup = this.parallelLoadOnStartup;
+        this.parallelLoadOnStartup = parallelLoadOnStartup;
+        support.firePropertyChange("parallelLoadOnStartup", oldParallelLoadOnStartup, this.parallelLoadOnStartup);
+
+    }
+
+
+    /**
+     * @return the load on startup value from which servlets are loaded in the background
+     */
+    public int getBackgroundLoadOnStartup() {
+        return this.backgroundLoadOnStartup;
+    }
+
+
+    /**
+     * Set the load on startup value from which servlets are loaded in the background. Servlets with a load on startup
+     * value greater than or equal to this value are loaded, in order, once the Context has started so the Context is
+     * available to process requests while they are initialized. A request for one of these servlets waits until that
+     * servlet has been initialized. A failure to load one of these servlets does not cause the Context to fail. A
+     * negative value, the default, disables background loading.
+     *
+     * @param backgroundLoadOnStartup The new value
+     */
+    public void setBackgroundLoadOnStartup(int backgroundLoadOnStartup) {
+
+        int oldBackgroundLoadOnStartup = this.backgroundLoadOnStartup;
+        this.backgroundLoadOnStartup = backgroundLoadOnStartup;
+        support.firePropertyChange("backgroundLoadOnStartup", Integer.valueOf(oldBackgroundLoadOnStartup),
+                Integer.valueOf(this.backgroundLoadOnStartup));
+
+    }
+
+
     /**
      * @return unpack WAR flag.
      */
@@ -2683,6 +2785,7 @@ public class StandardContext extends ContainerBase implements Context, Notificat
         synchronized (filterDefs) {
             filterDefs.put(filterDef.getFilterName(), filterDef);
         }
+        filterChainCache.clear();
         fireContainerEvent("addFilterDef", filterDef);
 
     }
@@ -2693,6 +2796,7 @@ public class StandardContext extends ContainerBase implements Context, Notificat
         validateFilterMap(filterMap);
         // Add this filter mapping to our registered set
         filterMaps.add(filterMap);
+        filterChainCache.clear();
         fireContainerEvent("addFilterMap", filterMap);
     }
 
@@ -2702,6 +2806,7 @@ public class StandardContext extends ContainerBase implements Context, Notificat
         validateFilterMap(filterMap);
         // Add this filter mapping to our registered set
         filterMaps.addBefore(filterMap);
+        filterChainCache.clear();
         fireContainerEvent("addFilterMap", filterMap);
     }
 
@@ -3249,6 +3354,7 @@ public class StandardContext extends ContainerBase implements Context, Notificat
         }
 
         super.removeChild(child);
+        filterChainCache.clear();
 
     }
 
@@ -3301,6 +3407,7 @@ public class StandardContext extends ContainerBase implements Context, Notificat
         synchronized (filterDefs) {
             filterDefs.remove(filterDef.getFilterName());
         }
+        filterChainCache.clear();
         fireContainerEvent("removeFilterDef", filterDef);
 
     }
@@ -3309,6 +3416,7 @@ public class StandardContext extends ContainerBase implements Context, Notificat
     @Override
     public void removeFilterMap(FilterMap filterMap) {
         filterMaps.remove(filterMap);
+        filterChainCache.clear();
         // Inform interested listeners
         fireContainerEvent("removeFilterMap", filterMap);
     }
@@ -3802,31 +3910,78 @@ public class StandardContext extends ContainerBase implements Context, Notificat
         if (getLogger().isTraceEnabled()) {
             getLogger().trace("Starting filters");
         }
+        if (parallelLoadOnStartup) {
+            return filterStartParallel();
+        }
         // Instantiate and record a FilterConfig for each defined filter
         boolean ok = true;
         synchronized (filterDefs) {
             filterConfigs.clear();
             for (Entry<String,FilterDef> entry : filterDefs.entrySet()) {
-                String name = entry.getKey();
-                if (getLogger().isTraceEnabled()) {
-                    getLogger().trace(" Starting filter '" + name + "'");
-                }
-                try {
-                    ApplicationFilterConfig filterConfig = new ApplicationFilterConfig(this, entry.getValue());
-                    filterConfigs.put(name, filterConfig);
-                } catch (Throwable t) {
-                    t = ExceptionUtils.unwrapInvocationTargetException(t);
-                    ExceptionUtils.handleThrowable(t);
-                    getLogger().error(sm.getString("standardContext.filterStart", name), t);
+                ApplicationFilterConfig filterConfig = createFilterConfig(entry.getKey(), entry.getValue());
+                if (filterConfig == null) {
                     ok = false;
+                } else {
+                    filterConfigs.put(entry.getKey(), filterConfig);
                 }
             }
+            filterChainCache.clear();
         }
 
         return ok;
     }
 
 
+    private boolean filterStartParallel() {
+        // Filters may look up filter definitions during initialization so don't hold the lock while they are
+        // initialized
+        Map<String,FilterDef> defs;
+        synchronized (filterDefs) {
+            filterConfigs.clear();
+            defs = new LinkedHashMap<>(filterDefs);
+        }
+
+        Map<String,ApplicationFilterConfig> configs = new ConcurrentHashMap<>();
+        List<Runnable> tasks = new ArrayList<>(defs.size());
+        for (Entry<String,FilterDef> entry : defs.entrySet()) {
+            tasks.add(() -> {
+                ApplicationFilterConfig filterConfig = createFilterConfig(entry.getKey(), entry.getValue());
+                if (filterConfig != null) {
+                    configs.put(entry.getKey(), filterConfig);
+                }
+            });
+        }
+        runInParallel(tasks);
+
+        synchronized (filterDefs) {
+            for (String name : defs.keySet()) {
+                ApplicationFilterConfig filterConfig = configs.get(name);
+                if (filterConfig != null) {
+                    filterConfigs.put(name, filterConfig);
+                }
+            }
+            filterChainCache.clear();
+        }
+
+        return configs.size() == defs.size();
+    }
+
+
+    private ApplicationFilterConfig createFilterConfig(String name, FilterDef filterDef) {
+        if (getLogger().isTraceEnabled()) {
+            getLogger().trace(" Starting filter '" + name + "'");
+        }
+        try {
+            return new ApplicationFilterConfig(this, filterDef);
+        } catch (Throwable t) {
+            t = ExceptionUtils.unwrapInvocationTargetException(t);
+            ExceptionUtils.handleThrowable(t);
+            getLogger().error(sm.getString("standardContext.filterStart", name), t);
+            return null;
+        }
+    }
+
+
     /**
      * Finalize and release the set of filters for this Context.
      *
@@ -3848,12 +4003,21 @@ public class StandardContext extends ContainerBase implements Context, Notificat
                 filterConfig.release();
             }
             filterConfigs.clear();
+            filterChainCache.clear();
         }
         return true;
 
     }
 
 
+    /**
+     * @return the cache of the filters that apply to each combination of wrapper and dispatcher type
+     */
+    ApplicationFilterFactory.FilterChainCache getFilterChainCache() {
+        return filterChainCache;
+    }
+
+
     /**
      * Find and return the initialized <code>FilterConfig</code> for the specified filter name, if any; otherwise return
      * <code>null</code>.
@@ -4124,6 +4288,7 @@ public class StandardContext extends ContainerBase implements Context, Notificat
 
         // Collect "load on startup" servlets that need to be initialized
         TreeMap<Integer,ArrayList<Wrapper>> map = new TreeMap<>();
+        TreeMap<Integer,ArrayList<Wrapper>> backgroundMap = new TreeMap<>();
         for (Container child : children) {
             Wrapper wrapper = (Wrapper) child;
             int loadOnStartup = wrapper.getLoadOnStartup();
@@ -4131,30 +4296,218 @@ public class StandardContext extends ContainerBase implements Context, Notificat
                 continue;
             }
             Integer key = Integer.valueOf(loadOnStartup);
-            map.computeIfAbsent(key, k -> new ArrayList<>()).add(wrapper);
+            if (backgroundLoadOnStartup >= 0 && loadOnStartup >= backgroundLoadOnStartup) {
+                backgroundMap.computeIfAbsent(key, k -> new ArrayList<>()).add(wrapper);
+            } else {
+                map.computeIfAbsent(key, k -> new ArrayList<>()).add(wrapper);
+            }
         }
 
         // Load the collected "load on startup" servlets
         for (ArrayList<Wrapper> list : map.values()) {
-            for (Wrapper wrapper : list) {
-                try {
-                    wrapper.load();
-                } catch (ServletException e) {
-                    getLogger().error(
-                            sm.getString("standardContext.loadOnStartup.loadException", getName(), wrapper.getName()),
-                            StandardWrapper.getRootCause(e));
-                    // NOTE: load errors (including a servlet that throws
-                    // UnavailableException from the init() method) are NOT
-                    // fatal to application startup
-                    // unless failCtxIfServletStartFails="true" is specified
-                    if (getComputedFailCtxIfServletStartFails()) {
-                        return false;
+            if (!loadServlets(list) && getComputedFailCtxIfServletStartFails()) {
+                return false;
+            }
+        }
+
+        if (!backgroundMap.isEmpty()) {
+            backgroundLoadOnStartup(backgroundMap);
+        }
+        return true;
+
+    }
+
+
+    /*
+     * Load the given servlets, which all have the same load on startup value. Returns false if any servlet failed to
+     * load.
+     */
+    private boolean loadServlets(List<Wrapper> wrappers) {
+        if (parallelLoadOnStartup && wrappers.size() > 1) {
+            AtomicBoolean ok = new AtomicBoolean(true);
+            List<Runnable> tasks = new ArrayList<>(wrappers.size());
+            for (Wrapper wrapper : wrappers) {
+                tasks.add(() -> {
+                    if (!loadServlet(wrapper)) {
+                        ok.set(false);
                     }
+                });
+            }
+            runInParallel(tasks);
+            return ok.get();
+        }
+        boolean ok = true;
+        for (Wrapper wrapper : wrappers) {
+            if (!loadServlet(wrapper)) {
+                ok = false;
+                if (getComputedFailCtxIfServletStartFails()) {
+                    break;
                 }
             }
         }
+        return ok;
+    }
+
+
+    private boolean loadServlet(Wrapper wrapper) {
+        try {
+            wrapper.load();
+        } catch (ServletException e) {
+            getLogger().error(sm.getString("standardContext.loadOnStartup.loadException", getName(), wrapper.getName()),
+                    StandardWrapper.getRootCause(e));
+            // NOTE: load errors (including a servlet that throws
+            // UnavailableException from the init() method) are NOT
+            // fatal to application startup
+            // unless failCtxIfServletStartFails="true" is specified
+            return false;
+        }
         return true;
+    }
+
+
+    private void backgroundLoadOnStartup(TreeMap<Integer,ArrayList<Wrapper>> map) {
+        backgroundLoadOnStartupCancelled = false;
+        Runnable task = () -> {
+            ClassLoader oldCCL = bindThread();
+            try {
+                long start = System.currentTimeMillis();
+                for (ArrayList<Wrapper> list : map.values()) {
+                    if (backgroundLoadOnStartupCancelled) {
+                        return;
+                    }
+                    loadServlets(list);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("standardContext.loadOnStartup.backgroundComplete", getName(),
+                            Long.valueOf(System.currentTimeMillis() - start)));
+                }
+            } finally {
+                unbindThread(oldCCL);
+            }
+        };
+
+        ExecutorService executor = getUtilityExecutor();
+        if (executor == null) {
+            // Nothing to run the servlets in the background so load them now
+            for (ArrayList<Wrapper> list : map.values()) {
+                loadServlets(list);
+            }
+        } else {
+            if (log.isDebugEnabled()) {
+                int count = 0;
+                for (ArrayList<Wrapper> list : map.values()) {
+                    count += list.size();
+                }
+                log.debug(sm.getString("standardContext.loadOnStartup.background", getName(),
+                        Integer.valueOf(count)));
+            }
+            backgroundLoadOnStartupFuture = executor.submit(task);
+        }
+    }
+
+
+    /*
+     * Wait for any servlets being loaded in the background to finish loading. Servlets that have not started loading
+     * are not loaded.
+     */
+    private void stopBackgroundLoadOnStartup() {
+        Future<?> future = backgroundLoadOnStartupFuture;
+        if (future == null) {
+            return;
+        }
+        backgroundLoadOnStartupCancelled = true;
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error(sm.getString("standardContext.loadOnStartup.backgroundFail", getName()), e.getCause());
+        } finally {
+            backgroundLoadOnStartupFuture = null;
+        }
+    }
+
+
+    /*
+     * Run the given tasks using the utility executor and the current thread. The current thread takes tasks from the
+     * same queue as the utility threads so all the tasks are run even if every utility thread is busy, for example
+     * starting other web applications. Returns once all the tasks have completed. The first unchecked exception thrown
+     * by a task, if any, is re-thrown.
+     */
+    private void runInParallel(List<Runnable> tasks) {
+        ExecutorService executor = getUtilityExecutor();
+        if (executor == null || tasks.size() < 2) {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            return;
+        }
+
+        Queue<Runnable> queue = new ConcurrentLinkedQueue<>(tasks);
+        CountDownLatch latch = new CountDownLatch(tasks.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    ExceptionUtils.handleThrowable(t);
+                    failure.compareAndSet(null, t);
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+
+        List<Future<?>> futures = new ArrayList<>(tasks.size() - 1);
+        for (int i = 1; i < tasks.size(); i++) {
+            futures.add(executor.submit(() -> {
+                if (queue.isEmpty()) {
+                    return;
+                }
+                ClassLoader oldCCL = bindThread();
+                try {
+                    worker.run();
+                } finally {
+                    unbindThread(oldCCL);
+                }
+            }));
+        }
+        worker.run();
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                // The tasks have to complete before the context can continue starting
+                interrupted = true;
+            }
+        }
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
 
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+
+
+    private ExecutorService getUtilityExecutor() {
+        Service service = Container.getService(this);
+        if (service == null || service.getServer() == null) {
+            return null;
+        }
+        return service.getServer().getUtilityExecutor();
     }
 
 
@@ -4594,6 +4947,9 @@ public class StandardContext extends ContainerBase implements Context, Notificat
         ClassLoader oldCCL = bindThread();
 
         try {
+            // Wait for any servlets being loaded in the background
+            stopBackgroundLoadOnStartup();
+
             // Stop our child containers, if any
             final Container[] children = findChildren();
 
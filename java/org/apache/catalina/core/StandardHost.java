@@ -184,6 +184,12 @@ public class StandardHost extends ContainerBase implements Host {
     private boolean failCtxIfServletStartFails = false;
 
 
+    /**
+     * Should a WatchService be used to detect changes to deployed applications when autoDeploy is enabled?
+     */
+    private boolean useWatchService = false;
+
+
     // ------------------------------------------------------------- Properties
 
     @Override
@@ -530,6 +536,30 @@ public class StandardHost extends ContainerBase implements Host {
     }
 
 
+    /**
+     * @return <code>true</code> if a {@link java.nio.file.WatchService} is used to detect changes to the appBase, the
+     *             xmlBase and the resources of deployed applications when autoDeploy is enabled
+     */
+    public boolean getUseWatchService() {
+        return useWatchService;
+    }
+
+
+    /**
+     * Configure if a {@link java.nio.file.WatchService} is used to detect changes to the appBase, the xmlBase and the
+     * resources of deployed applications when autoDeploy is enabled so that only the applications with changed
+     * resources are checked on each background process cycle. Directories that can't be watched continue to be
+     * polled. Changes take effect the next time the Host is started.
+     *
+     * @param useWatchService <code>true</code> to use a watch service
+     */
+    public void setUseWatchService(boolean useWatchService) {
+        boolean oldUseWatchService = this.useWatchService;
+        this.useWatchService = useWatchService;
+        support.firePropertyChange("useWatchService", oldUseWatchService, useWatchService);
+    }
+
+
     /**
      * @return host work directory base.
      */
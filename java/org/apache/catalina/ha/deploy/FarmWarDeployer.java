@@ -20,7 +20,17 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -30,6 +40,8 @@ import org.apache.catalina.Context;
 import org.apache.catalina.Engine;
 import org.apache.catalina.Host;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Server;
+import org.apache.catalina.Service;
 import org.apache.catalina.ha.ClusterDeployer;
 import org.apache.catalina.ha.ClusterListener;
 import org.apache.catalina.ha.ClusterMessage;
@@ -52,6 +64,12 @@ import org.apache.tomcat.util.res.StringManager;
  * <li>tempDir - a temporaryDirectory to store binary data when downloading a war from the cluster</li>
  * </ul>
  * Currently we only support deployment of WAR files since they are easier to send across the wire.
+ * <p>
+ * Each WAR is split into messages that contain a checksum of their data and the hash of the complete WAR, which are
+ * checked by the receiving members. The messages may be sent by several threads concurrently and, to reduce the load on
+ * the sending member, members may forward the messages to other members along a tree. If a receiving member stops
+ * receiving the messages of a WAR, for example because it was briefly unable to communicate with the sender, it
+ * requests the missing messages from the member the WAR originates from.
  *
  * @author Peter Rossbach
  */
@@ -123,6 +141,37 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
      */
     protected int maxValidTime = 5 * 60;
 
+    /**
+     * The number of bytes of the file sent in each message.
+     */
+    protected int chunkSize = FileMessageFactory.READ_SIZE;
+
+    /**
+     * The number of threads that send the messages of a file concurrently.
+     */
+    protected int sendThreads = 1;
+
+    /**
+     * The number of members each member forwards the messages of a file to. Zero means the messages are sent to every
+     * member by the member that reads the file.
+     */
+    protected int forwardFanout = 0;
+
+    /**
+     * The time (in seconds) without progress after which the missing messages of a file are requested again.
+     */
+    protected int resumeTimeout = 30;
+
+    /**
+     * The files that have been sent recently, so that the messages can be sent again if requested.
+     */
+    private final Map<String,SentFile> sentFiles = new ConcurrentHashMap<>();
+
+    /**
+     * The files that are being received, so that the missing messages can be requested if the transfer stalls.
+     */
+    private final Map<String,ReceivedFile> receivedFiles = new ConcurrentHashMap<>();
+
     /*--Constructor---------------------------------------------*/
     public FarmWarDeployer() {
     }
@@ -192,6 +241,7 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
             watcher = null;
 
         }
+        sentFiles.clear();
         if (log.isInfoEnabled()) {
             log.info(sm.getString("farmWarDeployer.stopped"));
         }
@@ -211,9 +261,17 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
                 if (log.isTraceEnabled()) {
                     log.trace(sm.getString("farmWarDeployer.msgRxDeploy", fmsg.getContextName(), fmsg.getFileName()));
                 }
+                forward(fmsg);
                 FileMessageFactory factory = getFactory(fmsg);
+                boolean complete;
+                try {
+                    complete = factory.writeMessage(fmsg);
+                } catch (IOException ioe) {
+                    removeFactory(fmsg);
+                    throw ioe;
+                }
                 // TODO correct second try after app is in service!
-                if (factory.writeMessage(fmsg)) {
+                if (complete) {
                     // last message received war file is completed
                     String name = factory.getFile().getName();
                     if (!name.endsWith(".war")) {
@@ -268,6 +326,8 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
                 } catch (Exception ex) {
                     log.error(sm.getString("farmWarDeployer.undeployMessageError"), ex);
                 }
+            } else if (msg instanceof FileResumeMessage) {
+                resend((FileResumeMessage) msg);
             }
         } catch (IOException x) {
             log.error(sm.getString("farmWarDeployer.msgIoe"), x);
@@ -291,6 +351,8 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
             factory = FileMessageFactory.getInstance(writeToFile, true);
             factory.setMaxValidTime(maxValidTime);
             fileFactories.put(msg.getFileName(), factory);
+            receivedFiles.put(msg.getFileName(),
+                    new ReceivedFile(msg.getOrigin(), msg.getContextName(), msg.getFileHash()));
         }
         return factory;
     }
@@ -302,16 +364,45 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
      */
     public void removeFactory(FileMessage msg) {
         fileFactories.remove(msg.getFileName());
+        receivedFiles.remove(msg.getFileName());
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * This listener accepts only FileMessage or UndeployMessage.
+     * This listener accepts only FileMessage, FileResumeMessage or UndeployMessage.
      */
     @Override
     public boolean accept(ClusterMessage msg) {
-        return msg instanceof FileMessage || msg instanceof UndeployMessage;
+        return msg instanceof FileMessage || msg instanceof FileResumeMessage || msg instanceof UndeployMessage;
+    }
+
+    /**
+     * Forward a file message to the members this member is responsible for in the tree the message is distributed
+     * along, if any.
+     *
+     * @param msg The message
+     */
+    protected void forward(FileMessage msg) {
+        Member[] members = msg.getForwardMembers();
+        int fanout = msg.getForwardFanout();
+        if (members == null || fanout <= 0) {
+            return;
+        }
+        Member localMember = getCluster().getLocalMember();
+        for (int i = 0; i < members.length; i++) {
+            if (members[i].equals(localMember)) {
+                int end = (int) Math.min((long) (i + 2) * fanout, members.length);
+                for (int j = (i + 1) * fanout; j < end; j++) {
+                    if (log.isTraceEnabled()) {
+                        log.trace(sm.getString("farmWarDeployer.forwardFragment", msg.getContextName(),
+                                msg.getFileName(), members[j]));
+                    }
+                    getCluster().send(msg, members[j]);
+                }
+                return;
+            }
+        }
     }
 
     /**
@@ -335,27 +426,193 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
             return;
         }
 
-        Member localMember = getCluster().getLocalMember();
-        FileMessageFactory factory = FileMessageFactory.getInstance(webapp, false);
-        FileMessage msg = new FileMessage(localMember, webapp.getName(), contextName);
-        if (log.isTraceEnabled()) {
-            log.trace(sm.getString("farmWarDeployer.sendStart", contextName, webapp));
-        }
-        msg = factory.readMessage(msg);
-        while (msg != null) {
-            for (Member member : members) {
+        FileMessageFactory factory = FileMessageFactory.getInstance(webapp, false, chunkSize);
+        try {
+            byte[] fileHash = factory.getFileHash();
+            sentFiles.put(webapp.getName(), new SentFile(webapp, contextName, fileHash, chunkSize));
+
+            Member[] targets = members;
+            Member[] forwardMembers = null;
+            if (forwardFanout > 0 && members.length > forwardFanout) {
+                // The other members receive the messages from the first members
+                forwardMembers = members;
+                targets = Arrays.copyOf(members, forwardFanout);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace(sm.getString("farmWarDeployer.sendStart", contextName, webapp));
+            }
+
+            AtomicLong nextMessage = new AtomicLong(1);
+            Member[] destinations = targets;
+            Member[] forward = forwardMembers;
+            List<Future<?>> futures = new ArrayList<>();
+            ScheduledExecutorService executor = sendThreads > 1 ? getUtilityExecutor() : null;
+            if (executor != null) {
+                for (int i = 1; i < sendThreads; i++) {
+                    futures.add(executor.submit(() -> {
+                        sendMessages(factory, contextName, webapp, fileHash, destinations, forward, nextMessage);
+                        return null;
+                    }));
+                }
+            }
+            try {
+                sendMessages(factory, contextName, webapp, fileHash, destinations, forward, nextMessage);
+            } finally {
+                waitFor(futures);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace(sm.getString("farmWarDeployer.sendEnd", contextName, webapp));
+            }
+        } finally {
+            factory.cleanup();
+        }
+    }
+
+    /*
+     * Send the messages of a file until there are no messages left. May be called concurrently by several threads that
+     * share the counter of the next message to send.
+     */
+    private void sendMessages(FileMessageFactory factory, String contextName, File webapp, byte[] fileHash,
+            Member[] destinations, Member[] forwardMembers, AtomicLong nextMessage) throws IOException {
+        FileMessage msg = new FileMessage(getCluster().getLocalMember(), webapp.getName(), contextName);
+        msg.setFileHash(fileHash);
+        msg.setForward(forwardMembers, forwardFanout);
+        long total = factory.getTotalNrOfMessages();
+        long messageNumber;
+        while ((messageNumber = nextMessage.getAndIncrement()) <= total) {
+            factory.readMessage(msg, (int) messageNumber);
+            for (Member member : destinations) {
                 if (log.isTraceEnabled()) {
                     log.trace(sm.getString("farmWarDeployer.sendFragment", contextName, webapp, member));
                 }
                 getCluster().send(msg, member);
             }
-            msg = factory.readMessage(msg);
         }
-        if (log.isTraceEnabled()) {
-            log.trace(sm.getString("farmWarDeployer.sendEnd", contextName, webapp));
+    }
+
+    /*
+     * Wait for the sending threads. The threads that have not started yet are cancelled as all the messages have been
+     * sent by then.
+     */
+    private void waitFor(List<Future<?>> futures) throws IOException {
+        IOException ioe = null;
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        for (Future<?> future : futures) {
+            try {
+                if (!future.isCancelled()) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ioe = new IOException(e);
+            } catch (ExecutionException e) {
+                if (ioe == null) {
+                    Throwable cause = e.getCause();
+                    ioe = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            }
+        }
+        if (ioe != null) {
+            throw ioe;
         }
     }
 
+    /**
+     * Send the messages of a file that have been requested by a member that has not received them.
+     *
+     * @param msg The request
+     */
+    protected void resend(FileResumeMessage msg) {
+        SentFile sent = sentFiles.get(msg.getFileName());
+        if (sent == null || !sent.contextName.equals(msg.getContextName()) ||
+                !MessageDigest.isEqual(sent.fileHash, msg.getFileHash()) || sent.file.lastModified() != sent.modified ||
+                sent.file.length() != sent.length) {
+            // Another version of the file has been sent since
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("farmWarDeployer.resumeUnknown", msg.getContextName(), msg.getFileName(),
+                        msg.getAddress()));
+            }
+            return;
+        }
+        Member member = msg.getAddress();
+        long[] missing = msg.getMissingMessages();
+        if (log.isInfoEnabled()) {
+            log.info(sm.getString("farmWarDeployer.resend", msg.getContextName(), msg.getFileName(), member));
+        }
+        sent.lastUsed = System.currentTimeMillis();
+        Runnable task = () -> {
+            try {
+                FileMessageFactory factory = FileMessageFactory.getInstance(sent.file, false, sent.chunkSize);
+                try {
+                    FileMessage fmsg =
+                            new FileMessage(getCluster().getLocalMember(), sent.file.getName(), sent.contextName);
+                    fmsg.setFileHash(sent.fileHash);
+                    for (int i = 0; i + 1 < missing.length; i += 2) {
+                        long last = Math.min(missing[i + 1], factory.getTotalNrOfMessages());
+                        for (long n = Math.max(1, missing[i]); n <= last; n++) {
+                            factory.readMessage(fmsg, (int) n);
+                            getCluster().send(fmsg, member);
+                        }
+                    }
+                } finally {
+                    factory.cleanup();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error(sm.getString("farmWarDeployer.resendFail", msg.getContextName(), msg.getFileName(), member),
+                        e);
+            }
+        };
+        ScheduledExecutorService executor = getUtilityExecutor();
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Request the missing messages of the files that are being received and for which no message has been received
+     * for longer than the resume timeout, from the member that reads the file.
+     */
+    protected void resumeTransfers() {
+        if (resumeTimeout <= 0 || receivedFiles.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long timeout = resumeTimeout * 1000L;
+        List<Member> members = Arrays.asList(getCluster().getMembers());
+        for (Map.Entry<String,ReceivedFile> entry : receivedFiles.entrySet()) {
+            ReceivedFile received = entry.getValue();
+            FileMessageFactory factory;
+            synchronized (this) {
+                factory = fileFactories.get(entry.getKey());
+            }
+            if (factory == null || received.fileHash == null || now - factory.getLastModified() < timeout ||
+                    now - received.lastResume < timeout || !members.contains(received.origin)) {
+                continue;
+            }
+            long[] missing = factory.getMissingMessages();
+            if (missing.length == 0) {
+                continue;
+            }
+            received.lastResume = now;
+            if (log.isInfoEnabled()) {
+                log.info(sm.getString("farmWarDeployer.resume", received.contextName, entry.getKey(),
+                        received.origin));
+            }
+            getCluster().send(new FileResumeMessage(getCluster().getLocalMember(), entry.getKey(),
+                    received.contextName, received.fileHash, missing), received.origin);
+        }
+    }
+
+    private ScheduledExecutorService getUtilityExecutor() {
+        Service service = host == null ? null : Container.getService(host);
+        Server server = service == null ? null : service.getServer();
+        return server == null ? null : server.getUtilityExecutor();
+    }
+
     /**
      * Remove an existing web application, attached to the specified context name. If this application is successfully
      * removed, a ContainerEvent of type <code>REMOVE_EVENT</code> will be sent to all registered listeners, with the
@@ -524,6 +781,8 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
                 }
             }
             removeInvalidFileFactories();
+            resumeTransfers();
+            removeExpiredSentFiles();
         }
 
     }
@@ -668,6 +927,61 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
         this.maxValidTime = maxValidTime;
     }
 
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the number of bytes of a file that are sent in each message.
+     *
+     * @param chunkSize The new size
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getSendThreads() {
+        return sendThreads;
+    }
+
+    /**
+     * Set the number of threads that send the messages of a file concurrently. The additional threads are provided by
+     * the utility executor of the server.
+     *
+     * @param sendThreads The new number of threads
+     */
+    public void setSendThreads(int sendThreads) {
+        this.sendThreads = sendThreads;
+    }
+
+    public int getForwardFanout() {
+        return forwardFanout;
+    }
+
+    /**
+     * Set the number of members each member forwards the messages of a file to. If zero or less, the member that reads
+     * the file sends the messages to every member.
+     *
+     * @param forwardFanout The new number of members
+     */
+    public void setForwardFanout(int forwardFanout) {
+        this.forwardFanout = forwardFanout;
+    }
+
+    public int getResumeTimeout() {
+        return resumeTimeout;
+    }
+
+    /**
+     * Set the time (in seconds) without progress after which the missing messages of a file that is being received are
+     * requested again. If zero or less, the messages are not requested again.
+     *
+     * @param resumeTimeout The new timeout
+     */
+    public void setResumeTimeout(int resumeTimeout) {
+        this.resumeTimeout = resumeTimeout;
+    }
+
     /**
      * Copy a file to the specified temp directory.
      *
@@ -716,6 +1030,11 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
         }
     }
 
+    protected void removeExpiredSentFiles() {
+        long now = System.currentTimeMillis();
+        sentFiles.values().removeIf(sent -> now - sent.lastUsed > maxValidTime * 1000L);
+    }
+
     private File getAbsolutePath(String path) {
         File dir = new File(path);
         if (!dir.isAbsolute()) {
@@ -727,4 +1046,38 @@ public class FarmWarDeployer extends ClusterListener implements ClusterDeployer,
         }
         return dir;
     }
+
+
+    private static final class SentFile {
+        private final File file;
+        private final String contextName;
+        private final byte[] fileHash;
+        private final int chunkSize;
+        private final long modified;
+        private final long length;
+        private volatile long lastUsed;
+
+        SentFile(File file, String contextName, byte[] fileHash, int chunkSize) {
+            this.file = file;
+            this.contextName = contextName;
+            this.fileHash = fileHash;
+            this.chunkSize = chunkSize;
+            this.modified = file.lastModified();
+            this.length = file.length();
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private static final class ReceivedFile {
+        private final Member origin;
+        private final String contextName;
+        private final byte[] fileHash;
+        private volatile long lastResume = 0;
+
+        ReceivedFile(Member origin, String contextName, byte[] fileHash) {
+            this.origin = origin;
+            this.contextName = contextName;
+            this.fileHash = fileHash;
+        }
+    }
 }
@@ -25,18 +25,27 @@ import org.apache.catalina.tribes.Member;
  */
 
 public class FileMessage extends ClusterMessageBase {
+    // Fields added since version 2 must be optional so that members using version 2 can still exchange messages with
+    // this version. Deserialized messages from those members have default values for the added fields.
     private static final long serialVersionUID = 2L;
 
     private int messageNumber;
     private byte[] data;
     private int dataLength;
+    private long checksum;
+    private boolean hasChecksum;
 
     private long totalNrOfMsgs;
     private final String fileName;
     private final String contextName;
+    private final Member origin;
+    private byte[] fileHash;
+    private Member[] forwardMembers;
+    private int forwardFanout;
 
     public FileMessage(Member source, String fileName, String contextName) {
         this.address = source;
+        this.origin = source;
         this.fileName = fileName;
         this.contextName = contextName;
     }
@@ -70,6 +79,66 @@ public class FileMessage extends ClusterMessageBase {
         return dataLength;
     }
 
+    /**
+     * @return the CRC-32C checksum of the data or -1 if no checksum was set
+     */
+    public long getChecksum() {
+        return hasChecksum ? checksum : -1;
+    }
+
+    public void setChecksum(long checksum) {
+        this.checksum = checksum;
+        this.hasChecksum = checksum >= 0;
+    }
+
+    /**
+     * @return the member that read the file, which is not the member that sent this message if the message has been
+     *             forwarded
+     */
+    public Member getOrigin() {
+        // Not set by older members, which never forward messages
+        return origin == null ? address : origin;
+    }
+
+    /**
+     * @return the SHA-256 hash of the complete file or <code>null</code> if the hash is not known
+     */
+    public byte[] getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(byte[] fileHash) {
+        this.fileHash = fileHash;
+    }
+
+    /**
+     * @return the members the message is distributed to, in the order of the tree the message is forwarded along, or
+     *             <code>null</code> if the message is not forwarded
+     */
+    public Member[] getForwardMembers() {
+        return forwardMembers;
+    }
+
+    /**
+     * @return the number of members each member forwards the message to
+     */
+    public int getForwardFanout() {
+        return forwardFanout;
+    }
+
+    /**
+     * Configure the members that forward the message. The member at index <code>i</code> in the given array forwards
+     * the message to the members at index <code>(i + 1) * fanout</code> to <code>(i + 2) * fanout - 1</code>. The
+     * origin sends the message to the first <code>fanout</code> members.
+     *
+     * @param forwardMembers The members the message is distributed to
+     * @param forwardFanout  The number of members each member forwards the message to
+     */
+    public void setForward(Member[] forwardMembers, int forwardFanout) {
+        this.forwardMembers = forwardMembers;
+        this.forwardFanout = forwardFanout;
+    }
+
     @Override
     public String getUniqueId() {
         StringBuilder result = new StringBuilder(getFileName());
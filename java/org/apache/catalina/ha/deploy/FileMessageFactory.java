@@ -21,9 +21,17 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -36,7 +44,8 @@ import org.apache.tomcat.util.res.StringManager;
  * The factory can be used as a reader or writer but not both at the same time. When done reading or writing the factory
  * will close the input or output streams and mark the factory as closed. It is not possible to use it after that. <BR>
  * To force a cleanup, call cleanup() from the calling object. <BR>
- * This class is not thread safe.
+ * This class is not thread safe, with the exception of {@link #readMessage(FileMessage, int)} which may be used to
+ * read different messages concurrently.
  */
 public class FileMessageFactory {
     /*--Static Variables----------------------------------------*/
@@ -48,6 +57,11 @@ public class FileMessageFactory {
      */
     public static final int READ_SIZE = 1024 * 10; // 10 KiB
 
+    /**
+     * The algorithm used to calculate the hash of the complete file.
+     */
+    public static final String HASH_ALGORITHM = "SHA-256";
+
     /**
      * The file that we are reading/writing
      */
@@ -119,6 +133,17 @@ public class FileMessageFactory {
      */
     protected int maxValidTime = -1;
 
+    /**
+     * The hash of the file. When reading, it is calculated on first use. When writing, it is obtained from the
+     * messages and checked once the file is complete.
+     */
+    protected byte[] fileHash = null;
+
+    /**
+     * When openForWrite=true, calculates the hash of the data written so far
+     */
+    protected MessageDigest digest = null;
+
     /**
      * Private constructor, either instantiates a factory to read or write. <BR>
      * When openForWrite==true, then a the file, f, will be created and an output stream is opened to write to it. <BR>
@@ -131,7 +156,8 @@ public class FileMessageFactory {
      * @throws IOException           - if the system fails to open input/output streams to the file or if it fails to
      *                                   create the file to be written to.
      */
-    private FileMessageFactory(File f, boolean openForWrite) throws FileNotFoundException, IOException {
+    private FileMessageFactory(File f, boolean openForWrite, int readSize)
+            throws FileNotFoundException, IOException {
         this.file = f;
         this.openForWrite = openForWrite;
         if (log.isTraceEnabled()) {
@@ -146,7 +172,8 @@ public class FileMessageFactory {
             out = new FileOutputStream(f);
         } else {
             size = file.length();
-            totalNrOfMessages = (size / READ_SIZE) + 1;
+            data = new byte[readSize];
+            totalNrOfMessages = size == 0 ? 1 : (size + readSize - 1) / readSize;
             in = new FileInputStream(f);
         } // end if
         lastModified = System.currentTimeMillis();
@@ -166,7 +193,24 @@ public class FileMessageFactory {
      */
     public static FileMessageFactory getInstance(File f, boolean openForWrite)
             throws FileNotFoundException, IOException {
-        return new FileMessageFactory(f, openForWrite);
+        return new FileMessageFactory(f, openForWrite, READ_SIZE);
+    }
+
+    /**
+     * Creates a factory to read or write from a file.
+     *
+     * @param f            File - the file to be read or written
+     * @param openForWrite boolean - true, means we are writing to the file, false means we are reading from it
+     * @param readSize     The number of bytes read from the file into each message when reading
+     *
+     * @throws FileNotFoundException - if the file to be read doesn't exist
+     * @throws IOException           - if it fails to create the file that is to be written
+     *
+     * @return FileMessageFactory
+     */
+    public static FileMessageFactory getInstance(File f, boolean openForWrite, int readSize)
+            throws FileNotFoundException, IOException {
+        return new FileMessageFactory(f, openForWrite, readSize > 0 ? readSize : READ_SIZE);
     }
 
     /**
@@ -190,12 +234,99 @@ public class FileMessageFactory {
             return null;
         } else {
             f.setData(data, length);
+            f.setChecksum(checksum(data, length));
             f.setTotalNrOfMsgs(totalNrOfMessages);
             f.setMessageNumber(++nrOfMessagesProcessed);
             return f;
         } // end if
     }
 
+    /**
+     * Reads the given part of the file into the file message. Unlike {@link #readMessage(FileMessage)}, this method
+     * may be called concurrently to read different parts of the file into different messages. The data array of the
+     * message is reused if it is large enough.
+     *
+     * @param f             FileMessage - the message to be populated with file data
+     * @param messageNumber The number of the message to read, starting at 1
+     *
+     * @throws IllegalArgumentException - if the factory is for writing or is closed or the message number is not
+     *                                      valid
+     * @throws IOException              - if a file read exception occurs
+     *
+     * @return FileMessage - returns the same message passed in as a parameter
+     */
+    public FileMessage readMessage(FileMessage f, int messageNumber) throws IllegalArgumentException, IOException {
+        checkState(false);
+        if (messageNumber < 1 || messageNumber > totalNrOfMessages) {
+            throw new IllegalArgumentException(
+                    sm.getString("fileMessageFactory.invalidMessageNumber", Integer.valueOf(messageNumber)));
+        }
+        int readSize = data.length;
+        byte[] buf = f.getData();
+        if (buf == null || buf == data || buf.length < readSize) {
+            buf = new byte[readSize];
+        }
+        FileChannel channel = in.getChannel();
+        ByteBuffer bb = ByteBuffer.wrap(buf, 0, readSize);
+        long position = (long) (messageNumber - 1) * readSize;
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position + bb.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        f.setData(buf, bb.position());
+        f.setChecksum(checksum(buf, bb.position()));
+        f.setTotalNrOfMsgs(totalNrOfMessages);
+        f.setMessageNumber(messageNumber);
+        return f;
+    }
+
+    /**
+     * @return the total number of messages the file is split into
+     */
+    public long getTotalNrOfMessages() {
+        return totalNrOfMessages;
+    }
+
+    /**
+     * Obtain the hash of the file. When reading, the file is read to calculate the hash the first time this method is
+     * called. When writing, the hash is the one provided by the messages.
+     *
+     * @return the hash of the file or <code>null</code> if the hash is not known
+     *
+     * @throws IOException - if a file read exception occurs
+     */
+    public byte[] getFileHash() throws IOException {
+        if (!openForWrite && fileHash == null) {
+            MessageDigest md = createDigest();
+            try (FileInputStream fis = new FileInputStream(file)) {
+                byte[] buf = new byte[8192];
+                int length;
+                while ((length = fis.read(buf)) > 0) {
+                    md.update(buf, 0, length);
+                }
+            }
+            fileHash = md.digest();
+        }
+        return fileHash;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long checksum(byte[] data, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, 0, length);
+        return crc.getValue();
+    }
+
     /**
      * Writes a message to file. If (msg.getMessageNumber() == msg.getTotalNrOfMsgs()) the output stream will be closed
      * after writing.
@@ -216,6 +347,13 @@ public class FileMessageFactory {
                     msg.getDataLength() + " out " + out);
         }
 
+        if (msg.getChecksum() >= 0 && msg.getChecksum() != checksum(msg.getData(), msg.getDataLength())) {
+            // The message will be requested again if the transfer is resumed
+            log.warn(sm.getString("fileMessageFactory.checksumMismatch", msg.getContextName(), msg.getFileName(),
+                    Integer.valueOf(msg.getMessageNumber())));
+            return false;
+        }
+
         if (msg.getMessageNumber() <= lastMessageProcessed.get()) {
             // Duplicate of message already processed
             log.warn(sm.getString("fileMessageFactory.duplicateMessage", msg.getContextName(), msg.getFileName(),
@@ -233,6 +371,15 @@ public class FileMessageFactory {
 
         // Have received a new message. Update the last modified time (even if the message is being buffered for now).
         lastModified = System.currentTimeMillis();
+        if (msg.getFileHash() != null) {
+            synchronized (this) {
+                if (fileHash == null) {
+                    fileHash = msg.getFileHash();
+                    digest = createDigest();
+                }
+            }
+        }
+        totalNrOfMessages = msg.getTotalNrOfMsgs();
 
         FileMessage next = null;
         synchronized (this) {
@@ -250,11 +397,24 @@ public class FileMessageFactory {
 
         while (next != null) {
             out.write(next.getData(), 0, next.getDataLength());
+            if (digest != null) {
+                digest.update(next.getData(), 0, next.getDataLength());
+            }
+            msgBuffer.remove(Long.valueOf(next.getMessageNumber()));
             lastMessageProcessed.incrementAndGet();
             out.flush();
             if (next.getMessageNumber() == next.getTotalNrOfMsgs()) {
                 out.close();
+                byte[] expected = fileHash;
+                byte[] actual = digest == null ? null : digest.digest();
                 cleanup();
+                if (expected != null && !MessageDigest.isEqual(expected, actual)) {
+                    if (!file.delete()) {
+                        log.warn(sm.getString("fileMessageFactory.deleteFail", file));
+                    }
+                    throw new IOException(sm.getString("fileMessageFactory.hashMismatch", next.getContextName(),
+                            next.getFileName()));
+                }
                 return true;
             }
             synchronized (this) {
@@ -268,6 +428,48 @@ public class FileMessageFactory {
         return false;
     }// writeMessage
 
+    /**
+     * Obtain the numbers of the messages that have not been received yet.
+     *
+     * @return the missing messages as pairs of first and last message number or an empty array if the factory has
+     *             been closed
+     */
+    public long[] getMissingMessages() {
+        AtomicLong processed = lastMessageProcessed;
+        long total = totalNrOfMessages;
+        if (closed || processed == null) {
+            return new long[0];
+        }
+        Long[] buffered = msgBuffer.keySet().toArray(new Long[0]);
+        Arrays.sort(buffered);
+        List<long[]> ranges = new ArrayList<>();
+        long next = processed.get() + 1;
+        for (Long number : buffered) {
+            long n = number.longValue();
+            if (n > next) {
+                ranges.add(new long[] { next, n - 1 });
+            }
+            next = Math.max(next, n + 1);
+        }
+        if (total <= 0 || next <= total) {
+            // If the total is not known yet, request all the remaining messages
+            ranges.add(new long[] { next, total > 0 ? total : Long.MAX_VALUE });
+        }
+        long[] result = new long[ranges.size() * 2];
+        for (int i = 0; i < ranges.size(); i++) {
+            result[i * 2] = ranges.get(i)[0];
+            result[i * 2 + 1] = ranges.get(i)[1];
+        }
+        return result;
+    }
+
+    /**
+     * @return the time a message was last written or buffered by this factory
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
     /**
      * Closes the factory, its streams and sets all its references to null
      */
@@ -293,6 +495,7 @@ public class FileMessageFactory {
         totalNrOfMessages = 0;
         msgBuffer.clear();
         lastMessageProcessed = null;
+        digest = null;
     }
 
     /**
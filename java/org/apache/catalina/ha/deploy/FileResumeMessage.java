@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.deploy;
+
+import org.apache.catalina.ha.ClusterMessageBase;
+import org.apache.catalina.tribes.Member;
+
+/**
+ * Sent by a member that has stopped receiving the messages of a file transfer to the member that read the file, to
+ * request the messages that are missing so the transfer can be completed.
+ */
+public class FileResumeMessage extends ClusterMessageBase {
+    private static final long serialVersionUID = 1L;
+
+    private final String fileName;
+    private final String contextName;
+    private final byte[] fileHash;
+    private final long[] missingMessages;
+
+    /**
+     * @param source          The member that requests the messages
+     * @param fileName        The name of the file
+     * @param contextName     The name of the context the file is deployed to
+     * @param fileHash        The hash of the file, to ensure that the file has not changed
+     * @param missingMessages The numbers of the missing messages, as pairs of first and last message number
+     */
+    public FileResumeMessage(Member source, String fileName, String contextName, byte[] fileHash,
+            long[] missingMessages) {
+        this.address = source;
+        this.fileName = fileName;
+        this.contextName = contextName;
+        this.fileHash = fileHash;
+        this.missingMessages = missingMessages;
+    }
+
+    @Override
+    public String getUniqueId() {
+        StringBuilder result = new StringBuilder(getFileName());
+        result.append("#-#resume#-#");
+        result.append(System.currentTimeMillis());
+        return result.toString();
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContextName() {
+        return contextName;
+    }
+
+    public byte[] getFileHash() {
+        return fileHash;
+    }
+
+    public long[] getMissingMessages() {
+        return missingMessages;
+    }
+}
@@ -68,6 +68,18 @@ public class BackupManager extends ClusterManagerBase implements MapOwner, Distr
      */
     private long accessTimeout = 5000;
 
+    /**
+     * The number of positions of each node on the consistent hash ring used to select backup nodes, 0 for round-robin
+     * selection.
+     */
+    private int mapVirtualNodes = 0;
+
+    /**
+     * The maximum number of sessions per message when sessions move to a new backup node, 0 for one message per
+     * session.
+     */
+    private int mapRelocationBatchSize = 0;
+
     /**
      * Constructor, just calls super()
      */
@@ -144,6 +156,8 @@ public class BackupManager extends ClusterManagerBase implements MapOwner, Distr
                     getMapName(), getClassLoaders(), terminateOnStartFailure);
             map.setChannelSendOptions(mapSendOptions);
             map.setAccessTimeout(accessTimeout);
+            map.setVirtualNodes(mapVirtualNodes);
+            map.setRelocationBatchSize(mapRelocationBatchSize);
             this.sessions = map;
         } catch (Exception x) {
             log.error(sm.getString("backupManager.startUnable", getName()), x);
@@ -240,6 +254,22 @@ public class BackupManager extends ClusterManagerBase implements MapOwner, Distr
         this.accessTimeout = accessTimeout;
     }
 
+    public int getMapVirtualNodes() {
+        return mapVirtualNodes;
+    }
+
+    public void setMapVirtualNodes(int mapVirtualNodes) {
+        this.mapVirtualNodes = mapVirtualNodes;
+    }
+
+    public int getMapRelocationBatchSize() {
+        return mapRelocationBatchSize;
+    }
+
+    public void setMapRelocationBatchSize(int mapRelocationBatchSize) {
+        this.mapRelocationBatchSize = mapRelocationBatchSize;
+    }
+
     @Override
     public String[] getInvalidatedSessions() {
         return new String[0];
@@ -253,6 +283,8 @@ public class BackupManager extends ClusterManagerBase implements MapOwner, Distr
         result.rpcTimeout = rpcTimeout;
         result.terminateOnStartFailure = terminateOnStartFailure;
         result.accessTimeout = accessTimeout;
+        result.mapVirtualNodes = mapVirtualNodes;
+        result.mapRelocationBatchSize = mapRelocationBatchSize;
         return result;
     }
 
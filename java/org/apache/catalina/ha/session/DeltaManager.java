@@ -21,13 +21,24 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.catalina.Container;
 import org.apache.catalina.Engine;
 import org.apache.catalina.Host;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
+import org.apache.catalina.Server;
+import org.apache.catalina.Service;
 import org.apache.catalina.Session;
 import org.apache.catalina.ha.ClusterManager;
 import org.apache.catalina.ha.ClusterMessage;
@@ -85,6 +96,17 @@ public class DeltaManager extends ClusterManagerBase {
     private boolean receiverQueue = false;
     private boolean stateTimestampDrop = true;
     private volatile long stateTransferCreateSendTime;
+    private int stateTransferPartitions = 1;
+    private boolean stateTransferInBackground = false;
+
+    /*
+     * Members that have been asked for session state and have not yet reported that the transfer is complete. Access
+     * is synchronized on this set.
+     */
+    private final Set<Member> stateTransferMembers = new HashSet<>();
+    private long stateTransferSnapshotTime;
+    private volatile boolean stateTransferCancelled = false;
+    private volatile Future<?> stateTransferFuture = null;
 
     // -------------------------------------------------------- stats attributes
 
@@ -304,6 +326,43 @@ public class DeltaManager extends ClusterManagerBase {
         this.noContextManagerReceived = noContextManagerReceived;
     }
 
+    /**
+     * @return the number of hash partitions the sessions are split into when the session state is transferred
+     */
+    public int getStateTransferPartitions() {
+        return stateTransferPartitions;
+    }
+
+    /**
+     * Set the number of hash partitions the sessions are split into when the session state is requested from the
+     * other members. The partitions are requested in parallel from up to this number of members and each member
+     * streams the sessions of its partitions in blocks of {@link #getSendAllSessionsSize()} sessions. With the default
+     * of <code>1</code>, all the sessions are requested from a single member.
+     *
+     * @param stateTransferPartitions The number of partitions
+     */
+    public void setStateTransferPartitions(int stateTransferPartitions) {
+        this.stateTransferPartitions = stateTransferPartitions;
+    }
+
+    /**
+     * @return <code>true</code> if the session state is transferred after the manager has started
+     */
+    public boolean isStateTransferInBackground() {
+        return stateTransferInBackground;
+    }
+
+    /**
+     * Set whether the manager, and therefore the web application, should start without waiting for the session state
+     * to be transferred from the other members. Sessions are then added as they are received and messages for
+     * existing sessions are queued until the transfer is complete.
+     *
+     * @param stateTransferInBackground <code>true</code> to transfer the session state after the manager has started
+     */
+    public void setStateTransferInBackground(boolean stateTransferInBackground) {
+        this.stateTransferInBackground = stateTransferInBackground;
+    }
+
     /**
      * @return the sendAllSessionsWaitTime in msec
      */
@@ -537,6 +596,57 @@ public class DeltaManager extends ClusterManagerBase {
         return sessionId;
     }
 
+    /**
+     * Serialize the session state partitions requested from a member.
+     *
+     * @param partitions The partitions, a <code>true</code> entry indicates that the sessions of the partition are
+     *                       requested
+     *
+     * @return byte array with the serialized partitions
+     */
+    protected byte[] serializePartitions(boolean[] partitions) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + partitions.length);
+        buffer.putInt(partitions.length);
+        for (boolean partition : partitions) {
+            buffer.put(partition ? (byte) 1 : (byte) 0);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Load the requested session state partitions.
+     *
+     * @param data serialized partitions
+     *
+     * @return the partitions
+     *
+     * @throws IOException if the data is not valid
+     */
+    protected boolean[] deserializePartitions(byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int count = data.length < 4 ? 0 : buffer.getInt();
+        if (count < 1 || count != buffer.remaining()) {
+            throw new IOException(sm.getString("deltaManager.invalidPartitions", Integer.valueOf(count)));
+        }
+        boolean[] partitions = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = buffer.get() != 0;
+        }
+        return partitions;
+    }
+
+    /**
+     * Determine the session state partition of a session.
+     *
+     * @param sessionId The session id
+     * @param count     The number of partitions
+     *
+     * @return the partition, from <code>0</code> to <code>count - 1</code>
+     */
+    public static int getStateTransferPartition(String sessionId, int count) {
+        return Math.floorMod(sessionId.hashCode(), count);
+    }
+
     /**
      * Load sessions from other cluster node.
      * <p>
@@ -656,7 +766,25 @@ public class DeltaManager extends ClusterManagerBase {
                 log.info(sm.getString("deltaManager.startClustering", getName()));
             }
 
-            getAllClusterSessions();
+            stateTransferCancelled = false;
+            ScheduledExecutorService executor = null;
+            if (isStateTransferInBackground()) {
+                Service service = Container.getService(getContext());
+                Server server = service == null ? null : service.getServer();
+                executor = server == null ? null : server.getUtilityExecutor();
+            }
+            if (executor == null) {
+                getAllClusterSessions();
+            } else {
+                stateTransferFuture = executor.submit(() -> {
+                    try {
+                        getAllClusterSessions();
+                    } catch (Throwable t) {
+                        ExceptionUtils.handleThrowable(t);
+                        log.error(sm.getString("deltaManager.managerLoad"), t);
+                    }
+                });
+            }
 
         } catch (Throwable t) {
             ExceptionUtils.handleThrowable(t);
@@ -667,33 +795,58 @@ public class DeltaManager extends ClusterManagerBase {
     }
 
     /**
-     * get from first session master the backup from all clustered sessions
+     * get from first session master the backup from all clustered sessions. If {@link #getStateTransferPartitions()}
+     * is greater than one, the partitions of the sessions are requested from several members in parallel.
      *
      * @see #findSessionMasterMember()
+     * @see #findStateTransferMembers()
      */
     public synchronized void getAllClusterSessions() {
         if (cluster != null && cluster.getMembers().length > 0) {
             long beforeSendTime = System.currentTimeMillis();
-            Member mbr = findSessionMasterMember();
-            if (mbr == null) { // No domain member found
+            Member[] mbrs;
+            if (getStateTransferPartitions() > 1) {
+                mbrs = findStateTransferMembers();
+            } else {
+                Member mbr = findSessionMasterMember();
+                mbrs = mbr == null ? new Member[0] : new Member[] { mbr };
+            }
+            if (mbrs.length == 0) { // No domain member found
                 return;
             }
-            SessionMessage msg = new SessionMessageImpl(this.getName(), SessionMessage.EVT_GET_ALL_SESSIONS, null,
-                    "GET-ALL", "GET-ALL-" + getName());
-            msg.setTimestamp(beforeSendTime);
             // set reference time
             stateTransferCreateSendTime = beforeSendTime;
-            // request session state
-            counterSend_EVT_GET_ALL_SESSIONS++;
             stateTransferred = false;
+            synchronized (stateTransferMembers) {
+                stateTransferMembers.clear();
+                stateTransferMembers.addAll(Arrays.asList(mbrs));
+                stateTransferSnapshotTime = Long.MAX_VALUE;
+            }
             // FIXME This send call block the deploy thread, when sender waitForAck is enabled
             try {
                 synchronized (receivedMessageQueue) {
                     receiverQueue = true;
                 }
-                cluster.send(msg, mbr, Channel.SEND_OPTIONS_ASYNCHRONOUS);
+                for (int i = 0; i < mbrs.length; i++) {
+                    byte[] data = null;
+                    if (getStateTransferPartitions() > 1) {
+                        // Member i is asked for the partitions p where p % mbrs.length == i
+                        boolean[] partitions = new boolean[getStateTransferPartitions()];
+                        for (int p = i; p < partitions.length; p += mbrs.length) {
+                            partitions[p] = true;
+                        }
+                        data = serializePartitions(partitions);
+                    }
+                    SessionMessage msg = new SessionMessageImpl(this.getName(), SessionMessage.EVT_GET_ALL_SESSIONS,
+                            data, "GET-ALL", "GET-ALL-" + getName());
+                    msg.setTimestamp(beforeSendTime);
+                    // request session state
+                    counterSend_EVT_GET_ALL_SESSIONS++;
+                    cluster.send(msg, mbrs[i], Channel.SEND_OPTIONS_ASYNCHRONOUS);
+                }
                 if (log.isInfoEnabled()) {
-                    log.info(sm.getString("deltaManager.waitForSessionState", getName(), mbr,
+                    log.info(sm.getString("deltaManager.waitForSessionState", getName(),
+                            mbrs.length == 1 ? mbrs[0] : Arrays.toString(mbrs),
                             Integer.valueOf(getStateTransferTimeout())));
                 }
                 // FIXME At sender ack mode this method check only the state
@@ -749,6 +902,26 @@ public class DeltaManager extends ClusterManagerBase {
         return mbr;
     }
 
+    /**
+     * Find the members the partitions of the session state are requested from. As every member holds all the
+     * sessions, up to {@link #getStateTransferPartitions()} members are used.
+     *
+     * @return the members
+     */
+    protected Member[] findStateTransferMembers() {
+        Member mbrs[] = cluster.getMembers();
+        if (mbrs.length > getStateTransferPartitions()) {
+            mbrs = Arrays.copyOf(mbrs, getStateTransferPartitions());
+        }
+        if (mbrs.length == 0 && log.isWarnEnabled()) {
+            log.warn(sm.getString("deltaManager.noMasterMember", getName(), ""));
+        }
+        if (mbrs.length > 0 && log.isTraceEnabled()) {
+            log.trace(sm.getString("deltaManager.foundMasterMember", getName(), Arrays.toString(mbrs)));
+        }
+        return mbrs;
+    }
+
     /**
      * Wait that cluster session state is transferred or timeout after 60 Sec With stateTransferTimeout == -1 wait that
      * backup is transferred (forever mode)
@@ -769,7 +942,8 @@ public class DeltaManager extends ClusterManagerBase {
                 }
                 reqNow = System.currentTimeMillis();
                 isTimeout = ((reqNow - reqStart) > (1000L * getStateTransferTimeout()));
-            } while ((!getStateTransferred()) && (!isTimeout) && (!isNoContextManagerReceived()));
+            } while ((!getStateTransferred()) && (!isTimeout) && (!isNoContextManagerReceived()) &&
+                    (!stateTransferCancelled));
         } else {
             if (getStateTransferTimeout() == -1) {
                 // wait that state is transferred
@@ -778,10 +952,13 @@ public class DeltaManager extends ClusterManagerBase {
                         Thread.sleep(100);
                     } catch (Exception sleep) {
                     }
-                } while ((!getStateTransferred()) && (!isNoContextManagerReceived()));
+                } while ((!getStateTransferred()) && (!isNoContextManagerReceived()) && (!stateTransferCancelled));
                 reqNow = System.currentTimeMillis();
             }
         }
+        if (stateTransferCancelled) {
+            return;
+        }
         if (isTimeout) {
             counterNoStateTransferred++;
             log.error(sm.getString("deltaManager.noSessionState", getName(), new Date(beforeSendTime),
@@ -815,6 +992,18 @@ public class DeltaManager extends ClusterManagerBase {
 
         setState(LifecycleState.STOPPING);
 
+        // Wait for a background state transfer to end
+        stateTransferCancelled = true;
+        Future<?> stateTransferFuture = this.stateTransferFuture;
+        if (stateTransferFuture != null) {
+            try {
+                stateTransferFuture.get();
+            } catch (InterruptedException | ExecutionException e) {
+                // Ignore, the error has been logged
+            }
+            this.stateTransferFuture = null;
+        }
+
         // Expire all active sessions
         if (log.isInfoEnabled()) {
             log.info(sm.getString("deltaManager.expireSessions", getName()));
@@ -1114,7 +1303,15 @@ public class DeltaManager extends ClusterManagerBase {
             log.debug(sm.getString("deltaManager.receiveMessage.transfercomplete", getName(), sender.getHost(),
                     Integer.valueOf(sender.getPort())));
         }
-        stateTransferCreateSendTime = msg.getTimestamp();
+        synchronized (stateTransferMembers) {
+            stateTransferMembers.remove(sender);
+            // Messages are only dropped if they are older than all the transferred session state
+            stateTransferSnapshotTime = Math.min(stateTransferSnapshotTime, msg.getTimestamp());
+            stateTransferCreateSendTime = stateTransferSnapshotTime;
+            if (!stateTransferMembers.isEmpty()) {
+                return;
+            }
+        }
         stateTransferred = true;
     }
 
@@ -1233,7 +1430,8 @@ public class DeltaManager extends ClusterManagerBase {
 
     /**
      * Handle a get all sessions message from another node. Depending on {@link #sendAllSessions}, sessions are either
-     * sent in a single message or in batches. Sending is complete when this method exits.
+     * sent in a single message or in batches. If the message requests some partitions of the sessions, the sessions of
+     * these partitions are always sent in batches as they are found. Sending is complete when this method exits.
      *
      * @param msg    Session message
      * @param sender Member which sent the message
@@ -1246,6 +1444,14 @@ public class DeltaManager extends ClusterManagerBase {
         if (log.isDebugEnabled()) {
             log.debug(sm.getString("deltaManager.receiveMessage.unloadingBegin", getName()));
         }
+        if (msg.getSession() != null && msg.getSession().length > 0) {
+            // Messages sent while the sessions are being sent must not be dropped so use the time before the first
+            // session is found
+            long findSessionTimestamp = System.currentTimeMillis();
+            sendSessionPartitions(sender, deserializePartitions(msg.getSession()), findSessionTimestamp);
+            sendTransferComplete(sender, findSessionTimestamp);
+            return;
+        }
         // Write the number of active sessions, followed by the details
         // get all sessions and serialize without sync
         Session[] currentSessions = findSessions();
@@ -1271,6 +1477,52 @@ public class DeltaManager extends ClusterManagerBase {
             }
         }
 
+        sendTransferComplete(sender, findSessionTimestamp);
+    }
+
+    /**
+     * Send the sessions of some partitions to a node in batches of {@link #getSendAllSessionsSize()} sessions. The
+     * sessions are serialized and sent as they are found rather than copying all the sessions first.
+     *
+     * @param sender        Member which requested the sessions
+     * @param partitions    The requested partitions
+     * @param sendTimestamp Timestamp
+     *
+     * @throws IOException IO error sending messages
+     */
+    protected void sendSessionPartitions(Member sender, boolean[] partitions, long sendTimestamp) throws IOException {
+        int size = Math.max(1, getSendAllSessionsSize());
+        List<Session> block = new ArrayList<>(size);
+        boolean first = true;
+        for (Session session : sessions.values()) {
+            if (!partitions[getStateTransferPartition(session.getIdInternal(), partitions.length)]) {
+                continue;
+            }
+            block.add(session);
+            if (block.size() == size) {
+                sendSessionBlock(sender, block, sendTimestamp, first);
+                first = false;
+            }
+        }
+        if (!block.isEmpty()) {
+            sendSessionBlock(sender, block, sendTimestamp, first);
+        }
+    }
+
+    private void sendSessionBlock(Member sender, List<Session> block, long sendTimestamp, boolean first)
+            throws IOException {
+        if (!first && getSendAllSessionsWaitTime() > 0) {
+            try {
+                Thread.sleep(getSendAllSessionsWaitTime());
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+        sendSessions(sender, block.toArray(new Session[0]), sendTimestamp);
+        block.clear();
+    }
+
+    private void sendTransferComplete(Member sender, long findSessionTimestamp) {
         SessionMessage newmsg = new SessionMessageImpl(name, SessionMessage.EVT_ALL_SESSION_TRANSFERCOMPLETE, null,
                 "SESSION-STATE-TRANSFERRED", "SESSION-STATE-TRANSFERRED" + getName());
         newmsg.setTimestamp(findSessionTimestamp);
@@ -1353,6 +1605,8 @@ public class DeltaManager extends ClusterManagerBase {
         result.sendAllSessionsSize = sendAllSessionsSize;
         result.sendAllSessionsWaitTime = sendAllSessionsWaitTime;
         result.stateTimestampDrop = stateTimestampDrop;
+        result.stateTransferPartitions = stateTransferPartitions;
+        result.stateTransferInBackground = stateTransferInBackground;
         return result;
     }
 }
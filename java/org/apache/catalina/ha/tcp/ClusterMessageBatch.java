@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.tcp;
+
+import org.apache.catalina.ha.ClusterMessage;
+import org.apache.catalina.ha.ClusterMessageBase;
+
+/**
+ * A cluster message that carries several other cluster messages so that they can be sent to the other members of the
+ * cluster as a single channel message. When received, the messages are passed to the cluster listeners in the order
+ * in which they were added to the batch, as if they had been received separately.
+ */
+public class ClusterMessageBatch extends ClusterMessageBase {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ClusterMessage[] messages;
+    private final String uniqueId;
+
+
+    /**
+     * Create a new batch.
+     *
+     * @param messages The messages to send
+     * @param uniqueId The id that identifies the batch
+     */
+    public ClusterMessageBatch(ClusterMessage[] messages, String uniqueId) {
+        this.messages = messages;
+        this.uniqueId = uniqueId;
+    }
+
+
+    /**
+     * @return the messages in this batch
+     */
+    public ClusterMessage[] getMessages() {
+        return messages;
+    }
+
+
+    @Override
+    public String getUniqueId() {
+        return uniqueId;
+    }
+}
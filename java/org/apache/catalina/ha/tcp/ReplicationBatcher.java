@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.tcp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.catalina.ha.ClusterManager;
+import org.apache.catalina.ha.ClusterMessage;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Defers the replication of the sessions changed by requests so that the changes to many sessions can be sent to the
+ * other members of the cluster in a single message. Sessions are queued when a request completes and the replication
+ * messages for all the queued sessions are created and sent when the batch is flushed, either periodically or as soon
+ * as enough sessions have been queued. As a session only records the latest change to each attribute, all the changes
+ * made by the requests processed for a session between two flushes are replicated at once.
+ */
+final class ReplicationBatcher {
+
+    private static final Log log = LogFactory.getLog(ReplicationBatcher.class);
+    private static final StringManager sm = StringManager.getManager(Constants.Package);
+
+    private final SimpleTcpCluster cluster;
+
+    /*
+     * The queued sessions and the time at which each one was queued. Access is synchronized on this map.
+     */
+    private final Map<PendingReplication,Long> pending = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final AtomicLong batchId = new AtomicLong(0);
+
+    private volatile ScheduledExecutorService executor = null;
+    private ScheduledFuture<?> flushFuture = null;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder messageCount = new LongAdder();
+    private final LongAdder totalLag = new LongAdder();
+    private final LongAccumulator maxLag = new LongAccumulator(Math::max, 0);
+    private volatile long lastLag = 0;
+
+
+    ReplicationBatcher(SimpleTcpCluster cluster) {
+        this.cluster = cluster;
+    }
+
+
+    /**
+     * Start flushing the queued sessions periodically.
+     *
+     * @param executor The executor to use to flush the queue
+     * @param interval The interval between flushes in milliseconds
+     */
+    synchronized void start(ScheduledExecutorService executor, long interval) {
+        flushFuture = executor.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.MILLISECONDS);
+        this.executor = executor;
+    }
+
+
+    /**
+     * Stop flushing the queued sessions periodically and send the changes to the sessions that are still queued.
+     */
+    void stop() {
+        synchronized (this) {
+            executor = null;
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+        }
+        flushSafely();
+    }
+
+
+    /**
+     * Queue the replication of a session.
+     *
+     * @param manager   The manager of the session
+     * @param sessionId The id of the session
+     *
+     * @return <code>true</code> if the session has been queued or <code>false</code> if batching is not active and
+     *             the session should be replicated immediately
+     */
+    boolean add(ClusterManager manager, String sessionId) {
+        ScheduledExecutorService executor = this.executor;
+        if (executor == null) {
+            return false;
+        }
+        int size;
+        synchronized (pending) {
+            pending.putIfAbsent(new PendingReplication(manager, sessionId), Long.valueOf(System.currentTimeMillis()));
+            size = pending.size();
+        }
+        if (size >= cluster.getReplicationBatchSize() && flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flushSafely);
+            } catch (RuntimeException e) {
+                // The executor is shutting down. The queue will be flushed when the cluster stops.
+                flushRequested.set(false);
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Create and send the replication messages for all the queued sessions.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            List<Map.Entry<PendingReplication,Long>> entries;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                entries = new ArrayList<>(pending.entrySet());
+                pending.clear();
+            }
+
+            List<ClusterMessage> messages = new ArrayList<>(entries.size());
+            List<Long> queueTimes = new ArrayList<>(entries.size());
+            for (Map.Entry<PendingReplication,Long> entry : entries) {
+                PendingReplication replication = entry.getKey();
+                try {
+                    ClusterMessage msg = replication.manager.requestCompleted(replication.sessionId);
+                    if (msg != null) {
+                        messages.add(msg);
+                        queueTimes.add(entry.getValue());
+                    }
+                } catch (Exception e) {
+                    log.error(sm.getString("replicationBatcher.createMessageFailed", replication.sessionId,
+                            replication.manager.getName()), e);
+                }
+            }
+
+            int batchSize = Math.max(1, cluster.getReplicationBatchSize());
+            int sendOptions = cluster.getReplicationBatchSendOptions();
+            for (int start = 0; start < messages.size(); start += batchSize) {
+                List<ClusterMessage> batch = messages.subList(start, Math.min(messages.size(), start + batchSize));
+                send(batch, sendOptions);
+                long now = System.currentTimeMillis();
+                for (Long queueTime : queueTimes.subList(start, start + batch.size())) {
+                    long lag = now - queueTime.longValue();
+                    totalLag.add(lag);
+                    maxLag.accumulate(lag);
+                    lastLag = lag;
+                }
+                batchCount.increment();
+                messageCount.add(batch.size());
+            }
+        }
+    }
+
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Throwable t) {
+            ExceptionUtils.handleThrowable(t);
+            log.error(sm.getString("replicationBatcher.flushFailed"), t);
+        }
+    }
+
+
+    private void send(List<ClusterMessage> batch, int sendOptions) {
+        ClusterMessage msg;
+        if (batch.size() == 1) {
+            msg = batch.get(0);
+        } else {
+            msg = new ClusterMessageBatch(batch.toArray(new ClusterMessage[0]),
+                    "BATCH-" + System.currentTimeMillis() + "-" + batchId.incrementAndGet());
+            msg.setTimestamp(System.currentTimeMillis());
+        }
+        cluster.send(msg, null, sendOptions);
+    }
+
+
+    int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+
+    long getBatchCount() {
+        return batchCount.longValue();
+    }
+
+
+    long getMessageCount() {
+        return messageCount.longValue();
+    }
+
+
+    long getAverageLag() {
+        long count = messageCount.longValue();
+        if (count == 0) {
+            return 0;
+        }
+        return totalLag.longValue() / count;
+    }
+
+
+    long getMaxLag() {
+        return maxLag.longValue();
+    }
+
+
+    long getLastLag() {
+        return lastLag;
+    }
+
+
+    void resetStatistics() {
+        batchCount.reset();
+        messageCount.reset();
+        totalLag.reset();
+        maxLag.reset();
+        lastLag = 0;
+    }
+
+
+    private static final class PendingReplication {
+
+        private final ClusterManager manager;
+        private final String sessionId;
+
+        PendingReplication(ClusterManager manager, String sessionId) {
+            this.manager = manager;
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(manager) + sessionId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PendingReplication)) {
+                return false;
+            }
+            PendingReplication other = (PendingReplication) obj;
+            return manager == other.manager && sessionId.equals(other.sessionId);
+        }
+    }
+}
@@ -484,15 +484,24 @@ public class ReplicationValve extends ValveBase implements ClusterValve {
     }
 
     /**
-     * send manager requestCompleted message to cluster
+     * send manager requestCompleted message to cluster. If the cluster batches replication messages, the changes to
+     * sessions managed by a {@link DeltaManager} are queued and sent later instead.
      *
      * @param manager   SessionManager
      * @param sessionId sessionid from the manager
      *
      * @see DeltaManager#requestCompleted(String)
      * @see SimpleTcpCluster#send(ClusterMessage)
+     * @see SimpleTcpCluster#queueReplication(ClusterManager, String)
      */
     protected void send(ClusterManager manager, String sessionId) {
+        if (manager instanceof DeltaManager && cluster instanceof SimpleTcpCluster &&
+                ((SimpleTcpCluster) cluster).queueReplication(manager, sessionId)) {
+            if (doStatistics()) {
+                nrOfSendRequests.increment();
+            }
+            return;
+        }
         ClusterMessage msg = manager.requestCompleted(sessionId);
         if (msg != null && cluster != null) {
             cluster.send(msg);
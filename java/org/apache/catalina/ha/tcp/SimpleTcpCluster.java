@@ -149,6 +149,14 @@ public class SimpleTcpCluster extends LifecycleMBeanBase
 
     private int channelStartOptions = Channel.DEFAULT;
 
+    private long replicationBatchInterval = 0;
+
+    private int replicationBatchSize = 100;
+
+    private int replicationBatchSendOptions = -1;
+
+    private final ReplicationBatcher replicationBatcher = new ReplicationBatcher(this);
+
     private final Map<Member,ObjectName> memberOnameMap = new ConcurrentHashMap<>();
 
     // ------------------------------------------------------------- Properties
@@ -286,6 +294,134 @@ public class SimpleTcpCluster extends LifecycleMBeanBase
         }
     }
 
+    /**
+     * @return the interval in milliseconds at which the session changes queued by the replication valve are sent to
+     *             the other members of the cluster. If zero or less, the changes are sent at the end of each request.
+     */
+    public long getReplicationBatchInterval() {
+        return replicationBatchInterval;
+    }
+
+    /**
+     * Set the interval at which session changes are replicated. Changes to this property only take effect when the
+     * cluster is next started.
+     *
+     * @param replicationBatchInterval The interval in milliseconds or zero or less to replicate the changes at the end
+     *                                     of each request
+     */
+    public void setReplicationBatchInterval(long replicationBatchInterval) {
+        this.replicationBatchInterval = replicationBatchInterval;
+    }
+
+    /**
+     * @return the maximum number of replication messages that are sent in a single channel message. Reaching this
+     *             number of queued sessions also triggers a flush of the queue before the end of the interval.
+     */
+    public int getReplicationBatchSize() {
+        return replicationBatchSize;
+    }
+
+    public void setReplicationBatchSize(int replicationBatchSize) {
+        this.replicationBatchSize = replicationBatchSize;
+    }
+
+    /**
+     * @return the send options used for batches of replication messages, which default to the channel send options
+     */
+    public int getReplicationBatchSendOptions() {
+        if (replicationBatchSendOptions < 0) {
+            return channelSendOptions;
+        }
+        return replicationBatchSendOptions;
+    }
+
+    public void setReplicationBatchSendOptions(int replicationBatchSendOptions) {
+        this.replicationBatchSendOptions = replicationBatchSendOptions;
+    }
+
+    public void setReplicationBatchSendOptions(String replicationBatchSendOptions) {
+
+        int value = Channel.parseSendOptions(replicationBatchSendOptions);
+        if (value > 0) {
+            this.setReplicationBatchSendOptions(value);
+        }
+    }
+
+    /**
+     * returns the replication batch SendOptions as a comma separated list of names for use by JMX
+     *
+     * @return a comma separated list of the option names
+     */
+    public String getReplicationBatchSendOptionsName() {
+        return Channel.getSendOptionsAsString(getReplicationBatchSendOptions());
+    }
+
+    /**
+     * Queue the replication of the changes made to a session so that they are sent with the changes to other
+     * sessions at the end of the current replication batch interval.
+     *
+     * @param manager   The manager of the session
+     * @param sessionId The id of the session
+     *
+     * @return <code>true</code> if the replication has been queued or <code>false</code> if batching is disabled and
+     *             the caller should replicate the session immediately
+     */
+    public boolean queueReplication(ClusterManager manager, String sessionId) {
+        return replicationBatcher.add(manager, sessionId);
+    }
+
+    /**
+     * @return the number of sessions queued for replication
+     */
+    public int getReplicationPendingCount() {
+        return replicationBatcher.getPendingCount();
+    }
+
+    /**
+     * @return the number of batches of replication messages sent
+     */
+    public long getReplicationBatchCount() {
+        return replicationBatcher.getBatchCount();
+    }
+
+    /**
+     * @return the number of replication messages sent in batches
+     */
+    public long getReplicationBatchMessageCount() {
+        return replicationBatcher.getMessageCount();
+    }
+
+    /**
+     * @return the average time in milliseconds between a session being queued for replication and its changes being
+     *             sent
+     */
+    public long getReplicationLagAverage() {
+        return replicationBatcher.getAverageLag();
+    }
+
+    /**
+     * @return the maximum time in milliseconds between a session being queued for replication and its changes being
+     *             sent
+     */
+    public long getReplicationLagMax() {
+        return replicationBatcher.getMaxLag();
+    }
+
+    /**
+     * @return the time in milliseconds between the most recently replicated session being queued and its changes
+     *             being sent
+     */
+    public long getReplicationLagLast() {
+        return replicationBatcher.getLastLag();
+    }
+
+    /**
+     * Reset the replication batch statistics.
+     */
+    public void resetReplicationStatistics() {
+        replicationBatcher.resetStatistics();
+    }
+
     /**
      * has members
      */
@@ -466,6 +602,9 @@ public class SimpleTcpCluster extends LifecycleMBeanBase
             channel.addChannelListener(this);
             channel.setName(getClusterName() + "-Channel");
             channel.start(channelStartOptions);
+            if (replicationBatchInterval > 0) {
+                replicationBatcher.start(channel.getUtilityExecutor(), replicationBatchInterval);
+            }
             if (clusterDeployer != null) {
                 clusterDeployer.start();
             }
@@ -547,6 +686,9 @@ public class SimpleTcpCluster extends LifecycleMBeanBase
 
         setState(LifecycleState.STOPPING);
 
+        // Send the changes that are still queued while the channel is running
+        replicationBatcher.stop();
+
         unregisterMember(channel.getLocalMember(false));
         if (clusterDeployer != null) {
             clusterDeployer.stop();
@@ -684,6 +826,14 @@ public class SimpleTcpCluster extends LifecycleMBeanBase
                     (System.currentTimeMillis() - (message).getTimestamp()) + " ms.");
         }
 
+        if (message instanceof ClusterMessageBatch) {
+            for (ClusterMessage batched : ((ClusterMessageBatch) message).getMessages()) {
+                batched.setAddress(message.getAddress());
+                messageReceived(batched);
+            }
+            return;
+        }
+
         // invoke all the listeners
         boolean accepted = false;
         if (message != null) {
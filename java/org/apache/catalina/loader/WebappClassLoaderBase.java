@@ -50,6 +50,7 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.jar.Attributes;
 import java.util.jar.Attributes.Name;
 import java.util.jar.Manifest;
@@ -260,6 +261,31 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
     private final Map<String,Long> jarModificationTimes = new HashMap<>();
 
 
+    /**
+     * The paths of classes that were not found in the local repositories, mapped to the time, in milliseconds since the
+     * epoch, at which the entry expires. Other resources are not included as the {@link WebResourceRoot} caches the
+     * result of looking them up but does not cache the result of looking up classes.
+     */
+    private final Map<String,Long> negativeLookupCache = new ConcurrentHashMap<>();
+
+
+    /**
+     * The maximum number of entries in the negative lookup cache. A value of zero or less disables the cache.
+     */
+    private volatile int negativeLookupCacheMaxSize = 10000;
+
+
+    /**
+     * The time, in milliseconds, for which entries in the negative lookup cache are valid. Zero if the cache is not in
+     * use.
+     */
+    private long negativeLookupCacheTtl = 0;
+
+
+    private final LongAdder negativeLookupCount = new LongAdder();
+    private final LongAdder negativeLookupHitCount = new LongAdder();
+
+
     /**
      * A list of read File Permission's required if this loader is for a web application context.
      */
@@ -508,6 +534,51 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
     }
 
 
+    public int getNegativeLookupCacheMaxSize() {
+        return negativeLookupCacheMaxSize;
+    }
+
+
+    /**
+     * Set the maximum number of classes that were not found in the local repositories to remember. Entries are
+     * remembered for the cache TTL of the web application resources and the cache is only used if caching of the web
+     * application resources is allowed.
+     *
+     * @param negativeLookupCacheMaxSize The maximum number of entries. A value of zero or less disables the cache.
+     */
+    public void setNegativeLookupCacheMaxSize(int negativeLookupCacheMaxSize) {
+        this.negativeLookupCacheMaxSize = negativeLookupCacheMaxSize;
+        if (negativeLookupCacheMaxSize <= 0) {
+            negativeLookupCache.clear();
+        }
+    }
+
+
+    /**
+     * @return the current number of entries in the negative lookup cache
+     */
+    public int getNegativeLookupCacheSize() {
+        return negativeLookupCache.size();
+    }
+
+
+    /**
+     * @return the number of times the negative lookup cache has been checked since this class loader was started
+     */
+    public long getNegativeLookupCount() {
+        return negativeLookupCount.sum();
+    }
+
+
+    /**
+     * @return the number of times a class was found in the negative lookup cache, avoiding a search of the local
+     *             repositories, since this class loader was started
+     */
+    public long getNegativeLookupHitCount() {
+        return negativeLookupHitCount.sum();
+    }
+
+
     // ------------------------------------------------------- Reloader Methods
 
     @Override
@@ -609,6 +680,24 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
     }
 
 
+    /**
+     * Obtain the names of the classes that have been loaded from the web application by this class loader. Classes
+     * loaded by delegating to the parent class loader are not included.
+     *
+     * @return The names of the loaded classes in no particular order
+     */
+    public List<String> getLoadedClassNames() {
+        List<String> result = new ArrayList<>();
+        for (ResourceEntry entry : resourceEntries.values()) {
+            Class<?> clazz = entry.loadedClass;
+            if (clazz != null) {
+                result.add(clazz.getName());
+            }
+        }
+        return result;
+    }
+
+
     @Override
     public String toString() {
 
@@ -729,10 +818,14 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
 
         String path = nameToPath(name);
 
-        WebResource resource = resources.getClassLoaderResource(path);
-        if (resource.exists()) {
-            url = resource.getURL();
-            trackLastModified(path, resource);
+        if (!isNegativeLookup(path)) {
+            WebResource resource = resources.getClassLoaderResource(path);
+            if (resource.exists()) {
+                url = resource.getURL();
+                trackLastModified(path, resource);
+            } else {
+                addNegativeLookup(path);
+            }
         }
 
         if (url == null && hasExternalRepositories) {
@@ -923,8 +1016,12 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
             log.trace("  Searching local repositories");
         }
         String path = nameToPath(name);
-        WebResource resource = resources.getClassLoaderResource(path);
-        if (resource.exists()) {
+        WebResource resource = isNegativeLookup(path) ? null : resources.getClassLoaderResource(path);
+        if (resource == null) {
+            // Known not to exist
+        } else if (!resource.exists()) {
+            addNegativeLookup(path);
+        } else {
             stream = resource.getInputStream();
             // Filter out .class resources through the ClassFileTranformer
             if (name.endsWith(CLASS_FILE_SUFFIX) && transformers.size() > 0) {
@@ -1037,6 +1134,15 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
     @Override
     public Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
 
+        // Classes already loaded from the local repositories do not require the class loading lock
+        if (!resolve) {
+            checkStateForClassLoading(name);
+            Class<?> clazz = findLoadedClass0(name);
+            if (clazz != null) {
+                return clazz;
+            }
+        }
+
         synchronized (JreCompat.isGraalAvailable() ? this : getClassLoadingLock(name)) {
             if (log.isTraceEnabled()) {
                 log.trace("loadClass(" + name + ", " + resolve + ")");
@@ -1278,6 +1384,11 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
 
         state = LifecycleState.STARTING_PREP;
 
+        negativeLookupCache.clear();
+        negativeLookupCount.reset();
+        negativeLookupHitCount.reset();
+        negativeLookupCacheTtl = resources.isCachingAllowed() ? resources.getCacheTtl() : 0;
+
         WebResource[] classesResources = resources.getResources("/WEB-INF/classes");
         for (WebResource classes : classesResources) {
             if (classes.isDirectory() && classes.canRead()) {
@@ -1309,6 +1420,7 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
 
         resourceEntries.clear();
         jarModificationTimes.clear();
+        negativeLookupCache.clear();
         resources = null;
 
         permissionList.clear();
@@ -2009,9 +2121,14 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
         WebResource resource = null;
 
         if (entry == null) {
+            if (isNegativeLookup(path)) {
+                return null;
+            }
+
             resource = resources.getClassLoaderResource(path);
 
             if (!resource.exists()) {
+                addNegativeLookup(path);
                 return null;
             }
 
@@ -2136,6 +2253,49 @@ public abstract class WebappClassLoaderBase extends URLClassLoader
     }
 
 
+    /**
+     * Is the given path known not to exist in the local repositories?
+     *
+     * @param path The path of the resource
+     *
+     * @return <code>true</code> if the path is a class that was recently not found in the local repositories
+     */
+    private boolean isNegativeLookup(String path) {
+        if (negativeLookupCacheTtl <= 0 || negativeLookupCacheMaxSize <= 0 || !path.endsWith(CLASS_FILE_SUFFIX)) {
+            return false;
+        }
+        negativeLookupCount.increment();
+        Long expires = negativeLookupCache.get(path);
+        if (expires == null) {
+            return false;
+        }
+        if (expires.longValue() < System.currentTimeMillis()) {
+            negativeLookupCache.remove(path, expires);
+            return false;
+        }
+        negativeLookupHitCount.increment();
+        return true;
+    }
+
+
+    private void addNegativeLookup(String path) {
+        int maxSize = negativeLookupCacheMaxSize;
+        if (negativeLookupCacheTtl <= 0 || maxSize <= 0 || !path.endsWith(CLASS_FILE_SUFFIX)) {
+            return;
+        }
+        if (negativeLookupCache.size() >= maxSize) {
+            // Evict unordered for speed. Evict more than one entry so this is not repeated on every addition.
+            int targetSize = maxSize - Math.max(1, maxSize / 10);
+            Iterator<Long> iter = negativeLookupCache.values().iterator();
+            while (iter.hasNext() && negativeLookupCache.size() > targetSize) {
+                iter.next();
+                iter.remove();
+            }
+        }
+        negativeLookupCache.put(path, Long.valueOf(System.currentTimeMillis() + negativeLookupCacheTtl));
+    }
+
+
     private String binaryNameToPath(String binaryName, boolean withLeadingSlash) {
         // 1 for leading '/', 6 for ".class"
         StringBuilder path = new StringBuilder(7 + binaryName.length());
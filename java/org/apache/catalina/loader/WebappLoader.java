@@ -19,20 +19,39 @@ package org.apache.catalina.loader;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.ObjectName;
 
 import jakarta.servlet.ServletContext;
 
+import org.apache.catalina.Container;
 import org.apache.catalina.Context;
 import org.apache.catalina.Globals;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.LifecycleState;
 import org.apache.catalina.Loader;
+import org.apache.catalina.Service;
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.util.DirectoryWatcher;
 import org.apache.catalina.util.LifecycleMBeanBase;
 import org.apache.catalina.util.ToStringUtil;
 import org.apache.juli.logging.Log;
@@ -114,6 +133,44 @@ public class WebappLoader extends LifecycleMBeanBase implements Loader {
     private String classpath = null;
 
 
+    /**
+     * The file that lists the names of the classes to load once the Context has started. Relative paths are resolved
+     * against the work directory of the Context.
+     */
+    private String classListFile = null;
+
+
+    /**
+     * Should the names of the classes loaded from the web application be written to the class list file when this
+     * loader stops rather than the classes being loaded from the class list file once the Context has started?
+     */
+    private boolean recordClassList = false;
+
+
+    /**
+     * The tasks, if any, loading the classes in the class list file.
+     */
+    private final List<Future<?>> preloadTasks = new ArrayList<>();
+    private volatile boolean preloadCancelled = false;
+    private final AtomicInteger preloadedClassCount = new AtomicInteger();
+    private final LifecycleListener preloadListener = new PreloadListener();
+
+
+    /**
+     * Should a {@link java.nio.file.WatchService} be used to detect changes to the classes and JARs of a reloadable
+     * web application?
+     */
+    private boolean useWatchService = false;
+
+
+    /**
+     * The watcher for the <code>/WEB-INF</code> directory of the web application or <code>null</code> if changes are
+     * detected by polling, and the time the last change was detected or -1 if there are no changes to process.
+     */
+    private volatile DirectoryWatcher watcher = null;
+    private long changeTime = -1;
+
+
     // ------------------------------------------------------------- Properties
 
     @Override
@@ -210,6 +267,92 @@ public class WebappLoader extends LifecycleMBeanBase implements Loader {
         setLoaderClass(loaderInstance.getClass().getName());
     }
 
+
+    /**
+     * @return the file that lists the names of the classes to load once the Context has started or <code>null</code>
+     *             if no classes are loaded in advance
+     */
+    public String getClassListFile() {
+        return classListFile;
+    }
+
+
+    /**
+     * Set the file that lists the names of the classes to load, using the utility executor, once the Context has
+     * started. Loading the classes the web application is known to need in the background, rather than on first use,
+     * reduces the latency of the first requests. The classes are not loaded while the Context is starting so that any
+     * {@link java.lang.instrument.ClassFileTransformer} registered during the start of the Context is applied to
+     * them. The file is a plain text, UTF-8
+     * encoded file with one binary class name per line. It is normally created by running the web application with
+     * {@link #setRecordClassList(boolean)} enabled.
+     *
+     * @param classListFile The path to the file. Relative paths are resolved against the work directory of the Context.
+     */
+    public void setClassListFile(String classListFile) {
+        String oldClassListFile = this.classListFile;
+        this.classListFile = classListFile;
+        support.firePropertyChange("classListFile", oldClassListFile, this.classListFile);
+    }
+
+
+    /**
+     * @return <code>true</code> if the names of the classes loaded from the web application will be written to the
+     *             class list file when this loader stops
+     */
+    public boolean getRecordClassList() {
+        return recordClassList;
+    }
+
+
+    /**
+     * Configure the training mode for the class list. When enabled, classes are not loaded from the class list file
+     * once the Context has started and the names of all the classes loaded from the web application are written to
+     * the class list file when this loader stops.
+     *
+     * @param recordClassList <code>true</code> to write the class list file when this loader stops
+     */
+    public void setRecordClassList(boolean recordClassList) {
+        boolean oldRecordClassList = this.recordClassList;
+        this.recordClassList = recordClassList;
+        support.firePropertyChange("recordClassList", Boolean.valueOf(oldRecordClassList),
+                Boolean.valueOf(this.recordClassList));
+    }
+
+
+    /**
+     * @return the number of classes loaded from the class list file since this loader was last started
+     */
+    public int getPreloadedClassCount() {
+        return preloadedClassCount.get();
+    }
+
+
+    /**
+     * @return <code>true</code> if a {@link java.nio.file.WatchService} is used to detect changes to the classes and
+     *             JARs of a reloadable web application
+     */
+    public boolean getUseWatchService() {
+        return useWatchService;
+    }
+
+
+    /**
+     * Configure if a {@link java.nio.file.WatchService} is used to detect changes to the classes and JARs of a
+     * reloadable web application. When enabled, the last modified times of the loaded classes and of the JARs are only
+     * checked once a change has been reported in the <code>/WEB-INF</code> directory rather than on every background
+     * process cycle. Changes are detected by polling if the <code>/WEB-INF</code> directory of the web application is
+     * not a directory on a file system that supports watching for changes or if the web application has additional
+     * resources configured. Changes take effect the next time this loader is started.
+     *
+     * @param useWatchService <code>true</code> to use a watch service
+     */
+    public void setUseWatchService(boolean useWatchService) {
+        boolean oldUseWatchService = this.useWatchService;
+        this.useWatchService = useWatchService;
+        support.firePropertyChange("useWatchService", Boolean.valueOf(oldUseWatchService),
+                Boolean.valueOf(this.useWatchService));
+    }
+
     // --------------------------------------------------------- Public Methods
 
     @Override
@@ -272,7 +415,24 @@ public class WebappLoader extends LifecycleMBeanBase implements Loader {
 
     @Override
     public boolean modified() {
-        return classLoader != null ? classLoader.modified() : false;
+        WebappClassLoaderBase classLoader = this.classLoader;
+        if (classLoader == null) {
+            return false;
+        }
+        DirectoryWatcher watcher = this.watcher;
+        if (watcher != null) {
+            long now = System.currentTimeMillis();
+            Set<File> changed = watcher.poll();
+            if (changed == null || !changed.isEmpty()) {
+                changeTime = now;
+            } else if (changeTime < 0) {
+                return false;
+            } else if (changeTime < now - context.getResources().getCacheTtl() - 1000) {
+                // The resources cache can no longer be returning the state from before the last change
+                changeTime = -1;
+            }
+        }
+        return classLoader.modified();
     }
 
 
@@ -334,6 +494,19 @@ public class WebappLoader extends LifecycleMBeanBase implements Loader {
                             context.getParent().getName() + ",context=" + contextName);
             Registry.getRegistry(null, null).registerComponent(classLoader, cloname, null);
 
+            if (!recordClassList) {
+                if (context.getState().isAvailable()) {
+                    startPreload();
+                } else {
+                    // Wait until the ClassFileTransformers have been registered
+                    context.addLifecycleListener(preloadListener);
+                }
+            }
+
+            if (useWatchService && context.getReloadable()) {
+                startWatching();
+            }
+
         } catch (Throwable t) {
             t = ExceptionUtils.unwrapInvocationTargetException(t);
             ExceptionUtils.handleThrowable(t);
@@ -364,8 +537,15 @@ public class WebappLoader extends LifecycleMBeanBase implements Loader {
         ServletContext servletContext = context.getServletContext();
         servletContext.removeAttribute(Globals.CLASS_PATH_ATTR);
 
+        context.removeLifecycleListener(preloadListener);
+        stopPreload();
+        stopWatching();
+
         // Throw away our current class loader if any
         if (classLoader != null) {
+            if (recordClassList) {
+                writeClassList();
+            }
             try {
                 classLoader.stop();
             } finally {
@@ -394,6 +574,173 @@ public class WebappLoader extends LifecycleMBeanBase implements Loader {
 
     // ------------------------------------------------------- Private Methods
 
+    /**
+     * Watch the <code>/WEB-INF</code> directory, which contains all the classes and JARs that are checked for changes,
+     * if the web application is deployed from a directory and has no additional resources.
+     */
+    private void startWatching() {
+        WebResourceRoot resources = context.getResources();
+        if (resources.getPreResources().length > 0 || resources.getJarResources().length > 0 ||
+                resources.getPostResources().length > 0) {
+            return;
+        }
+        WebResource webInf = resources.getResource("/WEB-INF");
+        if (!webInf.isDirectory() || webInf.getCanonicalPath() == null) {
+            return;
+        }
+        DirectoryWatcher watcher = DirectoryWatcher.create();
+        if (watcher == null) {
+            return;
+        }
+        if (!watcher.register(new File(webInf.getCanonicalPath()), true)) {
+            watcher.close();
+            return;
+        }
+        // Changes made while the class loader was starting would have been missed
+        changeTime = System.currentTimeMillis();
+        this.watcher = watcher;
+    }
+
+
+    private void stopWatching() {
+        DirectoryWatcher watcher = this.watcher;
+        if (watcher != null) {
+            this.watcher = null;
+            watcher.close();
+        }
+        changeTime = -1;
+    }
+
+
+    /**
+     * Resolve the class list file.
+     *
+     * @return The class list file or <code>null</code> if no class list file is configured or the work directory is
+     *             required and not available
+     */
+    private File getClassListFileInternal() {
+        if (classListFile == null) {
+            return null;
+        }
+        File file = new File(classListFile);
+        if (!file.isAbsolute()) {
+            Object workDir = context.getServletContext().getAttribute(ServletContext.TEMPDIR);
+            if (!(workDir instanceof File)) {
+                return null;
+            }
+            file = new File((File) workDir, classListFile);
+        }
+        return file;
+    }
+
+
+    /**
+     * Start loading, in the background where possible, the classes listed in the class list file. This must not be
+     * called before the Context has started.
+     */
+    private void startPreload() {
+        preloadCancelled = false;
+        preloadedClassCount.set(0);
+
+        File file = getClassListFileInternal();
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        List<String> classNames = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                String className = line.trim();
+                if (className.length() > 0 && className.charAt(0) != '#') {
+                    classNames.add(className);
+                }
+            }
+        } catch (IOException ioe) {
+            log.warn(sm.getString("webappLoader.classListReadFail", file), ioe);
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("webappLoader.preload", Integer.valueOf(classNames.size()), file));
+        }
+
+        WebappClassLoaderBase classLoader = this.classLoader;
+        Service service = Container.getService(context);
+        ExecutorService executor = (service == null) ? null : service.getServer().getUtilityExecutor();
+        if (executor == null) {
+            preloadClasses(classLoader, classNames);
+            return;
+        }
+        // Split the classes into contiguous ranges so classes from the same package tend to be loaded by the same task
+        int taskCount = Math.min(Runtime.getRuntime().availableProcessors(), classNames.size());
+        synchronized (preloadTasks) {
+            for (int i = 0; i < taskCount; i++) {
+                List<String> range = classNames.subList(i * classNames.size() / taskCount,
+                        (i + 1) * classNames.size() / taskCount);
+                preloadTasks.add(executor.submit(() -> preloadClasses(classLoader, range)));
+            }
+        }
+    }
+
+
+    private void preloadClasses(WebappClassLoaderBase classLoader, List<String> classNames) {
+        for (String className : classNames) {
+            if (preloadCancelled) {
+                return;
+            }
+            try {
+                // Load but do not initialize the class to avoid triggering any application code
+                Class.forName(className, false, classLoader);
+                preloadedClassCount.incrementAndGet();
+            } catch (ClassNotFoundException | LinkageError e) {
+                // The web application has changed since the class list was recorded
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("webappLoader.preloadFail", className), e);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Cancel any classes still to be loaded from the class list file and wait for the in progress loads to complete.
+     */
+    private void stopPreload() {
+        preloadCancelled = true;
+        synchronized (preloadTasks) {
+            for (Future<?> task : preloadTasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    // Ignore - a failure to load a class is not an error
+                }
+            }
+            preloadTasks.clear();
+        }
+    }
+
+
+    /**
+     * Write the names of the classes loaded from the web application to the class list file.
+     */
+    private void writeClassList() {
+        File file = getClassListFileInternal();
+        if (file == null) {
+            return;
+        }
+        List<String> classNames = classLoader.getLoadedClassNames();
+        Collections.sort(classNames);
+        File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try {
+            Files.write(tmp.toPath(), classNames, StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("webappLoader.classListWritten", Integer.valueOf(classNames.size()), file));
+            }
+        } catch (IOException ioe) {
+            log.warn(sm.getString("webappLoader.classListWriteFail", file), ioe);
+        }
+    }
+
+
     /**
      * Create associated classLoader.
      */
@@ -551,4 +898,21 @@ public class WebappLoader extends LifecycleMBeanBase implements Loader {
             webappClassLoader.addTransformer(profile != null ? new ClassConverter(profile) : new ClassConverter());
         }
     }
+
+
+    /**
+     * Loads the classes in the class list file once the Context has started.
+     */
+    private class PreloadListener implements LifecycleListener {
+
+        @Override
+        public void lifecycleEvent(LifecycleEvent event) {
+            if (Lifecycle.AFTER_START_EVENT.equals(event.getType())) {
+                context.removeLifecycleListener(this);
+                if (getState().isAvailable()) {
+                    startPreload();
+                }
+            }
+        }
+    }
 }
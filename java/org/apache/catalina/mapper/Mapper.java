@@ -34,7 +34,6 @@ import org.apache.catalina.WebResourceRoot;
 import org.apache.catalina.Wrapper;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
-import org.apache.tomcat.util.buf.Ascii;
 import org.apache.tomcat.util.buf.CharChunk;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.res.StringManager;
@@ -73,6 +72,12 @@ public final class Mapper {
     volatile MappedHost[] hosts = new MappedHost[0];
 
 
+    /**
+     * Index of {@link #hosts} used to map requests.
+     */
+    private volatile RadixTrie<MappedHost> hostIndex = RadixTrie.empty(true);
+
+
     /**
      * Default host name.
      */
@@ -116,6 +121,7 @@ public final class Mapper {
         MappedHost newHost = new MappedHost(name, host);
         if (insertMap(hosts, newHosts, newHost)) {
             hosts = newHosts;
+            hostIndex = hostIndex.put(newHost.name, newHost);
             if (newHost.name.equals(defaultHostName)) {
                 defaultHost = newHost;
             }
@@ -163,14 +169,18 @@ public final class Mapper {
             return;
         }
         MappedHost[] newHosts = hosts.clone();
+        RadixTrie<MappedHost> newHostIndex = hostIndex;
         // Remove real host and all its aliases
         int j = 0;
         for (int i = 0; i < newHosts.length; i++) {
             if (newHosts[i].getRealHost() != host) {
                 newHosts[j++] = newHosts[i];
+            } else {
+                newHostIndex = newHostIndex.remove(newHosts[i].name);
             }
         }
         hosts = Arrays.copyOf(newHosts, j);
+        hostIndex = newHostIndex;
     }
 
     /**
@@ -197,6 +207,7 @@ public final class Mapper {
         MappedHost[] newHosts = new MappedHost[hosts.length + 1];
         if (insertMap(hosts, newHosts, newAlias)) {
             hosts = newHosts;
+            hostIndex = hostIndex.put(newAlias.name, newAlias);
             if (newAlias.name.equals(defaultHostName)) {
                 defaultHost = newAlias;
             }
@@ -236,6 +247,7 @@ public final class Mapper {
         MappedHost[] newHosts = new MappedHost[hosts.length - 1];
         if (removeMap(hosts, newHosts, alias)) {
             hosts = newHosts;
+            hostIndex = hostIndex.remove(alias);
             hostMapping.getRealHost().removeAlias(hostMapping);
         }
 
@@ -294,7 +306,7 @@ public final class Mapper {
             MappedContext mappedContext = exactFind(contextList.contexts, path);
             if (mappedContext == null) {
                 mappedContext = new MappedContext(path, newContextVersion);
-                ContextList newContextList = contextList.addContext(mappedContext, slashCount);
+                ContextList newContextList = contextList.addContext(mappedContext);
                 if (newContextList != null) {
                     updateContextList(mappedHost, newContextList);
                     contextObjectToContextVersionMap.put(context, newContextVersion);
@@ -462,6 +474,7 @@ public final class Mapper {
                 MappedWrapper[] newWrappers = new MappedWrapper[oldWrappers.length + 1];
                 if (insertMap(oldWrappers, newWrappers, newWrapper)) {
                     context.wildcardWrappers = newWrappers;
+                    context.wildcardWrapperIndex = context.wildcardWrapperIndex.put(name, newWrapper);
                     int slashCount = slashCount(newWrapper.name);
                     if (slashCount > context.nesting) {
                         context.nesting = slashCount;
@@ -543,6 +556,7 @@ public final class Mapper {
                         }
                     }
                     context.wildcardWrappers = newWrappers;
+                    context.wildcardWrapperIndex = context.wildcardWrapperIndex.remove(name);
                 }
             } else if (path.startsWith("*.")) {
                 // Extension wrapper
@@ -717,8 +731,8 @@ public final class Mapper {
         }
 
         // Virtual host mapping
-        MappedHost[] hosts = this.hosts;
-        MappedHost mappedHost = exactFindIgnoreCase(hosts, host);
+        RadixTrie<MappedHost> hostIndex = this.hostIndex;
+        MappedHost mappedHost = hostIndex.get(host);
         if (mappedHost == null) {
             // Note: Internally, the Mapper does not use the leading * on a
             // wildcard host. This is to allow this shortcut.
@@ -727,7 +741,7 @@ public final class Mapper {
                 int start = host.getStart();
                 try {
                     host.setStart(firstDot + start);
-                    mappedHost = exactFindIgnoreCase(hosts, host);
+                    mappedHost = hostIndex.get(host);
                 } finally {
                     // Make absolutely sure this gets reset
                     host.setStart(start);
@@ -750,47 +764,8 @@ public final class Mapper {
         uri.setLimit(-1);
 
         // Context mapping
-        ContextList contextList = mappedHost.contextList;
-        MappedContext[] contexts = contextList.contexts;
-        int pos = find(contexts, uri);
-        if (pos == -1) {
-            return;
-        }
-
-        int lastSlash = -1;
-        int uriEnd = uri.getEnd();
-        int length = -1;
-        boolean found = false;
-        MappedContext context = null;
-        while (pos >= 0) {
-            context = contexts[pos];
-            if (uri.startsWith(context.name)) {
-                length = context.name.length();
-                if (uri.getLength() == length) {
-                    found = true;
-                    break;
-                } else if (uri.startsWithIgnoreCase("/", length)) {
-                    found = true;
-                    break;
-                }
-            }
-            if (lastSlash == -1) {
-                lastSlash = nthSlash(uri, contextList.nesting + 1);
-            } else {
-                lastSlash = lastSlash(uri);
-            }
-            uri.setEnd(lastSlash);
-            pos = find(contexts, uri);
-        }
-        uri.setEnd(uriEnd);
-
-        if (!found) {
-            if (contexts[0].name.equals("")) {
-                context = contexts[0];
-            } else {
-                context = null;
-            }
-        }
+        // The longest context path that is a prefix of the URI, falling back to the ROOT context if present
+        MappedContext context = mappedHost.contextList.index.getLongestPathPrefix(uri);
         if (context == null) {
             return;
         }
@@ -849,9 +824,9 @@ public final class Mapper {
 
         // Rule 2 -- Prefix Match
         boolean checkJspWelcomeFiles = false;
-        MappedWrapper[] wildcardWrappers = contextVersion.wildcardWrappers;
+        RadixTrie<MappedWrapper> wildcardWrappers = contextVersion.wildcardWrapperIndex;
         if (mappingData.wrapper == null) {
-            internalMapWildcardWrapper(wildcardWrappers, contextVersion.nesting, path, mappingData);
+            internalMapWildcardWrapper(wildcardWrappers, path, mappingData);
             if (mappingData.wrapper != null && mappingData.jspWildCard) {
                 char[] buf = path.getBuffer();
                 if (buf[pathEnd - 1] == '/') {
@@ -905,7 +880,7 @@ public final class Mapper {
 
                     // Rule 4b -- Welcome resources processing for prefix match
                     if (mappingData.wrapper == null) {
-                        internalMapWildcardWrapper(wildcardWrappers, contextVersion.nesting, path, mappingData);
+                        internalMapWildcardWrapper(wildcardWrappers, path, mappingData);
                     }
 
                     // Rule 4c -- Welcome resources processing
@@ -1033,47 +1008,20 @@ public final class Mapper {
     /**
      * Wildcard mapping.
      */
-    private void internalMapWildcardWrapper(MappedWrapper[] wrappers, int nesting, CharChunk path,
+    private void internalMapWildcardWrapper(RadixTrie<MappedWrapper> wrappers, CharChunk path,
             MappingData mappingData) {
 
-        int pathEnd = path.getEnd();
-
-        int lastSlash = -1;
-        int length = -1;
-        int pos = find(wrappers, path);
-        if (pos != -1) {
-            boolean found = false;
-            while (pos >= 0) {
-                if (path.startsWith(wrappers[pos].name)) {
-                    length = wrappers[pos].name.length();
-                    if (path.getLength() == length) {
-                        found = true;
-                        break;
-                    } else if (path.startsWithIgnoreCase("/", length)) {
-                        found = true;
-                        break;
-                    }
-                }
-                if (lastSlash == -1) {
-                    lastSlash = nthSlash(path, nesting + 1);
-                } else {
-                    lastSlash = lastSlash(path);
-                }
-                path.setEnd(lastSlash);
-                pos = find(wrappers, path);
-            }
-            path.setEnd(pathEnd);
-            if (found) {
-                mappingData.wrapperPath.setString(wrappers[pos].name);
-                if (path.getLength() > length) {
-                    mappingData.pathInfo.setChars(path.getBuffer(), path.getStart() + length,
-                            path.getLength() - length);
-                }
-                mappingData.requestPath.setChars(path.getBuffer(), path.getStart(), path.getLength());
-                mappingData.wrapper = wrappers[pos].object;
-                mappingData.jspWildCard = wrappers[pos].jspWildCard;
-                mappingData.matchType = MappingMatch.PATH;
+        MappedWrapper wrapper = wrappers.getLongestPathPrefix(path);
+        if (wrapper != null) {
+            int length = wrapper.name.length();
+            mappingData.wrapperPath.setString(wrapper.name);
+            if (path.getLength() > length) {
+                mappingData.pathInfo.setChars(path.getBuffer(), path.getStart() + length, path.getLength() - length);
             }
+            mappingData.requestPath.setChars(path.getBuffer(), path.getStart(), path.getLength());
+            mappingData.wrapper = wrapper.object;
+            mappingData.jspWildCard = wrapper.jspWildCard;
+            mappingData.matchType = MappingMatch.PATH;
         }
     }
 
@@ -1176,58 +1124,6 @@ public final class Mapper {
 
     }
 
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the index for the closest
-     * inferior or equal item in the given array.
-     */
-    private static <T> int findIgnoreCase(MapElement<T>[] map, CharChunk name) {
-        return findIgnoreCase(map, name, name.getStart(), name.getEnd());
-    }
-
-
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the index for the closest
-     * inferior or equal item in the given array.
-     */
-    private static <T> int findIgnoreCase(MapElement<T>[] map, CharChunk name, int start, int end) {
-
-        int a = 0;
-        int b = map.length - 1;
-
-        // Special cases: -1 and 0
-        if (b == -1) {
-            return -1;
-        }
-        if (compareIgnoreCase(name, start, end, map[0].name) < 0) {
-            return -1;
-        }
-        if (b == 0) {
-            return 0;
-        }
-
-        int i = 0;
-        while (true) {
-            i = (b + a) >>> 1;
-            int result = compareIgnoreCase(name, start, end, map[i].name);
-            if (result == 1) {
-                a = i;
-            } else if (result == 0) {
-                return i;
-            } else {
-                b = i;
-            }
-            if ((b - a) == 1) {
-                int result2 = compareIgnoreCase(name, start, end, map[b].name);
-                if (result2 < 0) {
-                    return a;
-                } else {
-                    return b;
-                }
-            }
-        }
-
-    }
-
 
     /**
      * Find a map element given its name in a sorted array of map elements. This will return the index for the closest
@@ -1308,23 +1204,6 @@ public final class Mapper {
         return null;
     }
 
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the element that you were
-     * searching for. Otherwise it will return <code>null</code>.
-     *
-     * @see #findIgnoreCase(MapElement[], CharChunk)
-     */
-    private static <T, E extends MapElement<T>> E exactFindIgnoreCase(E[] map, CharChunk name) {
-        int pos = findIgnoreCase(map, name);
-        if (pos >= 0) {
-            E result = map[pos];
-            if (name.equalsIgnoreCase(result.name)) {
-                return result;
-            }
-        }
-        return null;
-    }
-
 
     /**
      * Compare given char chunk with String. Return -1, 0 or +1 if inferior, equal, or superior to the String.
@@ -1357,78 +1236,6 @@ public final class Mapper {
     }
 
 
-    /**
-     * Compare given char chunk with String ignoring case. Return -1, 0 or +1 if inferior, equal, or superior to the
-     * String.
-     */
-    private static int compareIgnoreCase(CharChunk name, int start, int end, String compareTo) {
-        int result = 0;
-        char[] c = name.getBuffer();
-        int compareLen = compareTo.length();
-        int len = compareLen;
-        if ((end - start) < len) {
-            len = end - start;
-        }
-        for (int i = 0; (i < len) && (result == 0); i++) {
-            int nameLower = Ascii.toLower(c[i + start]);
-            int compareLower = Ascii.toLower(compareTo.charAt(i));
-            if (nameLower > compareLower) {
-                result = 1;
-            } else if (nameLower < compareLower) {
-                result = -1;
-            }
-        }
-        if (result == 0) {
-            if (compareLen > (end - start)) {
-                result = -1;
-            } else if (compareLen < (end - start)) {
-                result = 1;
-            }
-        }
-        return result;
-    }
-
-
-    /**
-     * Find the position of the last slash in the given char chunk.
-     */
-    private static int lastSlash(CharChunk name) {
-        char[] c = name.getBuffer();
-        int end = name.getEnd();
-        int start = name.getStart();
-        int pos = end;
-
-        while (pos > start) {
-            if (c[--pos] == '/') {
-                break;
-            }
-        }
-
-        return pos;
-    }
-
-
-    /**
-     * Find the position of the nth slash, in the given char chunk.
-     */
-    private static int nthSlash(CharChunk name, int n) {
-        char[] c = name.getBuffer();
-        int end = name.getEnd();
-        int start = name.getStart();
-        int pos = start;
-        int count = 0;
-
-        while (pos < end) {
-            if ((c[pos++] == '/') && ((++count) == n)) {
-                pos--;
-                break;
-            }
-        }
-
-        return pos;
-    }
-
-
     /**
      * Return the slash count in a given string.
      */
@@ -1581,25 +1388,47 @@ public final class Mapper {
     protected static final class ContextList {
 
         public final MappedContext[] contexts;
+        /**
+         * @deprecated Unused. Contexts are mapped using a radix trie. Will be removed in Tomcat 13.
+         */
+        @Deprecated
         public final int nesting;
+        final RadixTrie<MappedContext> index;
 
         public ContextList() {
-            this(new MappedContext[0], 0);
+            this(new MappedContext[0], 0, RadixTrie.empty(false));
         }
 
-        private ContextList(MappedContext[] contexts, int nesting) {
+        private ContextList(MappedContext[] contexts, int nesting, RadixTrie<MappedContext> index) {
             this.contexts = contexts;
             this.nesting = nesting;
+            this.index = index;
         }
 
-        public ContextList addContext(MappedContext mappedContext, int slashCount) {
+        public ContextList addContext(MappedContext mappedContext) {
             MappedContext[] newContexts = new MappedContext[contexts.length + 1];
             if (insertMap(contexts, newContexts, mappedContext)) {
-                return new ContextList(newContexts, Math.max(nesting, slashCount));
+                return new ContextList(newContexts, Math.max(nesting, slashCount(mappedContext.name)),
+                        index.put(mappedContext.name, mappedContext));
             }
             return null;
         }
 
+        /**
+         * Add a context.
+         *
+         * @param mappedContext The context to add
+         * @param slashCount    Ignored
+         *
+         * @return The new context list or <code>null</code> if a context with the same path is present
+         *
+         * @deprecated Use {@link #addContext(MappedContext)}. Will be removed in Tomcat 13.
+         */
+        @Deprecated
+        public ContextList addContext(MappedContext mappedContext, int slashCount) {
+            return addContext(mappedContext);
+        }
+
         public ContextList removeContext(String path) {
             MappedContext[] newContexts = new MappedContext[contexts.length - 1];
             if (removeMap(contexts, newContexts, path)) {
@@ -1607,7 +1436,7 @@ public final class Mapper {
                 for (MappedContext context : newContexts) {
                     newNesting = Math.max(newNesting, slashCount(context.name));
                 }
-                return new ContextList(newContexts, newNesting);
+                return new ContextList(newContexts, newNesting, index.remove(path));
             }
             return null;
         }
@@ -1634,7 +1463,12 @@ public final class Mapper {
         public MappedWrapper defaultWrapper = null;
         public MappedWrapper[] exactWrappers = new MappedWrapper[0];
         public MappedWrapper[] wildcardWrappers = new MappedWrapper[0];
+        RadixTrie<MappedWrapper> wildcardWrapperIndex = RadixTrie.empty(false);
         public MappedWrapper[] extensionWrappers = new MappedWrapper[0];
+        /**
+         * @deprecated Unused. Wildcard mappings are mapped using a radix trie. Will be removed in Tomcat 13.
+         */
+        @Deprecated
         public int nesting = 0;
         private volatile boolean paused;
 
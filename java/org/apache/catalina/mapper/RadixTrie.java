@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.mapper;
+
+import java.util.Arrays;
+
+import org.apache.tomcat.util.buf.Ascii;
+import org.apache.tomcat.util.buf.CharChunk;
+
+/**
+ * Immutable, compact radix trie used by the {@link Mapper} to look up host names, context paths and wildcard servlet
+ * mappings with a single pass over the characters of the {@link CharChunk} being mapped.
+ * <p>
+ * Updates are copy-on-write: {@link #put(String, Object)} and {@link #remove(String)} return a new trie that shares all
+ * the nodes that are not on the path to the updated key. Readers therefore never need to lock and always see a
+ * consistent trie.
+ *
+ * @param <E> The type of the values held in the trie
+ */
+final class RadixTrie<E> {
+
+    private static final char[] NO_CHARS = new char[0];
+
+    @SuppressWarnings("rawtypes")
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final RadixTrie<?> EMPTY = new RadixTrie<>(new Node<>(NO_CHARS, null, NO_CHARS, noNodes()), false);
+    private static final RadixTrie<?> EMPTY_IGNORE_CASE =
+            new RadixTrie<>(new Node<>(NO_CHARS, null, NO_CHARS, noNodes()), true);
+
+
+    private final Node<E> root;
+    private final boolean ignoreCase;
+
+
+    private RadixTrie(Node<E> root, boolean ignoreCase) {
+        this.root = root;
+        this.ignoreCase = ignoreCase;
+    }
+
+
+    /**
+     * Obtain an empty trie.
+     *
+     * @param ignoreCase Should keys be compared in a case-insensitive manner? Only ASCII characters are case folded.
+     * @param <E>        The type of the values held in the trie
+     *
+     * @return An empty trie
+     */
+    @SuppressWarnings("unchecked")
+    static <E> RadixTrie<E> empty(boolean ignoreCase) {
+        return (RadixTrie<E>) (ignoreCase ? EMPTY_IGNORE_CASE : EMPTY);
+    }
+
+
+    /**
+     * Add a key to the trie, replacing any existing value for the same key.
+     *
+     * @param key   The key
+     * @param value The value to associate with the key, must not be <code>null</code>
+     *
+     * @return A new trie that contains the given key
+     */
+    RadixTrie<E> put(String key, E value) {
+        return new RadixTrie<>(put(root, toChars(key), 0, value), ignoreCase);
+    }
+
+
+    /**
+     * Remove a key from the trie.
+     *
+     * @param key The key
+     *
+     * @return A new trie that does not contain the given key or this trie if the key was not present
+     */
+    RadixTrie<E> remove(String key) {
+        Node<E> newRoot = remove(root, toChars(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return new RadixTrie<>(newRoot, ignoreCase);
+    }
+
+
+    /**
+     * Look up the value for the key that is exactly the same as the current content of the given char chunk.
+     *
+     * @param name The char chunk to look up
+     *
+     * @return The value or <code>null</code> if there is no such key
+     */
+    E get(CharChunk name) {
+        char[] buf = name.getBuffer();
+        int pos = name.getStart();
+        int end = name.getEnd();
+        Node<E> node = root;
+        while (pos < end) {
+            node = node.child(fold(buf[pos]));
+            if (node == null || !matches(node.label, buf, pos, end)) {
+                return null;
+            }
+            pos += node.label.length;
+        }
+        return node.value;
+    }
+
+
+    /**
+     * Look up the value of the longest key that is a path prefix of the current content of the given char chunk. A key
+     * is a path prefix if the char chunk starts with the key and the key is followed either by the end of the char
+     * chunk or by a <code>'/'</code>. The empty key, if present, always matches.
+     *
+     * @param path The char chunk to look up
+     *
+     * @return The value or <code>null</code> if no key is a path prefix of the char chunk
+     */
+    E getLongestPathPrefix(CharChunk path) {
+        char[] buf = path.getBuffer();
+        int pos = path.getStart();
+        int end = path.getEnd();
+        Node<E> node = root;
+        E result = node.value;
+        while (pos < end) {
+            node = node.child(fold(buf[pos]));
+            if (node == null || !matches(node.label, buf, pos, end)) {
+                break;
+            }
+            pos += node.label.length;
+            if (node.value != null && (pos == end || buf[pos] == '/')) {
+                result = node.value;
+            }
+        }
+        return result;
+    }
+
+
+    private char fold(char c) {
+        if (ignoreCase) {
+            return (char) Ascii.toLower(c);
+        }
+        return c;
+    }
+
+
+    private boolean matches(char[] label, char[] buf, int pos, int end) {
+        if (end - pos < label.length) {
+            return false;
+        }
+        // The first character has already been matched when selecting the child
+        for (int i = 1; i < label.length; i++) {
+            if (label[i] != fold(buf[pos + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private char[] toChars(String key) {
+        char[] result = key.toCharArray();
+        if (ignoreCase) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = fold(result[i]);
+            }
+        }
+        return result;
+    }
+
+
+    private static <E> Node<E> put(Node<E> node, char[] key, int pos, E value) {
+        if (pos == key.length) {
+            return new Node<>(node.label, value, node.firsts, node.children);
+        }
+        int index = Arrays.binarySearch(node.firsts, key[pos]);
+        if (index < 0) {
+            Node<E> child = new Node<>(Arrays.copyOfRange(key, pos, key.length), value, NO_CHARS, noNodes());
+            return node.insertChild(-index - 1, child);
+        }
+        Node<E> child = node.children[index];
+        char[] label = child.label;
+        int common = 1;
+        while (common < label.length && pos + common < key.length && label[common] == key[pos + common]) {
+            common++;
+        }
+        if (common < label.length) {
+            // Split the child at the end of the common prefix
+            Node<E> lower = new Node<>(Arrays.copyOfRange(label, common, label.length), child.value, child.firsts,
+                    child.children);
+            @SuppressWarnings({ "rawtypes", "unchecked" })
+            Node<E>[] children = new Node[] { lower };
+            child = new Node<>(Arrays.copyOf(label, common), null, new char[] { lower.label[0] }, children);
+        }
+        return node.replaceChild(index, put(child, key, pos + common, value));
+    }
+
+
+    private static <E> Node<E> remove(Node<E> node, char[] key, int pos) {
+        if (pos == key.length) {
+            if (node.value == null) {
+                return node;
+            }
+            return new Node<>(node.label, null, node.firsts, node.children);
+        }
+        int index = Arrays.binarySearch(node.firsts, key[pos]);
+        if (index < 0) {
+            return node;
+        }
+        Node<E> child = node.children[index];
+        char[] label = child.label;
+        if (key.length - pos < label.length ||
+                !Arrays.equals(label, 0, label.length, key, pos, pos + label.length)) {
+            return node;
+        }
+        Node<E> newChild = remove(child, key, pos + label.length);
+        if (newChild == child) {
+            return node;
+        }
+        // Keep the trie compact
+        if (newChild.value == null) {
+            if (newChild.children.length == 0) {
+                return node.removeChild(index);
+            } else if (newChild.children.length == 1) {
+                Node<E> grandChild = newChild.children[0];
+                char[] mergedLabel = Arrays.copyOf(newChild.label, newChild.label.length + grandChild.label.length);
+                System.arraycopy(grandChild.label, 0, mergedLabel, newChild.label.length, grandChild.label.length);
+                newChild = new Node<>(mergedLabel, grandChild.value, grandChild.firsts, grandChild.children);
+            }
+        }
+        return node.replaceChild(index, newChild);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E>[] noNodes() {
+        return NO_NODES;
+    }
+
+
+    private static final class Node<E> {
+
+        // The characters on the edge from the parent to this node
+        private final char[] label;
+        private final E value;
+        // The first character of the label of each child, sorted
+        private final char[] firsts;
+        private final Node<E>[] children;
+
+        private Node(char[] label, E value, char[] firsts, Node<E>[] children) {
+            this.label = label;
+            this.value = value;
+            this.firsts = firsts;
+            this.children = children;
+        }
+
+        private Node<E> child(char c) {
+            char[] firsts = this.firsts;
+            // Most nodes have few children
+            if (firsts.length < 8) {
+                for (int i = 0; i < firsts.length; i++) {
+                    if (firsts[i] == c) {
+                        return children[i];
+                    }
+                }
+                return null;
+            }
+            int index = Arrays.binarySearch(firsts, c);
+            if (index < 0) {
+                return null;
+            }
+            return children[index];
+        }
+
+        private Node<E> insertChild(int index, Node<E> child) {
+            char[] newFirsts = new char[firsts.length + 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, index);
+            newFirsts[index] = child.label[0];
+            System.arraycopy(firsts, index, newFirsts, index + 1, firsts.length - index);
+            Node<E>[] newChildren = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            newChildren[index] = child;
+            return new Node<>(label, value, newFirsts, newChildren);
+        }
+
+        private Node<E> replaceChild(int index, Node<E> child) {
+            Node<E>[] newChildren = children.clone();
+            newChildren[index] = child;
+            return new Node<>(label, value, firsts, newChildren);
+        }
+
+        private Node<E> removeChild(int index) {
+            char[] newFirsts = new char[firsts.length - 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, index);
+            System.arraycopy(firsts, index + 1, newFirsts, index, firsts.length - index - 1);
+            Node<E>[] newChildren = Arrays.copyOf(children, children.length - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            return new Node<>(label, value, newFirsts, newChildren);
+        }
+    }
+}
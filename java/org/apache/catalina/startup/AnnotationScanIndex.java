@@ -0,0 +1,424 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.bcel.Const;
+import org.apache.tomcat.util.bcel.classfile.AnnotationEntry;
+import org.apache.tomcat.util.bcel.classfile.JavaClass;
+import org.apache.tomcat.util.buf.HexUtils;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * An on-disk index of the information extracted from the classes in each JAR during annotation scanning. When a JAR is
+ * unchanged since the index was written, the information is read from the index rather than by parsing every class in
+ * the JAR. Only the classes with annotations that define Servlets, Filters or Listeners need to be parsed again to
+ * obtain the annotation attributes.
+ * <p>
+ * A JAR is considered unchanged if its path, size, last modified time and content hash are unchanged. The content hash
+ * is calculated from the names, sizes and CRCs recorded in the central directory of the JAR so the content of the JAR
+ * does not need to be read.
+ * <p>
+ * The index is safe for concurrent use by the parallel annotation scanning.
+ */
+final class AnnotationScanIndex {
+
+    private static final Log log = LogFactory.getLog(AnnotationScanIndex.class);
+    private static final StringManager sm = StringManager.getManager(Constants.Package);
+
+    /**
+     * The name of the file, in the work directory of the web application, used to store the index.
+     */
+    static final String FILE_NAME = "annotation-scan.idx";
+
+    // Change the version whenever the format or the extracted information changes
+    private static final int MAGIC = 0x54534349;
+    private static final int VERSION = 1;
+
+    private static final String[] NO_STRINGS = new String[0];
+
+    private final File file;
+    private final Map<String,JarInfo> previous;
+    private final Map<String,JarInfo> current = new ConcurrentHashMap<>();
+    private volatile boolean modified = false;
+
+
+    private AnnotationScanIndex(File file, Map<String,JarInfo> previous) {
+        this.file = file;
+        this.previous = previous;
+    }
+
+
+    /**
+     * Load the index from the given file. If the file does not exist or cannot be read, an empty index is returned.
+     *
+     * @param file The file from which to load the index
+     *
+     * @return The index
+     */
+    static AnnotationScanIndex load(File file) {
+        Map<String,JarInfo> jars = new HashMap<>();
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    int jarCount = in.readInt();
+                    for (int i = 0; i < jarCount; i++) {
+                        JarInfo jarInfo = JarInfo.read(in);
+                        jars.put(jarInfo.path, jarInfo);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn(sm.getString("annotationScanIndex.loadFail", file), e);
+                jars.clear();
+            }
+        }
+        return new AnnotationScanIndex(file, jars);
+    }
+
+
+    /**
+     * Write the index to the file from which it was loaded if any JAR was scanned or the set of JARs has changed. Only
+     * the JARs that were scanned or looked up since the index was loaded are retained.
+     */
+    void save() {
+        if (!modified && current.keySet().equals(previous.keySet())) {
+            return;
+        }
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(current.size());
+                for (JarInfo jarInfo : current.values()) {
+                    jarInfo.write(out);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn(sm.getString("annotationScanIndex.saveFail", file), e);
+            if (!tmp.delete() && tmp.exists()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+
+    /**
+     * Look up the classes for the given JAR.
+     *
+     * @param url The URL of the JAR
+     *
+     * @return The classes in the JAR or <code>null</code> if the JAR is not in the index, has changed since the index
+     *             was written or is not a file that can be indexed
+     */
+    List<ClassInfo> get(URL url) {
+        File jarFile = toFile(url);
+        if (jarFile == null) {
+            return null;
+        }
+        String path = jarFile.getAbsolutePath();
+        JarInfo jarInfo = previous.get(path);
+        if (jarInfo == null || jarInfo.size != jarFile.length() || jarInfo.lastModified != jarFile.lastModified()) {
+            return null;
+        }
+        String hash = hash(jarFile);
+        if (hash == null || !hash.equals(jarInfo.hash)) {
+            return null;
+        }
+        current.put(path, jarInfo);
+        return jarInfo.classes;
+    }
+
+
+    /**
+     * Add, or replace, the classes for the given JAR.
+     *
+     * @param url     The URL of the JAR
+     * @param classes The classes in the JAR
+     */
+    void put(URL url, List<ClassInfo> classes) {
+        File jarFile = toFile(url);
+        if (jarFile == null) {
+            return;
+        }
+        // Read the size and last modified time before calculating the hash so a concurrent change results in a
+        // mismatch next time
+        long size = jarFile.length();
+        long lastModified = jarFile.lastModified();
+        String hash = hash(jarFile);
+        if (hash == null) {
+            return;
+        }
+        String path = jarFile.getAbsolutePath();
+        current.put(path, new JarInfo(path, size, lastModified, hash, classes));
+        modified = true;
+    }
+
+
+    /**
+     * @param url The URL of a JAR
+     *
+     * @return <code>true</code> if the JAR with the given URL may be added to the index
+     */
+    static boolean isIndexable(URL url) {
+        return toFile(url) != null;
+    }
+
+
+    private static File toFile(URL url) {
+        // JARs packaged in a WAR or elsewhere are not indexed
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            File result = new File(url.toURI());
+            if (result.isFile()) {
+                return result;
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            // Not a file that can be indexed
+        }
+        return null;
+    }
+
+
+    private static String hash(File jarFile) {
+        try (ZipFile zipFile = new ZipFile(jarFile)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[16];
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                long crc = entry.getCrc();
+                long size = entry.getSize();
+                for (int i = 0; i < 8; i++) {
+                    buf[i] = (byte) (crc >>> (i * 8));
+                    buf[i + 8] = (byte) (size >>> (i * 8));
+                }
+                digest.update(buf);
+            }
+            return HexUtils.toHexString(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.warn(sm.getString("annotationScanIndex.hashFail", jarFile), e);
+            return null;
+        }
+    }
+
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count == 0) {
+            return NO_STRINGS;
+        }
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = in.readUTF();
+        }
+        return result;
+    }
+
+
+    private static final class JarInfo {
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private final List<ClassInfo> classes;
+
+        private JarInfo(String path, long size, long lastModified, String hash, List<ClassInfo> classes) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.classes = classes;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeUTF(hash);
+            out.writeInt(classes.size());
+            for (ClassInfo classInfo : classes) {
+                classInfo.write(out);
+            }
+        }
+
+        private static JarInfo read(DataInputStream in) throws IOException {
+            String path = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            String hash = in.readUTF();
+            int classCount = in.readInt();
+            List<ClassInfo> classes = new ArrayList<>(classCount);
+            for (int i = 0; i < classCount; i++) {
+                classes.add(ClassInfo.read(in));
+            }
+            return new JarInfo(path, size, lastModified, hash, Collections.unmodifiableList(classes));
+        }
+    }
+
+
+    /**
+     * The information extracted from a class during annotation scanning.
+     */
+    static final class ClassInfo {
+
+        private static final int FLAG_ANNOTATION = 1;
+        private static final int FLAG_WEB_ANNOTATIONS = 2;
+
+        private final String entryName;
+        private final String className;
+        private final int flags;
+        private final String superclassName;
+        private final String[] interfaceNames;
+        private final String[] annotationTypes;
+
+        private ClassInfo(String entryName, String className, int flags, String superclassName,
+                String[] interfaceNames, String[] annotationTypes) {
+            this.entryName = entryName;
+            this.className = className;
+            this.flags = flags;
+            this.superclassName = superclassName;
+            this.interfaceNames = interfaceNames;
+            this.annotationTypes = annotationTypes;
+        }
+
+        /**
+         * Extract the information required for the index from a parsed class.
+         *
+         * @param entryName The name of the JAR entry for the class
+         * @param javaClass The parsed class
+         *
+         * @return The extracted information
+         */
+        static ClassInfo create(String entryName, JavaClass javaClass) {
+            int flags = 0;
+            if ((javaClass.getAccessFlags() & Const.ACC_ANNOTATION) != 0) {
+                flags |= FLAG_ANNOTATION;
+            }
+            AnnotationEntry[] classAnnotations = javaClass.getAnnotationEntries();
+            if (classAnnotations != null) {
+                for (AnnotationEntry ae : classAnnotations) {
+                    String type = ae.getAnnotationType();
+                    if ("Ljakarta/servlet/annotation/WebServlet;".equals(type) ||
+                            "Ljakarta/servlet/annotation/WebFilter;".equals(type) ||
+                            "Ljakarta/servlet/annotation/WebListener;".equals(type)) {
+                        flags |= FLAG_WEB_ANNOTATIONS;
+                        break;
+                    }
+                }
+            }
+            String[] annotationTypes = NO_STRINGS;
+            AnnotationEntry[] allAnnotations = javaClass.getAllAnnotationEntries();
+            if (allAnnotations != null) {
+                annotationTypes = new String[allAnnotations.length];
+                for (int i = 0; i < allAnnotations.length; i++) {
+                    annotationTypes[i] = allAnnotations[i].getAnnotationType();
+                }
+            }
+            return new ClassInfo(entryName, javaClass.getClassName(), flags, javaClass.getSuperclassName(),
+                    javaClass.getInterfaceNames(), annotationTypes);
+        }
+
+        String getEntryName() {
+            return entryName;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        boolean isAnnotation() {
+            return (flags & FLAG_ANNOTATION) != 0;
+        }
+
+        /**
+         * @return <code>true</code> if the class is annotated with any of {@code WebServlet}, {@code WebFilter} or
+         *             {@code WebListener}
+         */
+        boolean hasWebAnnotations() {
+            return (flags & FLAG_WEB_ANNOTATIONS) != 0;
+        }
+
+        String getSuperclassName() {
+            return superclassName;
+        }
+
+        String[] getInterfaceNames() {
+            return interfaceNames;
+        }
+
+        /**
+         * @return The types, in internal form, of the annotations on the class, its fields and its methods
+         */
+        String[] getAnnotationTypes() {
+            return annotationTypes;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(entryName);
+            out.writeUTF(className);
+            out.writeByte(flags);
+            out.writeUTF(superclassName);
+            writeStrings(out, interfaceNames);
+            writeStrings(out, annotationTypes);
+        }
+
+        private static ClassInfo read(DataInputStream in) throws IOException {
+            return new ClassInfo(in.readUTF(), in.readUTF(), in.readByte(), in.readUTF(), readStrings(in),
+                    readStrings(in));
+        }
+    }
+}
@@ -230,6 +230,11 @@ public class ContextConfig implements LifecycleListener {
      */
     protected boolean handlesTypesNonAnnotations = false;
 
+    /**
+     * The index of the results of previous annotation scans of JARs, if in use for the current scan.
+     */
+    private volatile AnnotationScanIndex annotationScanIndex = null;
+
 
     // ------------------------------------------------------------- Properties
 
@@ -1339,6 +1344,11 @@ public class ContextConfig implements LifecycleListener {
             javaClassCache = new HashMap<>();
         }
 
+        File annotationScanIndexFile = getAnnotationScanIndexFile();
+        if (annotationScanIndexFile != null) {
+            annotationScanIndex = AnnotationScanIndex.load(annotationScanIndexFile);
+        }
+
         if (ok) {
             WebResource[] webResources = context.getResources().listResources("/WEB-INF/classes");
 
@@ -1362,6 +1372,31 @@ public class ContextConfig implements LifecycleListener {
 
         // Cache, if used, is no longer required so clear it
         javaClassCache.clear();
+
+        if (annotationScanIndex != null) {
+            if (ok) {
+                annotationScanIndex.save();
+            }
+            annotationScanIndex = null;
+        }
+    }
+
+
+    /**
+     * Obtain the file used to store the index of the results of previous annotation scans of JARs.
+     *
+     * @return The file or <code>null</code> if the index is not enabled for the Context or the Context does not have a
+     *             work directory
+     */
+    protected File getAnnotationScanIndexFile() {
+        if (!context.getUseAnnotationScanIndex()) {
+            return null;
+        }
+        Object workDir = context.getServletContext().getAttribute(ServletContext.TEMPDIR);
+        if (workDir instanceof File) {
+            return new File((File) workDir, AnnotationScanIndex.FILE_NAME);
+        }
+        return null;
     }
 
 
@@ -2171,6 +2206,20 @@ public class ContextConfig implements LifecycleListener {
     protected void processAnnotationsJar(URL url, WebXml fragment, boolean handlesTypesOnly,
             Map<String,JavaClassCacheEntry> javaClassCache) {
 
+        AnnotationScanIndex annotationScanIndex = this.annotationScanIndex;
+        List<AnnotationScanIndex.ClassInfo> classInfos = null;
+        if (annotationScanIndex != null) {
+            classInfos = annotationScanIndex.get(url);
+            if (classInfos != null) {
+                processAnnotationsIndexedJar(url, classInfos, fragment, handlesTypesOnly, javaClassCache);
+                return;
+            }
+            if (AnnotationScanIndex.isIndexable(url)) {
+                classInfos = new ArrayList<>();
+            }
+        }
+
+        boolean complete = true;
         try (Jar jar = JarFactory.newInstance(url)) {
             if (log.isTraceEnabled()) {
                 log.trace(sm.getString("contextConfig.processAnnotationsJar.debug", url));
@@ -2181,16 +2230,71 @@ public class ContextConfig implements LifecycleListener {
             while (entryName != null) {
                 if (entryName.endsWith(".class")) {
                     try (InputStream is = jar.getEntryInputStream()) {
-                        processAnnotationsStream(is, fragment, handlesTypesOnly, javaClassCache);
+                        JavaClass clazz = processAnnotationsStreamInternal(is, fragment, handlesTypesOnly,
+                                javaClassCache);
+                        if (classInfos != null) {
+                            classInfos.add(AnnotationScanIndex.ClassInfo.create(entryName, clazz));
+                        }
                     } catch (IOException | ClassFormatException e) {
+                        complete = false;
                         log.error(sm.getString("contextConfig.inputStreamJar", entryName, url), e);
                     }
                 }
                 jar.nextEntry();
                 entryName = jar.getEntryName();
             }
+        } catch (IOException e) {
+            complete = false;
+            log.error(sm.getString("contextConfig.jarFile", url), e);
+        }
+
+        // Only index JARs that were scanned without error so errors are reported on every start
+        if (classInfos != null && complete) {
+            annotationScanIndex.put(url, classInfos);
+        }
+    }
+
+
+    /**
+     * Process a JAR for annotations using the information recorded in the annotation scan index. Only the classes that
+     * are annotated with {@code WebServlet}, {@code WebFilter} or {@code WebListener} are read from the JAR.
+     *
+     * @param url              The URL of the JAR
+     * @param classInfos       The information recorded in the index for each class in the JAR
+     * @param fragment         The fragment to which any annotation configuration will be added
+     * @param handlesTypesOnly Should only {@link HandlesTypes} matches be checked
+     * @param javaClassCache   The class cache
+     */
+    private void processAnnotationsIndexedJar(URL url, List<AnnotationScanIndex.ClassInfo> classInfos,
+            WebXml fragment, boolean handlesTypesOnly, Map<String,JavaClassCacheEntry> javaClassCache) {
+
+        if (log.isTraceEnabled()) {
+            log.trace(sm.getString("contextConfig.processAnnotationsIndexedJar.debug", url));
+        }
+
+        Jar jar = null;
+        try {
+            for (AnnotationScanIndex.ClassInfo classInfo : classInfos) {
+                checkHandlesTypes(classInfo, javaClassCache);
+                if (handlesTypesOnly || !classInfo.hasWebAnnotations()) {
+                    continue;
+                }
+                if (jar == null) {
+                    jar = JarFactory.newInstance(url);
+                }
+                try (InputStream is = jar.getInputStream(classInfo.getEntryName())) {
+                    ClassParser parser = new ClassParser(is);
+                    processClass(fragment, parser.parse());
+                } catch (IOException | ClassFormatException e) {
+                    log.error(sm.getString("contextConfig.inputStreamJar", classInfo.getEntryName(), url), e);
+                }
+            }
         } catch (IOException e) {
             log.error(sm.getString("contextConfig.jarFile", url), e);
+        } finally {
+            if (jar != null) {
+                jar.close();
+            }
         }
     }
 
@@ -2221,16 +2325,22 @@ public class ContextConfig implements LifecycleListener {
 
     protected void processAnnotationsStream(InputStream is, WebXml fragment, boolean handlesTypesOnly,
             Map<String,JavaClassCacheEntry> javaClassCache) throws ClassFormatException, IOException {
+        processAnnotationsStreamInternal(is, fragment, handlesTypesOnly, javaClassCache);
+    }
+
+
+    private JavaClass processAnnotationsStreamInternal(InputStream is, WebXml fragment, boolean handlesTypesOnly,
+            Map<String,JavaClassCacheEntry> javaClassCache) throws ClassFormatException, IOException {
 
         ClassParser parser = new ClassParser(is);
         JavaClass clazz = parser.parse();
         checkHandlesTypes(clazz, javaClassCache);
 
-        if (handlesTypesOnly) {
-            return;
+        if (!handlesTypesOnly) {
+            processClass(fragment, clazz);
         }
 
-        processClass(fragment, clazz);
+        return clazz;
     }
 
 
@@ -2273,12 +2383,53 @@ public class ContextConfig implements LifecycleListener {
             return;
         }
 
-        String className = javaClass.getClassName();
+        String[] annotationTypes = null;
+        if (handlesTypesAnnotations) {
+            AnnotationEntry[] annotationEntries = javaClass.getAllAnnotationEntries();
+            if (annotationEntries != null) {
+                annotationTypes = new String[annotationEntries.length];
+                for (int i = 0; i < annotationEntries.length; i++) {
+                    annotationTypes[i] = annotationEntries[i].getAnnotationType();
+                }
+            }
+        }
+
+        checkHandlesTypes(javaClass.getClassName(), javaClass.getSuperclassName(), javaClass.getInterfaceNames(),
+                annotationTypes, javaClassCache);
+    }
+
+
+    /**
+     * Equivalent of {@link #checkHandlesTypes(JavaClass, Map)} for a class read from the annotation scan index.
+     *
+     * @param classInfo      the class to check
+     * @param javaClassCache a class cache
+     */
+    private void checkHandlesTypes(AnnotationScanIndex.ClassInfo classInfo,
+            Map<String,JavaClassCacheEntry> javaClassCache) {
+
+        // Skip this if we can
+        if (typeInitializerMap.size() == 0) {
+            return;
+        }
+
+        if (classInfo.isAnnotation()) {
+            // Skip annotations.
+            return;
+        }
+
+        checkHandlesTypes(classInfo.getClassName(), classInfo.getSuperclassName(), classInfo.getInterfaceNames(),
+                classInfo.getAnnotationTypes(), javaClassCache);
+    }
+
+
+    private void checkHandlesTypes(String className, String superclassName, String[] interfaceNames,
+            String[] annotationTypes, Map<String,JavaClassCacheEntry> javaClassCache) {
 
         Class<?> clazz = null;
         if (handlesTypesNonAnnotations) {
             // This *might* be match for a HandlesType.
-            populateJavaClassCache(className, javaClass, javaClassCache);
+            populateJavaClassCache(className, superclassName, interfaceNames, javaClassCache);
             JavaClassCacheEntry entry = javaClassCache.get(className);
             if (entry.getSciSet() == null) {
                 try {
@@ -2304,13 +2455,12 @@ public class ContextConfig implements LifecycleListener {
         }
 
         if (handlesTypesAnnotations) {
-            AnnotationEntry[] annotationEntries = javaClass.getAllAnnotationEntries();
-            if (annotationEntries != null) {
+            if (annotationTypes != null) {
                 for (Map.Entry<Class<?>,Set<ServletContainerInitializer>> entry : typeInitializerMap.entrySet()) {
                     if (entry.getKey().isAnnotation()) {
                         String entryClassName = entry.getKey().getName();
-                        for (AnnotationEntry annotationEntry : annotationEntries) {
-                            if (entryClassName.equals(getClassName(annotationEntry.getAnnotationType()))) {
+                        for (String annotationType : annotationTypes) {
+                            if (entryClassName.equals(getClassName(annotationType))) {
                                 if (clazz == null) {
                                     clazz = Introspection.loadClass(context, className);
                                     if (clazz == null) {
@@ -2356,18 +2506,18 @@ public class ContextConfig implements LifecycleListener {
         return msg.toString();
     }
 
-    private void populateJavaClassCache(String className, JavaClass javaClass,
+    private void populateJavaClassCache(String className, String superclassName, String[] interfaceNames,
             Map<String,JavaClassCacheEntry> javaClassCache) {
         if (javaClassCache.containsKey(className)) {
             return;
         }
 
         // Add this class to the cache
-        javaClassCache.put(className, new JavaClassCacheEntry(javaClass));
+        javaClassCache.put(className, new JavaClassCacheEntry(superclassName, interfaceNames));
 
-        populateJavaClassCache(javaClass.getSuperclassName(), javaClassCache);
+        populateJavaClassCache(superclassName, javaClassCache);
 
-        for (String interfaceName : javaClass.getInterfaceNames()) {
+        for (String interfaceName : interfaceNames) {
             populateJavaClassCache(interfaceName, javaClassCache);
         }
     }
@@ -2381,7 +2531,8 @@ public class ContextConfig implements LifecycleListener {
                 }
                 ClassParser parser = new ClassParser(is);
                 JavaClass clazz = parser.parse();
-                populateJavaClassCache(clazz.getClassName(), clazz, javaClassCache);
+                populateJavaClassCache(clazz.getClassName(), clazz.getSuperclassName(), clazz.getInterfaceNames(),
+                        javaClassCache);
             } catch (ClassFormatException | IOException e) {
                 log.debug(sm.getString("contextConfig.invalidSciHandlesTypes", className), e);
             }
@@ -2762,9 +2913,9 @@ public class ContextConfig implements LifecycleListener {
 
         private Set<ServletContainerInitializer> sciSet = null;
 
-        JavaClassCacheEntry(JavaClass javaClass) {
-            superclassName = javaClass.getSuperclassName();
-            interfaceNames = javaClass.getInterfaceNames();
+        JavaClassCacheEntry(String superclassName, String[] interfaceNames) {
+            this.superclassName = superclassName;
+            this.interfaceNames = interfaceNames;
         }
 
         public String getSuperclassName() {
@@ -1436,6 +1436,15 @@ public class FailedContext extends LifecycleMBeanBase implements Context {
     public void setParallelAnnotationScanning(boolean parallelAnnotationScanning) {
     }
 
+    @Override
+    public boolean getUseAnnotationScanIndex() {
+        return false;
+    }
+
+    @Override
+    public void setUseAnnotationScanIndex(boolean useAnnotationScanIndex) {
+    }
+
     @Override
     public boolean getSuspendWrappedResponseAfterForward() {
         return false;
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -55,6 +56,7 @@ import org.apache.catalina.Manager;
 import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.core.StandardHost;
 import org.apache.catalina.util.ContextName;
+import org.apache.catalina.util.DirectoryWatcher;
 import org.apache.catalina.util.IOTools;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -126,6 +128,13 @@ public class HostConfig implements LifecycleListener {
     protected boolean unpackWARs = false;
 
 
+    /**
+     * Should a {@link java.nio.file.WatchService} be used to detect changes rather than checking every monitored
+     * resource of every deployed application on every background process cycle?
+     */
+    protected boolean useWatchService = false;
+
+
     /**
      * Map of deployed applications.
      */
@@ -148,6 +157,20 @@ public class HostConfig implements LifecycleListener {
      */
     protected final Set<String> invalidWars = new HashSet<>();
 
+    /*
+     * State used to detect changes when useWatchService is enabled. The watcher is null if changes are detected by
+     * polling.
+     */
+    private volatile DirectoryWatcher watcher = null;
+    // The deployed applications for which the monitored directories have been registered
+    private final Map<String,DeployedApplication> watchedApps = new ConcurrentHashMap<>();
+    // The applications with resources that can't be watched and need to be polled
+    private final Set<String> polledApps = ConcurrentHashMap.newKeySet();
+    // The applications with changed resources and the time the last change was detected
+    private final Map<String,Long> changedApps = new ConcurrentHashMap<>();
+    // The time the last change was detected in the appBase or xmlBase or -1 if there are no changes to process
+    private volatile long deployChangeTime = -1;
+
     // ------------------------------------------------------------- Properties
 
 
@@ -233,6 +256,26 @@ public class HostConfig implements LifecycleListener {
     }
 
 
+    /**
+     * @return <code>true</code> if a {@link java.nio.file.WatchService} is used to detect changes to deployed
+     *             applications
+     */
+    public boolean isUseWatchService() {
+        return this.useWatchService;
+    }
+
+
+    /**
+     * Set the flag that controls if a {@link java.nio.file.WatchService} is used to detect changes to deployed
+     * applications. The flag is read when the Host starts.
+     *
+     * @param useWatchService The new use watch service flag
+     */
+    public void setUseWatchService(boolean useWatchService) {
+        this.useWatchService = useWatchService;
+    }
+
+
     // --------------------------------------------------------- Public Methods
 
 
@@ -251,6 +294,7 @@ public class HostConfig implements LifecycleListener {
                 setCopyXML(((StandardHost) host).isCopyXML());
                 setDeployXML(((StandardHost) host).isDeployXML());
                 setUnpackWARs(((StandardHost) host).isUnpackWARs());
+                setUseWatchService(((StandardHost) host).getUseWatchService());
                 setContextClass(((StandardHost) host).getContextClass());
             }
         } catch (ClassCastException e) {
@@ -1589,6 +1633,10 @@ public class HostConfig implements LifecycleListener {
             host.setAutoDeploy(false);
         }
 
+        if (useWatchService) {
+            startWatching();
+        }
+
         if (host.getDeployOnStartup()) {
             deployApps();
         }
@@ -1612,6 +1660,8 @@ public class HostConfig implements LifecycleListener {
             }
         }
         oname = null;
+
+        stopWatching();
     }
 
 
@@ -1621,6 +1671,12 @@ public class HostConfig implements LifecycleListener {
     protected void check() {
 
         if (host.getAutoDeploy()) {
+            DirectoryWatcher watcher = this.watcher;
+            if (watcher != null) {
+                checkChanges(watcher);
+                return;
+            }
+
             // Check for resources modification to trigger redeployment
             DeployedApplication[] apps = deployed.values().toArray(new DeployedApplication[0]);
             for (DeployedApplication app : apps) {
@@ -1644,6 +1700,192 @@ public class HostConfig implements LifecycleListener {
     }
 
 
+    /**
+     * Check the web applications for which changes have been reported by the watch service as well as those with
+     * resources that can't be watched. New applications are only looked for if changes have been reported in the
+     * appBase or xmlBase.
+     *
+     * @param watcher The watcher for the monitored directories
+     */
+    protected void checkChanges(DirectoryWatcher watcher) {
+        long now = System.currentTimeMillis();
+        Set<File> changed = watcher.poll();
+        if (changed == null) {
+            // Changes may have been missed so check everything
+            Long changeTime = Long.valueOf(now);
+            for (String name : deployed.keySet()) {
+                changedApps.put(name, changeTime);
+            }
+            deployChangeTime = now;
+        } else if (!changed.isEmpty()) {
+            recordChanges(changed, now);
+        }
+
+        // Changes made within the resolution of the file time stamps are ignored by checkResources() so changed
+        // applications have to be checked until the resolution has passed
+        long resolutionLimit = now - FILE_MODIFICATION_RESOLUTION_MS;
+        DeployedApplication[] apps = deployed.values().toArray(new DeployedApplication[0]);
+        for (DeployedApplication app : apps) {
+            Long changeTime = changedApps.get(app.name);
+            if (changeTime == null && !polledApps.contains(app.name)) {
+                continue;
+            }
+            if (tryAddServiced(app.name)) {
+                try {
+                    checkResources(app, false);
+                } finally {
+                    removeServiced(app.name);
+                }
+                if (deployed.get(app.name) != app) {
+                    // Undeployed so the application may need to be deployed again
+                    deployChangeTime = now;
+                } else if (!registerResources(watcher, app)) {
+                    polledApps.add(app.name);
+                }
+                if (changeTime != null && changeTime.longValue() < resolutionLimit) {
+                    changedApps.remove(app.name, changeTime);
+                }
+            }
+        }
+
+        // Check for old versions of applications that can now be undeployed
+        if (host.getUndeployOldVersions()) {
+            checkUndeploy();
+        }
+
+        long lastDeployChangeTime = deployChangeTime;
+        if (lastDeployChangeTime >= 0) {
+            // Hotdeploy applications
+            deployApps();
+            if (lastDeployChangeTime < resolutionLimit && deployChangeTime == lastDeployChangeTime) {
+                deployChangeTime = -1;
+            }
+        }
+
+        watchApps(watcher, now);
+    }
+
+
+    private void recordChanges(Set<File> changed, long now) {
+        File appBase = host.getAppBaseFile();
+        File configBase = host.getConfigBaseFile();
+        File legacyAppBase = host.getLegacyAppBaseFile();
+        List<Path> changedPaths = new ArrayList<>(changed.size());
+        for (File file : changed) {
+            if (log.isTraceEnabled()) {
+                log.trace("Change detected for [" + file + "]");
+            }
+            File parent = file.getParentFile();
+            if (appBase.equals(parent) || configBase.equals(parent) || legacyAppBase.equals(parent)) {
+                deployChangeTime = now;
+            }
+            changedPaths.add(file.toPath());
+        }
+        Long changeTime = Long.valueOf(now);
+        for (DeployedApplication app : deployed.values()) {
+            if (isChanged(app.redeployResources.keySet().toArray(new String[0]), changedPaths) ||
+                    isChanged(app.reloadResources.keySet().toArray(new String[0]), changedPaths)) {
+                changedApps.put(app.name, changeTime);
+            }
+        }
+    }
+
+
+    /*
+     * A resource is changed if it, or a directory that contains it, has changed.
+     */
+    private static boolean isChanged(String[] resources, List<Path> changedPaths) {
+        for (String resource : resources) {
+            Path path = new File(resource).toPath().toAbsolutePath().normalize();
+            for (Path changedPath : changedPaths) {
+                if (path.startsWith(changedPath)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /*
+     * Register the monitored directories of newly deployed applications.
+     */
+    private void watchApps(DirectoryWatcher watcher, long now) {
+        watchedApps.entrySet().removeIf(entry -> deployed.get(entry.getKey()) != entry.getValue());
+        polledApps.removeIf(name -> !watchedApps.containsKey(name));
+        changedApps.keySet().removeIf(name -> !deployed.containsKey(name));
+
+        Long changeTime = Long.valueOf(now);
+        for (DeployedApplication app : deployed.values()) {
+            if (watchedApps.get(app.name) == app) {
+                continue;
+            }
+            if (registerResources(watcher, app)) {
+                polledApps.remove(app.name);
+            } else {
+                polledApps.add(app.name);
+            }
+            watchedApps.put(app.name, app);
+            // Changes made before the directories were registered would have been missed
+            changedApps.put(app.name, changeTime);
+        }
+    }
+
+
+    /*
+     * Register the directories containing the monitored resources of the application. If a directory does not exist,
+     * the nearest existing parent directory is registered instead so its creation is detected.
+     */
+    private boolean registerResources(DirectoryWatcher watcher, DeployedApplication app) {
+        boolean result = true;
+        for (String resource : app.redeployResources.keySet().toArray(new String[0])) {
+            result &= registerResource(watcher, new File(resource));
+        }
+        for (String resource : app.reloadResources.keySet().toArray(new String[0])) {
+            result &= registerResource(watcher, new File(resource));
+        }
+        return result;
+    }
+
+
+    private boolean registerResource(DirectoryWatcher watcher, File resource) {
+        File dir = resource.getAbsoluteFile().getParentFile();
+        while (dir != null && !dir.isDirectory()) {
+            dir = dir.getParentFile();
+        }
+        return dir != null && watcher.register(dir, false);
+    }
+
+
+    private void startWatching() {
+        DirectoryWatcher watcher = DirectoryWatcher.create();
+        if (watcher == null) {
+            return;
+        }
+        File legacyAppBase = host.getLegacyAppBaseFile();
+        if (!watcher.register(host.getAppBaseFile(), false) || !watcher.register(host.getConfigBaseFile(), false) ||
+                legacyAppBase.isDirectory() && !watcher.register(legacyAppBase, false)) {
+            log.warn(sm.getString("hostConfig.watch.fail", host.getName()));
+            watcher.close();
+            return;
+        }
+        deployChangeTime = -1;
+        this.watcher = watcher;
+    }
+
+
+    private void stopWatching() {
+        DirectoryWatcher watcher = this.watcher;
+        if (watcher != null) {
+            this.watcher = null;
+            watcher.close();
+        }
+        watchedApps.clear();
+        polledApps.clear();
+        changedApps.clear();
+    }
+
+
     /**
      * Check status of a specific web application and reload, redeploy or deploy it as necessary. This method is for use
      * with functionality such as management web applications that upload new/updated web applications and need to
@@ -18,21 +18,52 @@ package org.apache.catalina.tribes.group.interceptors;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
+import org.apache.catalina.tribes.Channel;
 import org.apache.catalina.tribes.ChannelException;
 import org.apache.catalina.tribes.ChannelMessage;
 import org.apache.catalina.tribes.Member;
 import org.apache.catalina.tribes.group.ChannelInterceptorBase;
 import org.apache.catalina.tribes.group.InterceptorPayload;
+import org.apache.catalina.tribes.io.ChannelData;
+import org.apache.catalina.tribes.io.XByteBuffer;
 import org.apache.catalina.tribes.util.StringManager;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 
+/**
+ * Compresses the messages sent by the channel. Two codecs are supported:
+ * <ul>
+ * <li><code>gzip</code> - each message is compressed with a new {@link GZIPOutputStream}. This is the default.</li>
+ * <li><code>deflate</code> - each message is compressed in the zlib format with a {@link Deflater} that is reused for
+ * later messages. By default the fastest compression level is used. Optionally, a dictionary may be trained from the
+ * messages sent by this member. The dictionary is sent to each member the first time a message is sent to that member
+ * and from then on messages sent to that member are compressed with the dictionary. This considerably improves the
+ * compression of small messages that share content such as attribute names and class descriptors.</li>
+ * </ul>
+ * Messages compressed with either codec can be received regardless of the configured codec.
+ */
 public class GzipInterceptor extends ChannelInterceptorBase implements GzipInterceptorMBean {
 
     private static final Log log = LogFactory.getLog(GzipInterceptor.class);
@@ -41,9 +72,42 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
     public static final int DEFAULT_BUFFER_SIZE = 2048;
     public static final int DEFAULT_OPTION_COMPRESSION_ENABLE = 0x0100;
 
+    public static final String CODEC_GZIP = "gzip";
+    public static final String CODEC_DEFLATE = "deflate";
+
+    /**
+     * The maximum size of a dictionary, which is the size of the deflate window.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    /*
+     * Marks the message that sends a dictionary. The first byte can't be the first byte of a message compressed by
+     * either codec.
+     */
+    protected static final byte[] DICTIONARY_DATA = new byte[] { 0, -46, 17, -93, 72, 5, -120, 61, -27, 113, 90, -8, 34,
+            -71, 6, 83 };
+
+    private static final int DICTIONARY_DMER_SIZE = 8;
+    private static final int DICTIONARY_SEGMENT_SIZE = 64;
+
     private int compressionMinSize = 0;
     private volatile boolean statsEnabled = false;
     private int interval = 0;
+    private volatile boolean deflate = false;
+    private int compressionLevel = Deflater.BEST_SPEED;
+    private int dictionarySize = 0;
+    private int dictionarySamples = 100;
+
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    // Dictionary used to compress sent messages and the members that have received it
+    private final List<byte[]> samples = new ArrayList<>();
+    private volatile Dictionary dictionary = null;
+    private volatile boolean dictionaryTrained = false;
+    private final Set<Member> dictionaryMembers = ConcurrentHashMap.newKeySet();
+    // Dictionaries used by other members to compress the messages they send
+    private final Map<Member,Dictionary> receivedDictionaries = new ConcurrentHashMap<>();
 
     // Stats
     private final AtomicInteger count = new AtomicInteger();
@@ -57,6 +121,8 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
     private final AtomicLong sizeRX = new AtomicLong();
     private final AtomicLong compressedSizeRX = new AtomicLong();
     private final AtomicLong uncompressedSizeRX = new AtomicLong();
+    private final AtomicLong compressionTime = new AtomicLong();
+    private final AtomicLong decompressionTime = new AtomicLong();
 
 
     public GzipInterceptor() {
@@ -74,10 +140,16 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
             }
 
             if (data.length > compressionMinSize) {
-                data = compress(data);
+                long start = statsEnabled ? System.nanoTime() : 0;
+                if (deflate) {
+                    data = deflate(data, getDictionary(destination, data));
+                } else {
+                    data = compress(data);
+                }
                 // Set the flag that indicates that the message is compressed
                 msg.setOptions(msg.getOptions() | getOptionFlag());
                 if (statsEnabled) {
+                    compressionTime.addAndGet(System.nanoTime() - start);
                     countCompressedTX.incrementAndGet();
                     compressedSizeTX.addAndGet(data.length);
                 }
@@ -106,12 +178,24 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
         try {
             byte[] data = msg.getMessage().getBytes();
             if ((msg.getOptions() & getOptionFlag()) > 0) {
+                if (isDictionaryMessage(data)) {
+                    receiveDictionary(msg.getAddress(), data);
+                    return;
+                }
                 if (statsEnabled) {
                     countCompressedRX.incrementAndGet();
                     compressedSizeRX.addAndGet(data.length);
                 }
                 // Message was compressed
-                data = decompress(data);
+                long start = statsEnabled ? System.nanoTime() : 0;
+                if (isGzip(data)) {
+                    data = decompress(data);
+                } else {
+                    data = inflate(data, msg.getAddress());
+                }
+                if (statsEnabled) {
+                    decompressionTime.addAndGet(System.nanoTime() - start);
+                }
             } else if (statsEnabled) {
                 countUncompressedRX.incrementAndGet();
                 uncompressedSizeRX.addAndGet(data.length);
@@ -135,6 +219,264 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
     }
 
 
+    @Override
+    public void memberDisappeared(Member member) {
+        dictionaryMembers.remove(member);
+        receivedDictionaries.remove(member);
+        super.memberDisappeared(member);
+    }
+
+
+    @Override
+    public void stop(int svc) throws ChannelException {
+        super.stop(svc);
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+
+    /*
+     * Returns the dictionary to use to compress a message for the given members, training the dictionary and sending
+     * it to the members that don't have it yet as required. Returns null if no dictionary should be used.
+     */
+    private Dictionary getDictionary(Member[] destination, byte[] data) {
+        if (dictionarySize <= 0) {
+            return null;
+        }
+        Dictionary dictionary = this.dictionary;
+        if (dictionary == null) {
+            if (dictionaryTrained) {
+                // The messages had nothing in common
+                return null;
+            }
+            List<byte[]> trainingSamples = null;
+            synchronized (samples) {
+                if (!dictionaryTrained) {
+                    samples.add(data);
+                    if (samples.size() >= dictionarySamples) {
+                        trainingSamples = new ArrayList<>(samples);
+                        samples.clear();
+                        dictionaryTrained = true;
+                    }
+                }
+            }
+            if (trainingSamples == null) {
+                return null;
+            }
+            byte[] trained = trainDictionary(trainingSamples, dictionarySize);
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("gzipInterceptor.dictionary.trained", Integer.valueOf(trained.length),
+                        Integer.valueOf(trainingSamples.size())));
+            }
+            if (trained.length == 0) {
+                return null;
+            }
+            dictionary = new Dictionary(trained);
+            this.dictionary = dictionary;
+        }
+
+        List<Member> missing = null;
+        for (Member member : destination) {
+            if (!dictionaryMembers.contains(member)) {
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(member);
+            }
+        }
+        if (missing != null) {
+            // Wait until the members have processed the dictionary so that it is available for the next message
+            ChannelData cdata = new ChannelData(true);
+            cdata.setAddress(getLocalMember(false));
+            cdata.setTimestamp(System.currentTimeMillis());
+            cdata.setOptions(getOptionFlag() | Channel.SEND_OPTIONS_USE_ACK | Channel.SEND_OPTIONS_SYNCHRONIZED_ACK);
+            XByteBuffer buf = new XByteBuffer(DICTIONARY_DATA.length + dictionary.data.length, false);
+            buf.append(DICTIONARY_DATA, 0, DICTIONARY_DATA.length);
+            buf.append(dictionary.data, 0, dictionary.data.length);
+            cdata.setMessage(buf);
+            try {
+                super.sendMessage(missing.toArray(new Member[0]), cdata, null);
+                dictionaryMembers.addAll(missing);
+            } catch (ChannelException x) {
+                log.warn(sm.getString("gzipInterceptor.dictionary.sendFailed", missing), x);
+                return null;
+            }
+        }
+        return dictionary;
+    }
+
+
+    private static boolean isDictionaryMessage(byte[] data) {
+        return data.length > DICTIONARY_DATA.length &&
+                Arrays.equals(data, 0, DICTIONARY_DATA.length, DICTIONARY_DATA, 0, DICTIONARY_DATA.length);
+    }
+
+
+    private void receiveDictionary(Member sender, byte[] data) {
+        byte[] received = Arrays.copyOfRange(data, DICTIONARY_DATA.length, data.length);
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("gzipInterceptor.dictionary.received", Integer.valueOf(received.length), sender));
+        }
+        receivedDictionaries.put(sender, new Dictionary(received));
+    }
+
+
+    private static boolean isGzip(byte[] data) {
+        return data.length > 1 && data[0] == (byte) GZIPInputStream.GZIP_MAGIC &&
+                data[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+
+    private byte[] deflate(byte[] data, Dictionary dictionary) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater();
+        }
+        try {
+            deflater.setLevel(compressionLevel);
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary.data);
+            }
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] result = new byte[Math.max(DEFAULT_BUFFER_SIZE, data.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+                length += deflater.deflate(result, length, result.length - length);
+            }
+            return Arrays.copyOf(result, length);
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+
+    private byte[] inflate(byte[] data, Member sender) throws IOException {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[Math.max(DEFAULT_BUFFER_SIZE, data.length * 4)];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+                int count = inflater.inflate(result, length, result.length - length);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        Dictionary dictionary = receivedDictionaries.get(sender);
+                        if (dictionary == null || dictionary.id != inflater.getAdler()) {
+                            throw new IOException(sm.getString("gzipInterceptor.dictionary.unknown", sender));
+                        }
+                        inflater.setDictionary(dictionary.data);
+                    } else if (inflater.needsInput()) {
+                        throw new EOFException();
+                    }
+                }
+                length += count;
+            }
+            return Arrays.copyOf(result, length);
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.reset();
+            inflaters.offer(inflater);
+        }
+    }
+
+
+    /**
+     * Trains a dictionary for the deflate codec from sample messages. The dictionary is made up of the segments of the
+     * samples that contain the most sequences of bytes that are common to several samples. The most useful segments are
+     * placed at the end of the dictionary, where they can be referenced most cheaply.
+     *
+     * @param samples The sample messages
+     * @param size    The maximum size of the dictionary
+     *
+     * @return the dictionary, which is empty if the samples have nothing in common
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int size) {
+        size = Math.min(size, MAX_DICTIONARY_SIZE);
+        // The number of samples each sequence of bytes appears in
+        Map<Long,int[]> frequencies = new HashMap<>();
+        for (byte[] sample : samples) {
+            Set<Long> seen = new HashSet<>();
+            for (int i = 0; i + DICTIONARY_DMER_SIZE <= sample.length; i++) {
+                Long dmer = Long.valueOf(getDmer(sample, i));
+                if (seen.add(dmer)) {
+                    frequencies.computeIfAbsent(dmer, k -> new int[1])[0]++;
+                }
+            }
+        }
+
+        PriorityQueue<Segment> segments = new PriorityQueue<>();
+        for (byte[] sample : samples) {
+            for (int start = 0; start < sample.length; start += DICTIONARY_SEGMENT_SIZE) {
+                Segment segment =
+                        new Segment(sample, start, Math.min(start + DICTIONARY_SEGMENT_SIZE, sample.length));
+                segment.score(frequencies);
+                if (segment.score > 0) {
+                    segments.add(segment);
+                }
+            }
+        }
+
+        // Greedily select the best segments. Selecting a segment reduces the score of the other segments that share
+        // its sequences so the scores are updated lazily as the segments are selected.
+        List<Segment> selected = new ArrayList<>();
+        int length = 0;
+        Segment segment;
+        while (length < size && (segment = segments.poll()) != null) {
+            int score = segment.score;
+            segment.score(frequencies);
+            if (segment.score <= 0) {
+                continue;
+            }
+            if (segment.score < score && !segments.isEmpty() && segment.score < segments.peek().score) {
+                segments.add(segment);
+                continue;
+            }
+            for (int i = segment.start; i + DICTIONARY_DMER_SIZE <= segment.end; i++) {
+                int[] frequency = frequencies.get(Long.valueOf(getDmer(segment.sample, i)));
+                frequency[0] = 0;
+            }
+            selected.add(segment);
+            length += segment.end - segment.start;
+        }
+
+        byte[] result = new byte[Math.min(length, size)];
+        int pos = result.length;
+        for (Segment s : selected) {
+            int segmentLength = Math.min(s.end - s.start, pos);
+            pos -= segmentLength;
+            System.arraycopy(s.sample, s.end - segmentLength, result, pos, segmentLength);
+        }
+        return result;
+    }
+
+
+    private static long getDmer(byte[] data, int offset) {
+        long result = 0;
+        for (int i = 0; i < DICTIONARY_DMER_SIZE; i++) {
+            result = (result << 8) | (data[offset + i] & 0xFF);
+        }
+        return result;
+    }
+
+
     public static byte[] compress(byte[] data) throws IOException {
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
         GZIPOutputStream gout = new GZIPOutputStream(bout);
@@ -172,7 +514,9 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
                 Integer.valueOf(getCountCompressedTX()), Integer.valueOf(getCountUncompressedTX()),
                 Integer.valueOf(getCountCompressedRX()), Integer.valueOf(getCountUncompressedRX()),
                 Long.valueOf(getSizeTX()), Long.valueOf(getCompressedSizeTX()), Long.valueOf(getUncompressedSizeTX()),
-                Long.valueOf(getSizeRX()), Long.valueOf(getCompressedSizeRX()), Long.valueOf(getUncompressedSizeRX())));
+                Long.valueOf(getSizeRX()), Long.valueOf(getCompressedSizeRX()), Long.valueOf(getUncompressedSizeRX()),
+                Double.valueOf(getCompressionRatioTX()), Double.valueOf(getCompressionRatioRX()),
+                Long.valueOf(getCompressionTime()), Long.valueOf(getDecompressionTime())));
     }
 
 
@@ -188,6 +532,60 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
     }
 
 
+    @Override
+    public String getCodec() {
+        return deflate ? CODEC_DEFLATE : CODEC_GZIP;
+    }
+
+
+    @Override
+    public void setCodec(String codec) {
+        if (CODEC_DEFLATE.equalsIgnoreCase(codec)) {
+            deflate = true;
+        } else if (CODEC_GZIP.equalsIgnoreCase(codec)) {
+            deflate = false;
+        } else {
+            throw new IllegalArgumentException(sm.getString("gzipInterceptor.invalidCodec", codec));
+        }
+    }
+
+
+    @Override
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+
+    @Override
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+
+    @Override
+    public int getDictionarySize() {
+        return dictionarySize;
+    }
+
+
+    @Override
+    public void setDictionarySize(int dictionarySize) {
+        this.dictionarySize = dictionarySize;
+    }
+
+
+    @Override
+    public int getDictionarySamples() {
+        return dictionarySamples;
+    }
+
+
+    @Override
+    public void setDictionarySamples(int dictionarySamples) {
+        this.dictionarySamples = dictionarySamples;
+    }
+
+
     @Override
     public boolean getStatsEnabled() {
         return statsEnabled;
@@ -278,6 +676,32 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
     }
 
 
+    @Override
+    public double getCompressionRatioTX() {
+        long size = sizeTX.get();
+        return size == 0 ? 1 : (double) (compressedSizeTX.get() + uncompressedSizeTX.get()) / size;
+    }
+
+
+    @Override
+    public double getCompressionRatioRX() {
+        long size = sizeRX.get();
+        return size == 0 ? 1 : (double) (compressedSizeRX.get() + uncompressedSizeRX.get()) / size;
+    }
+
+
+    @Override
+    public long getCompressionTime() {
+        return compressionTime.get() / 1000000;
+    }
+
+
+    @Override
+    public long getDecompressionTime() {
+        return decompressionTime.get() / 1000000;
+    }
+
+
     @Override
     public void reset() {
         count.set(0);
@@ -291,5 +715,54 @@ public class GzipInterceptor extends ChannelInterceptorBase implements GzipInter
         sizeRX.set(0);
         compressedSizeRX.set(0);
         uncompressedSizeRX.set(0);
+        compressionTime.set(0);
+        decompressionTime.set(0);
+    }
+
+
+    private static class Dictionary {
+        private final byte[] data;
+        private final int id;
+
+        Dictionary(byte[] data) {
+            this.data = data;
+            Adler32 adler = new Adler32();
+            adler.update(data);
+            this.id = (int) adler.getValue();
+        }
+    }
+
+
+    private static class Segment implements Comparable<Segment> {
+        private final byte[] sample;
+        private final int start;
+        private final int end;
+        private int score;
+
+        Segment(byte[] sample, int start, int end) {
+            this.sample = sample;
+            this.start = start;
+            this.end = end;
+        }
+
+        void score(Map<Long,int[]> frequencies) {
+            // Only sequences that appear in more than one sample are useful
+            Set<Long> seen = new HashSet<>();
+            score = 0;
+            for (int i = start; i + DICTIONARY_DMER_SIZE <= end; i++) {
+                Long dmer = Long.valueOf(getDmer(sample, i));
+                if (seen.add(dmer)) {
+                    int frequency = frequencies.get(dmer)[0];
+                    if (frequency > 1) {
+                        score += frequency;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Segment o) {
+            return Integer.compare(o.score, score);
+        }
     }
 }
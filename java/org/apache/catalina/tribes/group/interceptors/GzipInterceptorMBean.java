@@ -36,6 +36,62 @@ public interface GzipInterceptorMBean {
      */
     void setCompressionMinSize(int compressionMinSize);
 
+    /**
+     * @return the codec used to compress messages, <code>gzip</code> or <code>deflate</code>
+     */
+    String getCodec();
+
+    /**
+     * Set the codec used to compress messages. Messages compressed with either codec can be received regardless of the
+     * configured codec. If not explicitly configured, <code>gzip</code> is used.
+     *
+     * @param codec <code>gzip</code> to compress each message with a new GZIP stream or <code>deflate</code> to
+     *                  compress each message in the zlib format with reused compressors and, optionally, a dictionary
+     */
+    void setCodec(String codec);
+
+    /**
+     * @return the compression level used by the deflate codec
+     */
+    int getCompressionLevel();
+
+    /**
+     * Set the compression level used by the deflate codec, from 0 (no compression) to 9 (best compression). If not
+     * explicitly configured, a default of 1 (fastest compression) will be used.
+     *
+     * @param compressionLevel The new compression level
+     */
+    void setCompressionLevel(int compressionLevel);
+
+    /**
+     * @return the maximum size of the dictionary trained for the deflate codec
+     */
+    int getDictionarySize();
+
+    /**
+     * Set the maximum size of the dictionary that is trained from the messages sent by this member and used by the
+     * deflate codec. The dictionary is sent to each member before it is used to compress messages for that member. As
+     * the dictionary is built from the bytes of the sampled messages, it may contain fragments of replicated session
+     * data. A value of zero or less means no dictionary is used. Values larger than 32768 are treated as 32768. If not
+     * explicitly configured, a default of zero will be used.
+     *
+     * @param dictionarySize The new maximum dictionary size
+     */
+    void setDictionarySize(int dictionarySize);
+
+    /**
+     * @return the number of messages used to train the dictionary
+     */
+    int getDictionarySamples();
+
+    /**
+     * Set the number of messages sent by this member that are used to train the dictionary. If not explicitly
+     * configured, a default of 100 will be used.
+     *
+     * @param dictionarySamples The new number of messages
+     */
+    void setDictionarySamples(int dictionarySamples);
+
     /**
      * @return {@code true} if the interceptor is configured to collect statistics, otherwise {@code false}
      */
@@ -85,6 +141,27 @@ public interface GzipInterceptorMBean {
 
     long getUncompressedSizeRX();
 
+    /**
+     * @return the ratio of the number of bytes sent after compression to the number of bytes before compression
+     */
+    double getCompressionRatioTX();
+
+    /**
+     * @return the ratio of the number of bytes received before decompression to the number of bytes after
+     *             decompression
+     */
+    double getCompressionRatioRX();
+
+    /**
+     * @return the total time spent compressing messages in milliseconds
+     */
+    long getCompressionTime();
+
+    /**
+     * @return the total time spent decompressing messages in milliseconds
+     */
+    long getDecompressionTime();
+
     void reset();
 
     void report();
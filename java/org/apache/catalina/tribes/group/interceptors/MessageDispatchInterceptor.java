@@ -16,9 +16,16 @@
  */
 package org.apache.catalina.tribes.group.interceptors;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.catalina.tribes.Channel;
@@ -39,6 +46,12 @@ import org.apache.juli.logging.LogFactory;
  * The message dispatcher is a way to enable asynchronous communication through a channel. The dispatcher will look for
  * the <code>Channel.SEND_OPTIONS_ASYNCHRONOUS</code> flag to be set, if it is, it will queue the message for delivery
  * and immediately return to the sender.
+ * <p>
+ * By default all queued messages share a single queue. If <code>maxMemberQueueSize</code> is greater than zero, the
+ * messages are queued per destination instead. The messages for each destination are sent by at most
+ * <code>maxMemberThreads</code> threads at a time, in order if that is one, and the queues of the destinations take
+ * turns to be sent, so that a destination with many queued messages cannot occupy all the threads and delay the
+ * messages for other destinations. A destination whose queue is full is handled as if the shared queue was full.
  */
 public class MessageDispatchInterceptor extends ChannelInterceptorBase implements MessageDispatchInterceptorMBean {
 
@@ -55,6 +68,11 @@ public class MessageDispatchInterceptor extends ChannelInterceptorBase implement
     protected int maxThreads = 10;
     protected int maxSpareThreads = 2;
     protected long keepAliveTime = 5000;
+    protected boolean useVirtualThreads = false;
+    protected long maxMemberQueueSize = 0;
+    protected int maxMemberThreads = 1;
+
+    protected final Map<Destination,DestinationQueue> destinationQueues = new ConcurrentHashMap<>();
 
 
     public MessageDispatchInterceptor() {
@@ -76,6 +94,19 @@ public class MessageDispatchInterceptor extends ChannelInterceptorBase implement
                             Long.toString(maxQueueSize), Long.toString(getCurrentSize())));
                 }
             }
+            if (maxMemberQueueSize > 0) {
+                long queueSize = getDestinationQueueSize(destination);
+                if ((queueSize + msg.getMessage().getLength()) > maxMemberQueueSize) {
+                    if (alwaysSend) {
+                        super.sendMessage(destination, msg, payload);
+                        return;
+                    } else {
+                        throw new ChannelException(sm.getString("messageDispatchInterceptor.memberQueue.full",
+                                Arrays.toString(destination), Long.toString(maxMemberQueueSize),
+                                Long.toString(queueSize)));
+                    }
+                }
+            }
             // add to queue
             if (useDeepClone) {
                 msg = (ChannelMessage) msg.deepclone();
@@ -91,11 +122,34 @@ public class MessageDispatchInterceptor extends ChannelInterceptorBase implement
 
 
     public boolean addToQueue(final ChannelMessage msg, final Member[] destination, final InterceptorPayload payload) {
-        executor.execute(() -> sendAsyncData(msg, destination, payload));
+        if (maxMemberQueueSize > 0) {
+            // Queues are only created and removed while holding the lock for the destination in the map so a message
+            // is never added to a queue that has been removed
+            destinationQueues.compute(new Destination(destination), (k, queue) -> {
+                if (queue == null) {
+                    queue = new DestinationQueue(k);
+                }
+                queue.add(msg, destination, payload);
+                return queue;
+            });
+        } else {
+            executor.execute(() -> sendAsyncData(msg, destination, payload));
+        }
         return true;
     }
 
 
+    /**
+     * @param destination The members the messages are sent to
+     *
+     * @return the total size, in bytes, of the messages queued for the given members
+     */
+    protected long getDestinationQueueSize(Member[] destination) {
+        DestinationQueue queue = destinationQueues.get(new Destination(destination));
+        return queue == null ? 0 : queue.getSize();
+    }
+
+
     public void startQueue() {
         if (run) {
             return;
@@ -104,8 +158,14 @@ public class MessageDispatchInterceptor extends ChannelInterceptorBase implement
         if (getChannel().getName() != null) {
             channelName = "[" + getChannel().getName() + "]";
         }
-        executor = ExecutorFactory.newThreadPool(maxSpareThreads, maxThreads, keepAliveTime, TimeUnit.MILLISECONDS,
-                new TcclThreadFactory("MessageDispatchInterceptor.MessageDispatchThread" + channelName));
+        if (useVirtualThreads) {
+            executor = ExecutorFactory.newVirtualThreadExecutor(
+                    "MessageDispatchInterceptor.MessageDispatchThread" + channelName + "-virt-");
+        } else {
+            executor = ExecutorFactory.newThreadPool(maxSpareThreads, maxThreads, keepAliveTime,
+                    TimeUnit.MILLISECONDS,
+                    new TcclThreadFactory("MessageDispatchInterceptor.MessageDispatchThread" + channelName));
+        }
         run = true;
     }
 
@@ -113,6 +173,7 @@ public class MessageDispatchInterceptor extends ChannelInterceptorBase implement
     public void stopQueue() {
         run = false;
         executor.shutdownNow();
+        destinationQueues.clear();
         setAndGetCurrentSize(0);
     }
 
@@ -191,6 +252,36 @@ public class MessageDispatchInterceptor extends ChannelInterceptorBase implement
         this.maxThreads = maxThreads;
     }
 
+    @Override
+    public boolean getUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    @Override
+    public long getMaxMemberQueueSize() {
+        return maxMemberQueueSize;
+    }
+
+
+    public void setMaxMemberQueueSize(long maxMemberQueueSize) {
+        this.maxMemberQueueSize = maxMemberQueueSize;
+    }
+
+    @Override
+    public int getMaxMemberThreads() {
+        return maxMemberThreads;
+    }
+
+
+    public void setMaxMemberThreads(int maxMemberThreads) {
+        this.maxMemberThreads = maxMemberThreads;
+    }
+
     @Override
     public boolean isAlwaysSend() {
         return alwaysSend;
@@ -233,6 +324,14 @@ public class MessageDispatchInterceptor extends ChannelInterceptorBase implement
     }
 
 
+    @Override
+    public void memberDisappeared(Member member) {
+        // Messages that are still queued for the member are sent, or fail, as the queue is still scheduled
+        destinationQueues.keySet().removeIf(destination -> destination.contains(member));
+        super.memberDisappeared(member);
+    }
+
+
     protected void sendAsyncData(ChannelMessage msg, Member[] destination, InterceptorPayload payload) {
         ErrorHandler handler = null;
         if (payload != null) {
@@ -269,6 +368,113 @@ public class MessageDispatchInterceptor extends ChannelInterceptorBase implement
         }
     }
 
+    /**
+     * The members a message is sent to, used to queue the messages per destination.
+     */
+    protected static final class Destination {
+        private final Member[] members;
+        private final int hashCode;
+
+        public Destination(Member[] members) {
+            this.members = members.clone();
+            this.hashCode = Arrays.hashCode(this.members);
+        }
+
+        public boolean contains(Member member) {
+            for (Member m : members) {
+                if (m.equals(member)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Destination && Arrays.equals(members, ((Destination) obj).members);
+        }
+    }
+
+
+    /**
+     * The messages queued for a destination. The queue is submitted to the executor whenever it has messages to send
+     * and is submitted fewer than <code>maxMemberThreads</code> times, and sends a single message each time it runs.
+     * The queues of all destinations with queued messages therefore take turns in the queue of the executor. A queue
+     * removes itself from the queues of the destinations once it has no messages left to send.
+     */
+    protected class DestinationQueue implements Runnable {
+        private final Destination destination;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicLong size = new AtomicLong(0);
+        private final AtomicInteger scheduled = new AtomicInteger(0);
+
+        public DestinationQueue(Destination destination) {
+            this.destination = destination;
+        }
+
+        public long getSize() {
+            return size.get();
+        }
+
+        public void add(ChannelMessage msg, Member[] destination, InterceptorPayload payload) {
+            final int length = msg.getMessage().getLength();
+            size.addAndGet(length);
+            tasks.add(() -> {
+                try {
+                    sendAsyncData(msg, destination, payload);
+                } finally {
+                    size.addAndGet(-length);
+                }
+            });
+            schedule();
+        }
+
+        private void schedule() {
+            int count;
+            do {
+                count = scheduled.get();
+                if (tasks.isEmpty() || count >= Math.max(1, maxMemberThreads)) {
+                    return;
+                }
+            } while (!scheduled.compareAndSet(count, count + 1));
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The queue has been stopped
+                scheduled.decrementAndGet();
+                if (run) {
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task = tasks.poll();
+                if (task != null) {
+                    task.run();
+                }
+            } finally {
+                scheduled.decrementAndGet();
+                if (run) {
+                    schedule();
+                }
+                destinationQueues.computeIfPresent(destination,
+                        (k, queue) -> (queue == this && isDrained()) ? null : queue);
+            }
+        }
+
+        private boolean isDrained() {
+            return tasks.isEmpty() && scheduled.get() == 0;
+        }
+    }
+
     // ---------------------------------------------- stats of the thread pool
     /**
      * Return the current number of threads that are managed by the pool.
@@ -34,6 +34,12 @@ public interface MessageDispatchInterceptorMBean {
 
     int getMaxThreads();
 
+    boolean getUseVirtualThreads();
+
+    long getMaxMemberQueueSize();
+
+    int getMaxMemberThreads();
+
     // pool stats
     int getPoolSize();
 
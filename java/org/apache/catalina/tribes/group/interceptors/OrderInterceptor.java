@@ -18,7 +18,9 @@ package org.apache.catalina.tribes.group.interceptors;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.catalina.tribes.ChannelException;
@@ -46,9 +48,15 @@ import org.apache.catalina.tribes.util.StringManager;
  * OrderInterceptor.forwardExpired=&lt;boolean&gt; - this flag tells the interceptor what to do when a message has
  * expired or the queue has grown larger than the maxQueue value. true means that the message is sent up the stack to
  * the receiver that will receive and out of order message false means, forget the message and reset the message
- * counter. <b>default=true</b>
+ * counter. <b>default=true</b><br>
+ * OrderInterceptor.windowSize=&lt;window size&gt; - if greater than zero, the messages received from each member are
+ * ordered in a ring buffer of this size that is locked per member, rather than in a list that is locked for all
+ * members. A message is only buffered if it arrives out of order and runs of consecutive messages are delivered in one
+ * pass. If a message arrives more than windowSize messages ahead of the next expected message, or a gap has not been
+ * filled within the expire time, the gap is skipped. The gaps are also checked on every heartbeat. maxQueue is ignored
+ * when a window is used. Must be set before the channel is started. <b>default=0</b>
  */
-public class OrderInterceptor extends ChannelInterceptorBase {
+public class OrderInterceptor extends ChannelInterceptorBase implements OrderInterceptorMBean {
     protected static final StringManager sm = StringManager.getManager(OrderInterceptor.class);
     private final Map<Member,Counter> outcounter = new HashMap<>();
     private final Map<Member,Counter> incounter = new HashMap<>();
@@ -56,6 +64,19 @@ public class OrderInterceptor extends ChannelInterceptorBase {
     private long expire = 3000;
     private boolean forwardExpired = true;
     private int maxQueue = Integer.MAX_VALUE;
+    private int windowSize = 0;
+
+    // Used instead of the counters and the queue if a window is used
+    private final Map<Member,AtomicInteger> sequences = new ConcurrentHashMap<>();
+    private final Map<Member,SequenceWindow> windows = new ConcurrentHashMap<>();
+
+    // Stats, only collected if a window is used
+    private final AtomicLong reorderedCount = new AtomicLong();
+    private final AtomicLong gapCount = new AtomicLong();
+    private final AtomicLong missingCount = new AtomicLong();
+    private final AtomicLong reorderTime = new AtomicLong();
+    private final AtomicLong maxReorderTime = new AtomicLong();
+    private final AtomicInteger maxReorderDepth = new AtomicInteger();
 
     final ReentrantReadWriteLock inLock = new ReentrantReadWriteLock(true);
     final ReentrantReadWriteLock outLock = new ReentrantReadWriteLock(true);
@@ -71,11 +92,15 @@ public class OrderInterceptor extends ChannelInterceptorBase {
         for (Member member : destination) {
             try {
                 int nr = 0;
-                outLock.writeLock().lock();
-                try {
-                    nr = incCounter(member);
-                } finally {
-                    outLock.writeLock().unlock();
+                if (windowSize > 0) {
+                    nr = sequences.computeIfAbsent(member, k -> new AtomicInteger()).incrementAndGet();
+                } else {
+                    outLock.writeLock().lock();
+                    try {
+                        nr = incCounter(member);
+                    } finally {
+                        outLock.writeLock().unlock();
+                    }
                 }
                 // reduce byte copy
                 msg.getMessage().append(nr);
@@ -104,6 +129,10 @@ public class OrderInterceptor extends ChannelInterceptorBase {
         }
         int msgnr = XByteBuffer.toInt(msg.getMessage().getBytesDirect(), msg.getMessage().getLength() - 4);
         msg.getMessage().trim(4);
+        if (windowSize > 0) {
+            windows.computeIfAbsent(msg.getAddress(), k -> new SequenceWindow(windowSize)).receive(msgnr, msg);
+            return;
+        }
         MessageOrder order = new MessageOrder(msgnr, (ChannelMessage) msg.deepclone());
         inLock.writeLock().lock();
         try {
@@ -196,6 +225,11 @@ public class OrderInterceptor extends ChannelInterceptorBase {
 
     @Override
     public void memberDisappeared(Member member) {
+        sequences.remove(member);
+        SequenceWindow window = windows.remove(member);
+        if (window != null) {
+            window.flush();
+        }
         // reset counters - lock free
         incounter.remove(member);
         outcounter.remove(member);
@@ -205,6 +239,17 @@ public class OrderInterceptor extends ChannelInterceptorBase {
         super.memberDisappeared(member);
     }
 
+    @Override
+    public void heartbeat() {
+        if (!windows.isEmpty()) {
+            long now = System.currentTimeMillis();
+            for (SequenceWindow window : windows.values()) {
+                window.expire(now);
+            }
+        }
+        super.heartbeat();
+    }
+
     protected int incCounter(Member mbr) {
         Counter cnt = getOutCounter(mbr);
         return cnt.inc();
@@ -332,28 +377,207 @@ public class OrderInterceptor extends ChannelInterceptorBase {
 
     }
 
+    /**
+     * The messages received from a member that have not been delivered yet because a message that was sent before them
+     * has not been received yet. The messages are held in a ring buffer indexed by message number so that buffering a
+     * message, and delivering the messages once the gap is filled, does not require any allocation or search.
+     */
+    protected class SequenceWindow {
+        private final ChannelMessage[] messages;
+        private final long[] arrivals;
+        private int next = 1;
+        private int buffered = 0;
+
+        public SequenceWindow(int size) {
+            messages = new ChannelMessage[size];
+            arrivals = new long[size];
+        }
+
+        public synchronized void receive(int msgNr, ChannelMessage msg) {
+            long now = System.currentTimeMillis();
+            int offset = msgNr - next;
+            if (offset < 0) {
+                // The gap this message would have filled has already been skipped
+                if (getForwardExpired()) {
+                    deliver(msg);
+                }
+                return;
+            }
+            if (offset == 0) {
+                deliver(msg);
+                next++;
+                drain(now);
+            } else {
+                if (offset >= messages.length) {
+                    // The window is full, skip the gaps until the message fits
+                    skipTo(msgNr - messages.length + 1, now);
+                    offset = msgNr - next;
+                }
+                int index = index(msgNr);
+                if (offset == 0) {
+                    deliver(msg);
+                    next++;
+                    drain(now);
+                } else if (messages[index] == null) {
+                    // The message buffer is reused once this method returns
+                    messages[index] = (ChannelMessage) msg.deepclone();
+                    arrivals[index] = now;
+                    buffered++;
+                    reorderedCount.incrementAndGet();
+                    maxReorderDepth.accumulateAndGet(offset, Math::max);
+                }
+            }
+            expire(now);
+        }
+
+        /**
+         * Skip the gaps that have not been filled within the expire time.
+         *
+         * @param now The current time
+         */
+        public synchronized void expire(long now) {
+            while (buffered > 0) {
+                int first = 1;
+                while (messages[index(next + first)] == null) {
+                    first++;
+                }
+                if (now - arrivals[index(next + first)] <= getExpire()) {
+                    return;
+                }
+                skipTo(next + first, now);
+            }
+        }
+
+        /**
+         * Deliver, or discard, all the buffered messages.
+         */
+        public synchronized void flush() {
+            long now = System.currentTimeMillis();
+            while (buffered > 0) {
+                int first = 1;
+                while (messages[index(next + first)] == null) {
+                    first++;
+                }
+                skipTo(next + first, now);
+            }
+        }
+
+        private void skipTo(int msgNr, long now) {
+            gapCount.incrementAndGet();
+            while (msgNr - next > 0) {
+                int index = index(next);
+                ChannelMessage msg = messages[index];
+                if (msg == null) {
+                    missingCount.incrementAndGet();
+                } else {
+                    take(index, now);
+                    if (getForwardExpired()) {
+                        deliver(msg);
+                    }
+                }
+                next++;
+            }
+            drain(now);
+        }
+
+        private void drain(long now) {
+            while (buffered > 0) {
+                int index = index(next);
+                ChannelMessage msg = messages[index];
+                if (msg == null) {
+                    return;
+                }
+                take(index, now);
+                deliver(msg);
+                next++;
+            }
+        }
+
+        private void take(int index, long now) {
+            long time = now - arrivals[index];
+            reorderTime.addAndGet(time);
+            maxReorderTime.accumulateAndGet(time, Math::max);
+            messages[index] = null;
+            buffered--;
+        }
+
+        private int index(int msgNr) {
+            return Math.floorMod(msgNr, messages.length);
+        }
+
+        private void deliver(ChannelMessage msg) {
+            OrderInterceptor.super.messageReceived(msg);
+        }
+    }
+
+    @Override
     public void setExpire(long expire) {
         this.expire = expire;
     }
 
+    @Override
     public void setForwardExpired(boolean forwardExpired) {
         this.forwardExpired = forwardExpired;
     }
 
+    @Override
     public void setMaxQueue(int maxQueue) {
         this.maxQueue = maxQueue;
     }
 
+    @Override
     public long getExpire() {
         return expire;
     }
 
+    @Override
     public boolean getForwardExpired() {
         return forwardExpired;
     }
 
+    @Override
     public int getMaxQueue() {
         return maxQueue;
     }
 
+    @Override
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    @Override
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public long getReorderedCount() {
+        return reorderedCount.get();
+    }
+
+    @Override
+    public long getGapCount() {
+        return gapCount.get();
+    }
+
+    @Override
+    public long getMissingCount() {
+        return missingCount.get();
+    }
+
+    @Override
+    public long getReorderTime() {
+        return reorderTime.get();
+    }
+
+    @Override
+    public long getMaxReorderTime() {
+        return maxReorderTime.get();
+    }
+
+    @Override
+    public int getMaxReorderDepth() {
+        return maxReorderDepth.get();
+    }
+
 }
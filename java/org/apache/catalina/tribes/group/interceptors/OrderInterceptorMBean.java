@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.group.interceptors;
+
+public interface OrderInterceptorMBean {
+
+    // Config
+    int getOptionFlag();
+
+    long getExpire();
+
+    void setExpire(long expire);
+
+    boolean getForwardExpired();
+
+    void setForwardExpired(boolean forwardExpired);
+
+    int getMaxQueue();
+
+    void setMaxQueue(int maxQueue);
+
+    /**
+     * @return the number of messages per member the window can hold, or zero if no window is used
+     */
+    int getWindowSize();
+
+    /**
+     * Set the number of messages per member the window used to order the received messages can hold. A value of zero
+     * or less means the messages are ordered in a queue instead.
+     *
+     * @param windowSize The new window size
+     */
+    void setWindowSize(int windowSize);
+
+    // Stats, only collected if a window is used
+    /**
+     * @return the number of messages that were received out of order and had to be buffered
+     */
+    long getReorderedCount();
+
+    /**
+     * @return the number of times a gap was skipped because it was not filled within the expire time or the window was
+     *             full
+     */
+    long getGapCount();
+
+    /**
+     * @return the number of messages that were never received because the gap they were expected in was skipped
+     */
+    long getMissingCount();
+
+    /**
+     * @return the total time in milliseconds messages were buffered before they were delivered
+     */
+    long getReorderTime();
+
+    /**
+     * @return the longest time in milliseconds a message was buffered before it was delivered
+     */
+    long getMaxReorderTime();
+
+    /**
+     * @return the largest number of messages a message was received ahead of the next expected message
+     */
+    int getMaxReorderDepth();
+}
@@ -178,6 +178,22 @@ public class ChannelData implements ChannelMessage {
     }
 
     public byte[] getDataPackage(byte[] data, int offset) {
+        offset = getDataPackageHeader(data, offset);
+        System.arraycopy(message.getBytesDirect(), 0, data, offset, message.getLength());
+        return data;
+    }
+
+    /**
+     * Serializes the ChannelData object, up to and including the length of the message but excluding the message
+     * itself, into a byte[] array. This allows the message to be written separately without copying it.
+     *
+     * @param data   The array to write to, which must have at least
+     *                   <code>getDataPackageLength() - getMessage().getLength()</code> bytes after the offset
+     * @param offset The offset in the array
+     *
+     * @return the offset in the array at which the message should start
+     */
+    public int getDataPackageHeader(byte[] data, int offset) {
         byte[] addr = address.getData(false);
         XByteBuffer.toBytes(options, data, offset);
         offset += 4; // options
@@ -193,8 +209,7 @@ public class ChannelData implements ChannelMessage {
         offset += addr.length; // addr data
         XByteBuffer.toBytes(message.getLength(), data, offset);
         offset += 4; // message.length
-        System.arraycopy(message.getBytesDirect(), 0, data, offset, message.getLength());
-        return data;
+        return offset;
     }
 
     /**
@@ -232,8 +247,20 @@ public class ChannelData implements ChannelMessage {
     }
 
     public static ChannelData getDataFromPackage(byte[] b) {
+        return getDataFromPackage(b, 0);
+    }
+
+    /**
+     * Deserializes a ChannelData object from a byte array. The message is copied into a buffer obtained from the
+     * {@link BufferPool}.
+     *
+     * @param b      The array
+     * @param offset The offset of the serialized ChannelData object in the array
+     *
+     * @return ChannelData
+     */
+    public static ChannelData getDataFromPackage(byte[] b, int offset) {
         ChannelData data = new ChannelData(false);
-        int offset = 0;
         data.setOptions(XByteBuffer.toInt(b, offset));
         offset += 4; // options
         data.setTimestamp(XByteBuffer.toLong(b, offset));
@@ -242,18 +269,14 @@ public class ChannelData implements ChannelMessage {
         offset += 4; // uniqueId length
         System.arraycopy(b, offset, data.uniqueId, 0, data.uniqueId.length);
         offset += data.uniqueId.length; // uniqueId data
-        byte[] addr = new byte[XByteBuffer.toInt(b, offset)];
+        int addrlen = XByteBuffer.toInt(b, offset);
         offset += 4; // addr length
-        System.arraycopy(b, offset, addr, 0, addr.length);
-        data.setAddress(MemberImpl.getMember(addr));
-        offset += addr.length; // addr data
+        data.setAddress(MemberImpl.getMember(b, offset, addrlen));
+        offset += addrlen; // addr data
         int xsize = XByteBuffer.toInt(b, offset);
-        // data.message = new XByteBuffer(new byte[xsize],false);
         data.message = BufferPool.getBufferPool().getBuffer(xsize, false);
         offset += 4; // message length
-        System.arraycopy(b, offset, data.message.getBytesDirect(), 0, xsize);
         data.message.append(b, offset, xsize);
-        offset += xsize; // message data
         return data;
     }
 
@@ -127,13 +127,7 @@ public class ObjectReader {
      * @return number of received packages/messages
      */
     public ChannelMessage[] execute() {
-        int pkgCnt = buffer.countPackages();
-        ChannelMessage[] result = new ChannelMessage[pkgCnt];
-        for (int i = 0; i < pkgCnt; i++) {
-            ChannelMessage data = buffer.extractPackage(true);
-            result[i] = data;
-        }
-        return result;
+        return buffer.extractPackages();
     }
 
     public int bufferSize() {
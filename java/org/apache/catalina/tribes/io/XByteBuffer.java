@@ -24,6 +24,8 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.catalina.tribes.util.StringManager;
@@ -341,6 +343,56 @@ public class XByteBuffer implements Serializable {
         return cdata;
     }
 
+    /**
+     * Extracts all the complete packages and removes them from the buffer. Unlike calling
+     * {@link #extractPackage(boolean)} for each package, the buffer is scanned once and compacted once and the message
+     * of each package is copied once, directly into a buffer obtained from the {@link BufferPool}.
+     *
+     * @return the packages, in the order they were received
+     */
+    public ChannelData[] extractPackages() {
+        List<ChannelData> packages = null;
+        int start = 0;
+        int length;
+        while ((length = getPackageLength(start)) > 0) {
+            if (packages == null) {
+                packages = new ArrayList<>();
+            }
+            packages.add(ChannelData.getDataFromPackage(buf, start + START_DATA.length + 4));
+            start += length;
+        }
+        if (start > 0) {
+            bufSize -= start;
+            System.arraycopy(buf, start, buf, 0, bufSize);
+        }
+        return packages == null ? ChannelData.EMPTY_DATA_ARRAY : packages.toArray(ChannelData.EMPTY_DATA_ARRAY);
+    }
+
+    /*
+     * Returns the length of the complete package that starts at the given position in the buffer or -1 if there is no
+     * complete package at that position.
+     */
+    private int getPackageLength(int start) {
+        if ((bufSize - start) < (START_DATA.length + 4) || !startsWith(buf, start, START_DATA)) {
+            return -1;
+        }
+        int size = toInt(buf, start + START_DATA.length);
+        int end = start + START_DATA.length + 4 + size;
+        if (size < 0 || end < 0 || (end + END_DATA.length) > bufSize || !startsWith(buf, end, END_DATA)) {
+            return -1;
+        }
+        return end + END_DATA.length - start;
+    }
+
+    private static boolean startsWith(byte[] src, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (src[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Creates a complete data package
      *
@@ -366,6 +418,26 @@ public class XByteBuffer implements Serializable {
         return data;
     }
 
+    /**
+     * Creates a complete data package as buffers that can be written with a gathering write. The message of the
+     * package is not copied, the second buffer is a view of the message of the given ChannelData object, which must
+     * therefore not be modified until the buffers have been written.
+     *
+     * @param cdata - the message data to be contained within the package
+     *
+     * @return - a full package as three buffers (header and size and ChannelData header, message, footer)
+     */
+    public static ByteBuffer[] createDataPackageBuffers(ChannelData cdata) {
+        int dlength = cdata.getDataPackageLength();
+        XByteBuffer message = cdata.getMessage();
+        byte[] header = new byte[START_DATA.length + 4 + dlength - message.getLength()];
+        System.arraycopy(START_DATA, 0, header, 0, START_DATA.length);
+        toBytes(dlength, header, START_DATA.length);
+        cdata.getDataPackageHeader(header, START_DATA.length + 4);
+        return new ByteBuffer[] { ByteBuffer.wrap(header), ByteBuffer.wrap(message.getBytesDirect(), 0,
+                message.getLength()), ByteBuffer.wrap(END_DATA).asReadOnlyBuffer() };
+    }
+
     public static byte[] createDataPackage(byte[] data, int doff, int dlength, byte[] buffer, int bufoff) {
         if ((buffer.length - bufoff) > getDataPackageLength(dlength)) {
             throw new ArrayIndexOutOfBoundsException(sm.getString("xByteBuffer.unableCreate"));
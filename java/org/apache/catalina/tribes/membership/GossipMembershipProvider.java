@@ -0,0 +1,842 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.membership;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.util.Arrays;
+import org.apache.catalina.tribes.util.StringManager;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+/**
+ * A membership provider that uses a SWIM style gossip protocol over UDP. Rather than every member sending a heartbeat
+ * to every other member, once per protocol period each member pings a single member, chosen in a randomized round
+ * robin order. If the member does not reply within the ping timeout, a number of other members are asked to ping it on
+ * behalf of the prober. If there is still no reply by the end of the protocol period, the member is suspected and, if
+ * the suspicion is not refuted by the member within the suspicion timeout, the member is declared dead. Changes to the
+ * membership are not broadcast but piggybacked on the ping and acknowledgement messages, each change being sent a
+ * number of times that grows with the logarithm of the size of the cluster. The number of messages each member sends
+ * per protocol period is therefore constant and the time to detect a failure does not depend on the size of the
+ * cluster.
+ * <p>
+ * Each member listens for gossip messages on its own UDP socket. New members join by contacting one or more seed
+ * members, which reply with the members they know of.
+ * <p>
+ * The gossip messages are not authenticated so the protocol must only be used on a trusted network. To limit the
+ * effect of packets sent by other hosts, a member only accepts the state of a member from the address that member
+ * advertises, and only accepts state changes of other members and requests to ping a member from the seeds and from
+ * members it already knows. Only members that are already known are pinged on behalf of other members.
+ */
+public class GossipMembershipProvider extends MembershipProviderBase {
+
+    private static final Log log = LogFactory.getLog(GossipMembershipProvider.class);
+    protected static final StringManager sm = StringManager.getManager(GossipMembershipProvider.class);
+
+    /**
+     * The maximum payload of a UDP datagram.
+     */
+    public static final int MAX_PACKET_SIZE = 65507;
+
+    protected static final byte[] HEADER = "TRIBES-G".getBytes(StandardCharsets.ISO_8859_1);
+
+    protected static final int MSG_PING = 1;
+    protected static final int MSG_ACK = 2;
+    protected static final int MSG_PING_REQ = 3;
+    protected static final int MSG_JOIN = 4;
+    protected static final int MSG_LEAVE = 5;
+
+    protected static final int STATE_ALIVE = 0;
+    protected static final int STATE_SUSPECT = 1;
+    protected static final int STATE_DEAD = 2;
+
+    protected InetAddress address;
+    protected int port;
+    protected int autoBind;
+    protected final List<InetSocketAddress> seeds = new ArrayList<>();
+    protected long protocolPeriod;
+    protected long pingTimeout;
+    protected int indirectProbes;
+    protected long suspicionTimeout;
+    protected int retransmitMultiplier;
+    protected int maxPiggyback;
+
+    protected int startLevel = 0;
+    protected volatile DatagramSocket socket;
+    protected ReceiverThread receiver;
+    protected ScheduledFuture<?> protocolTask;
+
+    /*
+     * The state of the protocol. Access is synchronized on this provider.
+     */
+    private final Map<Member,MemberState> states = new HashMap<>();
+    private final Map<Member,Update> updates = new LinkedHashMap<>();
+    private final List<MemberState> probeOrder = new ArrayList<>();
+    private final Map<Long,Forward> forwards = new HashMap<>();
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    private final Random random = new Random();
+    private int probeIndex = 0;
+    private Probe probe;
+    private long sequence = 0;
+    /*
+     * Initialized with the current time so that a member that restarts with the same identity overrides the state
+     * other members still hold for it.
+     */
+    private long incarnation = System.currentTimeMillis();
+
+
+    @Override
+    public void init(Properties properties) throws Exception {
+        String addressStr = properties.getProperty("address");
+        if (addressStr == null) {
+            addressStr = properties.getProperty("tcpListenHost");
+        }
+        address = InetAddress.getByName(addressStr);
+        port = Integer.parseInt(properties.getProperty("port"));
+        autoBind = Integer.parseInt(properties.getProperty("autoBind"));
+        String seedsStr = properties.getProperty("seeds");
+        if (seedsStr != null) {
+            for (String seed : seedsStr.split(",")) {
+                seed = seed.trim();
+                if (seed.isEmpty()) {
+                    continue;
+                }
+                int colon = seed.lastIndexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException(sm.getString("gossipMembershipProvider.invalidSeed", seed));
+                }
+                seeds.add(new InetSocketAddress(seed.substring(0, colon), Integer.parseInt(seed.substring(colon + 1))));
+            }
+        }
+        protocolPeriod = Long.parseLong(properties.getProperty("protocolPeriod"));
+        pingTimeout = Long.parseLong(properties.getProperty("pingTimeout"));
+        indirectProbes = Integer.parseInt(properties.getProperty("indirectProbes"));
+        suspicionTimeout = Long.parseLong(properties.getProperty("suspicionTimeout"));
+        retransmitMultiplier = Integer.parseInt(properties.getProperty("retransmitMultiplier"));
+        maxPiggyback = Integer.parseInt(properties.getProperty("maxPiggyback"));
+        membership = new Membership(service.getLocalMember(true));
+    }
+
+
+    @Override
+    public void start(int level) throws Exception {
+        if (Channel.MBR_RX_SEQ == (level & Channel.MBR_RX_SEQ) && receiver == null) {
+            bind();
+            receiver = new ReceiverThread();
+            receiver.setDaemon(true);
+            receiver.setName("GossipMembership-Receiver[" + service.getChannel().getName() + "]");
+            receiver.start();
+        }
+        if (Channel.MBR_TX_SEQ == (level & Channel.MBR_TX_SEQ) && protocolTask == null) {
+            bind();
+            synchronized (this) {
+                join();
+            }
+            protocolTask = executor.scheduleWithFixedDelay(this::protocolPeriod, protocolPeriod, protocolPeriod,
+                    TimeUnit.MILLISECONDS);
+        }
+        startLevel = (startLevel | level);
+    }
+
+
+    @Override
+    public boolean stop(int level) throws Exception {
+        if (Channel.MBR_TX_SEQ == (level & Channel.MBR_TX_SEQ) && protocolTask != null) {
+            protocolTask.cancel(false);
+            protocolTask = null;
+            synchronized (this) {
+                leave();
+            }
+        }
+        if (Channel.MBR_RX_SEQ == (level & Channel.MBR_RX_SEQ) && receiver != null) {
+            // Closing the socket stops the receiver and any further gossip
+            receiver = null;
+            close();
+        }
+        startLevel = (startLevel & (~level));
+        if (startLevel == 0) {
+            close();
+            synchronized (this) {
+                states.clear();
+                updates.clear();
+                probeOrder.clear();
+                forwards.clear();
+                probe = null;
+            }
+            membership.reset();
+        }
+        return (startLevel == 0);
+    }
+
+
+    /**
+     * @return the port the gossip messages are received on, or -1 if the provider is not started
+     */
+    public int getLocalPort() {
+        DatagramSocket socket = this.socket;
+        if (socket == null) {
+            return -1;
+        }
+        return socket.getLocalPort();
+    }
+
+
+    protected void bind() throws IOException {
+        if (socket != null) {
+            return;
+        }
+        int attempts = Math.max(1, autoBind);
+        for (int i = 0; i < attempts; i++) {
+            try {
+                socket = new DatagramSocket(new InetSocketAddress(address, port + i));
+                if (log.isInfoEnabled()) {
+                    log.info(sm.getString("gossipMembershipProvider.bind", address, Integer.toString(port + i)));
+                }
+                return;
+            } catch (BindException e) {
+                if (i == attempts - 1) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+
+    protected void close() {
+        DatagramSocket socket = this.socket;
+        this.socket = null;
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+
+    // ------------------------------------------------------------------------------ protocol
+
+    /**
+     * Runs once per protocol period. Evaluates the outcome of the previous probe, expires suspected members and probes
+     * the next member.
+     */
+    protected synchronized void protocolPeriod() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (probe != null && !probe.acked) {
+                MemberState target = probe.target;
+                if (target.state == STATE_ALIVE && target.incarnation == probe.incarnation) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(sm.getString("gossipMembershipProvider.suspect", target.member));
+                    }
+                    apply(new Update(STATE_SUSPECT, target.incarnation, target.port, target.data, target.member),
+                            false);
+                }
+            }
+            probe = null;
+
+            Iterator<MemberState> iter = states.values().iterator();
+            while (iter.hasNext()) {
+                MemberState state = iter.next();
+                if (state.state == STATE_SUSPECT && now - state.stateTime > suspicionTimeout) {
+                    if (log.isInfoEnabled()) {
+                        log.info(sm.getString("gossipMembershipProvider.dead", state.member));
+                    }
+                    markDead(state, state.incarnation, now);
+                    queue(new Update(STATE_DEAD, state.incarnation, state.port, state.data, state.member));
+                } else if (state.state == STATE_DEAD && now - state.stateTime > 10 * suspicionTimeout) {
+                    // Forget the member once the news of its death has been disseminated
+                    iter.remove();
+                    probeOrder.remove(state);
+                }
+            }
+            forwards.values().removeIf(forward -> now - forward.time > protocolPeriod);
+
+            MemberState target = nextProbeTarget();
+            if (target == null) {
+                // No other members known, keep trying the seeds
+                join();
+                return;
+            }
+            Probe probe = new Probe(target, nextSequence());
+            this.probe = probe;
+            send(target.getAddress(), MSG_PING, probe.sequence, null, false);
+            executor.schedule(() -> indirectProbe(probe), pingTimeout, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn(sm.getString("gossipMembershipProvider.protocolPeriod.failed"), e);
+        }
+    }
+
+
+    protected synchronized void indirectProbe(Probe probe) {
+        if (this.probe != probe || probe.acked || socket == null) {
+            return;
+        }
+        List<MemberState> candidates = new ArrayList<>();
+        for (MemberState state : states.values()) {
+            if (state.state == STATE_ALIVE && state != probe.target) {
+                candidates.add(state);
+            }
+        }
+        Collections.shuffle(candidates, random);
+        Update target = new Update(STATE_ALIVE, probe.target.incarnation, probe.target.port, probe.target.data,
+                probe.target.member);
+        for (int i = 0; i < indirectProbes && i < candidates.size(); i++) {
+            try {
+                send(candidates.get(i).getAddress(), MSG_PING_REQ, probe.sequence, target, false);
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("gossipMembershipProvider.send.failed", candidates.get(i).member), e);
+                }
+            }
+        }
+    }
+
+
+    private MemberState nextProbeTarget() {
+        for (int i = 0; i <= probeOrder.size(); i++) {
+            if (probeIndex >= probeOrder.size()) {
+                Collections.shuffle(probeOrder, random);
+                probeIndex = 0;
+            }
+            if (probeOrder.isEmpty()) {
+                return null;
+            }
+            MemberState state = probeOrder.get(probeIndex++);
+            if (state.state != STATE_DEAD) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+
+    private void join() throws IOException {
+        for (InetSocketAddress seed : seeds) {
+            if (seed.getPort() == getLocalPort() && (seed.getAddress() == null ||
+                    seed.getAddress().equals(address) || seed.getAddress().isLoopbackAddress() &&
+                    address.isLoopbackAddress())) {
+                continue;
+            }
+            try {
+                send(seed, MSG_JOIN, nextSequence(), null, false);
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("gossipMembershipProvider.send.failed", seed), e);
+                }
+            }
+        }
+    }
+
+
+    private void leave() {
+        if (socket == null) {
+            return;
+        }
+        for (MemberState state : states.values()) {
+            if (state.state != STATE_DEAD) {
+                try {
+                    send(state.getAddress(), MSG_LEAVE, nextSequence(), null, false);
+                } catch (IOException e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(sm.getString("gossipMembershipProvider.send.failed", state.member), e);
+                    }
+                }
+            }
+        }
+    }
+
+
+    protected void messageReceived(byte[] data, int offset, int length, InetSocketAddress source) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(data, offset, length);
+        for (byte b : HEADER) {
+            if (buf.get() != b) {
+                throw new IOException(sm.getString("gossipMembershipProvider.invalidMessage"));
+            }
+        }
+        int type = buf.get();
+        long seq = buf.getLong();
+        Update sender = readUpdate(buf);
+        Update target = null;
+        if (type == MSG_PING_REQ) {
+            target = readUpdate(buf);
+        }
+        int count = buf.getInt();
+        List<Update> received = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            received.add(readUpdate(buf));
+        }
+
+        synchronized (this) {
+            if (socket == null) {
+                return;
+            }
+            // Must be determined before the sender's own update is applied
+            boolean trusted = isTrusted(source);
+            if (type == MSG_LEAVE) {
+                MemberState state = states.get(sender.member);
+                if (state != null && state.state != STATE_DEAD && state.isAt(source)) {
+                    if (log.isInfoEnabled()) {
+                        log.info(sm.getString("gossipMembershipProvider.leave", sender.member));
+                    }
+                    apply(new Update(STATE_DEAD, sender.incarnation, sender.port, sender.data, sender.member), false);
+                }
+                return;
+            }
+            if (sender.isAt(source)) {
+                apply(sender, true);
+            }
+            if (trusted) {
+                for (Update update : received) {
+                    apply(update, false);
+                }
+            } else if (!received.isEmpty() && log.isDebugEnabled()) {
+                log.debug(sm.getString("gossipMembershipProvider.untrusted", source));
+            }
+            switch (type) {
+                case MSG_PING:
+                    send(source, MSG_ACK, seq, null, false);
+                    break;
+                case MSG_JOIN:
+                    send(source, MSG_ACK, seq, null, true);
+                    break;
+                case MSG_ACK:
+                    if (probe != null && probe.sequence == seq) {
+                        probe.acked = true;
+                    } else {
+                        Forward forward = forwards.remove(Long.valueOf(seq));
+                        if (forward != null) {
+                            send(forward.origin, MSG_ACK, forward.sequence, null, false);
+                        }
+                    }
+                    break;
+                case MSG_PING_REQ:
+                    // Only ping known members, at the address this member knows them by
+                    MemberState targetState = states.get(target.member);
+                    if (!trusted || targetState == null || targetState.state == STATE_DEAD) {
+                        if (log.isDebugEnabled()) {
+                            log.debug(sm.getString("gossipMembershipProvider.pingReqIgnored", source,
+                                    target.member));
+                        }
+                        break;
+                    }
+                    long forwardSeq = nextSequence();
+                    forwards.put(Long.valueOf(forwardSeq), new Forward(source, seq));
+                    send(targetState.getAddress(), MSG_PING, forwardSeq, null, false);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+
+    /*
+     * Is the source of a message one of the seeds or a member that is known to be alive? Must be called while holding
+     * the lock on this provider.
+     */
+    private boolean isTrusted(InetSocketAddress source) {
+        if (seeds.contains(source)) {
+            return true;
+        }
+        for (MemberState state : states.values()) {
+            if (state.state != STATE_DEAD && state.isAt(source)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static boolean isAt(Member member, int port, InetSocketAddress address) {
+        return port == address.getPort() && Arrays.equals(member.getHost(), address.getAddress().getAddress());
+    }
+
+
+    /**
+     * Apply an update to the state of a member.
+     *
+     * @param update The update
+     * @param direct <code>true</code> if the update was received from the member itself
+     */
+    private void apply(Update update, boolean direct) {
+        long now = System.currentTimeMillis();
+        if (update.member.equals(service.getLocalMember(false))) {
+            if (update.state != STATE_ALIVE && update.incarnation >= incarnation) {
+                // Refute the suspicion
+                incarnation = update.incarnation + 1;
+                queue(localUpdate());
+            }
+            return;
+        }
+        MemberState state = states.get(update.member);
+        switch (update.state) {
+            case STATE_ALIVE:
+                if (state == null) {
+                    state = new MemberState(update, now);
+                    states.put(update.member, state);
+                    probeOrder.add(random.nextInt(probeOrder.size() + 1), state);
+                    queue(update);
+                    memberAdded(state.member);
+                } else if (update.incarnation > state.incarnation) {
+                    boolean wasDead = state.state == STATE_DEAD;
+                    state.update(update, STATE_ALIVE, now);
+                    queue(update);
+                    if (wasDead) {
+                        memberAdded(state.member);
+                    } else {
+                        membership.memberAlive(state.member);
+                    }
+                } else if (direct && update.incarnation == state.incarnation && state.state == STATE_ALIVE) {
+                    // Pick up changes to the alive time and the payload
+                    state.member = update.member;
+                    state.data = update.data;
+                    membership.memberAlive(update.member);
+                }
+                break;
+            case STATE_SUSPECT:
+                if (state == null || state.state == STATE_DEAD) {
+                    break;
+                }
+                if (update.incarnation > state.incarnation ||
+                        (update.incarnation == state.incarnation && state.state == STATE_ALIVE)) {
+                    state.incarnation = update.incarnation;
+                    state.state = STATE_SUSPECT;
+                    state.stateTime = now;
+                    queue(update);
+                }
+                break;
+            case STATE_DEAD:
+                if (state == null || state.state == STATE_DEAD || update.incarnation < state.incarnation) {
+                    break;
+                }
+                markDead(state, update.incarnation, now);
+                queue(update);
+                break;
+            default:
+                break;
+        }
+    }
+
+
+    private void markDead(MemberState state, long incarnation, long now) {
+        state.incarnation = incarnation;
+        state.state = STATE_DEAD;
+        state.stateTime = now;
+        memberDisappeared(state.member);
+    }
+
+
+    private void queue(Update update) {
+        update.transmissions = 0;
+        updates.remove(update.member);
+        updates.put(update.member, update);
+    }
+
+
+    private Update localUpdate() {
+        Member local = service.getLocalMember(true);
+        return new Update(STATE_ALIVE, incarnation, getLocalPort(), local.getData(true, false), local);
+    }
+
+
+    private long nextSequence() {
+        return ++sequence;
+    }
+
+
+    private void send(InetSocketAddress destination, int type, long seq, Update target, boolean full)
+            throws IOException {
+        DatagramSocket socket = this.socket;
+        if (socket == null) {
+            return;
+        }
+        ByteBuffer buf = sendBuffer;
+        buf.clear();
+        buf.put(HEADER);
+        buf.put((byte) type);
+        buf.putLong(seq);
+        writeUpdate(buf, localUpdate());
+        if (target != null) {
+            writeUpdate(buf, target);
+        }
+        int countPosition = buf.position();
+        buf.putInt(0);
+        int count = 0;
+        if (type != MSG_LEAVE) {
+            count += piggyback(buf);
+            if (full) {
+                // Tell a new member about all the members
+                for (MemberState state : states.values()) {
+                    if (state.state == STATE_DEAD) {
+                        continue;
+                    }
+                    Update update = new Update(state.state, state.incarnation, state.port, state.data, state.member);
+                    if (buf.remaining() < update.length()) {
+                        break;
+                    }
+                    writeUpdate(buf, update);
+                    count++;
+                }
+            }
+        }
+        buf.putInt(countPosition, count);
+        socket.send(new DatagramPacket(buf.array(), 0, buf.position(), destination));
+    }
+
+
+    /*
+     * Add the updates that have been sent the fewest times and remove the updates that have been sent often enough
+     * to have reached every member with high probability.
+     */
+    private int piggyback(ByteBuffer buf) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        int limit = retransmitMultiplier * (32 - Integer.numberOfLeadingZeros(states.size() + 1));
+        List<Update> candidates = new ArrayList<>(updates.values());
+        candidates.sort((u1, u2) -> Integer.compare(u1.transmissions, u2.transmissions));
+        int count = 0;
+        for (Update update : candidates) {
+            if (count >= maxPiggyback || buf.remaining() < update.length()) {
+                break;
+            }
+            writeUpdate(buf, update);
+            count++;
+            if (++update.transmissions >= limit) {
+                updates.remove(update.member);
+            }
+        }
+        return count;
+    }
+
+
+    private static void writeUpdate(ByteBuffer buf, Update update) {
+        buf.put((byte) update.state);
+        buf.putLong(update.incarnation);
+        buf.putInt(update.port);
+        buf.putInt(update.data.length);
+        buf.put(update.data);
+    }
+
+
+    private static Update readUpdate(ByteBuffer buf) throws IOException {
+        try {
+            int state = buf.get();
+            long incarnation = buf.getLong();
+            int port = buf.getInt();
+            int length = buf.getInt();
+            if (length < 0 || length > buf.remaining()) {
+                throw new IOException(sm.getString("gossipMembershipProvider.invalidMessage"));
+            }
+            byte[] data = new byte[length];
+            buf.get(data);
+            return new Update(state, incarnation, port, data, MemberImpl.getMember(data));
+        } catch (BufferUnderflowException e) {
+            throw new IOException(sm.getString("gossipMembershipProvider.invalidMessage"), e);
+        }
+    }
+
+
+    // ------------------------------------------------------------------------------ notification
+
+    protected void memberAdded(Member member) {
+        if (membership.memberAlive(member)) {
+            if (log.isInfoEnabled()) {
+                log.info(sm.getString("gossipMembershipProvider.memberAdd", member));
+            }
+            executor.execute(() -> {
+                Thread currentThread = Thread.currentThread();
+                String name = currentThread.getName();
+                try {
+                    currentThread.setName("GossipMembership-memberAdded");
+                    membershipListener.memberAdded(member);
+                } finally {
+                    currentThread.setName(name);
+                }
+            });
+        }
+    }
+
+
+    protected void memberDisappeared(Member member) {
+        membership.removeMember(member);
+        executor.execute(() -> {
+            Thread currentThread = Thread.currentThread();
+            String name = currentThread.getName();
+            try {
+                currentThread.setName("GossipMembership-memberDisappeared");
+                membershipListener.memberDisappeared(member);
+            } finally {
+                currentThread.setName(name);
+            }
+        });
+    }
+
+
+    // ------------------------------------------------------------------------------ inner classes
+
+    /**
+     * A change to the state of a member, as sent between the members.
+     */
+    protected static class Update {
+        private final int state;
+        private final long incarnation;
+        private final int port;
+        private final byte[] data;
+        private final Member member;
+        private int transmissions = 0;
+
+        public Update(int state, long incarnation, int port, byte[] data, Member member) {
+            this.state = state;
+            this.incarnation = incarnation;
+            this.port = port;
+            this.data = data;
+            this.member = member;
+        }
+
+        public int length() {
+            return 1 + 8 + 4 + 4 + data.length;
+        }
+
+        public boolean isAt(InetSocketAddress address) {
+            return GossipMembershipProvider.isAt(member, port, address);
+        }
+    }
+
+
+    /**
+     * The local view of the state of a member.
+     */
+    protected static class MemberState {
+        private Member member;
+        private byte[] data;
+        private int port;
+        private long incarnation;
+        private int state;
+        private long stateTime;
+
+        public MemberState(Update update, long now) {
+            update(update, update.state, now);
+        }
+
+        public void update(Update update, int state, long now) {
+            this.member = update.member;
+            this.data = update.data;
+            this.port = update.port;
+            this.incarnation = update.incarnation;
+            this.state = state;
+            this.stateTime = now;
+        }
+
+        public InetSocketAddress getAddress() throws IOException {
+            return new InetSocketAddress(InetAddress.getByAddress(member.getHost()), port);
+        }
+
+        public boolean isAt(InetSocketAddress address) {
+            return GossipMembershipProvider.isAt(member, port, address);
+        }
+    }
+
+
+    /**
+     * The member being probed in the current protocol period.
+     */
+    protected static class Probe {
+        private final MemberState target;
+        private final long incarnation;
+        private final long sequence;
+        private boolean acked = false;
+
+        public Probe(MemberState target, long sequence) {
+            this.target = target;
+            this.incarnation = target.incarnation;
+            this.sequence = sequence;
+        }
+    }
+
+
+    /**
+     * A ping sent on behalf of another member, whose acknowledgement has to be forwarded to that member.
+     */
+    protected static class Forward {
+        private final InetSocketAddress origin;
+        private final long sequence;
+        private final long time = System.currentTimeMillis();
+
+        public Forward(InetSocketAddress origin, long sequence) {
+            this.origin = origin;
+            this.sequence = sequence;
+        }
+    }
+
+
+    protected class ReceiverThread extends Thread {
+        @Override
+        public void run() {
+            byte[] buf = new byte[MAX_PACKET_SIZE];
+            while (true) {
+                DatagramSocket socket = GossipMembershipProvider.this.socket;
+                if (socket == null) {
+                    return;
+                }
+                DatagramPacket packet = new DatagramPacket(buf, buf.length);
+                try {
+                    socket.receive(packet);
+                } catch (SocketException e) {
+                    // Socket closed
+                    return;
+                } catch (IOException e) {
+                    log.warn(sm.getString("gossipMembershipProvider.receive.failed"), e);
+                    continue;
+                }
+                try {
+                    messageReceived(packet.getData(), packet.getOffset(), packet.getLength(),
+                            (InetSocketAddress) packet.getSocketAddress());
+                } catch (Exception e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(sm.getString("gossipMembershipProvider.invalidMessageFrom",
+                                packet.getSocketAddress(), Arrays.toString(buf, 0, Math.min(packet.getLength(), 32))),
+                                e);
+                    }
+                }
+            }
+        }
+    }
+}
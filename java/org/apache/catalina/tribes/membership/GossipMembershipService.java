@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.membership;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.management.ObjectName;
+
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.MembershipProvider;
+import org.apache.catalina.tribes.jmx.JmxRegistry;
+import org.apache.catalina.tribes.util.StringManager;
+import org.apache.catalina.tribes.util.UUIDGenerator;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+/**
+ * A membership service that discovers and monitors the members using the SWIM gossip protocol implemented by
+ * {@link GossipMembershipProvider}. Unlike {@link McastService}, it does not require multicast and the load it places
+ * on each member does not grow with the size of the cluster.
+ */
+public class GossipMembershipService extends MembershipServiceBase implements GossipMembershipServiceMBean {
+
+    private static final Log log = LogFactory.getLog(GossipMembershipService.class);
+    protected static final StringManager sm = StringManager.getManager(Constants.Package);
+
+    private MemberImpl localMember;
+    private GossipMembershipProvider provider;
+    private byte[] payload;
+    private byte[] domain;
+
+    /**
+     * the ObjectName of this MembershipService.
+     */
+    private ObjectName oname = null;
+
+    public GossipMembershipService() {
+        // default values
+        setDefaults(this.properties);
+    }
+
+    @Override
+    public void start(int level) throws Exception {
+        if (provider != null) {
+            provider.start(level);
+            return;
+        }
+        if (localMember == null) {
+            throw new IllegalStateException(sm.getString("gossipMembershipService.noLocalMember"));
+        }
+        localMember.setServiceStartTime(System.currentTimeMillis());
+        localMember.setMemberAliveTime(100);
+        // build membership provider
+        provider = buildMembershipProvider();
+        provider.start(level);
+        JmxRegistry jmxRegistry = JmxRegistry.getRegistry(channel);
+        if (jmxRegistry != null) {
+            this.oname = jmxRegistry.registerJmx(",component=Membership", this);
+        }
+    }
+
+    protected GossipMembershipProvider buildMembershipProvider() throws Exception {
+        GossipMembershipProvider provider = new GossipMembershipProvider();
+        provider.setMembershipListener(this);
+        provider.setMembershipService(this);
+        provider.init(properties);
+        return provider;
+    }
+
+    @Override
+    public void stop(int level) {
+        try {
+            if (provider != null && provider.stop(level)) {
+                if (oname != null) {
+                    JmxRegistry.getRegistry(channel).unregisterJmx(oname);
+                    oname = null;
+                }
+                provider = null;
+            }
+        } catch (Exception e) {
+            log.error(sm.getString("gossipMembershipService.stopFail", Integer.valueOf(level)), e);
+        }
+    }
+
+    @Override
+    public Member getLocalMember(boolean incAliveTime) {
+        if (incAliveTime && localMember != null) {
+            localMember.setMemberAliveTime(System.currentTimeMillis() - localMember.getServiceStartTime());
+        }
+        return localMember;
+    }
+
+    @Override
+    public void setLocalMemberProperties(String listenHost, int listenPort, int securePort, int udpPort) {
+        properties.setProperty("tcpListenHost", listenHost);
+        properties.setProperty("tcpListenPort", String.valueOf(listenPort));
+        try {
+            if (localMember != null) {
+                localMember.setHostname(listenHost);
+                localMember.setPort(listenPort);
+            } else {
+                localMember = new MemberImpl(listenHost, listenPort, 0);
+                localMember.setUniqueId(UUIDGenerator.randomUUID(true));
+                localMember.setPayload(payload);
+                localMember.setDomain(domain);
+                localMember.setLocal(true);
+            }
+            localMember.setSecurePort(securePort);
+            localMember.setUdpPort(udpPort);
+            localMember.getData(true, true);
+        } catch (IOException x) {
+            throw new IllegalArgumentException(x);
+        }
+    }
+
+    @Override
+    public void setPayload(byte[] payload) {
+        // The new payload is sent to the other members with the next gossip messages
+        this.payload = payload;
+        if (localMember != null) {
+            localMember.setPayload(payload);
+        }
+    }
+
+    @Override
+    public void setDomain(byte[] domain) {
+        this.domain = domain;
+        if (localMember != null) {
+            localMember.setDomain(domain);
+        }
+    }
+
+    @Override
+    public MembershipProvider getMembershipProvider() {
+        return provider;
+    }
+
+    @Override
+    public int getLocalPort() {
+        GossipMembershipProvider provider = this.provider;
+        if (provider == null) {
+            return -1;
+        }
+        return provider.getLocalPort();
+    }
+
+    @Override
+    public String getAddress() {
+        return properties.getProperty("address");
+    }
+
+    public void setAddress(String address) {
+        properties.setProperty("address", address);
+    }
+
+    @Override
+    public int getPort() {
+        return Integer.parseInt(properties.getProperty("port"));
+    }
+
+    public void setPort(int port) {
+        properties.setProperty("port", String.valueOf(port));
+    }
+
+    @Override
+    public int getAutoBind() {
+        return Integer.parseInt(properties.getProperty("autoBind"));
+    }
+
+    public void setAutoBind(int autoBind) {
+        properties.setProperty("autoBind", String.valueOf(autoBind));
+    }
+
+    @Override
+    public String getSeeds() {
+        return properties.getProperty("seeds");
+    }
+
+    public void setSeeds(String seeds) {
+        properties.setProperty("seeds", seeds);
+    }
+
+    @Override
+    public long getProtocolPeriod() {
+        return Long.parseLong(properties.getProperty("protocolPeriod"));
+    }
+
+    public void setProtocolPeriod(long protocolPeriod) {
+        properties.setProperty("protocolPeriod", String.valueOf(protocolPeriod));
+    }
+
+    @Override
+    public long getPingTimeout() {
+        return Long.parseLong(properties.getProperty("pingTimeout"));
+    }
+
+    public void setPingTimeout(long pingTimeout) {
+        properties.setProperty("pingTimeout", String.valueOf(pingTimeout));
+    }
+
+    @Override
+    public int getIndirectProbes() {
+        return Integer.parseInt(properties.getProperty("indirectProbes"));
+    }
+
+    public void setIndirectProbes(int indirectProbes) {
+        properties.setProperty("indirectProbes", String.valueOf(indirectProbes));
+    }
+
+    @Override
+    public long getSuspicionTimeout() {
+        return Long.parseLong(properties.getProperty("suspicionTimeout"));
+    }
+
+    public void setSuspicionTimeout(long suspicionTimeout) {
+        properties.setProperty("suspicionTimeout", String.valueOf(suspicionTimeout));
+    }
+
+    @Override
+    public int getRetransmitMultiplier() {
+        return Integer.parseInt(properties.getProperty("retransmitMultiplier"));
+    }
+
+    public void setRetransmitMultiplier(int retransmitMultiplier) {
+        properties.setProperty("retransmitMultiplier", String.valueOf(retransmitMultiplier));
+    }
+
+    @Override
+    public int getMaxPiggyback() {
+        return Integer.parseInt(properties.getProperty("maxPiggyback"));
+    }
+
+    public void setMaxPiggyback(int maxPiggyback) {
+        properties.setProperty("maxPiggyback", String.valueOf(maxPiggyback));
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        setDefaults(properties);
+        this.properties = properties;
+    }
+
+    protected void setDefaults(Properties properties) {
+        // default values
+        if (properties.getProperty("port") == null) {
+            properties.setProperty("port", "45565");
+        }
+        if (properties.getProperty("autoBind") == null) {
+            properties.setProperty("autoBind", "100");
+        }
+        if (properties.getProperty("protocolPeriod") == null) {
+            properties.setProperty("protocolPeriod", "1000");
+        }
+        if (properties.getProperty("pingTimeout") == null) {
+            properties.setProperty("pingTimeout", "300");
+        }
+        if (properties.getProperty("indirectProbes") == null) {
+            properties.setProperty("indirectProbes", "3");
+        }
+        if (properties.getProperty("suspicionTimeout") == null) {
+            properties.setProperty("suspicionTimeout", "5000");
+        }
+        if (properties.getProperty("retransmitMultiplier") == null) {
+            properties.setProperty("retransmitMultiplier", "3");
+        }
+        if (properties.getProperty("maxPiggyback") == null) {
+            properties.setProperty("maxPiggyback", "16");
+        }
+    }
+}
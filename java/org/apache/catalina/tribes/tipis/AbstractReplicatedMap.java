@@ -31,6 +31,9 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
 
 import org.apache.catalina.tribes.Channel;
 import org.apache.catalina.tribes.ChannelException;
@@ -43,6 +46,7 @@ import org.apache.catalina.tribes.group.Response;
 import org.apache.catalina.tribes.group.RpcCallback;
 import org.apache.catalina.tribes.group.RpcChannel;
 import org.apache.catalina.tribes.io.XByteBuffer;
+import org.apache.catalina.tribes.jmx.JmxRegistry;
 import org.apache.catalina.tribes.util.Arrays;
 import org.apache.catalina.tribes.util.StringManager;
 import org.apache.juli.logging.Log;
@@ -144,6 +148,23 @@ public abstract class AbstractReplicatedMap<K, V>
      */
     private transient volatile State state = State.NEW;
 
+    /**
+     * The cache of the values of the entries this map is a proxy for or <code>null</code> if reads make the local map
+     * the primary of the entry
+     */
+    protected transient volatile NearCache nearCache;
+
+    /**
+     * The ObjectName of the near cache
+     */
+    private transient ObjectName nearCacheOname;
+
+    /**
+     * The clock that orders the versions of the entries. It is advanced past every version received so that a change
+     * always has a later version than the changes it replaces, whichever member makes it.
+     */
+    private final transient AtomicLong versionClock = new AtomicLong();
+
     // ------------------------------------------------------------------------------
     // map owner interface
     // ------------------------------------------------------------------------------
@@ -362,6 +383,7 @@ public abstract class AbstractReplicatedMap<K, V>
 
     public void breakdown() {
         this.state = State.DESTROYED;
+        setNearCacheSize(0);
         if (this.rpcChannel != null) {
             this.rpcChannel.breakdown();
         }
@@ -486,17 +508,32 @@ public abstract class AbstractReplicatedMap<K, V>
                 msg = new MapMessage(mapContextName, getReplicateMessageType(), false, (Serializable) entry.getKey(),
                         (Serializable) entry.getValue(), null, entry.getPrimary(), entry.getBackupNodes());
             }
+            boolean changed = msg != null;
             if (msg == null) {
                 // construct a access message
                 msg = new MapMessage(mapContextName, MapMessage.MSG_ACCESS, false, (Serializable) entry.getKey(), null,
                         null, entry.getPrimary(), entry.getBackupNodes());
+            } else {
+                entry.setVersion(nextVersion());
             }
+            msg.setVersion(entry.getVersion());
             try {
                 if (channel != null && entry.getBackupNodes() != null && entry.getBackupNodes().length > 0) {
                     if (rentry != null) {
                         rentry.setLastTimeReplicated(System.currentTimeMillis());
                     }
                     channel.send(entry.getBackupNodes(), msg, channelSendOptions);
+                    if (changed && nearCache != null) {
+                        // The proxies may have cached the previous value
+                        Member[] proxies = getMapMembersExcl(entry.getBackupNodes());
+                        if (proxies.length > 0) {
+                            msg = new MapMessage(mapContextName, MapMessage.MSG_PROXY, false,
+                                    (Serializable) entry.getKey(), null, null, entry.getPrimary(),
+                                    entry.getBackupNodes());
+                            msg.setVersion(entry.getVersion());
+                            channel.send(proxies, msg, channelSendOptions);
+                        }
+                    }
                 }
             } catch (ChannelException x) {
                 log.error(sm.getString("abstractReplicatedMap.unable.replicate"), x);
@@ -573,6 +610,7 @@ public abstract class AbstractReplicatedMap<K, V>
                 return null;
             }
             mapmsg.setValue((Serializable) entry.getValue());
+            mapmsg.setVersion(entry.getVersion());
             return mapmsg;
         }
 
@@ -588,6 +626,7 @@ public abstract class AbstractReplicatedMap<K, V>
                                 new MapMessage(mapContextName, copy ? MapMessage.MSG_COPY : MapMessage.MSG_PROXY, false,
                                         (Serializable) entry.getKey(), copy ? (Serializable) entry.getValue() : null,
                                         null, entry.getPrimary(), entry.getBackupNodes());
+                        me.setVersion(entry.getVersion());
                         list.add(me);
                     }
                 }
@@ -663,6 +702,32 @@ public abstract class AbstractReplicatedMap<K, V>
         if (log.isTraceEnabled()) {
             log.trace("Map message received from:" + sender.getName() + " msg:" + mapmsg);
         }
+        if (mapmsg.getMsgType() == MapMessage.MSG_BATCH) {
+            // The value holds the messages, in the order they were created
+            if (mapmsg.getValue() instanceof MapMessage[]) {
+                for (MapMessage batched : (MapMessage[]) mapmsg.getValue()) {
+                    messageReceived(batched, sender);
+                }
+            }
+            return;
+        }
+        if (mapmsg.getVersion() > 0) {
+            observeVersion(mapmsg.getVersion());
+        }
+        NearCache nearCache = this.nearCache;
+        if (nearCache != null && mapmsg.getKey() != null) {
+            switch (mapmsg.getMsgType()) {
+                case MapMessage.MSG_BACKUP:
+                case MapMessage.MSG_COPY:
+                case MapMessage.MSG_PROXY:
+                case MapMessage.MSG_REMOVE:
+                    nearCache.invalidate(mapmsg.getKey());
+                    break;
+                default:
+                    break;
+            }
+        }
+
         if (mapmsg.getMsgType() == MapMessage.MSG_START) {
             mapMemberAdded(mapmsg.getPrimary());
         }
@@ -685,6 +750,7 @@ public abstract class AbstractReplicatedMap<K, V>
             entry.setCopy(false);
             entry.setBackupNodes(mapmsg.getBackupNodes());
             entry.setPrimary(mapmsg.getPrimary());
+            entry.updateVersion(mapmsg.getVersion());
         }
 
         if (mapmsg.getMsgType() == MapMessage.MSG_REMOVE) {
@@ -700,6 +766,7 @@ public abstract class AbstractReplicatedMap<K, V>
                 entry.setCopy(mapmsg.getMsgType() == MapMessage.MSG_COPY);
                 entry.setBackupNodes(mapmsg.getBackupNodes());
                 entry.setPrimary(mapmsg.getPrimary());
+                entry.updateVersion(mapmsg.getVersion());
                 if (mapmsg.getValue() instanceof ReplicatedMapEntry) {
                     ((ReplicatedMapEntry) mapmsg.getValue()).setOwner(getMapOwner());
                 }
@@ -709,6 +776,7 @@ public abstract class AbstractReplicatedMap<K, V>
                 entry.setCopy(mapmsg.getMsgType() == MapMessage.MSG_COPY);
                 entry.setBackupNodes(mapmsg.getBackupNodes());
                 entry.setPrimary(mapmsg.getPrimary());
+                entry.updateVersion(mapmsg.getVersion());
                 if (entry.getValue() instanceof ReplicatedMapEntry) {
                     ReplicatedMapEntry diff = (ReplicatedMapEntry) entry.getValue();
                     if (mapmsg.isDiff()) {
@@ -811,9 +879,10 @@ public abstract class AbstractReplicatedMap<K, V>
                     if (entry == null) {
                         continue;
                     }
-                    if (entry.isPrimary() && (entry.getBackupNodes() == null || entry.getBackupNodes().length == 0)) {
+                    if (entry.isPrimary() && (entry.getBackupNodes() == null || entry.getBackupNodes().length == 0 ||
+                            isRelocationRequired(entry.getKey(), entry.getBackupNodes()))) {
                         try {
-                            Member[] backup = publishEntryInfo(entry.getKey(), entry.getValue());
+                            Member[] backup = relocateEntryInfo(entry.getKey(), entry.getValue());
                             entry.setBackupNodes(backup);
                             entry.setPrimary(channel.getLocalMember(false));
                         } catch (ChannelException x) {
@@ -821,6 +890,7 @@ public abstract class AbstractReplicatedMap<K, V>
                         } // catch
                     } // end if
                 } // while
+                relocationComplete();
             } // synchronized
         } // end if
     }
@@ -877,61 +947,68 @@ public abstract class AbstractReplicatedMap<K, V>
             log.info(sm.getString("replicatedMap.member.disappeared", member));
         }
         long start = System.currentTimeMillis();
-        Iterator<Map.Entry<K,MapEntry<K,V>>> i = innerMap.entrySet().iterator();
-        while (i.hasNext()) {
-            Map.Entry<K,MapEntry<K,V>> e = i.next();
-            MapEntry<K,V> entry = innerMap.get(e.getKey());
-            if (entry == null) {
-                continue;
-            }
-            if (entry.isPrimary() && inSet(member, entry.getBackupNodes())) {
-                if (log.isDebugEnabled()) {
-                    log.debug(sm.getString("abstractReplicatedMap.newBackup"));
-                }
-                try {
-                    Member[] backup = publishEntryInfo(entry.getKey(), entry.getValue());
-                    entry.setBackupNodes(backup);
-                    entry.setPrimary(channel.getLocalMember(false));
-                } catch (ChannelException x) {
-                    log.error(sm.getString("abstractReplicatedMap.unable.relocate", entry.getKey()), x);
-                }
-            } else if (member.equals(entry.getPrimary())) {
-                if (log.isDebugEnabled()) {
-                    log.debug(sm.getString("abstractReplicatedMap.primaryDisappeared"));
+        synchronized (stateMutex) {
+            Iterator<Map.Entry<K,MapEntry<K,V>>> i = innerMap.entrySet().iterator();
+            while (i.hasNext()) {
+                Map.Entry<K,MapEntry<K,V>> e = i.next();
+                MapEntry<K,V> entry = innerMap.get(e.getKey());
+                if (entry == null) {
+                    continue;
                 }
-                entry.setPrimary(null);
-            } // end if
+                if (entry.isPrimary() && inSet(member, entry.getBackupNodes())) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(sm.getString("abstractReplicatedMap.newBackup"));
+                    }
+                    try {
+                        Member[] backup = relocateEntryInfo(entry.getKey(), entry.getValue());
+                        entry.setBackupNodes(backup);
+                        entry.setPrimary(channel.getLocalMember(false));
+                    } catch (ChannelException x) {
+                        log.error(sm.getString("abstractReplicatedMap.unable.relocate", entry.getKey()), x);
+                    }
+                } else if (member.equals(entry.getPrimary())) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(sm.getString("abstractReplicatedMap.primaryDisappeared"));
+                    }
+                    entry.setPrimary(null);
+                } // end if
 
-            if (entry.isProxy() && entry.getPrimary() == null && entry.getBackupNodes() != null &&
-                    entry.getBackupNodes().length == 1 && entry.getBackupNodes()[0].equals(member)) {
-                // remove proxies that have no backup nor primaries
-                if (log.isDebugEnabled()) {
-                    log.debug(sm.getString("abstractReplicatedMap.removeOrphan"));
-                }
-                i.remove();
-            } else if (entry.getPrimary() == null && entry.isBackup() && entry.getBackupNodes() != null &&
-                    entry.getBackupNodes().length == 1 &&
-                    entry.getBackupNodes()[0].equals(channel.getLocalMember(false))) {
-                try {
+                if (entry.isProxy() && entry.getPrimary() == null && entry.getBackupNodes() != null &&
+                        entry.getBackupNodes().length == 1 && entry.getBackupNodes()[0].equals(member)) {
+                    // remove proxies that have no backup nor primaries
                     if (log.isDebugEnabled()) {
-                        log.debug(sm.getString("abstractReplicatedMap.newPrimary"));
+                        log.debug(sm.getString("abstractReplicatedMap.removeOrphan"));
                     }
-                    entry.setPrimary(channel.getLocalMember(false));
-                    entry.setBackup(false);
-                    entry.setProxy(false);
-                    entry.setCopy(false);
-                    Member[] backup = publishEntryInfo(entry.getKey(), entry.getValue());
-                    entry.setBackupNodes(backup);
-                    if (mapOwner != null) {
-                        mapOwner.objectMadePrimary(entry.getKey(), entry.getValue());
+                    i.remove();
+                    NearCache nearCache = this.nearCache;
+                    if (nearCache != null) {
+                        nearCache.invalidate(e.getKey());
                     }
+                } else if (entry.getPrimary() == null && entry.isBackup() && entry.getBackupNodes() != null &&
+                        entry.getBackupNodes().length == 1 &&
+                        entry.getBackupNodes()[0].equals(channel.getLocalMember(false))) {
+                    try {
+                        if (log.isDebugEnabled()) {
+                            log.debug(sm.getString("abstractReplicatedMap.newPrimary"));
+                        }
+                        entry.setPrimary(channel.getLocalMember(false));
+                        entry.setBackup(false);
+                        entry.setProxy(false);
+                        entry.setCopy(false);
+                        Member[] backup = relocateEntryInfo(entry.getKey(), entry.getValue());
+                        entry.setBackupNodes(backup);
+                        if (mapOwner != null) {
+                            mapOwner.objectMadePrimary(entry.getKey(), entry.getValue());
+                        }
 
-                } catch (ChannelException x) {
-                    log.error(sm.getString("abstractReplicatedMap.unable.relocate", entry.getKey()), x);
+                    } catch (ChannelException x) {
+                        log.error(sm.getString("abstractReplicatedMap.unable.relocate", entry.getKey()), x);
+                    }
                 }
-            }
 
-        } // while
+            } // while
+            relocationComplete();
+        } // synchronized
         long complete = System.currentTimeMillis() - start;
         if (log.isInfoEnabled()) {
             log.info(sm.getString("abstractReplicatedMap.relocate.complete", Long.toString(complete)));
@@ -977,6 +1054,43 @@ public abstract class AbstractReplicatedMap<K, V>
      */
     protected abstract Member[] publishEntryInfo(Object key, Object value) throws ChannelException;
 
+    /**
+     * Publish info about a map pair (key/value) that needs a new backup node after a change of the map members. The
+     * default implementation calls {@link #publishEntryInfo(Object, Object)}. Implementations may instead defer
+     * publishing until {@link #relocationComplete()} is called, for example to send the entries in batches.
+     *
+     * @param key   Object
+     * @param value Object
+     *
+     * @return Member - the backup node
+     *
+     * @throws ChannelException Cluster error
+     */
+    protected Member[] relocateEntryInfo(Object key, Object value) throws ChannelException {
+        return publishEntryInfo(key, value);
+    }
+
+    /**
+     * Called, while holding the state mutex, once all the entries that need a new backup node after a change of the
+     * map members have been passed to {@link #relocateEntryInfo(Object, Object)}.
+     */
+    protected void relocationComplete() {
+        // NO-OP
+    }
+
+    /**
+     * Should an entry for which this node is the primary be given a new backup node when a map member is added? The
+     * default implementation only selects backup nodes for entries that do not have any.
+     *
+     * @param key         The key of the entry
+     * @param backupNodes The current backup nodes of the entry
+     *
+     * @return <code>true</code> if a new backup node should be selected
+     */
+    protected boolean isRelocationRequired(Object key, Member[] backupNodes) {
+        return false;
+    }
+
     @Override
     public void heartbeat() {
         try {
@@ -999,11 +1113,16 @@ public abstract class AbstractReplicatedMap<K, V>
 
     public V remove(Object key, boolean notify) {
         MapEntry<K,V> entry = innerMap.remove(key);
+        NearCache nearCache = this.nearCache;
+        if (nearCache != null) {
+            nearCache.invalidate(key);
+        }
 
         try {
             if (getMapMembers().length > 0 && notify) {
                 MapMessage msg = new MapMessage(getMapContextName(), MapMessage.MSG_REMOVE, false, (Serializable) key,
                         null, null, null, null);
+                msg.setVersion(nextVersion());
                 getChannel().send(getMapMembers(), msg, getChannelSendOptions());
             }
         } catch (ChannelException x) {
@@ -1026,6 +1145,10 @@ public abstract class AbstractReplicatedMap<K, V>
         if (entry == null) {
             return null;
         }
+        NearCache nearCache = this.nearCache;
+        if (nearCache != null && !entry.isPrimary()) {
+            return getNear(key, entry, nearCache);
+        }
         if (!entry.isPrimary()) {
             // if the message is not primary, we need to retrieve the latest value
             try {
@@ -1062,6 +1185,7 @@ public abstract class AbstractReplicatedMap<K, V>
                     // invalidate the previous primary
                     msg = new MapMessage(getMapContextName(), MapMessage.MSG_PROXY, false, (Serializable) key, null,
                             null, channel.getLocalMember(false), backup);
+                    msg.setVersion(entry.getVersion());
                     Member[] dest = getMapMembersExcl(backup);
                     if (dest != null && dest.length > 0) {
                         getChannel().send(dest, msg, getChannelSendOptions());
@@ -1099,6 +1223,51 @@ public abstract class AbstractReplicatedMap<K, V>
     }
 
 
+    /*
+     * Read an entry this map is not the primary for without making this map the primary. Backups and copies hold the
+     * value. The value of a proxy is read from the near cache or, if it is not cached, from a backup node.
+     */
+    @SuppressWarnings("unchecked")
+    private V getNear(Object key, MapEntry<K,V> entry, NearCache nearCache) {
+        if (!entry.isProxy()) {
+            return entry.getValue();
+        }
+        V value = (V) nearCache.get(key, entry.getVersion());
+        if (value != null) {
+            return value;
+        }
+        try {
+            MapMessage msg = new MapMessage(getMapContextName(), MapMessage.MSG_RETRIEVE_BACKUP, false,
+                    (Serializable) key, null, null, null, null);
+            Response[] resp = getRpcChannel().send(entry.getBackupNodes(), msg, RpcChannel.FIRST_REPLY,
+                    getChannelSendOptions(), getRpcTimeout());
+            if (resp == null || resp.length == 0 || resp[0].getMessage() == null) {
+                // no responses
+                log.warn(sm.getString("abstractReplicatedMap.unable.retrieve", key));
+                return null;
+            }
+            msg = (MapMessage) resp[0].getMessage();
+            msg.deserialize(getExternalLoaders());
+            value = (V) msg.getValue();
+            if (msg.getVersion() > 0) {
+                observeVersion(msg.getVersion());
+            }
+            // Only cache the value if the entry has not changed since the backup node read it
+            if (value != null) {
+                if (innerMap.get(key) == entry && msg.getVersion() >= entry.getVersion()) {
+                    nearCache.put(key, value, msg.getVersion());
+                } else {
+                    nearCache.stale();
+                }
+            }
+            return value;
+        } catch (RuntimeException | ChannelException | ClassNotFoundException | IOException x) {
+            log.error(sm.getString("abstractReplicatedMap.unable.get"), x);
+            return null;
+        }
+    }
+
+
     protected void printMap(String header) {
         try {
             System.out.println("\nDEBUG MAP:" + header);
@@ -1154,6 +1323,9 @@ public abstract class AbstractReplicatedMap<K, V>
         if (containsKey(key)) {
             old = remove(key);
         }
+        // The entry is added before it is published so that the messages can include its version
+        entry.setVersion(nextVersion());
+        innerMap.put(key, entry);
         try {
             if (notify) {
                 Member[] backup = publishEntryInfo(key, value);
@@ -1162,7 +1334,6 @@ public abstract class AbstractReplicatedMap<K, V>
         } catch (ChannelException x) {
             log.error(sm.getString("abstractReplicatedMap.unable.put"), x);
         }
-        innerMap.put(key, entry);
         return old;
     }
 
@@ -1299,6 +1470,7 @@ public abstract class AbstractReplicatedMap<K, V>
         private Member primary;
         private K key;
         private V value;
+        private volatile long version = 0;
 
         public MapEntry(K key, V value) {
             setKey(key);
@@ -1370,6 +1542,29 @@ public abstract class AbstractReplicatedMap<K, V>
             return primary;
         }
 
+        /**
+         * @return the version of the entry, assigned by the primary when the value is changed, or <code>0</code> if
+         *             the version is not known
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public void setVersion(long version) {
+            this.version = version;
+        }
+
+        /**
+         * Set the version of the entry unless the entry already has a later version.
+         *
+         * @param version The version received for the entry
+         */
+        public void updateVersion(long version) {
+            if (version > this.version) {
+                this.version = version;
+            }
+        }
+
         @Override
         public V getValue() {
             return value;
@@ -1465,6 +1660,7 @@ public abstract class AbstractReplicatedMap<K, V>
         public static final int MSG_ACCESS = 11;
         public static final int MSG_NOTIFY_MAPMEMBER = 12;
         public static final int MSG_PING = 13;
+        public static final int MSG_BATCH = 14;
 
         private final byte[] mapId;
         private final int msgtype;
@@ -1476,6 +1672,7 @@ public abstract class AbstractReplicatedMap<K, V>
         private final byte[] diffvalue;
         private final Member[] nodes;
         private Member primary;
+        private long version = 0;
 
         @Override
         public String toString() {
@@ -1519,6 +1716,8 @@ public abstract class AbstractReplicatedMap<K, V>
                     return "MSG_NOTIFY_MAPMEMBER";
                 case MSG_PING:
                     return "MSG_PING";
+                case MSG_BATCH:
+                    return "MSG_BATCH";
                 default:
                     return "UNKNOWN";
             }
@@ -1615,6 +1814,17 @@ public abstract class AbstractReplicatedMap<K, V>
             primary = m;
         }
 
+        /**
+         * @return the version of the entry the message is about or <code>0</code> if the sender did not provide one
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public void setVersion(long version) {
+            this.version = version;
+        }
+
         public byte[] getMapId() {
             return mapId;
         }
@@ -1709,6 +1919,82 @@ public abstract class AbstractReplicatedMap<K, V>
         this.accessTimeout = accessTimeout;
     }
 
+    /**
+     * @return the maximum number of values of entries this map is a proxy for that are cached or <code>0</code> if
+     *             there is no near cache
+     */
+    public int getNearCacheSize() {
+        NearCache nearCache = this.nearCache;
+        return nearCache == null ? 0 : nearCache.getMaxSize();
+    }
+
+    /**
+     * Set the maximum number of values of entries this map is a proxy for that are cached, so that repeated reads of
+     * these entries do not each require a call to a backup node. When the near cache is enabled, {@link #get(Object)}
+     * no longer makes this map the primary of the entry read, so it is intended for maps that are read much more often
+     * than they are written and whose values are changed using {@link #put(Object, Object)}. Cached values are
+     * invalidated by the messages the primary sends when the entry changes, which requires the near cache to be
+     * enabled on all the map members. The statistics of the near cache are registered with JMX. A value of
+     * <code>0</code>, the default, disables the near cache.
+     *
+     * @param nearCacheSize The maximum number of cached values
+     */
+    public void setNearCacheSize(int nearCacheSize) {
+        synchronized (stateMutex) {
+            if (nearCacheOname != null) {
+                JmxRegistry jmxRegistry = JmxRegistry.getRegistry(channel);
+                if (jmxRegistry != null) {
+                    jmxRegistry.unregisterJmx(nearCacheOname);
+                }
+                nearCacheOname = null;
+            }
+            if (nearCacheSize <= 0) {
+                this.nearCache = null;
+                return;
+            }
+            NearCache nearCache = new NearCache(nearCacheSize);
+            this.nearCache = nearCache;
+            JmxRegistry jmxRegistry = JmxRegistry.getRegistry(channel);
+            if (jmxRegistry != null) {
+                nearCacheOname = jmxRegistry.registerJmx(
+                        ",component=NearCache,map=" + ObjectName.quote(mapname), nearCache);
+            }
+        }
+    }
+
+    /**
+     * @return the near cache or <code>null</code> if it is not enabled
+     */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * @return a version for a change made by this map, later than any version this map has made or received
+     */
+    protected long nextVersion() {
+        return versionClock.updateAndGet(v -> Math.max(v + 1, System.currentTimeMillis()));
+    }
+
+    /**
+     * Advance the version clock past a version received from another map member.
+     *
+     * @param version The received version
+     */
+    protected void observeVersion(long version) {
+        versionClock.accumulateAndGet(version, Math::max);
+    }
+
+    /**
+     * @param key The key
+     *
+     * @return the version of the entry for the key or <code>0</code> if there is no such entry
+     */
+    protected long getVersion(Object key) {
+        MapEntry<K,V> entry = innerMap.get(key);
+        return entry == null ? 0 : entry.getVersion();
+    }
+
     private enum State {
         NEW(false),
         STATETRANSFERRED(false),
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.tipis;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.catalina.tribes.Member;
+
+/**
+ * A consistent hash ring of members used to select the backup member of a map entry. Each member is placed on the ring
+ * at a number of virtual node positions derived from its host and port, so a member that restarts gets back the same
+ * positions. A key is mapped to the first member found clockwise from the hash of the key. When a member is added or
+ * removed, only the keys of the ranges next to the positions of that member are mapped to a different member.
+ */
+final class ConsistentHashRing {
+
+    private final TreeMap<Integer,Member> ring = new TreeMap<>();
+    private final Set<Member> members;
+
+
+    /**
+     * Create a ring.
+     *
+     * @param members      The members of the ring
+     * @param virtualNodes The number of positions of each member on the ring
+     */
+    ConsistentHashRing(Member[] members, int virtualNodes) {
+        this.members = new HashSet<>(Arrays.asList(members));
+        for (Member member : members) {
+            int base = Arrays.hashCode(member.getHost()) * 31 + member.getPort();
+            for (int i = 0; i < virtualNodes; i++) {
+                // On a collision, the member that is placed first keeps the position
+                ring.putIfAbsent(Integer.valueOf(mix(base * 31 + i)), member);
+            }
+        }
+    }
+
+
+    /**
+     * @param members The current members
+     *
+     * @return <code>true</code> if the ring contains exactly the given members
+     */
+    boolean hasMembers(Member[] members) {
+        if (members.length != this.members.size()) {
+            return false;
+        }
+        for (Member member : members) {
+            if (!this.members.contains(member)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Obtain the member a key is mapped to.
+     *
+     * @param key The key
+     *
+     * @return the member or <code>null</code> if the ring is empty
+     */
+    Member getMember(Object key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Integer,Member> entry = ring.ceilingEntry(Integer.valueOf(mix(key.hashCode())));
+        if (entry == null) {
+            entry = ring.firstEntry();
+        }
+        return entry.getValue();
+    }
+
+
+    /**
+     * Obtain all the members in the order they are found clockwise from the position of a key. The first member is
+     * the one the key is mapped to and the following members are the ones the key would be mapped to if the previous
+     * members were removed from the ring.
+     *
+     * @param key The key
+     *
+     * @return the members
+     */
+    Member[] getMembers(Object key) {
+        Set<Member> result = new LinkedHashSet<>();
+        Integer hash = Integer.valueOf(mix(key.hashCode()));
+        for (Member member : ring.tailMap(hash, true).values()) {
+            if (result.add(member) && result.size() == members.size()) {
+                return result.toArray(new Member[0]);
+            }
+        }
+        for (Member member : ring.headMap(hash, false).values()) {
+            if (result.add(member) && result.size() == members.size()) {
+                break;
+            }
+        }
+        return result.toArray(new Member[0]);
+    }
+
+
+    /*
+     * The finalization step of MurmurHash3 so that similar keys, such as sequential session IDs, and the virtual nodes
+     * of a member are spread around the ring.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -17,6 +17,10 @@
 package org.apache.catalina.tribes.tipis;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.catalina.tribes.Channel;
 import org.apache.catalina.tribes.ChannelException;
@@ -57,6 +61,13 @@ import org.apache.juli.logging.LogFactory;
  * serialized, hence a call to <code>replicate(true)</code> will replicate all objects in this map that are using this
  * node as primary. <br>
  * <br>
+ * By default, backup nodes are selected in a round-robin fashion. If {@link #setVirtualNodes(int)} is used to enable
+ * consistent hashing, the backup node of an entry is instead selected by placing the map members on a hash ring. When
+ * a map member is added, only the entries in the ranges of the ring that the new member takes over are moved to it and
+ * when a map member disappears, its entries move to the next members on the ring. If
+ * {@link #setRelocationBatchSize(int)} is used, the entries that move after a change of the map members are sent in
+ * batches rather than with one message per entry.<br>
+ * <br>
  * <b>REMEMBER TO CALL</b> <code>breakdown()</code> when you are done with the map to avoid memory leaks.<br>
  * <br>
  * TODO implement periodic sync/transfer thread
@@ -69,6 +80,18 @@ public class LazyReplicatedMap<K, V> extends AbstractReplicatedMap<K,V> {
     // Lazy init to support serialization
     private transient volatile Log log;
 
+    private transient int virtualNodes = 0;
+    private transient int relocationBatchSize = 0;
+    private transient volatile ConsistentHashRing ring;
+
+    /*
+     * The backup and proxy messages of relocated entries that have not been sent yet, grouped by backup node. Only
+     * accessed while holding the state mutex. Created on first use since the super class constructor adds the map
+     * members, and may therefore relocate entries, before the fields of this class are initialized.
+     */
+    private transient Map<Member,List<MapMessage>> pendingBackups;
+    private transient Map<Member,List<MapMessage>> pendingProxies;
+
 
     // ------------------------------------------------------------------------------
     // CONSTRUCTORS / DESTRUCTORS
@@ -137,6 +160,50 @@ public class LazyReplicatedMap<K, V> extends AbstractReplicatedMap<K,V> {
     }
 
 
+    // ------------------------------------------------------------------------------
+    // CONFIGURATION
+    // ------------------------------------------------------------------------------
+
+    /**
+     * @return the number of positions of each map member on the consistent hash ring or <code>0</code> if backup
+     *             nodes are selected in a round-robin fashion
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * Set the number of positions of each map member on the consistent hash ring used to select backup nodes. More
+     * positions spread the entries more evenly across the map members. A value of <code>0</code>, the default,
+     * selects backup nodes in a round-robin fashion.
+     *
+     * @param virtualNodes The number of positions of each map member
+     */
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        this.ring = null;
+    }
+
+    /**
+     * @return the maximum number of relocated entries sent in a single message or <code>0</code> if each relocated
+     *             entry is sent in its own message
+     */
+    public int getRelocationBatchSize() {
+        return relocationBatchSize;
+    }
+
+    /**
+     * Set the maximum number of entries sent in a single message when entries are given a new backup node after a
+     * change of the map members. All the map members must support batched messages for this to be enabled. A value of
+     * <code>0</code>, the default, sends each relocated entry in its own message.
+     *
+     * @param relocationBatchSize The maximum number of entries per message
+     */
+    public void setRelocationBatchSize(int relocationBatchSize) {
+        this.relocationBatchSize = relocationBatchSize;
+    }
+
+
     // ------------------------------------------------------------------------------
     // METHODS TO OVERRIDE
     // ------------------------------------------------------------------------------
@@ -152,14 +219,32 @@ public class LazyReplicatedMap<K, V> extends AbstractReplicatedMap<K,V> {
 
     @Override
     protected Member[] publishEntryInfo(Object key, Object value) throws ChannelException {
+        return publishEntryInfo(key, value, null);
+    }
+
+
+    /*
+     * Publish the entry to the first member, in backup selection order, that accepts it, skipping the excluded member
+     * which is known to have failed.
+     */
+    private Member[] publishEntryInfo(Object key, Object value, Member exclude) throws ChannelException {
         Log log = getLog();
         if (!(key instanceof Serializable && value instanceof Serializable)) {
             return new Member[0];
         }
         Member[] members = getMapMembers();
-        int firstIdx = getNextBackupIndex();
+        int firstIdx;
+        ConsistentHashRing ring = getRing(members);
+        if (ring == null) {
+            firstIdx = getNextBackupIndex();
+        } else {
+            // Try the members in ring order
+            members = ring.getMembers(key);
+            firstIdx = members.length == 0 ? -1 : 0;
+        }
         int nextIdx = firstIdx;
         Member[] backup = new Member[0];
+        long version = getVersion(key);
 
         // there are no backups
         if (members.length == 0 || firstIdx == -1) {
@@ -177,7 +262,7 @@ public class LazyReplicatedMap<K, V> extends AbstractReplicatedMap<K,V> {
                 nextIdx = 0;
             }
 
-            if (next == null) {
+            if (next == null || next.equals(exclude)) {
                 continue;
             }
             MapMessage msg = null;
@@ -186,6 +271,7 @@ public class LazyReplicatedMap<K, V> extends AbstractReplicatedMap<K,V> {
                 // publish the backup data to one node
                 msg = new MapMessage(getMapContextName(), MapMessage.MSG_BACKUP, false, (Serializable) key,
                         (Serializable) value, null, channel.getLocalMember(false), tmpBackup);
+                msg.setVersion(version);
                 if (log.isTraceEnabled()) {
                     log.trace("Publishing backup data:" + msg + " to: " + next.getName());
                 }
@@ -206,6 +292,7 @@ public class LazyReplicatedMap<K, V> extends AbstractReplicatedMap<K,V> {
                 if (success && proxies.length > 0) {
                     msg = new MapMessage(getMapContextName(), MapMessage.MSG_PROXY, false, (Serializable) key, null,
                             null, channel.getLocalMember(false), backup);
+                    msg.setVersion(version);
                     if (log.isTraceEnabled()) {
                         log.trace("Publishing proxy data:" + msg + " to: " + Arrays.toNameString(proxies));
                     }
@@ -222,6 +309,138 @@ public class LazyReplicatedMap<K, V> extends AbstractReplicatedMap<K,V> {
     }
 
 
+    @Override
+    protected Member[] relocateEntryInfo(Object key, Object value) throws ChannelException {
+        if (relocationBatchSize <= 1 || !(key instanceof Serializable && value instanceof Serializable)) {
+            return publishEntryInfo(key, value);
+        }
+        Member[] members = getMapMembers();
+        Member next;
+        ConsistentHashRing ring = getRing(members);
+        if (ring == null) {
+            next = getNextBackupNode();
+        } else {
+            next = ring.getMember(key);
+        }
+        if (next == null) {
+            return new Member[0];
+        }
+        Member[] backup = wrap(next);
+        Member local = channel.getLocalMember(false);
+        long version = getVersion(key);
+        MapMessage msg = new MapMessage(getMapContextName(), MapMessage.MSG_BACKUP, false, (Serializable) key,
+                (Serializable) value, null, local, backup);
+        msg.setVersion(version);
+        if (pendingBackups == null) {
+            pendingBackups = new LinkedHashMap<>();
+            pendingProxies = new LinkedHashMap<>();
+        }
+        List<MapMessage> backups = pendingBackups.computeIfAbsent(next, k -> new ArrayList<>());
+        backups.add(msg);
+        msg = new MapMessage(getMapContextName(), MapMessage.MSG_PROXY, false, (Serializable) key, null, null, local,
+                backup);
+        msg.setVersion(version);
+        pendingProxies.computeIfAbsent(next, k -> new ArrayList<>()).add(msg);
+        if (backups.size() >= relocationBatchSize && !sendRelocated(next)) {
+            // The entries have been published to other members
+            MapEntry<K,V> entry = innerMap.get(key);
+            return entry == null ? new Member[0] : entry.getBackupNodes();
+        }
+        return backup;
+    }
+
+
+    @Override
+    protected void relocationComplete() {
+        if (pendingBackups == null) {
+            // Nothing has been relocated
+            return;
+        }
+        for (Member member : new ArrayList<>(pendingBackups.keySet())) {
+            sendRelocated(member);
+        }
+    }
+
+
+    @Override
+    protected boolean isRelocationRequired(Object key, Member[] backupNodes) {
+        ConsistentHashRing ring = getRing(getMapMembers());
+        if (ring == null || backupNodes.length == 0) {
+            return false;
+        }
+        // Move the entries in the ranges of the ring the added member has taken over
+        Member member = ring.getMember(key);
+        return member != null && !member.equals(backupNodes[0]);
+    }
+
+
+    /*
+     * Send the backup messages of the relocated entries to their backup node and the proxy messages to the other map
+     * members. If the backup node cannot be reached, each entry is published on its own to the next member that
+     * accepts it, as for an entry that is not relocated in a batch. Returns false if the backup node could not be
+     * reached.
+     */
+    private boolean sendRelocated(Member member) {
+        Log log = getLog();
+        List<MapMessage> backups = pendingBackups.remove(member);
+        List<MapMessage> proxies = pendingProxies.remove(member);
+        if (backups == null || backups.isEmpty()) {
+            return true;
+        }
+        Member[] backup = wrap(member);
+        Member local = channel.getLocalMember(false);
+        try {
+            MapMessage msg = new MapMessage(getMapContextName(), MapMessage.MSG_BATCH, false, null,
+                    backups.toArray(new MapMessage[0]), null, local, backup);
+            if (log.isTraceEnabled()) {
+                log.trace("Publishing " + backups.size() + " relocated backups to: " + member.getName());
+            }
+            getChannel().send(backup, msg, getChannelSendOptions());
+        } catch (ChannelException x) {
+            log.error(sm.getString("lazyReplicatedMap.unableReplicate.relocate", Integer.valueOf(backups.size()),
+                    member, x.getMessage()), x);
+            for (MapMessage relocated : backups) {
+                MapEntry<K,V> entry = innerMap.get(relocated.getKey());
+                if (entry == null || !entry.isPrimary()) {
+                    continue;
+                }
+                try {
+                    entry.setBackupNodes(publishEntryInfo(entry.getKey(), entry.getValue(), member));
+                } catch (ChannelException e) {
+                    log.error(sm.getString("abstractReplicatedMap.unable.relocate", entry.getKey()), e);
+                }
+            }
+            return false;
+        }
+        try {
+            Member[] others = excludeFromSet(backup, getMapMembers());
+            if (others.length > 0) {
+                MapMessage msg = new MapMessage(getMapContextName(), MapMessage.MSG_BATCH, false, null,
+                        proxies.toArray(new MapMessage[0]), null, local, backup);
+                getChannel().send(others, msg, getChannelSendOptions());
+            }
+        } catch (ChannelException x) {
+            // As for a single entry, the other nodes should still get the message if a node went down
+            log.error(sm.getString("lazyReplicatedMap.unableReplicate.relocate", Integer.valueOf(proxies.size()),
+                    member, x.getMessage()), x);
+        }
+        return true;
+    }
+
+
+    private ConsistentHashRing getRing(Member[] members) {
+        if (virtualNodes <= 0) {
+            return null;
+        }
+        ConsistentHashRing ring = this.ring;
+        if (ring == null || !ring.hasMembers(members)) {
+            ring = new ConsistentHashRing(members, virtualNodes);
+            this.ring = ring;
+        }
+        return ring;
+    }
+
+
     private Log getLog() {
         if (log == null) {
             synchronized (this) {
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.tipis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of the values of the map entries for which the local map is a proxy, so that
+ * repeated reads of such an entry do not each require a remote call. Each cached value records the version of the
+ * entry it was read at and is only returned while no later version of the entry is known.
+ */
+public class NearCache implements NearCacheMBean {
+
+    private final int maxSize;
+
+    /*
+     * Access is synchronized on this cache.
+     */
+    private final LinkedHashMap<Object,CachedValue> cache;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long staleCount = 0;
+    private long invalidationCount = 0;
+    private long evictionCount = 0;
+
+
+    public NearCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object,CachedValue> eldest) {
+                if (size() > NearCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+
+    /**
+     * Obtain a cached value.
+     *
+     * @param key     The key
+     * @param version The latest known version of the entry
+     *
+     * @return The cached value or <code>null</code> if no value of at least the given version is cached
+     */
+    public synchronized Object get(Object key, long version) {
+        CachedValue cached = cache.get(key);
+        if (cached != null && cached.version < version) {
+            cache.remove(key);
+            cached = null;
+        }
+        if (cached == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return cached.value;
+    }
+
+
+    /**
+     * Cache a value read from a remote member.
+     *
+     * @param key     The key
+     * @param value   The value
+     * @param version The version of the entry the value was read at
+     */
+    public synchronized void put(Object key, Object value, long version) {
+        cache.put(key, new CachedValue(value, version));
+    }
+
+
+    /**
+     * Record that a value read from a remote member was not cached because a later version of the entry was already
+     * known when the value was received.
+     */
+    public synchronized void stale() {
+        staleCount++;
+    }
+
+
+    /**
+     * Remove a cached value because the entry has changed.
+     *
+     * @param key The key
+     */
+    public synchronized void invalidate(Object key) {
+        if (cache.remove(key) != null) {
+            invalidationCount++;
+        }
+    }
+
+
+    @Override
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+
+    @Override
+    public synchronized int getSize() {
+        return cache.size();
+    }
+
+
+    @Override
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+
+    @Override
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+
+    @Override
+    public synchronized long getStaleCount() {
+        return staleCount;
+    }
+
+
+    @Override
+    public synchronized long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+
+    private static class CachedValue {
+        private final Object value;
+        private final long version;
+
+        CachedValue(Object value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
@@ -155,6 +155,7 @@ public class ReplicatedMap<K, V> extends AbstractReplicatedMap<K,V> {
             // publish the data out to all nodes
             MapMessage msg = new MapMessage(getMapContextName(), MapMessage.MSG_COPY, false, (Serializable) key,
                     (Serializable) value, null, channel.getLocalMember(false), backup);
+            msg.setVersion(getVersion(key));
 
             getChannel().send(backup, msg, getChannelSendOptions());
         } catch (ChannelException e) {
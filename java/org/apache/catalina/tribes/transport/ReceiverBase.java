@@ -82,6 +82,7 @@ public abstract class ReceiverBase implements ChannelReceiver, ListenCallback, R
     private boolean useBufferPool = true;
     private boolean daemon = true;
     private long maxIdleTime = 60000;
+    private boolean useVirtualThreads = false;
 
     private ExecutorService executor;
     private Channel channel;
@@ -103,8 +104,13 @@ public abstract class ReceiverBase implements ChannelReceiver, ListenCallback, R
             if (channel.getName() != null) {
                 channelName = "[" + channel.getName() + "]";
             }
-            TaskThreadFactory tf = new TaskThreadFactory("Tribes-Task-Receiver" + channelName + "-");
-            executor = ExecutorFactory.newThreadPool(minThreads, maxThreads, maxIdleTime, TimeUnit.MILLISECONDS, tf);
+            if (useVirtualThreads) {
+                executor = ExecutorFactory.newVirtualThreadExecutor("Tribes-Task-Receiver" + channelName + "-virt-");
+            } else {
+                TaskThreadFactory tf = new TaskThreadFactory("Tribes-Task-Receiver" + channelName + "-");
+                executor = ExecutorFactory.newThreadPool(minThreads, maxThreads, maxIdleTime, TimeUnit.MILLISECONDS,
+                        tf);
+            }
         }
         // register jmx
         JmxRegistry jmxRegistry = JmxRegistry.getRegistry(channel);
@@ -610,4 +616,20 @@ public abstract class ReceiverBase implements ChannelReceiver, ListenCallback, R
         this.maxIdleTime = maxIdleTime;
     }
 
+    public boolean getUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Run the receiver tasks on virtual threads rather than on a thread pool. The number of receiver tasks, and hence
+     * the number of read buffers, is still limited by {@link #getMaxThreads()}, but a task that is blocked, for
+     * example while processing a message that waits for a lock or for a reply, no longer occupies a platform thread.
+     * Requires Java 21 or later.
+     *
+     * @param useVirtualThreads <code>true</code> to use virtual threads
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
 }
@@ -40,6 +40,8 @@ public interface NioReceiverMBean {
 
     long getMaxIdleTime();
 
+    boolean getUseVirtualThreads();
+
     boolean getOoBInline();
 
     int getRxBufSize();
@@ -189,16 +189,14 @@ public class NioReplicationTask extends AbstractRxTask {
             count = reader.hasPackage() ? 1 : -1;
         }
 
-        int pkgcnt = reader.count();
+        ChannelMessage[] msgs = reader.execute();
 
-        if (count < 0 && pkgcnt == 0) {
+        if (count < 0 && msgs.length == 0) {
             // end of stream, and no more packages to process
             remoteEof(key);
             return;
         }
 
-        ChannelMessage[] msgs = pkgcnt == 0 ? ChannelData.EMPTY_DATA_ARRAY : reader.execute();
-
         registerForRead(key, reader);// register to read new data, before we send it off to avoid dead locks
 
         for (ChannelMessage msg : msgs) {
@@ -59,8 +59,10 @@ public class NioSender extends AbstractSender {
     protected ByteBuffer readbuf = null;
     protected ByteBuffer writebuf = null;
     protected volatile byte[] current = null;
+    protected volatile ByteBuffer[] message = null;
+    protected ByteBuffer[] writebufs = null;
     protected final XByteBuffer ackbuf = new XByteBuffer(128, true);
-    protected int remaining = 0;
+    protected long remaining = 0;
     protected boolean complete;
 
     protected boolean connecting = false;
@@ -93,7 +95,7 @@ public class NioSender extends AbstractSender {
         if (key.isConnectable()) {
             if (socketChannel.finishConnect()) {
                 completeConnect();
-                if (current != null) {
+                if (message != null) {
                     key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
                 }
                 return false;
@@ -171,7 +173,7 @@ public class NioSender extends AbstractSender {
 
     protected boolean read() throws IOException {
         // if there is no message here, we are done
-        if (current == null) {
+        if (message == null) {
             return true;
         }
         int read = isUdpBased() ? dataChannel.read(readbuf) : socketChannel.read(readbuf);
@@ -202,11 +204,11 @@ public class NioSender extends AbstractSender {
         if ((!isConnected()) || (this.socketChannel == null && this.dataChannel == null)) {
             throw new IOException(sm.getString("nioSender.not.connected"));
         }
-        if (current != null) {
+        if (message != null) {
             if (remaining > 0) {
                 // we have written everything, or we are starting a new package
                 // protect against buffer overwrite
-                int byteswritten = isUdpBased() ? dataChannel.write(writebuf) : socketChannel.write(writebuf);
+                long byteswritten = isUdpBased() ? dataChannel.write(writebufs) : socketChannel.write(writebufs);
                 remaining -= byteswritten;
                 // if the entire message was written from the buffer
                 // reset the position counter
@@ -332,6 +334,8 @@ public class NioSender extends AbstractSender {
             writebuf.clear();
         }
         current = null;
+        message = null;
+        writebufs = null;
         ackbuf.clear();
         remaining = 0;
         complete = false;
@@ -366,35 +370,78 @@ public class NioSender extends AbstractSender {
         if (data != null) {
             synchronized (this) {
                 current = data;
-                remaining = length;
-                ackbuf.clear();
-                if (writebuf != null) {
-                    writebuf.clear();
-                } else {
-                    writebuf = getBuffer(length);
-                }
-                if (writebuf.capacity() < length) {
-                    writebuf = getBuffer(length);
-                }
+                setMessageBuffers(new ByteBuffer[] { ByteBuffer.wrap(data, offset, length) });
+            }
+        }
+    }
 
-                // TODO use ByteBuffer.wrap to avoid copying the data.
-                writebuf.put(data, offset, length);
-                writebuf.flip();
-                if (isConnected()) {
-                    if (isUdpBased()) {
-                        dataChannel.register(getSelector(), SelectionKey.OP_WRITE, this);
-                    } else {
-                        socketChannel.register(getSelector(), SelectionKey.OP_WRITE, this);
-                    }
-                }
+    /**
+     * Send message that is made up of several buffers, for example a header and a body, using a gathering write. The
+     * content of the buffers is not copied unless direct buffers are in use so the buffers must not be modified until
+     * the message has been sent. The position and limit of the buffers are not changed.
+     *
+     * @param data The buffers that make up the message
+     *
+     * @throws IOException if an error occurs
+     */
+    public void setMessage(ByteBuffer[] data) throws IOException {
+        if (data != null) {
+            synchronized (this) {
+                current = null;
+                setMessageBuffers(data);
             }
         }
     }
 
+    private void setMessageBuffers(ByteBuffer[] data) throws IOException {
+        message = data;
+        remaining = 0;
+        ByteBuffer[] bufs = new ByteBuffer[data.length];
+        for (int i = 0; i < data.length; i++) {
+            bufs[i] = data[i].duplicate();
+            remaining += bufs[i].remaining();
+        }
+        ackbuf.clear();
+        if (getDirectBuffer()) {
+            // Copy into the direct buffer of this sender so the socket does not have to use a temporary direct buffer
+            if (writebuf == null || writebuf.capacity() < remaining) {
+                writebuf = getBuffer((int) remaining);
+            } else {
+                writebuf.clear();
+            }
+            for (ByteBuffer buf : bufs) {
+                writebuf.put(buf);
+            }
+            writebuf.flip();
+            writebufs = new ByteBuffer[] { writebuf };
+        } else {
+            writebufs = bufs;
+        }
+        if (isConnected()) {
+            if (isUdpBased()) {
+                dataChannel.register(getSelector(), SelectionKey.OP_WRITE, this);
+            } else {
+                socketChannel.register(getSelector(), SelectionKey.OP_WRITE, this);
+            }
+        }
+    }
+
+    /**
+     * @return the message if it was set as a byte array, otherwise <code>null</code>
+     *
+     * @see #getMessageBuffers()
+     */
     public byte[] getMessage() {
         return current;
     }
 
+    /**
+     * @return the buffers that make up the message, with their original position and limit
+     */
+    public ByteBuffer[] getMessageBuffers() {
+        return message;
+    }
+
 
     public boolean isComplete() {
         return complete;
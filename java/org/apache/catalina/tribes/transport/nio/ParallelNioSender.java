@@ -19,6 +19,7 @@ package org.apache.catalina.tribes.transport.nio;
 import java.io.IOException;
 import java.lang.ref.Cleaner;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.ArrayList;
@@ -65,7 +66,7 @@ public class ParallelNioSender extends AbstractSender implements MultiPointSende
     public synchronized void sendMessage(Member[] destination, ChannelMessage msg) throws ChannelException {
         long start = System.currentTimeMillis();
         this.setUdpBased((msg.getOptions() & Channel.SEND_OPTIONS_UDP) == Channel.SEND_OPTIONS_UDP);
-        byte[] data = XByteBuffer.createDataPackage((ChannelData) msg);
+        ByteBuffer[] data = XByteBuffer.createDataPackageBuffers((ChannelData) msg);
         NioSender[] senders = setupForSend(destination);
         connect(senders);
         setData(senders, data);
@@ -206,7 +207,7 @@ public class ParallelNioSender extends AbstractSender implements MultiPointSende
                     break;
                 }
 
-                byte[] data = sender.getMessage();
+                ByteBuffer[] data = sender.getMessageBuffers();
                 if (retry) {
                     try {
                         sender.disconnect();
@@ -270,7 +271,7 @@ public class ParallelNioSender extends AbstractSender implements MultiPointSende
         }
     }
 
-    private void setData(NioSender[] senders, byte[] data) throws ChannelException {
+    private void setData(NioSender[] senders, ByteBuffer[] data) throws ChannelException {
         ChannelException x = null;
         for (NioSender sender : senders) {
             try {
@@ -25,6 +25,8 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+
 public class ExecutorFactory {
     protected static final StringManager sm = StringManager.getManager(ExecutorFactory.class);
 
@@ -44,6 +46,19 @@ public class ExecutorFactory {
         return service;
     }
 
+    /**
+     * Create an executor that runs each task on a new virtual thread. Requires Java 21 or later.
+     *
+     * @param namePrefix The prefix for the names of the virtual threads
+     *
+     * @return the executor
+     *
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        return new VirtualThreadExecutor(namePrefix);
+    }
+
     // ---------------------------------------------- TribesThreadPoolExecutor Inner Class
     private static class TribesThreadPoolExecutor extends ThreadPoolExecutor {
         TribesThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Tracks changes to files in a set of directories using a {@link WatchService} so that components that would
+ * otherwise have to check the last modified time of every file they are interested in on every background process
+ * cycle only need to check the files that have changed.
+ * <p>
+ * All the watchers in the JVM share a single {@link WatchService} since operating systems limit the number of watch
+ * services a user may create (e.g. 128 inotify instances per user by default on Linux). Events are routed to the
+ * watchers that registered the directory in which they occurred.
+ * <p>
+ * Events are not delivered asynchronously. Callers are expected to call {@link #poll()} periodically, typically from
+ * a background process, to obtain the files that have changed since the previous call. If events may have been lost
+ * (e.g. because too many events occurred between calls) {@link #poll()} returns <code>null</code> and callers should
+ * check all the files they are interested in.
+ * <p>
+ * Not all file systems support change notifications. Directories that cannot be registered are reported to the caller
+ * so the files in them can continue to be checked by polling.
+ */
+public class DirectoryWatcher implements Closeable {
+
+    private static final Log log = LogFactory.getLog(DirectoryWatcher.class);
+    private static final StringManager sm = StringManager.getManager(DirectoryWatcher.class);
+
+    /*
+     * The shared watch service, the number of open watchers using it and, for each registered directory, the watchers
+     * that registered it. The watch service is closed when the last watcher is closed. Access to this state and to the
+     * state of every watcher is synchronized on LOCK.
+     */
+    private static final Object LOCK = new Object();
+    private static WatchService watchService = null;
+    private static int watcherCount = 0;
+    private static boolean createFailed = false;
+    private static final Map<WatchKey,Map<DirectoryWatcher,WatchedDirectory>> keys = new HashMap<>();
+
+    private final Map<Path,WatchKey> directories = new HashMap<>();
+    private final Set<File> changed = new HashSet<>();
+    private boolean overflow = false;
+    private boolean closed = false;
+
+
+    private DirectoryWatcher() {
+    }
+
+
+    /**
+     * Create a new watcher for the default file system.
+     *
+     * @return The new watcher or <code>null</code> if the default file system does not support watching for changes
+     */
+    public static DirectoryWatcher create() {
+        synchronized (LOCK) {
+            if (watchService == null) {
+                Thread currentThread = Thread.currentThread();
+                ClassLoader originalClassLoader = currentThread.getContextClassLoader();
+                try {
+                    // The watch service may start a thread that must not retain a reference to the class loader of
+                    // a web application
+                    currentThread.setContextClassLoader(DirectoryWatcher.class.getClassLoader());
+                    watchService = FileSystems.getDefault().newWatchService();
+                } catch (IOException | UnsupportedOperationException e) {
+                    // Only log the first failure as it is likely to be repeated for every web application
+                    if (createFailed) {
+                        if (log.isDebugEnabled()) {
+                            log.debug(sm.getString("directoryWatcher.createFail"), e);
+                        }
+                    } else {
+                        createFailed = true;
+                        log.warn(sm.getString("directoryWatcher.createFail"), e);
+                    }
+                    return null;
+                } finally {
+                    currentThread.setContextClassLoader(originalClassLoader);
+                }
+            }
+            watcherCount++;
+            return new DirectoryWatcher();
+        }
+    }
+
+
+    /**
+     * Register a directory so that the creation, modification and deletion of the files it contains are reported.
+     * Registering a directory that is already registered has no effect.
+     *
+     * @param dir       The directory to register
+     * @param recursive Should all the sub-directories of the directory, including those created after the directory
+     *                      has been registered, also be registered
+     *
+     * @return <code>true</code> if the directory is registered or <code>false</code> if the directory does not exist
+     *             or changes to it cannot be watched
+     */
+    public boolean register(File dir, boolean recursive) {
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        synchronized (LOCK) {
+            if (closed) {
+                return false;
+            }
+            if (directories.containsKey(path)) {
+                return true;
+            }
+            if (!Files.isDirectory(path)) {
+                return false;
+            }
+            try {
+                if (recursive) {
+                    registerTree(path);
+                } else {
+                    registerDirectory(path, false);
+                }
+                return true;
+            } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+                log.warn(sm.getString("directoryWatcher.registerFail", dir), e);
+                return false;
+            }
+        }
+    }
+
+
+    /**
+     * Obtain the files that have been created, modified or deleted since this method was last called. If a registered
+     * directory is deleted, the directory itself is reported as changed.
+     *
+     * @return The changed files or <code>null</code> if some changes may not have been reported and all files of
+     *             interest need to be checked
+     */
+    public Set<File> poll() {
+        synchronized (LOCK) {
+            if (closed) {
+                return null;
+            }
+            dispatchEvents();
+            if (overflow) {
+                overflow = false;
+                changed.clear();
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("directoryWatcher.overflow"));
+                }
+                return null;
+            }
+            Set<File> result = new HashSet<>(changed);
+            changed.clear();
+            return result;
+        }
+    }
+
+
+    @Override
+    public void close() {
+        synchronized (LOCK) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (WatchKey key : directories.values()) {
+                Map<DirectoryWatcher,WatchedDirectory> watchers = keys.get(key);
+                if (watchers != null) {
+                    watchers.remove(this);
+                    if (watchers.isEmpty()) {
+                        keys.remove(key);
+                        key.cancel();
+                    }
+                }
+            }
+            directories.clear();
+            changed.clear();
+            watcherCount--;
+            if (watcherCount == 0) {
+                keys.clear();
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    log.warn(sm.getString("directoryWatcher.closeFail"), e);
+                }
+                watchService = null;
+            }
+        }
+    }
+
+
+    /*
+     * Pass the pending events of the shared watch service to the watchers that registered the directories in which
+     * they occurred. Must be called while holding LOCK.
+     */
+    private static void dispatchEvents() {
+        WatchKey key = watchService.poll();
+        while (key != null) {
+            Map<DirectoryWatcher,WatchedDirectory> watchers = keys.get(key);
+            // Registering new sub-directories may modify the map
+            List<Map.Entry<DirectoryWatcher,WatchedDirectory>> entries =
+                    watchers == null ? List.of() : new ArrayList<>(watchers.entrySet());
+            for (WatchEvent<?> event : key.pollEvents()) {
+                for (Map.Entry<DirectoryWatcher,WatchedDirectory> entry : entries) {
+                    entry.getKey().onEvent(entry.getValue(), event);
+                }
+            }
+            if (!key.reset()) {
+                // The directory has been deleted or is no longer accessible
+                keys.remove(key);
+                for (Map.Entry<DirectoryWatcher,WatchedDirectory> entry : entries) {
+                    Path path = entry.getValue().path;
+                    entry.getKey().directories.remove(path);
+                    entry.getKey().changed.add(path.toFile());
+                }
+            }
+            key = watchService.poll();
+        }
+    }
+
+
+    private void onEvent(WatchedDirectory watched, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            overflow = true;
+            return;
+        }
+        Path child = watched.path.resolve((Path) event.context());
+        changed.add(child.toFile());
+        if (watched.recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+            try {
+                registerTree(child);
+            } catch (IOException | UnsupportedOperationException e) {
+                // Changes in the new directory would be missed
+                log.warn(sm.getString("directoryWatcher.registerFail", child), e);
+                overflow = true;
+            }
+        }
+    }
+
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                registerDirectory(dir, true);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+
+    private void registerDirectory(Path dir, boolean recursive) throws IOException {
+        if (directories.containsKey(dir)) {
+            return;
+        }
+        // Registering a directory that is already registered by another watcher returns the existing key
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.computeIfAbsent(key, k -> new HashMap<>()).put(this, new WatchedDirectory(dir, recursive));
+        directories.put(dir, key);
+    }
+
+
+    private static class WatchedDirectory {
+        private final Path path;
+        private final boolean recursive;
+
+        WatchedDirectory(Path path, boolean recursive) {
+            this.path = path;
+            this.recursive = recursive;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.jar.JarEntry;
@@ -177,6 +178,17 @@ public abstract class AbstractArchiveResourceSet extends AbstractResourceSet {
      */
     protected abstract JarEntry getArchiveEntry(String pathInArchive);
 
+
+    /**
+     * Obtain the names of all the entries in the archive. Implementations should avoid retaining the entries if
+     * {@link #getArchiveEntries(boolean)} would not otherwise do so.
+     *
+     * @return The names of the entries in the archive
+     */
+    protected Collection<String> getArchiveEntryNames() {
+        return getArchiveEntries(false).keySet();
+    }
+
     @Override
     public final boolean mkdir(String path) {
         checkPath(path);
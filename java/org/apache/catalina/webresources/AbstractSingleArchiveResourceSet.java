@@ -18,8 +18,11 @@ package org.apache.catalina.webresources;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -88,6 +91,28 @@ public abstract class AbstractSingleArchiveResourceSet extends AbstractArchiveRe
     }
 
 
+    @Override
+    protected Collection<String> getArchiveEntryNames() {
+        List<String> result = new ArrayList<>();
+        JarFile jarFile = null;
+        try {
+            jarFile = openJarFile();
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                result.add(entries.nextElement().getName());
+            }
+        } catch (IOException ioe) {
+            // Should never happen
+            throw new IllegalStateException(ioe);
+        } finally {
+            if (jarFile != null) {
+                closeJarFile();
+            }
+        }
+        return result;
+    }
+
+
     @Override
     protected JarEntry getArchiveEntry(String pathInArchive) {
         JarFile jarFile = null;
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.catalina.WebResourceSet;
+
+/**
+ * An index of the directories (packages) in the JARs that provide the class loader resources of a web application.
+ * Each directory is mapped to the JARs that contain at least one entry in that directory so looking up a class loader
+ * resource only needs to check the JARs that might contain it rather than every JAR.
+ * <p>
+ * The index is only available if every class loader resource set is an archive mounted at
+ * <code>/WEB-INF/classes</code>, which is always the case for JARs in <code>/WEB-INF/lib</code>. The order of the
+ * resource sets is retained for each directory.
+ */
+final class ClassResourcesIndex {
+
+    private static final String MOUNT = "/WEB-INF/classes";
+    private static final String PREFIX = MOUNT + "/";
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    private static final ClassResourcesIndex NOT_AVAILABLE = new ClassResourcesIndex(null);
+
+    private final Map<String,List<WebResourceSet>> directories;
+
+
+    private ClassResourcesIndex(Map<String,List<WebResourceSet>> directories) {
+        this.directories = directories;
+    }
+
+
+    /**
+     * Create an index for the given resource sets.
+     *
+     * @param classResources The class loader resource sets in the order they are searched
+     *
+     * @return The index. If the resource sets cannot be indexed, an index that is never used is returned.
+     */
+    static ClassResourcesIndex create(List<WebResourceSet> classResources) {
+        Map<String,List<WebResourceSet>> directories = new HashMap<>();
+        for (WebResourceSet webResourceSet : classResources) {
+            if (!(webResourceSet instanceof AbstractArchiveResourceSet)) {
+                return NOT_AVAILABLE;
+            }
+            AbstractArchiveResourceSet archiveResourceSet = (AbstractArchiveResourceSet) webResourceSet;
+            if (!MOUNT.equals(archiveResourceSet.getWebAppMount()) ||
+                    !archiveResourceSet.getInternalPath().isEmpty()) {
+                return NOT_AVAILABLE;
+            }
+            Set<String> archiveDirectories = new HashSet<>();
+            for (String name : archiveResourceSet.getArchiveEntryNames()) {
+                addDirectories(name, archiveDirectories);
+                // Versioned entries may be returned for the un-versioned name
+                if (name.startsWith(VERSIONS_PREFIX)) {
+                    int slash = name.indexOf('/', VERSIONS_PREFIX.length());
+                    if (slash > 0) {
+                        addDirectories(name.substring(slash + 1), archiveDirectories);
+                    }
+                }
+            }
+            for (String directory : archiveDirectories) {
+                directories.computeIfAbsent(directory, k -> new ArrayList<>(1)).add(webResourceSet);
+            }
+        }
+        return new ClassResourcesIndex(directories);
+    }
+
+
+    /**
+     * Obtain the resource sets that might contain the resource with the given path.
+     *
+     * @param path The path of the resource
+     *
+     * @return The resource sets, in search order, that might contain the resource or <code>null</code> if the index
+     *             cannot be used for the path and all the resource sets must be searched
+     */
+    List<WebResourceSet> getResourceSets(String path) {
+        if (directories == null || !path.startsWith(PREFIX)) {
+            return null;
+        }
+        int end = path.length();
+        if (path.charAt(end - 1) == '/') {
+            end--;
+        }
+        if (end < PREFIX.length()) {
+            // The root of the class loader resources
+            return null;
+        }
+        int slash = path.lastIndexOf('/', end - 1);
+        String directory = path.substring(PREFIX.length(), slash + 1);
+        return directories.getOrDefault(directory, Collections.emptyList());
+    }
+
+
+    private static void addDirectories(String name, Set<String> archiveDirectories) {
+        int end = name.length();
+        if (end > 0 && name.charAt(end - 1) == '/') {
+            end--;
+        }
+        int slash = name.lastIndexOf('/', end - 1);
+        while (slash > 0) {
+            if (!archiveDirectories.add(name.substring(0, slash + 1))) {
+                // All the parent directories have already been added
+                return;
+            }
+            slash = name.lastIndexOf('/', slash - 1);
+        }
+        archiveDirectories.add("");
+    }
+}
@@ -45,6 +45,22 @@ public class JarWarResource extends AbstractArchiveResource {
 
     @Override
     protected JarInputStreamWrapper getJarInputStreamWrapper() {
+        if (getArchiveResourceSet() instanceof JarWarResourceSet) {
+            try {
+                InputStream is =
+                        ((JarWarResourceSet) getArchiveResourceSet()).getNestedJarInputStream(getResource());
+                if (is != null) {
+                    return new NestedJarInputStreamWrapper(getResource(), is);
+                }
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("jarResource.getInputStreamFail", getResource().getName(), getBaseUrl()),
+                            e);
+                }
+                return null;
+            }
+        }
+
         JarFile warFile = null;
         JarInputStream jarIs = null;
         JarEntry entry = null;
@@ -91,4 +107,24 @@ public class JarWarResource extends AbstractArchiveResource {
     protected Log getLog() {
         return log;
     }
+
+
+    /*
+     * The stream reads directly from the WAR rather than from a JarFile obtained from the resource set so closing it
+     * must not decrement the usage count of the resource set.
+     */
+    private class NestedJarInputStreamWrapper extends JarInputStreamWrapper {
+
+        private final InputStream is;
+
+        NestedJarInputStreamWrapper(JarEntry jarEntry, InputStream is) {
+            super(jarEntry, is);
+            this.is = is;
+        }
+
+        @Override
+        public void close() throws IOException {
+            is.close();
+        }
+    }
 }
@@ -88,6 +88,15 @@ public class JarWarResourceSet extends AbstractArchiveResourceSet {
     protected Map<String,JarEntry> getArchiveEntries(boolean single) {
         synchronized (archiveLock) {
             if (archiveEntries == null) {
+                NestedJarIndex.NestedJar nestedJar = getNestedJar();
+                if (nestedJar != null) {
+                    archiveEntries = nestedJar.getJarEntries();
+                    Manifest m = getManifest();
+                    if (m != null && Boolean.parseBoolean(m.getMainAttributes().getValue("Multi-Release"))) {
+                        processArchivesEntriesForMultiRelease();
+                    }
+                    return archiveEntries;
+                }
                 JarFile warFile = null;
                 InputStream jarFileIs = null;
                 archiveEntries = new HashMap<>();
@@ -151,6 +160,47 @@ public class JarWarResourceSet extends AbstractArchiveResourceSet {
     }
 
 
+    /**
+     * Obtain an InputStream that reads the given entry directly from the WAR. This is only possible if the JAR is
+     * stored uncompressed in the WAR and the JARs nested in the WAR are indexed.
+     *
+     * @param jarEntry The entry to read
+     *
+     * @return The InputStream or {@code null} if the entry cannot be read directly from the WAR
+     *
+     * @throws IOException If the entry cannot be read
+     */
+    InputStream getNestedJarInputStream(JarEntry jarEntry) throws IOException {
+        NestedJarIndex index = getNestedJarIndex();
+        if (index == null) {
+            return null;
+        }
+        NestedJarIndex.NestedJar nestedJar = index.getNestedJar(archivePath);
+        if (nestedJar == null || !nestedJar.isRandomAccess()) {
+            return null;
+        }
+        return index.getInputStream(nestedJar, jarEntry.getName());
+    }
+
+
+    private NestedJarIndex getNestedJarIndex() {
+        WebResourceRoot root = getRoot();
+        if (root instanceof StandardRoot) {
+            return ((StandardRoot) root).getNestedJarIndex(getBase());
+        }
+        return null;
+    }
+
+
+    private NestedJarIndex.NestedJar getNestedJar() {
+        NestedJarIndex index = getNestedJarIndex();
+        if (index == null) {
+            return null;
+        }
+        return index.getNestedJar(archivePath);
+    }
+
+
     protected void processArchivesEntriesForMultiRelease() {
 
         int targetVersion = Runtime.version().feature();
@@ -0,0 +1,726 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * An index of the entries in the JARs nested in a packed WAR file. The index is built the first time each nested JAR is
+ * accessed and may be saved to, and loaded from, a file in the work directory of the web application so it does not
+ * have to be rebuilt every time the web application starts. The index is discarded if the size or last modified time
+ * of the WAR changes.
+ * <p>
+ * If a nested JAR is stored uncompressed in the WAR, the index records the offset of every entry so the entry can be
+ * read directly from the WAR using positioned reads from a single {@link FileChannel} shared by all the nested JARs
+ * rather than reading through the nested JAR until the entry is found. Otherwise, only the list of entries is indexed.
+ * Signed JARs are always read via a {@link java.util.jar.JarInputStream} so the signatures are verified.
+ */
+final class NestedJarIndex {
+
+    private static final Log log = LogFactory.getLog(NestedJarIndex.class);
+    private static final StringManager sm = StringManager.getManager(NestedJarIndex.class);
+
+    /**
+     * The name of the file, in the work directory of the web application, used to store the index.
+     */
+    static final String FILE_NAME = "nested-jar.idx";
+
+    // Change the version whenever the format changes
+    private static final int MAGIC = 0x544e4a49;
+    private static final int VERSION = 1;
+
+    // ZIP format constants
+    private static final int LOCSIG = 0x04034b50;
+    private static final int CENSIG = 0x02014b50;
+    private static final int ENDSIG = 0x06054b50;
+    private static final int LOCHDR = 30;
+    private static final int CENHDR = 46;
+    private static final int ENDHDR = 22;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private final File war;
+    private final long warSize;
+    private final long warLastModified;
+    private final File file;
+    private final Map<String,NestedJar> nestedJars = new ConcurrentHashMap<>();
+    private volatile boolean modified = false;
+
+    private final Object channelLock = new Object();
+    private FileChannel channel = null;
+    private int channelUseCount = 0;
+    private boolean closing = false;
+
+
+    private NestedJarIndex(File war, File file) {
+        this.war = war;
+        this.warSize = war.length();
+        this.warLastModified = war.lastModified();
+        this.file = file;
+    }
+
+
+    /**
+     * Create an index for the given WAR, loading any previously saved index from the given file if it is still valid
+     * for the WAR.
+     *
+     * @param war  The WAR file
+     * @param file The file used to store the index or <code>null</code> if the index should not be stored
+     *
+     * @return The index
+     */
+    static NestedJarIndex load(File war, File file) {
+        NestedJarIndex result = new NestedJarIndex(war, file);
+        if (file != null && file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION &&
+                        in.readUTF().equals(war.getAbsolutePath()) && in.readLong() == result.warSize &&
+                        in.readLong() == result.warLastModified) {
+                    int jarCount = in.readInt();
+                    for (int i = 0; i < jarCount; i++) {
+                        NestedJar nestedJar = NestedJar.read(in);
+                        result.nestedJars.put(nestedJar.archivePath, nestedJar);
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn(sm.getString("nestedJarIndex.loadFail", file), e);
+                result.nestedJars.clear();
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Write the index to the file from which it was loaded if any nested JAR has been indexed since the index was
+     * loaded or last saved.
+     */
+    synchronized void save() {
+        if (!modified || file == null) {
+            return;
+        }
+        modified = false;
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(war.getAbsolutePath());
+                out.writeLong(warSize);
+                out.writeLong(warLastModified);
+                Map<String,NestedJar> snapshot = new HashMap<>(nestedJars);
+                out.writeInt(snapshot.size());
+                for (NestedJar nestedJar : snapshot.values()) {
+                    nestedJar.write(out);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn(sm.getString("nestedJarIndex.saveFail", file), e);
+            if (!tmp.delete() && tmp.exists()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+
+    /**
+     * @return The absolute path of the WAR this index is for
+     */
+    String getWarPath() {
+        return war.getAbsolutePath();
+    }
+
+
+    /**
+     * Obtain the index for the given nested JAR, building it if necessary.
+     *
+     * @param archivePath The path of the JAR within the WAR
+     *
+     * @return The index for the nested JAR or <code>null</code> if the JAR could not be indexed
+     */
+    NestedJar getNestedJar(String archivePath) {
+        NestedJar result = nestedJars.get(archivePath);
+        if (result == null) {
+            try {
+                result = build(archivePath);
+            } catch (IOException | RuntimeException e) {
+                log.warn(sm.getString("nestedJarIndex.buildFail", archivePath, war), e);
+                return null;
+            }
+            if (result != null) {
+                NestedJar previous = nestedJars.putIfAbsent(archivePath, result);
+                if (previous == null) {
+                    modified = true;
+                } else {
+                    result = previous;
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Obtain an InputStream for an entry in a nested JAR that supports random access. The InputStream reads the entry
+     * directly from the WAR.
+     *
+     * @param nestedJar The nested JAR
+     * @param name      The name of the entry in the nested JAR
+     *
+     * @return The InputStream or <code>null</code> if the entry does not exist
+     *
+     * @throws IOException If the entry cannot be read
+     */
+    InputStream getInputStream(NestedJar nestedJar, String name) throws IOException {
+        Entry entry = nestedJar.entries.get(name);
+        if (entry == null || entry.localHeaderOffset < 0) {
+            return null;
+        }
+        acquireChannel();
+        boolean success = false;
+        try {
+            long pos = nestedJar.offset + entry.localHeaderOffset;
+            ByteBuffer header = read(pos, LOCHDR);
+            if (header.getInt(0) != LOCSIG) {
+                throw new IOException(sm.getString("nestedJarIndex.invalidEntry", name, nestedJar.archivePath));
+            }
+            long dataStart = pos + LOCHDR + getShort(header, 26) + getShort(header, 28);
+            InputStream result = new ChannelInputStream(dataStart, entry.compressedSize);
+            if (entry.method == ZipEntry.DEFLATED) {
+                result = new EntryInflaterInputStream(result,
+                        (int) Math.max(64, Math.min(entry.compressedSize + 1, 8192)));
+            }
+            success = true;
+            return result;
+        } finally {
+            if (!success) {
+                releaseChannel();
+            }
+        }
+    }
+
+
+    /**
+     * Close the shared {@link FileChannel} if it is not currently in use.
+     */
+    void gc() {
+        synchronized (channelLock) {
+            if (channel != null && channelUseCount == 0) {
+                closeChannel();
+            }
+        }
+    }
+
+
+    /**
+     * Close the shared {@link FileChannel}. If the channel is in use, it is closed once the last stream using it has
+     * been closed.
+     */
+    void close() {
+        synchronized (channelLock) {
+            closing = true;
+            if (channel != null && channelUseCount == 0) {
+                closeChannel();
+            }
+        }
+    }
+
+
+    private void acquireChannel() throws IOException {
+        synchronized (channelLock) {
+            getChannel();
+            channelUseCount++;
+        }
+    }
+
+
+    private void releaseChannel() {
+        synchronized (channelLock) {
+            if (channelUseCount > 0) {
+                channelUseCount--;
+            }
+            if (closing && channel != null && channelUseCount == 0) {
+                closeChannel();
+            }
+        }
+    }
+
+
+    /*
+     * Returns the shared channel, opening it if necessary. The channel is re-opened if it has been closed because a
+     * thread was interrupted while reading from it.
+     */
+    private FileChannel getChannel() throws IOException {
+        synchronized (channelLock) {
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(war.toPath(), StandardOpenOption.READ);
+            }
+            return channel;
+        }
+    }
+
+
+    private int read(ByteBuffer dst, long position) throws IOException {
+        try {
+            return getChannel().read(dst, position);
+        } catch (ClosedByInterruptException e) {
+            // This thread was interrupted. The channel has been closed and will be re-opened by the next read.
+            throw e;
+        } catch (ClosedChannelException e) {
+            // Another thread closed the channel, most likely because it was interrupted while reading.
+            return getChannel().read(dst, position);
+        }
+    }
+
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        channel = null;
+    }
+
+
+    private NestedJar build(String archivePath) throws IOException {
+        Map<String,Entry> entries = null;
+        long offset = -1;
+        acquireChannel();
+        try {
+            Map<String,Entry> warEntries = readCentralDirectory(0, getChannel().size());
+            Entry jarEntry = warEntries == null ? null : warEntries.get(archivePath);
+            if (jarEntry == null && warEntries != null) {
+                return null;
+            }
+            if (jarEntry != null && jarEntry.method == ZipEntry.STORED) {
+                ByteBuffer header = read(jarEntry.localHeaderOffset, LOCHDR);
+                if (header.getInt(0) == LOCSIG) {
+                    long dataStart =
+                            jarEntry.localHeaderOffset + LOCHDR + getShort(header, 26) + getShort(header, 28);
+                    entries = readCentralDirectory(dataStart, jarEntry.size);
+                    if (entries != null) {
+                        offset = dataStart;
+                    }
+                }
+            }
+        } finally {
+            releaseChannel();
+        }
+
+        if (entries == null) {
+            // Compressed in the WAR or in a format that isn't supported for random access
+            entries = readEntries(archivePath);
+            if (entries == null) {
+                return null;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("nestedJarIndex.build", archivePath, war, Integer.valueOf(entries.size()),
+                    Boolean.valueOf(offset >= 0)));
+        }
+        return new NestedJar(archivePath, offset, entries);
+    }
+
+
+    /*
+     * List the entries in a nested JAR by reading through it.
+     */
+    private Map<String,Entry> readEntries(String archivePath) throws IOException {
+        try (JarFile warFile = new JarFile(war)) {
+            JarEntry jarFileInWar = warFile.getJarEntry(archivePath);
+            if (jarFileInWar == null) {
+                return null;
+            }
+            Map<String,Entry> entries = new LinkedHashMap<>();
+            try (TomcatJarInputStream jarIs = new TomcatJarInputStream(warFile.getInputStream(jarFileInWar))) {
+                JarEntry entry = jarIs.getNextJarEntry();
+                while (entry != null) {
+                    JarEntry next = jarIs.getNextJarEntry();
+                    // The sizes and CRC are only known once the entry has been read if they are stored after the data
+                    entries.put(entry.getName(), new Entry(entry, -1));
+                    entry = next;
+                }
+                entry = jarIs.getMetaInfEntry();
+                if (entry != null) {
+                    entries.put(entry.getName(), new Entry(entry, -1));
+                }
+                entry = jarIs.getManifestEntry();
+                if (entry != null) {
+                    entries.put(entry.getName(), new Entry(entry, -1));
+                }
+            }
+            return entries;
+        }
+    }
+
+
+    /*
+     * Read the central directory of the ZIP archive that occupies the given region of the file. Returns null if the
+     * archive uses features (e.g. ZIP64) that are not supported.
+     */
+    private Map<String,Entry> readCentralDirectory(long start, long length) throws IOException {
+        if (length < ENDHDR) {
+            return null;
+        }
+        int tailLength = (int) Math.min(length, ENDHDR + MAX_COMMENT);
+        ByteBuffer tail = read(start + length - tailLength, tailLength);
+        int end = -1;
+        for (int i = tailLength - ENDHDR; i >= 0; i--) {
+            if (tail.getInt(i) == ENDSIG && i + ENDHDR + getShort(tail, i + 20) <= tailLength) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            return null;
+        }
+        int count = getShort(tail, end + 10);
+        long cenSize = getInt(tail, end + 12);
+        long cenOffset = getInt(tail, end + 16);
+        if (count == 0xFFFF || cenSize == ZIP64_MAGIC || cenOffset == ZIP64_MAGIC) {
+            return null;
+        }
+        long endPosition = length - tailLength + end;
+        long cenPosition = endPosition - cenSize;
+        // Allow for data, such as a launch script, that precedes the archive
+        long adjust = cenPosition - cenOffset;
+        if (cenPosition < 0 || adjust < 0 || cenSize > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        ByteBuffer cen = read(start + cenPosition, (int) cenSize);
+        Map<String,Entry> entries = new LinkedHashMap<>(count * 4 / 3 + 1);
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (pos + CENHDR > cenSize || cen.getInt(pos) != CENSIG) {
+                return null;
+            }
+            int method = getShort(cen, pos + 10);
+            long time = dosToJavaTime(getInt(cen, pos + 12));
+            long crc = getInt(cen, pos + 16);
+            long compressedSize = getInt(cen, pos + 20);
+            long size = getInt(cen, pos + 24);
+            int nameLength = getShort(cen, pos + 28);
+            int extraLength = getShort(cen, pos + 30);
+            int commentLength = getShort(cen, pos + 32);
+            long localHeaderOffset = getInt(cen, pos + 42);
+            if (compressedSize == ZIP64_MAGIC || size == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC ||
+                    pos + CENHDR + nameLength > cenSize) {
+                return null;
+            }
+            byte[] nameBytes = new byte[nameLength];
+            cen.get(pos + CENHDR, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            entries.put(name, new Entry(name, method, time, crc, size, compressedSize, localHeaderOffset + adjust));
+            pos += CENHDR + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer;
+    }
+
+
+    private static int getShort(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+
+    private static long getInt(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & 0xFFFFFFFFL;
+    }
+
+
+    private static long dosToJavaTime(long dosTime) {
+        try {
+            LocalDateTime ldt = LocalDateTime.of((int) ((dosTime >> 25) & 0x7f) + 1980, (int) ((dosTime >> 21) & 0x0f),
+                    (int) ((dosTime >> 16) & 0x1f), (int) ((dosTime >> 11) & 0x1f), (int) ((dosTime >> 5) & 0x3f),
+                    (int) ((dosTime << 1) & 0x3e));
+            return ldt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * The index of a single JAR nested in the WAR.
+     */
+    static final class NestedJar {
+
+        private final String archivePath;
+        private final long offset;
+        private final Map<String,Entry> entries;
+        private final boolean signed;
+
+        private NestedJar(String archivePath, long offset, Map<String,Entry> entries) {
+            this.archivePath = archivePath;
+            this.offset = offset;
+            this.entries = Collections.unmodifiableMap(entries);
+            boolean signed = false;
+            for (String name : entries.keySet()) {
+                if (name.startsWith("META-INF/") && name.toUpperCase(Locale.ENGLISH).endsWith(".SF")) {
+                    signed = true;
+                    break;
+                }
+            }
+            this.signed = signed;
+        }
+
+        /**
+         * @return <code>true</code> if the entries in this JAR can be read directly from the WAR
+         */
+        boolean isRandomAccess() {
+            return offset >= 0 && !signed;
+        }
+
+        /**
+         * @return A new map of the entries in this JAR, keyed by name
+         */
+        Map<String,JarEntry> getJarEntries() {
+            Map<String,JarEntry> result = new HashMap<>(entries.size() * 4 / 3 + 1);
+            for (Entry entry : entries.values()) {
+                result.put(entry.name, entry.toJarEntry());
+            }
+            return result;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(archivePath);
+            out.writeLong(offset);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                entry.write(out);
+            }
+        }
+
+        private static NestedJar read(DataInputStream in) throws IOException {
+            String archivePath = in.readUTF();
+            long offset = in.readLong();
+            int count = in.readInt();
+            Map<String,Entry> entries = new LinkedHashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                Entry entry = Entry.read(in);
+                entries.put(entry.name, entry);
+            }
+            return new NestedJar(archivePath, offset, entries);
+        }
+    }
+
+
+    private static final class Entry {
+
+        private final String name;
+        private final int method;
+        private final long time;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final long localHeaderOffset;
+
+        private Entry(String name, int method, long time, long crc, long size, long compressedSize,
+                long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.time = time;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        private Entry(ZipEntry zipEntry, long localHeaderOffset) {
+            this(zipEntry.getName(), zipEntry.getMethod(), zipEntry.getTime(), zipEntry.getCrc(), zipEntry.getSize(),
+                    zipEntry.getCompressedSize(), localHeaderOffset);
+        }
+
+        private JarEntry toJarEntry() {
+            JarEntry result = new JarEntry(name);
+            if (method == ZipEntry.STORED || method == ZipEntry.DEFLATED) {
+                result.setMethod(method);
+            }
+            if (time != -1) {
+                result.setTime(time);
+            }
+            if (crc >= 0) {
+                result.setCrc(crc);
+            }
+            if (size >= 0) {
+                result.setSize(size);
+            }
+            if (compressedSize >= 0) {
+                result.setCompressedSize(compressedSize);
+            }
+            return result;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(name);
+            out.writeShort(method);
+            out.writeLong(time);
+            out.writeLong(crc);
+            out.writeLong(size);
+            out.writeLong(compressedSize);
+            out.writeLong(localHeaderOffset);
+        }
+
+        private static Entry read(DataInputStream in) throws IOException {
+            return new Entry(in.readUTF(), in.readShort(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                    in.readLong());
+        }
+    }
+
+
+    /*
+     * Reads a region of the WAR using positioned reads so any number of streams may share the FileChannel.
+     */
+    private final class ChannelInputStream extends InputStream {
+
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private long position;
+        private long remaining;
+
+        private ChannelInputStream(long position, long length) {
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = NestedJarIndex.this.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            position += n;
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                releaseChannel();
+            }
+        }
+    }
+
+
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof = false;
+
+        private EntryInflaterInputStream(InputStream in, int size) {
+            super(in, new Inflater(true), size);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException();
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                // The inflater may need an additional dummy byte when there is no ZLIB header
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
@@ -33,6 +33,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.ObjectName;
 
+import jakarta.servlet.ServletContext;
+
 import org.apache.catalina.Context;
 import org.apache.catalina.Host;
 import org.apache.catalina.LifecycleException;
@@ -82,6 +84,13 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
 
     private ArchiveIndexStrategy archiveIndexStrategy = ArchiveIndexStrategy.SIMPLE;
 
+    // Created on first use and discarded whenever the class resources change
+    private volatile ClassResourcesIndex classResourcesIndex = null;
+
+    private boolean useNestedJarIndex = false;
+    private volatile NestedJarIndex nestedJarIndex = null;
+    private final Object nestedJarIndexLock = new Object();
+
     // Constructs to make iteration over all WebResourceSets simpler
     private final List<WebResourceSet> mainResources = new ArrayList<>();
     private final List<List<WebResourceSet>> allResources = new ArrayList<>();
@@ -266,6 +275,9 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         WebResource virtual = null;
         WebResource mainEmpty = null;
         for (List<WebResourceSet> list : allResources) {
+            if (useClassLoaderResources && list == classResources) {
+                list = findClassResources(path);
+            }
             for (WebResourceSet webResourceSet : list) {
                 if (!useClassLoaderResources && !webResourceSet.getClassLoaderOnly() ||
                         useClassLoaderResources && !webResourceSet.getStaticOnly()) {
@@ -293,6 +305,26 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         return mainEmpty;
     }
 
+    /**
+     * Obtain the class resources that might contain the given path.
+     *
+     * @param path The path of the resource
+     *
+     * @return The class resources, in search order, that need to be searched for the resource
+     */
+    private List<WebResourceSet> findClassResources(String path) {
+        ClassResourcesIndex index = classResourcesIndex;
+        if (index == null) {
+            index = ClassResourcesIndex.create(classResources);
+            classResourcesIndex = index;
+        }
+        List<WebResourceSet> result = index.getResourceSets(path);
+        if (result == null) {
+            return classResources;
+        }
+        return result;
+    }
+
     @Override
     public WebResource[] getResources(String path) {
         return getResources(path, false);
@@ -409,6 +441,9 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         }
 
         resourceList.add(resourceSet);
+        if (resourceList == classResources) {
+            classResourcesIndex = null;
+        }
     }
 
     @Override
@@ -451,6 +486,7 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
     protected void addClassResources(WebResourceSet webResourceSet) {
         webResourceSet.setRoot(this);
         classResources.add(webResourceSet);
+        classResourcesIndex = null;
     }
 
     @Override
@@ -554,6 +590,59 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         return this.archiveIndexStrategy;
     }
 
+    /**
+     * Configure whether the JARs nested in a packed WAR are indexed. The index is stored in the work directory of the
+     * web application and allows the entries of nested JARs that are stored uncompressed in the WAR to be read
+     * directly from the WAR.
+     *
+     * @param useNestedJarIndex {@code true} to index nested JARs, otherwise {@code false}
+     */
+    public void setUseNestedJarIndex(boolean useNestedJarIndex) {
+        this.useNestedJarIndex = useNestedJarIndex;
+    }
+
+    /**
+     * @return {@code true} if the JARs nested in a packed WAR are indexed, otherwise {@code false}
+     */
+    public boolean getUseNestedJarIndex() {
+        return useNestedJarIndex;
+    }
+
+    /**
+     * Obtain the index of the JARs nested in the given WAR.
+     *
+     * @param war The absolute path of the WAR
+     *
+     * @return The index or {@code null} if nested JARs are not indexed or the WAR is not the WAR that provides the
+     *             main resources
+     */
+    NestedJarIndex getNestedJarIndex(String war) {
+        if (!useNestedJarIndex) {
+            return null;
+        }
+        NestedJarIndex result = nestedJarIndex;
+        if (result == null) {
+            synchronized (nestedJarIndexLock) {
+                result = nestedJarIndex;
+                if (result == null) {
+                    File indexFile = null;
+                    if (context != null) {
+                        Object workDir = context.getServletContext().getAttribute(ServletContext.TEMPDIR);
+                        if (workDir instanceof File) {
+                            indexFile = new File((File) workDir, NestedJarIndex.FILE_NAME);
+                        }
+                    }
+                    result = NestedJarIndex.load(new File(war), indexFile);
+                    nestedJarIndex = result;
+                }
+            }
+        }
+        if (result.getWarPath().equals(war)) {
+            return result;
+        }
+        return null;
+    }
+
     public List<String> getTrackedResources() {
         List<String> result = new ArrayList<>(trackedResources.size());
         for (TrackedWebResource resource : trackedResources) {
@@ -607,6 +696,10 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
     public void backgroundProcess() {
         cache.backgroundProcess();
         gc();
+        NestedJarIndex index = nestedJarIndex;
+        if (index != null) {
+            index.save();
+        }
     }
 
 
@@ -617,6 +710,10 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
                 webResourceSet.gc();
             }
         }
+        NestedJarIndex index = nestedJarIndex;
+        if (index != null) {
+            index.gc();
+        }
     }
 
     @Override
@@ -724,6 +821,7 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         for (WebResourceSet classResource : classResources) {
             classResource.start();
         }
+        classResourcesIndex = null;
 
         cache.enforceObjectMaxSizeLimit();
 
@@ -775,6 +873,14 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
             webResourceSet.destroy();
         }
         classResources.clear();
+        classResourcesIndex = null;
+
+        NestedJarIndex index = nestedJarIndex;
+        if (index != null) {
+            index.save();
+            index.close();
+            nestedJarIndex = null;
+        }
 
         for (TrackedWebResource trackedResource : trackedResources) {
             log.error(sm.getString("standardRoot.lockedFile", context.getName(), trackedResource.getName()),
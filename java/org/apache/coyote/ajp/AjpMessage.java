@@ -237,8 +237,30 @@ public class AjpMessage {
     }
 
 
+    /**
+     * Copy pre-encoded bytes into the packet, starting at the current write position. Unlike
+     * {@link #appendBytes(byte[], int, int)}, no length or terminating \0 is added so the bytes must already be in the
+     * AJP wire format.
+     *
+     * @param b The pre-encoded bytes to copy
+     */
+    public void appendEncodedBytes(byte[] b) {
+        if (checkOverflow(b.length, 0)) {
+            return;
+        }
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+    }
+
+
     private boolean checkOverflow(int numBytes) {
-        if (pos + numBytes + 3 > buf.length) {
+        // Length (2 bytes) and the terminating \0 (1 byte)
+        return checkOverflow(numBytes, 3);
+    }
+
+
+    private boolean checkOverflow(int numBytes, int overhead) {
+        if (pos + numBytes + overhead > buf.length) {
             log.error(sm.getString("ajpmessage.overflow", "" + numBytes, "" + pos),
                     new ArrayIndexOutOfBoundsException());
             if (log.isDebugEnabled()) {
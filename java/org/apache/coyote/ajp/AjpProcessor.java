@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchProviderException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
@@ -89,6 +90,19 @@ public class AjpProcessor extends AbstractProcessor {
     private static final byte[] pongMessageArray;
 
 
+    /**
+     * Pre-encoded status code and reason phrase for the SEND_HEADERS message, indexed by status code.
+     */
+    private static final byte[][] statusArrays = new byte[600][];
+
+
+    /**
+     * Pre-encoded response header names. Names with an AJP code are encoded as that code, other common names as a
+     * length prefixed, null terminated string.
+     */
+    private static final Map<String,byte[]> responseHeaderNameArrays;
+
+
     private static final Map<String,String> jakartaAttributeMapping;
     private static final Set<String> iisTlsAttributes;
 
@@ -130,6 +144,37 @@ public class AjpProcessor extends AbstractProcessor {
         pongMessageArray = new byte[pongMessage.getLen()];
         System.arraycopy(pongMessage.getBuffer(), 0, pongMessageArray, 0, pongMessage.getLen());
 
+        // Pre-encode the status codes. The reason phrase is the status code
+        // since mod_jk + httpd 2.x fails with a null reason phrase - bug 45026
+        for (int i = 100; i < statusArrays.length; i++) {
+            AjpMessage statusMessage = new AjpMessage(16);
+            statusMessage.reset();
+            statusMessage.appendInt(i);
+            byte[] reason = Integer.toString(i).getBytes(StandardCharsets.ISO_8859_1);
+            statusMessage.appendBytes(reason, 0, reason.length);
+            statusArrays[i] = encodedBytes(statusMessage);
+        }
+
+        // Pre-encode the response header names
+        Map<String,byte[]> names = new HashMap<>();
+        for (int i = 0; i < Constants.SC_RESP_AJP13_MAX; i++) {
+            AjpMessage nameMessage = new AjpMessage(16);
+            nameMessage.reset();
+            nameMessage.appendInt(Constants.SC_RESP_CONTENT_TYPE + i);
+            names.put(Constants.getResponseHeaderForCode(i), encodedBytes(nameMessage));
+        }
+        for (String name : new String[] { "Accept-Ranges", "Access-Control-Allow-Origin", "Allow", "Cache-Control",
+                "Connection", "Content-Disposition", "Content-Encoding", "Content-Range", "ETag", "Expires",
+                "Keep-Alive", "Link", "Pragma", "Retry-After", "Server", "Strict-Transport-Security",
+                "Transfer-Encoding", "Vary", "X-Content-Type-Options", "X-Frame-Options", "X-Powered-By" }) {
+            AjpMessage nameMessage = new AjpMessage(64);
+            nameMessage.reset();
+            byte[] nameBytes = name.getBytes(StandardCharsets.ISO_8859_1);
+            nameMessage.appendBytes(nameBytes, 0, nameBytes.length);
+            names.put(name, encodedBytes(nameMessage));
+        }
+        responseHeaderNameArrays = Collections.unmodifiableMap(names);
+
         // Build Map of Java Servlet to Jakarta Servlet attribute names
         Map<String,String> m = new HashMap<>();
         m.put("jakarta.servlet.request.secure_protocol", "jakarta.servlet.request.secure_protocol");
@@ -157,6 +202,17 @@ public class AjpProcessor extends AbstractProcessor {
     }
 
 
+    /*
+     * Extracts the data written to the given message after the AJP header.
+     */
+    private static byte[] encodedBytes(AjpMessage message) {
+        message.end();
+        byte[] result = new byte[message.getLen() - Constants.H_SIZE];
+        System.arraycopy(message.getBuffer(), Constants.H_SIZE, result, 0, result.length);
+        return result;
+    }
+
+
     // ----------------------------------------------------- Instance Variables
 
     private final AbstractAjpProtocol<?> protocol;
@@ -969,11 +1025,15 @@ public class AjpProcessor extends AbstractProcessor {
             responseMessage.appendByte(Constants.JK_AJP13_SEND_HEADERS);
 
             // Write HTTP response line
-            responseMessage.appendInt(statusCode);
-            // Reason phrase is optional but mod_jk + httpd 2.x fails with a null
-            // reason phrase - bug 45026
-            tmpMB.setString(Integer.toString(response.getStatus()));
-            responseMessage.appendBytes(tmpMB);
+            if (statusCode >= 100 && statusCode < statusArrays.length) {
+                responseMessage.appendEncodedBytes(statusArrays[statusCode]);
+            } else {
+                responseMessage.appendInt(statusCode);
+                // Reason phrase is optional but mod_jk + httpd 2.x fails with a null
+                // reason phrase - bug 45026
+                tmpMB.setString(Integer.toString(statusCode));
+                responseMessage.appendBytes(tmpMB);
+            }
 
             // Start headers
             responseMessage.appendInt(numHeaders);
@@ -984,9 +1044,9 @@ public class AjpProcessor extends AbstractProcessor {
                 try {
                     // Write headers
                     MessageBytes hN = headers.getName(i);
-                    int hC = Constants.getResponseAjpIndex(hN.toString());
-                    if (hC > 0) {
-                        responseMessage.appendInt(hC);
+                    byte[] encodedName = responseHeaderNameArrays.get(hN.toString());
+                    if (encodedName != null) {
+                        responseMessage.appendEncodedBytes(encodedName);
                     } else {
                         responseMessage.appendBytes(hN);
                     }
@@ -1006,10 +1066,15 @@ public class AjpProcessor extends AbstractProcessor {
             }
         }
 
-        // Write to buffer
+        // Write to buffer. For blocking IO the headers are not flushed here so
+        // they can be sent in the same packet as the body and the end message.
+        // An explicit flush, the end of the response or a full write buffer
+        // will send them.
         responseMessage.end();
         socketWrapper.write(true, responseMessage.getBuffer(), 0, responseMessage.getLen());
-        socketWrapper.flush(true);
+        if (response.getWriteListener() != null) {
+            socketWrapper.flush(true);
+        }
     }
 
 
@@ -1240,7 +1305,12 @@ public class AjpProcessor extends AbstractProcessor {
             responseMessage.appendBytes(chunk);
             responseMessage.end();
             socketWrapper.write(blocking, responseMessage.getBuffer(), 0, responseMessage.getLen());
-            socketWrapper.flush(blocking);
+            if (!blocking) {
+                // Blocking writes are coalesced in the socket write buffer
+                // until flushed. Non-blocking writes are flushed immediately
+                // to keep the view of isReady() consistent.
+                socketWrapper.flush(false);
+            }
 
             len -= thisTime;
             off += thisTime;
@@ -16,11 +16,16 @@
  */
 package org.apache.tomcat.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -54,7 +59,6 @@ public final class IntrospectionUtils {
         return setProperty(o, name, value, invokeSetProperty, null);
     }
 
-    @SuppressWarnings("null") // setPropertyMethodVoid is not null when used
     public static boolean setProperty(Object o, String name, String value,
             boolean invokeSetProperty, StringBuilder actualMethod) {
         if (log.isTraceEnabled()) {
@@ -66,131 +70,28 @@ public final class IntrospectionUtils {
             return XReflectionIntrospectionUtils.setPropertyInternal(o, name, value, invokeSetProperty);
         }
 
-        String setter = "set" + capitalize(name);
-
         try {
-            Method methods[] = findMethods(o.getClass());
-            Method setPropertyMethodVoid = null;
-            Method setPropertyMethodBool = null;
+            PropertyAccessors accessors = findPropertyAccessors(o.getClass());
 
-            // First, the ideal case - a setFoo( String ) method
-            for (Method item : methods) {
-                Class<?> paramT[] = item.getParameterTypes();
-                if (setter.equals(item.getName()) && paramT.length == 1
-                        && "java.lang.String".equals(paramT[0].getName())) {
-                    item.invoke(o, new Object[]{value});
-                    if (actualMethod != null) {
-                        actualMethod.append(item.getName()).append("(\"").append(escape(value)).append("\")");
-                    }
+            // First, the ideal case - a setFoo( String ) method, then try a
+            // setFoo ( int ), ( long ), ( boolean ) or ( InetAddress )
+            for (PropertySetter setter : accessors.getSetters(name)) {
+                if (setter.set(o, value, actualMethod)) {
                     return true;
                 }
             }
 
-            // Try a setFoo ( int ) or ( boolean )
-            for (Method method : methods) {
-                boolean ok = true;
-                if (setter.equals(method.getName())
-                        && method.getParameterTypes().length == 1) {
-
-                    // match - find the type and invoke it
-                    Class<?> paramType = method.getParameterTypes()[0];
-                    Object params[] = new Object[1];
-
-                    // Try a setFoo ( int )
-                    if ("java.lang.Integer".equals(paramType.getName())
-                            || "int".equals(paramType.getName())) {
-                        try {
-                            params[0] = Integer.valueOf(value);
-                        } catch (NumberFormatException ex) {
-                            ok = false;
-                        }
-                        if (actualMethod != null) {
-                            actualMethod.append(method.getName()).append("(Integer.valueOf(\"").append(value).append("\"))");
-                        }
-                        // Try a setFoo ( long )
-                    } else if ("java.lang.Long".equals(paramType.getName())
-                            || "long".equals(paramType.getName())) {
-                        try {
-                            params[0] = Long.valueOf(value);
-                        } catch (NumberFormatException ex) {
-                            ok = false;
-                        }
-                        if (actualMethod != null) {
-                            actualMethod.append(method.getName()).append("(Long.valueOf(\"").append(value).append("\"))");
-                        }
-                        // Try a setFoo ( boolean )
-                    } else if ("java.lang.Boolean".equals(paramType.getName())
-                            || "boolean".equals(paramType.getName())) {
-                        params[0] = Boolean.valueOf(value);
-                        if (actualMethod != null) {
-                            actualMethod.append(method.getName()).append("(Boolean.valueOf(\"").append(value).append("\"))");
-                        }
-                        // Try a setFoo ( InetAddress )
-                    } else if ("java.net.InetAddress".equals(paramType
-                            .getName())) {
-                        try {
-                            params[0] = InetAddress.getByName(value);
-                        } catch (UnknownHostException exc) {
-                            if (log.isDebugEnabled()) {
-                                log.debug(sm.getString("introspectionUtils.hostResolutionFail", value));
-                            }
-                            ok = false;
-                        }
-                        if (actualMethod != null) {
-                            actualMethod.append(method.getName()).append("(InetAddress.getByName(\"").append(value).append("\"))");
-                        }
-                        // Unknown type
-                    } else {
-                        if (log.isTraceEnabled()) {
-                            log.trace("IntrospectionUtils: Unknown type " +
-                                    paramType.getName());
-                        }
-                    }
-
-                    if (ok) {
-                        method.invoke(o, params);
-                        return true;
-                    }
-                }
-
-                // save "setProperty" for later
-                if ("setProperty".equals(method.getName())) {
-                    if (method.getReturnType() == Boolean.TYPE) {
-                        setPropertyMethodBool = method;
-                    } else {
-                        setPropertyMethodVoid = method;
-                    }
-
-                }
-            }
-
             // Ok, no setXXX found, try a setProperty("name", "value")
-            if (invokeSetProperty && (setPropertyMethodBool != null ||
-                    setPropertyMethodVoid != null)) {
+            MethodAccessor setPropertyMethod = accessors.getSetPropertyMethod();
+            if (invokeSetProperty && setPropertyMethod != null) {
                 if (actualMethod != null) {
                     actualMethod.append("setProperty(\"").append(name).append("\", \"").append(escape(value)).append("\")");
                 }
-                Object params[] = new Object[2];
-                params[0] = name;
-                params[1] = value;
-                if (setPropertyMethodBool != null) {
-                    try {
-                        return ((Boolean) setPropertyMethodBool.invoke(o,
-                                params)).booleanValue();
-                    }catch (IllegalArgumentException biae) {
-                        //the boolean method had the wrong
-                        //parameter types. lets try the other
-                        if (setPropertyMethodVoid!=null) {
-                            setPropertyMethodVoid.invoke(o, params);
-                            return true;
-                        }else {
-                            throw biae;
-                        }
-                    }
-                } else {
-                    setPropertyMethodVoid.invoke(o, params);
-                    return true;
+                Object result = setPropertyMethod.invoke(o, name, value);
+                if (setPropertyMethod.returnsBoolean()) {
+                    return ((Boolean) result).booleanValue();
                 }
+                return true;
             }
 
         } catch (IllegalArgumentException | SecurityException | IllegalAccessException e) {
@@ -235,35 +136,10 @@ public final class IntrospectionUtils {
         if (XReflectionIntrospectionUtils.isEnabled()) {
             return XReflectionIntrospectionUtils.getPropertyInternal(o, name);
         }
-        String getter = "get" + capitalize(name);
-        String isGetter = "is" + capitalize(name);
 
         try {
-            Method methods[] = findMethods(o.getClass());
-            Method getPropertyMethod = null;
-
-            // First, the ideal case - a getFoo() method
-            for (Method method : methods) {
-                Class<?> paramT[] = method.getParameterTypes();
-                if (getter.equals(method.getName()) && paramT.length == 0) {
-                    return method.invoke(o, (Object[]) null);
-                }
-                if (isGetter.equals(method.getName()) && paramT.length == 0) {
-                    return method.invoke(o, (Object[]) null);
-                }
-
-                if ("getProperty".equals(method.getName())) {
-                    getPropertyMethod = method;
-                }
-            }
-
-            // Ok, no setXXX found, try a getProperty("name")
-            if (getPropertyMethod != null) {
-                Object params[] = new Object[1];
-                params[0] = name;
-                return getPropertyMethod.invoke(o, params);
-            }
-
+            // A getFoo() or isFoo() method or, if there is none, a getProperty("name")
+            return findPropertyAccessors(o.getClass()).getGetter(name).get(o, name);
         } catch (IllegalArgumentException | SecurityException | IllegalAccessException e) {
             log.warn(sm.getString("introspectionUtils.getPropertyError", name, o.getClass()), e);
         } catch (InvocationTargetException e) {
@@ -401,10 +277,17 @@ public final class IntrospectionUtils {
     // -------------------- other utils --------------------
     public static void clear() {
         objectMethods.clear();
+        propertyAccessors.clear();
     }
 
     private static final Map<Class<?>,Method[]> objectMethods = new ConcurrentHashMap<>();
 
+    /*
+     * The property setters and getters of each class, resolved to method
+     * handles the first time a property is accessed.
+     */
+    private static final Map<Class<?>,PropertyAccessors> propertyAccessors = new ConcurrentHashMap<>();
+
     public static Method[] findMethods(Class<?> c) {
         Method methods[] = objectMethods.get(c);
         if (methods != null) {
@@ -416,6 +299,18 @@ public final class IntrospectionUtils {
         return methods;
     }
 
+    private static PropertyAccessors findPropertyAccessors(Class<?> c) {
+        PropertyAccessors accessors = propertyAccessors.get(c);
+        if (accessors == null) {
+            accessors = new PropertyAccessors(c);
+            PropertyAccessors existing = propertyAccessors.putIfAbsent(c, accessors);
+            if (existing != null) {
+                accessors = existing;
+            }
+        }
+        return accessors;
+    }
+
     public static Method findMethod(Class<?> c, String name,
             Class<?> params[]) {
         Method methods[] = findMethods(c);
@@ -586,6 +481,333 @@ public final class IntrospectionUtils {
     }
 
 
+    // -------------------- Property accessors --------------------
+
+    /*
+     * The setters and getters of a class. Methods are resolved in the same
+     * order as the public methods of the class were previously searched on
+     * every call so the same method is selected.
+     */
+    private static final class PropertyAccessors {
+
+        private static final PropertySetter[] NO_SETTERS = new PropertySetter[0];
+
+        private final Class<?> clazz;
+        private final Map<String,PropertySetter[]> setters = new ConcurrentHashMap<>();
+        private final Map<String,PropertyGetter> getters = new ConcurrentHashMap<>();
+        private final MethodAccessor setPropertyMethod;
+        private final MethodAccessor getPropertyMethod;
+
+        PropertyAccessors(Class<?> clazz) {
+            this.clazz = clazz;
+            Method setPropertyMethodVoid = null;
+            Method setPropertyMethodBool = null;
+            Method getPropertyMethod = null;
+            for (Method method : findMethods(clazz)) {
+                if ("setProperty".equals(method.getName())) {
+                    if (method.getReturnType() == Boolean.TYPE) {
+                        setPropertyMethodBool = method;
+                    } else {
+                        setPropertyMethodVoid = method;
+                    }
+                } else if ("getProperty".equals(method.getName())) {
+                    getPropertyMethod = method;
+                }
+            }
+            // Use the boolean method unless it has the wrong parameter types
+            // and there is another one
+            if (setPropertyMethodBool != null &&
+                    (setPropertyMethodVoid == null || acceptsStrings(setPropertyMethodBool, 2))) {
+                this.setPropertyMethod =
+                        new MethodAccessor(setPropertyMethodBool, acceptsStrings(setPropertyMethodBool, 2));
+            } else if (setPropertyMethodVoid != null) {
+                this.setPropertyMethod =
+                        new MethodAccessor(setPropertyMethodVoid, acceptsStrings(setPropertyMethodVoid, 2));
+            } else {
+                this.setPropertyMethod = null;
+            }
+            if (getPropertyMethod != null) {
+                this.getPropertyMethod = new MethodAccessor(getPropertyMethod, acceptsStrings(getPropertyMethod, 1));
+            } else {
+                this.getPropertyMethod = null;
+            }
+        }
+
+        PropertySetter[] getSetters(String name) {
+            PropertySetter[] result = setters.get(name);
+            if (result == null) {
+                result = resolveSetters(name);
+                setters.put(name, result);
+            }
+            return result;
+        }
+
+        PropertyGetter getGetter(String name) {
+            PropertyGetter result = getters.get(name);
+            if (result == null) {
+                result = resolveGetter(name);
+                getters.put(name, result);
+            }
+            return result;
+        }
+
+        MethodAccessor getSetPropertyMethod() {
+            return setPropertyMethod;
+        }
+
+        private PropertySetter[] resolveSetters(String name) {
+            String setter = "set" + capitalize(name);
+            Method[] methods = findMethods(clazz);
+            // A setFoo( String ) method takes precedence over all others
+            for (Method method : methods) {
+                if (setter.equals(method.getName()) && method.getParameterCount() == 1 &&
+                        method.getParameterTypes()[0] == String.class) {
+                    return new PropertySetter[] { new PropertySetter(method) };
+                }
+            }
+            List<PropertySetter> result = new ArrayList<>();
+            for (Method method : methods) {
+                if (setter.equals(method.getName()) && method.getParameterCount() == 1) {
+                    result.add(new PropertySetter(method));
+                }
+            }
+            return result.isEmpty() ? NO_SETTERS : result.toArray(NO_SETTERS);
+        }
+
+        private PropertyGetter resolveGetter(String name) {
+            String getter = "get" + capitalize(name);
+            String isGetter = "is" + capitalize(name);
+            for (Method method : findMethods(clazz)) {
+                if ((getter.equals(method.getName()) || isGetter.equals(method.getName())) &&
+                        method.getParameterCount() == 0) {
+                    return new PropertyGetter(new MethodAccessor(method, true), false);
+                }
+            }
+            return new PropertyGetter(getPropertyMethod, true);
+        }
+
+        private static boolean acceptsStrings(Method method, int count) {
+            if (method.getParameterCount() != count) {
+                return false;
+            }
+            for (Class<?> type : method.getParameterTypes()) {
+                if (!type.isAssignableFrom(String.class)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
+    /*
+     * The conversions applied to the string value of a property for the
+     * parameter type of its setter.
+     */
+    private enum Conversion {
+        STRING,
+        INTEGER,
+        LONG,
+        BOOLEAN,
+        INET_ADDRESS,
+        UNKNOWN;
+
+        static Conversion forType(Class<?> type) {
+            if (type == String.class) {
+                return STRING;
+            } else if (type == Integer.class || type == Integer.TYPE) {
+                return INTEGER;
+            } else if (type == Long.class || type == Long.TYPE) {
+                return LONG;
+            } else if (type == Boolean.class || type == Boolean.TYPE) {
+                return BOOLEAN;
+            } else if (type == InetAddress.class) {
+                return INET_ADDRESS;
+            } else {
+                return UNKNOWN;
+            }
+        }
+    }
+
+
+    private static final class PropertySetter {
+
+        private final MethodAccessor accessor;
+        private final Class<?> paramType;
+        private final Conversion conversion;
+
+        PropertySetter(Method method) {
+            this.accessor = new MethodAccessor(method, true);
+            this.paramType = method.getParameterTypes()[0];
+            this.conversion = Conversion.forType(paramType);
+        }
+
+        /*
+         * Returns false if the value can't be converted to the parameter type
+         * so that the next setter can be tried.
+         */
+        boolean set(Object o, String value, StringBuilder actualMethod)
+                throws IllegalAccessException, InvocationTargetException {
+            Object param;
+            String code;
+            switch (conversion) {
+                case STRING:
+                    param = value;
+                    code = "\"" + escape(value) + "\"";
+                    break;
+                case INTEGER:
+                    try {
+                        param = Integer.valueOf(value);
+                    } catch (NumberFormatException ex) {
+                        return false;
+                    }
+                    code = "Integer.valueOf(\"" + value + "\")";
+                    break;
+                case LONG:
+                    try {
+                        param = Long.valueOf(value);
+                    } catch (NumberFormatException ex) {
+                        return false;
+                    }
+                    code = "Long.valueOf(\"" + value + "\")";
+                    break;
+                case BOOLEAN:
+                    param = Boolean.valueOf(value);
+                    code = "Boolean.valueOf(\"" + value + "\")";
+                    break;
+                case INET_ADDRESS:
+                    try {
+                        param = InetAddress.getByName(value);
+                    } catch (UnknownHostException exc) {
+                        if (log.isDebugEnabled()) {
+                            log.debug(sm.getString("introspectionUtils.hostResolutionFail", value));
+                        }
+                        return false;
+                    }
+                    code = "InetAddress.getByName(\"" + value + "\")";
+                    break;
+                default:
+                    if (log.isTraceEnabled()) {
+                        log.trace("IntrospectionUtils: Unknown type " + paramType.getName());
+                    }
+                    if (paramType.isPrimitive()) {
+                        throw new IllegalArgumentException(
+                                sm.getString("introspectionUtils.conversionError", value, paramType.getName()));
+                    }
+                    param = null;
+                    code = "null";
+            }
+            accessor.invoke(o, param);
+            if (actualMethod != null) {
+                actualMethod.append(accessor.getName()).append('(').append(code).append(')');
+            }
+            return true;
+        }
+    }
+
+
+    private static final class PropertyGetter {
+
+        private final MethodAccessor accessor;
+        private final boolean passName;
+
+        PropertyGetter(MethodAccessor accessor, boolean passName) {
+            this.accessor = accessor;
+            this.passName = passName;
+        }
+
+        Object get(Object o, String name) throws IllegalAccessException, InvocationTargetException {
+            if (accessor == null) {
+                return null;
+            } else if (passName) {
+                return accessor.invoke(o, name);
+            } else {
+                return accessor.invoke(o);
+            }
+        }
+    }
+
+
+    /*
+     * A method invoked via a method handle adapted to take and return Objects.
+     * The access and argument checks that Method.invoke() performs on every
+     * call are performed once when the handle is created and any failure is
+     * reported with the same exception when the method is invoked.
+     */
+    private static final class MethodAccessor {
+
+        private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+        private final Method method;
+        private final MethodHandle handle;
+        private final IllegalAccessException accessError;
+        private final boolean validParameters;
+
+        MethodAccessor(Method method, boolean validParameters) {
+            this.method = method;
+            MethodHandle handle = null;
+            IllegalAccessException accessError = null;
+            try {
+                handle = LOOKUP.unreflect(method)
+                        .asType(MethodType.genericMethodType(method.getParameterCount() + 1));
+            } catch (IllegalAccessException e) {
+                accessError = e;
+            }
+            this.handle = handle;
+            this.accessError = accessError;
+            this.validParameters = validParameters;
+        }
+
+        String getName() {
+            return method.getName();
+        }
+
+        boolean returnsBoolean() {
+            return method.getReturnType() == Boolean.TYPE;
+        }
+
+        Object invoke(Object target) throws IllegalAccessException, InvocationTargetException {
+            checkInvoke();
+            try {
+                return handle.invokeExact(target);
+            } catch (Throwable t) {
+                ExceptionUtils.handleThrowable(t);
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        Object invoke(Object target, Object arg) throws IllegalAccessException, InvocationTargetException {
+            checkInvoke();
+            try {
+                return handle.invokeExact(target, arg);
+            } catch (Throwable t) {
+                ExceptionUtils.handleThrowable(t);
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        Object invoke(Object target, Object arg1, Object arg2)
+                throws IllegalAccessException, InvocationTargetException {
+            checkInvoke();
+            try {
+                return handle.invokeExact(target, arg1, arg2);
+            } catch (Throwable t) {
+                ExceptionUtils.handleThrowable(t);
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        private void checkInvoke() throws IllegalAccessException {
+            if (accessError != null) {
+                throw accessError;
+            }
+            if (!validParameters) {
+                throw new IllegalArgumentException(sm.getString("introspectionUtils.invalidParameters", method));
+            }
+        }
+    }
+
+
     // -------------------- Get property --------------------
     // This provides a layer of abstraction
 
@@ -192,6 +192,12 @@ public class CallMethodRule extends Rule {
     protected boolean useExactMatch = false;
 
 
+    /**
+     * The method most recently called by this rule.
+     */
+    private volatile RuleMethod method = null;
+
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -375,8 +381,20 @@ public class CallMethodRule extends Rule {
             sb.append(')');
             digester.log.trace(sb.toString());
         }
-        Object result = IntrospectionUtils.callMethodN(target, methodName,
-                paramValues, paramTypes);
+        Object result;
+        RuleMethod method = this.method;
+        if (method == null || !method.matches(target.getClass(), paramTypes)) {
+            method = RuleMethod.resolve(target.getClass(), methodName, paramTypes, paramTypes);
+            this.method = method;
+        }
+        if (method.exists()) {
+            result = method.invoke(target, paramValues);
+        } else {
+            if (digester.log.isDebugEnabled()) {
+                digester.log.debug(sm.getString("rule.noMethod", methodName, target, target.getClass()));
+            }
+            result = null;
+        }
         processMethodCallResult(result);
 
         StringBuilder code = digester.getGeneratedCode();
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.digester;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.tomcat.util.ExceptionUtils;
+import org.apache.tomcat.util.IntrospectionUtils;
+
+/**
+ * The method a rule calls on the objects of a given class, resolved once and
+ * cached as a {@link MethodHandle} so that the public methods of the class
+ * don't have to be searched every time the rule fires. Rules typically fire
+ * for objects of the same class so each rule caches the last method it
+ * resolved. The result is cached even if no such method exists.
+ */
+final class RuleMethod {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private final Class<?> targetClass;
+    private final Object paramKey;
+    private final Method method;
+    private final MethodHandle handle;
+    private final Class<?>[] paramTypes;
+    private final Class<?>[] boxedParamTypes;
+
+
+    private RuleMethod(Class<?> targetClass, Object paramKey, Method method, MethodHandle handle,
+            Class<?>[] paramTypes) {
+        this.targetClass = targetClass;
+        this.paramKey = paramKey;
+        this.method = method;
+        this.handle = handle;
+        this.paramTypes = paramTypes;
+        if (paramTypes == null) {
+            boxedParamTypes = null;
+        } else {
+            boxedParamTypes = MethodType.methodType(void.class, paramTypes).wrap().parameterArray();
+        }
+    }
+
+
+    /**
+     * Resolve a method.
+     *
+     * @param targetClass The class of the objects the method will be called on
+     * @param methodName  The name of the method
+     * @param paramTypes  The exact parameter types of the method
+     * @param paramKey    An object that identifies the parameter types, which
+     *                        is compared by identity to determine if the method
+     *                        can be reused
+     *
+     * @return The method, which will not exist if there is no such public
+     *             method
+     */
+    static RuleMethod resolve(Class<?> targetClass, String methodName, Class<?>[] paramTypes, Object paramKey) {
+        Method method = IntrospectionUtils.findMethod(targetClass, methodName, paramTypes);
+        if (method == null) {
+            return new RuleMethod(targetClass, paramKey, null, null, null);
+        }
+        MethodHandle handle;
+        try {
+            handle = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            // Use reflection
+            return new RuleMethod(targetClass, paramKey, method, null, null);
+        }
+        // Adapt to (Object target, Object[] params)Object so the handle can be
+        // invoked exactly, with the parameters unboxed and the result boxed
+        handle = handle.asType(MethodType.genericMethodType(paramTypes.length + 1))
+                .asSpreader(Object[].class, paramTypes.length);
+        return new RuleMethod(targetClass, paramKey, method, handle, paramTypes.clone());
+    }
+
+
+    /**
+     * @param targetClass The class of the object the method is to be called on
+     * @param paramKey    The object that identifies the parameter types
+     *
+     * @return <code>true</code> if this method was resolved for the given
+     *             class and parameter types
+     */
+    boolean matches(Class<?> targetClass, Object paramKey) {
+        return this.targetClass == targetClass && this.paramKey == paramKey;
+    }
+
+
+    /**
+     * @return <code>true</code> if the target class has a public method with
+     *             the requested name and parameter types
+     */
+    boolean exists() {
+        return method != null;
+    }
+
+
+    /**
+     * Call the method. As with {@link Method#invoke(Object, Object...)}, an
+     * exception thrown by the method is wrapped in an
+     * {@link InvocationTargetException}. Parameters that don't match the
+     * parameter types are passed to {@link Method#invoke(Object, Object...)}
+     * so that they are converted or rejected in the same way.
+     *
+     * @param target The object to call the method on
+     * @param params The parameters
+     *
+     * @return The result or <code>null</code> for a method without a result
+     *
+     * @throws IllegalAccessException    if the method is not accessible
+     * @throws InvocationTargetException if the method throws an exception
+     */
+    Object invoke(Object target, Object[] params) throws IllegalAccessException, InvocationTargetException {
+        if (handle == null || !isInstance(params)) {
+            try {
+                return method.invoke(target, params);
+            } catch (InvocationTargetException e) {
+                ExceptionUtils.handleThrowable(e.getCause());
+                throw e;
+            }
+        }
+        try {
+            return handle.invokeExact(target, params);
+        } catch (Throwable t) {
+            ExceptionUtils.handleThrowable(t);
+            throw new InvocationTargetException(t);
+        }
+    }
+
+
+    /*
+     * The handle can only be invoked without the parameter conversions
+     * failing if each parameter is an instance of the (boxed) parameter type.
+     */
+    private boolean isInstance(Object[] params) {
+        if (params.length != paramTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            if (param == null ? paramTypes[i].isPrimitive() : !boxedParamTypes[i].isInstance(param)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -17,8 +17,11 @@
 package org.apache.tomcat.util.digester;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Default implementation of the <code>Rules</code> interface that supports
@@ -35,6 +38,14 @@ import java.util.List;
  *     <code>&lt;b&gt;</code> element, nested inside an <code>&lt;a&gt;</code>
  *      element, no matter how deeply the pair is nested.</li>
  * </ul>
+ *
+ * <p>The registered patterns are compiled the first time a match is required
+ * after the rules have been changed. Tail match patterns are indexed by the
+ * pattern they match so the most discriminant one can be found with one
+ * lookup per level of nesting rather than by examining every registered
+ * pattern. The result of matching each element nesting pattern is then
+ * cached until the rules are changed. Rules should therefore be fully
+ * configured, including their namespace URI, before they are added.</p>
  */
 public class RulesBase implements Rules {
 
@@ -61,6 +72,30 @@ public class RulesBase implements Rules {
     protected ArrayList<Rule> rules = new ArrayList<>();
 
 
+    /**
+     * The maximum number of element nesting patterns for which the matching
+     * rules are cached for each namespace URI. This limits the memory used
+     * when parsing documents with many different elements that do not match
+     * any rules.
+     */
+    private static final int MAX_CACHED_MATCHES = 1024;
+
+
+    /**
+     * The tail match patterns, keyed by the pattern they match without the
+     * leading <code>*&#47;</code>, or <code>null</code> if the patterns need
+     * to be compiled.
+     */
+    private volatile Map<String,String> tailPatterns = null;
+
+
+    /**
+     * The cached results of {@link #match(String, String)}, keyed by namespace
+     * URI and then by element nesting pattern.
+     */
+    private final Map<String,Map<String,List<Rule>>> matches = new ConcurrentHashMap<>();
+
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -108,6 +143,7 @@ public class RulesBase implements Rules {
         if (this.digester != null) {
             rule.setDigester(this.digester);
         }
+        invalidate();
     }
 
 
@@ -118,6 +154,7 @@ public class RulesBase implements Rules {
     public void clear() {
         cache.clear();
         rules.clear();
+        invalidate();
     }
 
 
@@ -134,27 +171,14 @@ public class RulesBase implements Rules {
      */
     @Override
     public List<Rule> match(String namespaceURI, String pattern) {
-
-        // List rulesList = (List) this.cache.get(pattern);
-        List<Rule> rulesList = lookup(namespaceURI, pattern);
-        if ((rulesList == null) || (rulesList.size() < 1)) {
-            // Find the longest key, ie more discriminant
-            String longKey = "";
-            for (String key : this.cache.keySet()) {
-                if (key.startsWith("*/")) {
-                    if (pattern.equals(key.substring(2)) ||
-                        pattern.endsWith(key.substring(1))) {
-                        if (key.length() > longKey.length()) {
-                            // rulesList = (List) this.cache.get(key);
-                            rulesList = lookup(namespaceURI, key);
-                            longKey = key;
-                        }
-                    }
-                }
-            }
-        }
+        Map<String,List<Rule>> namespaceMatches =
+                matches.computeIfAbsent(namespaceURI == null ? "" : namespaceURI, k -> new ConcurrentHashMap<>());
+        List<Rule> rulesList = namespaceMatches.get(pattern);
         if (rulesList == null) {
-            rulesList = new ArrayList<>();
+            rulesList = matchInternal(namespaceURI, pattern);
+            if (namespaceMatches.size() < MAX_CACHED_MATCHES) {
+                namespaceMatches.put(pattern, rulesList);
+            }
         }
         return rulesList;
     }
@@ -175,6 +199,58 @@ public class RulesBase implements Rules {
 
     // ------------------------------------------------------ Protected Methods
 
+    /**
+     * Discard the compiled patterns and the cached matches. This must be
+     * called by sub-classes that modify the registered rules directly.
+     */
+    protected void invalidate() {
+        tailPatterns = null;
+        matches.clear();
+    }
+
+
+    private List<Rule> matchInternal(String namespaceURI, String pattern) {
+        List<Rule> rulesList = lookup(namespaceURI, pattern);
+        if ((rulesList == null) || (rulesList.size() < 1)) {
+            // Find the longest tail match, ie the most discriminant, starting
+            // with the whole pattern and removing one element at a time
+            Map<String,String> tailPatterns = getTailPatterns();
+            int start = 0;
+            while (!tailPatterns.isEmpty()) {
+                String key = tailPatterns.get(pattern.substring(start));
+                if (key != null) {
+                    rulesList = lookup(namespaceURI, key);
+                    break;
+                }
+                int slash = pattern.indexOf('/', start);
+                if (slash < 0) {
+                    break;
+                }
+                start = slash + 1;
+            }
+        }
+        if (rulesList == null) {
+            rulesList = Collections.emptyList();
+        }
+        return rulesList;
+    }
+
+
+    private Map<String,String> getTailPatterns() {
+        Map<String,String> result = tailPatterns;
+        if (result == null) {
+            result = new HashMap<>();
+            for (String key : cache.keySet()) {
+                if (key.startsWith("*/")) {
+                    result.put(key.substring(2), key);
+                }
+            }
+            tailPatterns = result;
+        }
+        return result;
+    }
+
+
     /**
      * Return a List of Rule instances for the specified pattern that also
      * match the specified namespace URI (if any).  If there are no such
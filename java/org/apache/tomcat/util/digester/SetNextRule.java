@@ -71,6 +71,12 @@ public class SetNextRule extends Rule {
      */
     protected boolean useExactMatch = false;
 
+
+    /**
+     * The method most recently called by this rule.
+     */
+    private volatile RuleMethod method = null;
+
     // --------------------------------------------------------- Public Methods
 
 
@@ -140,8 +146,26 @@ public class SetNextRule extends Rule {
         }
 
         // Call the specified method
-        IntrospectionUtils.callMethod1(parent, methodName,
-                child, paramType, digester.getClassLoader());
+        RuleMethod method = null;
+        if (parent != null && child != null) {
+            // The parameter type depends on the class loader if it is specified
+            Object paramKey = paramType == null ? child.getClass() : digester.getClassLoader();
+            method = this.method;
+            if (method == null || !method.matches(parent.getClass(), paramKey)) {
+                Class<?> paramClass = paramType == null ? child.getClass() :
+                        digester.getClassLoader().loadClass(paramType);
+                method = RuleMethod.resolve(parent.getClass(), methodName, new Class<?>[] { paramClass }, paramKey);
+                this.method = method;
+            }
+        }
+        if (method == null) {
+            IntrospectionUtils.callMethod1(parent, methodName,
+                    child, paramType, digester.getClassLoader());
+        } else if (method.exists()) {
+            method.invoke(parent, new Object[] { child });
+        } else {
+            throw new NoSuchMethodException(sm.getString("rule.noMethod", methodName, parent, parent.getClass()));
+        }
 
         StringBuilder code = digester.getGeneratedCode();
         if (code != null) {
@@ -31,6 +31,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import jakarta.servlet.ServletConnection;
@@ -1009,6 +1010,12 @@ public abstract class SocketWrapperBase<E> {
         protected volatile long nBytes = 0;
         protected volatile CompletionState state = CompletionState.PENDING;
         protected boolean completionDone = true;
+        /*
+         * Blocking operations wait on a Condition rather than the monitor of this object so that a virtual thread
+         * waiting for an operation to complete does not pin its carrier thread.
+         */
+        private final ReentrantLock completionLock = new ReentrantLock();
+        private final Condition completionCondition = completionLock.newCondition();
 
         /**
          * @return true if the operation is still inline, false if the operation
@@ -1056,6 +1063,50 @@ public abstract class SocketWrapperBase<E> {
         protected void end() {
         }
 
+        /**
+         * Set the final state of a blocking operation and wake the thread waiting for the operation to complete.
+         * @param state the completion state
+         */
+        protected void signalCompletion(CompletionState state) {
+            completionLock.lock();
+            try {
+                this.state = state;
+                completionCondition.signalAll();
+            } finally {
+                completionLock.unlock();
+            }
+        }
+
+        /**
+         * Wait for a blocking operation to complete.
+         * @param timeout the maximum time to wait, zero or less to wait until the operation completes
+         * @param unit the unit of the timeout
+         * @return {@code true} if the operation completed, {@code false} if the timeout expired first
+         * @throws InterruptedException if the waiting thread was interrupted
+         */
+        protected boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            completionLock.lock();
+            try {
+                if (timeout <= 0) {
+                    // No timeout
+                    while (state == CompletionState.PENDING) {
+                        completionCondition.await();
+                    }
+                    return true;
+                }
+                while (state == CompletionState.PENDING) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = completionCondition.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                completionLock.unlock();
+            }
+        }
+
     }
 
     /**
@@ -1103,10 +1154,9 @@ public abstract class SocketWrapperBase<E> {
                     }
                     synchronized (state) {
                         state.completionDone = true;
-                        if (notify) {
-                            state.state = currentState;
-                            state.notify();
-                        }
+                    }
+                    if (notify) {
+                        state.signalCompletion(currentState);
                     }
                 } else {
                     synchronized (state) {
@@ -1148,10 +1198,9 @@ public abstract class SocketWrapperBase<E> {
             }
             synchronized (state) {
                 state.completionDone = true;
-                if (notify) {
-                    state.state = state.isInline() ? CompletionState.ERROR : CompletionState.DONE;
-                    state.notify();
-                }
+            }
+            if (notify) {
+                state.signalCompletion(state.isInline() ? CompletionState.ERROR : CompletionState.DONE);
             }
         }
     }
@@ -1438,23 +1487,17 @@ public abstract class SocketWrapperBase<E> {
         }
         state.start();
         if (block == BlockingMode.BLOCK) {
-            synchronized (state) {
-                if (state.state == CompletionState.PENDING) {
-                    try {
-                        state.wait(unit.toMillis(timeout));
-                        if (state.state == CompletionState.PENDING) {
-                            if (handler != null && state.callHandler.compareAndSet(true, false)) {
-                                handler.failed(new SocketTimeoutException(getTimeoutMsg(read)), attachment);
-                            }
-                            return CompletionState.ERROR;
-                        }
-                    } catch (InterruptedException e) {
-                        if (handler != null && state.callHandler.compareAndSet(true, false)) {
-                            handler.failed(new SocketTimeoutException(getTimeoutMsg(read)), attachment);
-                        }
-                        return CompletionState.ERROR;
-                    }
+            boolean completed;
+            try {
+                completed = state.awaitCompletion(timeout, unit);
+            } catch (InterruptedException e) {
+                completed = false;
+            }
+            if (!completed) {
+                if (handler != null && state.callHandler.compareAndSet(true, false)) {
+                    handler.failed(new SocketTimeoutException(getTimeoutMsg(read)), attachment);
                 }
+                return CompletionState.ERROR;
             }
         }
         return state.state;
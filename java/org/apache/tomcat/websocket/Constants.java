@@ -94,6 +94,12 @@ public class Constants {
     public static final String BLOCKING_SEND_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
     // Milliseconds so this is 20 seconds
     public static final long DEFAULT_BLOCKING_SEND_TIMEOUT = 20 * 1000;
+    // The maximum number of threads that may wait to send a complete message
+    // using the basic remote endpoint while another message is being sent.
+    // Zero means concurrent sends are rejected.
+    public static final String BLOCKING_SEND_QUEUE_SIZE_PROPERTY =
+            "org.apache.tomcat.websocket.BLOCKING_SEND_QUEUE_SIZE";
+    public static final int DEFAULT_BLOCKING_SEND_QUEUE_SIZE = 0;
 
     // Configuration for session close timeout
     public static final String SESSION_CLOSE_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.SESSION_CLOSE_TIMEOUT";
@@ -105,6 +111,10 @@ public class Constants {
     // Default is 50 milliseconds - setting is in milliseconds
     public static final long DEFAULT_ABNORMAL_SESSION_CLOSE_SEND_TIMEOUT = 50;
 
+    // Configuration for passing binary payloads to message handlers without
+    // copying them. The payloads are only valid until the handler returns.
+    public static final String BINARY_ZERO_COPY_PROPERTY = "org.apache.tomcat.websocket.BINARY_ZERO_COPY";
+
     // Configuration for read idle timeout on WebSocket session
     public static final String READ_IDLE_TIMEOUT_MS = "org.apache.tomcat.websocket.READ_IDLE_TIMEOUT_MS";
 
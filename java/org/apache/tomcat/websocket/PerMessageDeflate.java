@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -49,11 +50,21 @@ public class PerMessageDeflate implements Transformation {
     private final boolean clientContextTakeover;
     private final int clientMaxWindowBits;
     private final boolean isServer;
-    private final Inflater inflater = new Inflater(true);
+    private final PerMessageDeflateCodecPool codecPool;
+    // Only borrowed from the pool while a message is being processed
+    private final boolean pooledInflater;
+    private final boolean pooledDeflater;
+    // Used when the server is limited to a window smaller than the JRE uses
+    private final boolean huffmanOnly;
+    private final ReentrantLock codecLock = new ReentrantLock();
     private final ByteBuffer readBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
-    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
     private final byte[] EOM_BUFFER = new byte[EOM_BYTES.length + 1];
 
+    // Guarded by codecLock when changed
+    private volatile Inflater inflater;
+    private volatile Deflater deflater;
+    private volatile boolean closed = false;
+
     private volatile Transformation next;
     private volatile boolean skipDecompression = false;
     private volatile ByteBuffer writeBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
@@ -62,6 +73,22 @@ public class PerMessageDeflate implements Transformation {
     private volatile boolean emptyMessage = true;
 
     static PerMessageDeflate negotiate(List<List<Parameter>> preferences, boolean isServer) {
+        return negotiate(preferences, isServer, null);
+    }
+
+
+    static PerMessageDeflate negotiate(List<List<Parameter>> preferences, boolean isServer,
+            WsWebSocketContainer container) {
+        PerMessageDeflateCodecPool codecPool;
+        int maxServerWindowBits;
+        if (container == null) {
+            // No pooling
+            codecPool = new PerMessageDeflateCodecPool(0);
+            maxServerWindowBits = 15;
+        } else {
+            codecPool = container.getPerMessageDeflateCodecPool();
+            maxServerWindowBits = container.getPerMessageDeflateServerMaxWindowBits();
+        }
         // Accept the first preference that the endpoint is able to support
         for (List<Parameter> preference : preferences) {
             boolean ok = true;
@@ -96,8 +123,10 @@ public class PerMessageDeflate implements Transformation {
                         }
                         // Java SE API (as of Java 11) does not expose the API to
                         // control the Window size. It is effectively hard-coded
-                        // to 15
-                        if (isServer && serverMaxWindowBits != 15) {
+                        // to 15. A smaller window can only be honoured by not
+                        // using back references at all (Huffman only) which the
+                        // server only does if configured to do so.
+                        if (isServer && serverMaxWindowBits != 15 && maxServerWindowBits == 15) {
                             ok = false;
                             break;
                             // Note server window size is not an issue for the
@@ -148,8 +177,15 @@ public class PerMessageDeflate implements Transformation {
                 }
             }
             if (ok) {
+                if (isServer && maxServerWindowBits < 15) {
+                    // The server may always request a smaller window than the
+                    // client offered, including when no size was offered
+                    if (serverMaxWindowBits == -1 || serverMaxWindowBits > maxServerWindowBits) {
+                        serverMaxWindowBits = maxServerWindowBits;
+                    }
+                }
                 return new PerMessageDeflate(serverContextTakeover, serverMaxWindowBits, clientContextTakeover,
-                        clientMaxWindowBits, isServer);
+                        clientMaxWindowBits, isServer, codecPool);
             }
         }
         // Failed to negotiate agreeable terms
@@ -158,12 +194,64 @@ public class PerMessageDeflate implements Transformation {
 
 
     private PerMessageDeflate(boolean serverContextTakeover, int serverMaxWindowBits, boolean clientContextTakeover,
-            int clientMaxWindowBits, boolean isServer) {
+            int clientMaxWindowBits, boolean isServer, PerMessageDeflateCodecPool codecPool) {
         this.serverContextTakeover = serverContextTakeover;
         this.serverMaxWindowBits = serverMaxWindowBits;
         this.clientContextTakeover = clientContextTakeover;
         this.clientMaxWindowBits = clientMaxWindowBits;
         this.isServer = isServer;
+        this.codecPool = codecPool;
+        if (isServer) {
+            pooledInflater = !clientContextTakeover;
+            pooledDeflater = !serverContextTakeover;
+            huffmanOnly = serverMaxWindowBits != -1 && serverMaxWindowBits < 15;
+        } else {
+            pooledInflater = !serverContextTakeover;
+            pooledDeflater = !clientContextTakeover;
+            huffmanOnly = false;
+        }
+    }
+
+
+    private Inflater getInflater() throws IOException {
+        Inflater result = inflater;
+        if (result == null) {
+            codecLock.lock();
+            try {
+                if (closed) {
+                    throw new IOException(sm.getString("perMessageDeflate.alreadyClosed"));
+                }
+                result = inflater;
+                if (result == null) {
+                    result = codecPool.borrowInflater();
+                    inflater = result;
+                }
+            } finally {
+                codecLock.unlock();
+            }
+        }
+        return result;
+    }
+
+
+    private Deflater getDeflater() throws IOException {
+        Deflater result = deflater;
+        if (result == null) {
+            codecLock.lock();
+            try {
+                if (closed) {
+                    throw new IOException(sm.getString("perMessageDeflate.alreadyClosed"));
+                }
+                result = deflater;
+                if (result == null) {
+                    result = codecPool.borrowDeflater(huffmanOnly);
+                    deflater = result;
+                }
+            } finally {
+                codecLock.unlock();
+            }
+        }
+        return result;
     }
 
 
@@ -185,6 +273,7 @@ public class PerMessageDeflate implements Transformation {
             return next.getMoreData(opCode, fin, rsv, dest);
         }
 
+        Inflater inflater = getInflater();
         int written;
         boolean usedEomBytes = false;
 
@@ -221,11 +310,17 @@ public class PerMessageDeflate implements Transformation {
                     usedEomBytes = true;
                 }
             } else if (written == 0) {
-                if (fin && (isServer && !clientContextTakeover || !isServer && !serverContextTakeover)) {
+                if (fin && pooledInflater) {
+                    // No context takeover so the inflater is not required
+                    // until the next compressed message is received
+                    codecLock.lock();
                     try {
-                        inflater.reset();
-                    } catch (NullPointerException e) {
-                        throw new IOException(sm.getString("perMessageDeflate.alreadyClosed"), e);
+                        if (!closed) {
+                            this.inflater = null;
+                            codecPool.releaseInflater(inflater);
+                        }
+                    } finally {
+                        codecLock.unlock();
                     }
                 }
                 return TransformationResult.END_OF_FRAME;
@@ -329,6 +424,7 @@ public class PerMessageDeflate implements Transformation {
                 // final (empty) part straight through.
                 allCompressedParts.add(uncompressedPart);
             } else {
+                Deflater deflater = getDeflater();
                 List<MessagePart> compressedParts = new ArrayList<>();
                 ByteBuffer uncompressedPayload = uncompressedPart.getPayload();
                 SendHandler uncompressedIntermediateHandler = uncompressedPart.getIntermediateHandler();
@@ -458,14 +554,21 @@ public class PerMessageDeflate implements Transformation {
     }
 
 
-    private void startNewMessage() throws IOException {
+    private void startNewMessage() {
         firstCompressedFrameWritten = false;
         emptyMessage = true;
-        if (isServer && !serverContextTakeover || !isServer && !clientContextTakeover) {
+        if (pooledDeflater) {
+            // No context takeover so the deflater is not required until the
+            // next message is compressed
+            codecLock.lock();
             try {
-                deflater.reset();
-            } catch (NullPointerException e) {
-                throw new IOException(sm.getString("perMessageDeflate.alreadyClosed"), e);
+                Deflater deflater = this.deflater;
+                if (!closed && deflater != null) {
+                    this.deflater = null;
+                    codecPool.releaseDeflater(deflater, huffmanOnly);
+                }
+            } finally {
+                codecLock.unlock();
             }
         }
     }
@@ -485,7 +588,21 @@ public class PerMessageDeflate implements Transformation {
     public void close() {
         // There will always be a next transformation
         next.close();
-        inflater.end();
-        deflater.end();
+        codecLock.lock();
+        try {
+            closed = true;
+            // Codecs may still be in use by another thread so they are ended
+            // rather than returned to the pool
+            if (inflater != null) {
+                codecPool.endInflater(inflater);
+                inflater = null;
+            }
+            if (deflater != null) {
+                codecPool.endDeflater(deflater);
+                deflater = null;
+            }
+        } finally {
+            codecLock.unlock();
+        }
     }
 }
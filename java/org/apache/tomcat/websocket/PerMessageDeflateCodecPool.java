@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.tomcat.util.collections.SynchronizedStack;
+
+/**
+ * Pool of the native {@link Deflater} and {@link Inflater} instances used by the permessage-deflate extension. When no
+ * context takeover has been negotiated for a direction, the codec for that direction is only borrowed from the pool
+ * while a message is being compressed or decompressed. When context takeover is in use, the codec has to be retained
+ * for the life of the session but it is only created once the first compressed message is sent or received.
+ * <p>
+ * The native memory figures reported by this class are estimates based on the default zlib settings used by the JRE
+ * (15 window bits and a memory level of 8).
+ */
+public class PerMessageDeflateCodecPool {
+
+    /**
+     * Estimated native memory used by a {@link Deflater}: the window, the hash tables, the pending buffer and the
+     * internal state.
+     */
+    public static final long DEFLATER_NATIVE_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+
+    /**
+     * Estimated native memory used by an {@link Inflater}: the window and the internal state.
+     */
+    public static final long INFLATER_NATIVE_MEMORY = (1 << 15) + 7 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final SynchronizedStack<Deflater> idleDeflaters = new SynchronizedStack<>();
+    private final SynchronizedStack<Deflater> idleHuffmanOnlyDeflaters = new SynchronizedStack<>();
+    private final SynchronizedStack<Inflater> idleInflaters = new SynchronizedStack<>();
+
+    private final AtomicInteger deflaterCount = new AtomicInteger();
+    private final AtomicInteger inflaterCount = new AtomicInteger();
+    private final AtomicInteger idleDeflaterCount = new AtomicInteger();
+    private final AtomicInteger idleInflaterCount = new AtomicInteger();
+
+    private volatile int maxIdle;
+
+
+    public PerMessageDeflateCodecPool() {
+        this(SynchronizedStack.DEFAULT_SIZE);
+    }
+
+
+    public PerMessageDeflateCodecPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+
+    /**
+     * @return the maximum number of idle codecs of each type retained by this pool
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+
+    /**
+     * Set the maximum number of idle codecs of each type retained by this pool. Codecs released once the limit has been
+     * reached are ended, freeing their native memory.
+     *
+     * @param maxIdle The maximum number of idle codecs or -1 for no limit
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+
+    /**
+     * @return the number of {@link Deflater}s created by this pool that have not been ended
+     */
+    public int getDeflaterCount() {
+        return deflaterCount.get();
+    }
+
+
+    /**
+     * @return the number of {@link Deflater}s held idle in this pool
+     */
+    public int getIdleDeflaterCount() {
+        return idleDeflaterCount.get();
+    }
+
+
+    /**
+     * @return the number of {@link Inflater}s created by this pool that have not been ended
+     */
+    public int getInflaterCount() {
+        return inflaterCount.get();
+    }
+
+
+    /**
+     * @return the number of {@link Inflater}s held idle in this pool
+     */
+    public int getIdleInflaterCount() {
+        return idleInflaterCount.get();
+    }
+
+
+    /**
+     * @return the estimated native memory, in bytes, used by all the codecs created by this pool that have not been
+     *             ended, including idle codecs
+     */
+    public long getNativeMemoryInUse() {
+        return deflaterCount.get() * DEFLATER_NATIVE_MEMORY + inflaterCount.get() * INFLATER_NATIVE_MEMORY;
+    }
+
+
+    Deflater borrowDeflater(boolean huffmanOnly) {
+        Deflater deflater = (huffmanOnly ? idleHuffmanOnlyDeflaters : idleDeflaters).pop();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            if (huffmanOnly) {
+                deflater.setStrategy(Deflater.HUFFMAN_ONLY);
+                // Apply the new strategy now. If the change is left until the
+                // first message is compressed, the deflater does not consume
+                // any input on that call.
+                deflater.deflate(EMPTY);
+            }
+            deflaterCount.incrementAndGet();
+        } else {
+            idleDeflaterCount.decrementAndGet();
+        }
+        return deflater;
+    }
+
+
+    void releaseDeflater(Deflater deflater, boolean huffmanOnly) {
+        if (reserveIdle(idleDeflaterCount)) {
+            // Reset retains the strategy
+            deflater.reset();
+            (huffmanOnly ? idleHuffmanOnlyDeflaters : idleDeflaters).push(deflater);
+        } else {
+            endDeflater(deflater);
+        }
+    }
+
+
+    void endDeflater(Deflater deflater) {
+        deflater.end();
+        deflaterCount.decrementAndGet();
+    }
+
+
+    Inflater borrowInflater() {
+        Inflater inflater = idleInflaters.pop();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+            inflaterCount.incrementAndGet();
+        } else {
+            idleInflaterCount.decrementAndGet();
+        }
+        return inflater;
+    }
+
+
+    void releaseInflater(Inflater inflater) {
+        if (reserveIdle(idleInflaterCount)) {
+            inflater.reset();
+            idleInflaters.push(inflater);
+        } else {
+            endInflater(inflater);
+        }
+    }
+
+
+    void endInflater(Inflater inflater) {
+        inflater.end();
+        inflaterCount.decrementAndGet();
+    }
+
+
+    private boolean reserveIdle(AtomicInteger idleCount) {
+        int limit = maxIdle;
+        if (idleCount.incrementAndGet() <= limit || limit < 0) {
+            return true;
+        }
+        idleCount.decrementAndGet();
+        return false;
+    }
+
+
+    /**
+     * End all the idle codecs held by this pool.
+     */
+    public void clear() {
+        Deflater deflater;
+        while ((deflater = idleDeflaters.pop()) != null) {
+            idleDeflaterCount.decrementAndGet();
+            endDeflater(deflater);
+        }
+        while ((deflater = idleHuffmanOnlyDeflaters.pop()) != null) {
+            idleDeflaterCount.decrementAndGet();
+            endDeflater(deflater);
+        }
+        Inflater inflater;
+        while ((inflater = idleInflaters.pop()) != null) {
+            idleInflaterCount.decrementAndGet();
+            endInflater(inflater);
+        }
+    }
+}
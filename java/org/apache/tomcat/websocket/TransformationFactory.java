@@ -33,8 +33,13 @@ public class TransformationFactory {
     }
 
     public Transformation create(String name, List<List<Extension.Parameter>> preferences, boolean isServer) {
+        return create(name, preferences, isServer, null);
+    }
+
+    public Transformation create(String name, List<List<Extension.Parameter>> preferences, boolean isServer,
+            WsWebSocketContainer container) {
         if (PerMessageDeflate.NAME.equals(name)) {
-            return PerMessageDeflate.negotiate(preferences, isServer);
+            return PerMessageDeflate.negotiate(preferences, isServer, container);
         }
         return null;
     }
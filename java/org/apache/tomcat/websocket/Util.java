@@ -84,6 +84,78 @@ public class Util {
     }
 
 
+    /**
+     * Validates that the given bytes are well-formed UTF-8 (no overlong encodings, no surrogates and nothing above
+     * U+10FFFF) and calculates the length of the equivalent UTF-16 string.
+     *
+     * @param bytes  The bytes to validate
+     * @param offset The offset of the first byte
+     * @param len    The number of bytes
+     *
+     * @return The number of UTF-16 chars or -1 if the bytes are not well-formed UTF-8
+     */
+    static int utf8Length(byte[] bytes, int offset, int len) {
+        int end = offset + len;
+        int pos = offset;
+        // ASCII fast path
+        while (pos < end && bytes[pos] >= 0) {
+            pos++;
+        }
+        int chars = pos - offset;
+        while (pos < end) {
+            int b = bytes[pos++];
+            if (b >= 0) {
+                chars++;
+                continue;
+            }
+            b &= 0xFF;
+            if (b < 0xC2) {
+                // Continuation byte or overlong two byte sequence
+                return -1;
+            } else if (b < 0xE0) {
+                if (pos >= end || !isUtf8Continuation(bytes[pos])) {
+                    return -1;
+                }
+                pos++;
+                chars++;
+            } else if (b < 0xF0) {
+                if (end - pos < 2) {
+                    return -1;
+                }
+                int b1 = bytes[pos] & 0xFF;
+                if (b == 0xE0 && b1 < 0xA0 || b == 0xED && b1 > 0x9F || !isUtf8Continuation(bytes[pos]) ||
+                        !isUtf8Continuation(bytes[pos + 1])) {
+                    // Overlong, surrogate or invalid continuation
+                    return -1;
+                }
+                pos += 2;
+                chars++;
+            } else if (b < 0xF5) {
+                if (end - pos < 3) {
+                    return -1;
+                }
+                int b1 = bytes[pos] & 0xFF;
+                if (b == 0xF0 && b1 < 0x90 || b == 0xF4 && b1 > 0x8F || !isUtf8Continuation(bytes[pos]) ||
+                        !isUtf8Continuation(bytes[pos + 1]) || !isUtf8Continuation(bytes[pos + 2])) {
+                    // Overlong, above U+10FFFF or invalid continuation
+                    return -1;
+                }
+                pos += 3;
+                // Surrogate pair
+                chars += 2;
+            } else {
+                return -1;
+            }
+        }
+        return chars;
+    }
+
+
+    private static boolean isUtf8Continuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+
     static CloseCode getCloseCode(int code) {
         if (code > 2999 && code < 5000) {
             return CloseCodes.getCloseCode(code);
@@ -0,0 +1,250 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.CloseReason.CloseCodes;
+import jakarta.websocket.Extension;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * A WebSocket message that is encoded once and then sent to many sessions. The encoded frame is held in a read-only
+ * buffer that is shared by all the sessions the message is sent to. A second, compressed, frame is created on first
+ * use for sessions that negotiated permessage-deflate without server context takeover. Sessions that negotiated
+ * permessage-deflate with context takeover receive the uncompressed frame as RFC 7692 permits.
+ * <p>
+ * Sending never blocks. A session that is still sending a previous message is skipped and, if configured, closed once
+ * too many consecutive messages have been skipped for it. The close is performed by a container thread so it does not
+ * block the thread sending the message.
+ */
+public class WsBroadcastMessage {
+
+    private static final StringManager sm = StringManager.getManager(WsBroadcastMessage.class);
+
+    private static final byte[] EOM_BYTES = new byte[] { 0, 0, -1, -1 };
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    private static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+    private static final SendHandler NO_OP_HANDLER = result -> {
+        // NO-OP
+    };
+
+    private final byte opCode;
+    private final byte[] payload;
+    private final ByteBuffer frame;
+    private final ReentrantLock deflateLock = new ReentrantLock();
+    private volatile ByteBuffer deflatedFrame;
+
+
+    /**
+     * Create a text message for broadcast.
+     *
+     * @param text The message to send
+     *
+     * @return The encoded message
+     */
+    public static WsBroadcastMessage text(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException(sm.getString("wsRemoteEndpoint.nullData"));
+        }
+        return new WsBroadcastMessage(Constants.OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Create a binary message for broadcast. The data is copied so the provided buffer may be re-used once this method
+     * returns.
+     *
+     * @param data The message to send
+     *
+     * @return The encoded message
+     */
+    public static WsBroadcastMessage binary(ByteBuffer data) {
+        if (data == null) {
+            throw new IllegalArgumentException(sm.getString("wsRemoteEndpoint.nullData"));
+        }
+        byte[] payload = new byte[data.remaining()];
+        data.duplicate().get(payload);
+        return new WsBroadcastMessage(Constants.OPCODE_BINARY, payload);
+    }
+
+
+    private WsBroadcastMessage(byte opCode, byte[] payload) {
+        this.opCode = opCode;
+        this.payload = payload;
+        this.frame = encode(opCode, 0, payload, payload.length);
+    }
+
+
+    /**
+     * Start sending this message to the given session.
+     *
+     * @param session  The session to send the message to
+     * @param maxSkips The number of consecutive messages that may be skipped for a session that is still sending a
+     *                     previous message before that session is closed. A negative value means slow sessions are
+     *                     never closed.
+     * @param handler  The handler to notify of the result, may be {@code null}
+     *
+     * @return {@code true} if sending the message was started, otherwise {@code false}
+     */
+    public boolean send(Session session, int maxSkips, SendHandler handler) {
+        SendHandler sh = (handler == null) ? NO_OP_HANDLER : handler;
+        if (!(session instanceof WsSession) || !session.isOpen()) {
+            sh.onResult(new SendResult(session, new IOException(sm.getString("wsRemoteEndpoint.closed"))));
+            return false;
+        }
+        WsSession wsSession = (WsSession) session;
+        WsRemoteEndpointImplBase endpoint = wsSession.getWsRemoteEndpoint();
+
+        ByteBuffer encoded;
+        if (endpoint.isMasked()) {
+            // Client side frames are masked with a different key for each
+            // frame so the encoded frame can't be shared.
+            encoded = null;
+        } else {
+            encoded = selectFrame(wsSession.getNegotiatedExtensions());
+        }
+        boolean started;
+        if (encoded == null) {
+            started = sendUnshared(wsSession, sh);
+        } else {
+            started = endpoint.sendEncodedFrame(encoded.duplicate(), payload.length, sh);
+        }
+        if (started) {
+            endpoint.resetBroadcastSkipCount();
+            return true;
+        }
+
+        int skipCount = endpoint.incrementBroadcastSkipCount();
+        String msg = sm.getString("wsBroadcastMessage.skipped", session.getId(), Integer.valueOf(skipCount));
+        if (maxSkips >= 0 && skipCount > maxSkips) {
+            endpoint.closeNonBlocking(new CloseReason(CloseCodes.TRY_AGAIN_LATER, msg),
+                    new CloseReason(CloseCodes.CLOSED_ABNORMALLY, msg));
+        }
+        sh.onResult(new SendResult(session, new IOException(msg)));
+        return false;
+    }
+
+
+    /*
+     * Returns the frame to send for the given negotiated extensions or null if the message can't be shared.
+     */
+    private ByteBuffer selectFrame(List<Extension> extensions) {
+        if (extensions.isEmpty()) {
+            return frame;
+        }
+        if (extensions.size() == 1 && PerMessageDeflate.NAME.equals(extensions.get(0).getName())) {
+            boolean noContextTakeover = false;
+            for (Extension.Parameter parameter : extensions.get(0).getParameters()) {
+                if (SERVER_NO_CONTEXT_TAKEOVER.equals(parameter.getName())) {
+                    noContextTakeover = true;
+                } else if (SERVER_MAX_WINDOW_BITS.equals(parameter.getName()) &&
+                        !"15".equals(parameter.getValue())) {
+                    // The shared compressed frame uses the default window
+                    return frame;
+                }
+            }
+            if (noContextTakeover) {
+                return getDeflatedFrame();
+            }
+            // Messages may always be sent uncompressed
+            return frame;
+        }
+        return null;
+    }
+
+
+    private ByteBuffer getDeflatedFrame() {
+        if (payload.length == 0) {
+            // Zero length messages are not compressed
+            return frame;
+        }
+        ByteBuffer result = deflatedFrame;
+        if (result == null) {
+            deflateLock.lock();
+            try {
+                result = deflatedFrame;
+                if (result == null) {
+                    result = deflate();
+                    deflatedFrame = result;
+                }
+            } finally {
+                deflateLock.unlock();
+            }
+        }
+        return result;
+    }
+
+
+    private ByteBuffer deflate() {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(payload);
+            byte[] compressed = new byte[payload.length + 64];
+            int len = 0;
+            while (true) {
+                len += deflater.deflate(compressed, len, compressed.length - len, Deflater.SYNC_FLUSH);
+                if (len < compressed.length) {
+                    break;
+                }
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, len);
+                compressed = larger;
+            }
+            // Drop the EOM bytes added by the SYNC_FLUSH
+            return encode(opCode, 0b100, compressed, len - EOM_BYTES.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+
+    private boolean sendUnshared(WsSession wsSession, SendHandler sh) {
+        try {
+            if (opCode == Constants.OPCODE_TEXT) {
+                wsSession.getAsyncRemote().sendText(new String(payload, StandardCharsets.UTF_8), sh);
+            } else {
+                wsSession.getAsyncRemote().sendBinary(ByteBuffer.wrap(payload), sh);
+            }
+            return true;
+        } catch (IllegalStateException e) {
+            // The session is still sending a previous message
+            return false;
+        }
+    }
+
+
+    private static ByteBuffer encode(byte opCode, int rsv, byte[] data, int len) {
+        ByteBuffer dataBuffer = ByteBuffer.wrap(data, 0, len);
+        // Max size of WebSocket header is 14 bytes
+        ByteBuffer result = ByteBuffer.allocate(14 + len);
+        WsRemoteEndpointImplBase.writeHeader(result, true, rsv, opCode, false, dataBuffer, null, true);
+        result.put(dataBuffer);
+        result.flip();
+        return result.asReadOnlyBuffer();
+    }
+}
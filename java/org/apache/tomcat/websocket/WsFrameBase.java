@@ -17,7 +17,10 @@
 package org.apache.tomcat.websocket;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
@@ -44,6 +47,8 @@ public abstract class WsFrameBase {
 
     private static final StringManager sm = StringManager.getManager(WsFrameBase.class);
 
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
     // Connection level attributes
     protected final WsSession wsSession;
     protected final ByteBuffer inputBuffer;
@@ -62,8 +67,11 @@ public abstract class WsFrameBase {
             .onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
     private boolean continuationExpected = false;
     private boolean textMessage = false;
+    private boolean binaryZeroCopy = false;
     private ByteBuffer messageBufferBinary;
     private CharBuffer messageBufferText;
+    // Whole message decoded directly from messageBufferBinary
+    private String messageText;
     // Cache the message handler in force when the message starts so it is used
     // consistently for the entire message
     private MessageHandler binaryMsgHandler = null;
@@ -179,6 +187,8 @@ public abstract class WsFrameBase {
                         }
                         binaryMsgHandler = wsSession.getBinaryMessageHandler();
                         textMsgHandler = null;
+                        binaryZeroCopy = Boolean.TRUE.equals(
+                                wsSession.getUserProperties().get(Constants.BINARY_ZERO_COPY_PROPERTY));
                     } else if (opCode == Constants.OPCODE_TEXT) {
                         // New text message
                         textMessage = true;
@@ -286,6 +296,8 @@ public abstract class WsFrameBase {
         } else {
             if (binaryMsgHandler == null) {
                 result = swallowInput();
+            } else if (useZeroCopy()) {
+                result = processDataBinaryZeroCopy();
             } else {
                 result = processDataBinary();
             }
@@ -374,20 +386,27 @@ public abstract class WsFrameBase {
 
     @SuppressWarnings("unchecked")
     protected void sendMessageText(boolean last) throws WsIOException {
+        String text = messageText;
+        if (text == null) {
+            text = messageBufferText.toString();
+        } else {
+            messageText = null;
+        }
+
         if (textMsgHandler instanceof WrappedMessageHandler) {
             long maxMessageSize = ((WrappedMessageHandler) textMsgHandler).getMaxMessageSize();
-            if (maxMessageSize > -1 && messageBufferText.remaining() > maxMessageSize) {
+            if (maxMessageSize > -1 && text.length() > maxMessageSize) {
                 throw new WsIOException(new CloseReason(CloseCodes.TOO_BIG, sm.getString("wsFrame.messageTooBig",
-                        Long.valueOf(messageBufferText.remaining()), Long.valueOf(maxMessageSize))));
+                        Long.valueOf(text.length()), Long.valueOf(maxMessageSize))));
             }
         }
 
         try {
             if (textMsgHandler instanceof MessageHandler.Partial<?>) {
-                ((MessageHandler.Partial<String>) textMsgHandler).onMessage(messageBufferText.toString(), last);
+                ((MessageHandler.Partial<String>) textMsgHandler).onMessage(text, last);
             } else {
                 // Caller ensures last == true if this branch is used
-                ((MessageHandler.Whole<String>) textMsgHandler).onMessage(messageBufferText.toString());
+                ((MessageHandler.Whole<String>) textMsgHandler).onMessage(text);
             }
         } catch (Throwable t) {
             handleThrowableOnSend(t);
@@ -441,8 +460,34 @@ public abstract class WsFrameBase {
         }
 
         messageBufferBinary.flip();
+
+        // Frame is fully received. If this is the end of the message and
+        // nothing has been decoded yet, decode directly to a String.
+        if (!continuationExpected && messageBufferText.position() == 0 && messageBufferBinary.hasArray()) {
+            byte[] bytes = messageBufferBinary.array();
+            int offset = messageBufferBinary.arrayOffset() + messageBufferBinary.position();
+            int len = messageBufferBinary.remaining();
+            int chars = Util.utf8Length(bytes, offset, len);
+            if (chars < 0) {
+                throw new WsIOException(
+                        new CloseReason(CloseCodes.NOT_CONSISTENT, sm.getString("wsFrame.invalidUtf8")));
+            }
+            if (chars <= messageBufferText.capacity()) {
+                if (chars == len) {
+                    // ASCII only
+                    messageText = new String(bytes, offset, len, StandardCharsets.ISO_8859_1);
+                } else {
+                    messageText = new String(bytes, offset, len, StandardCharsets.UTF_8);
+                }
+                sendMessageText(true);
+
+                newMessage();
+                return true;
+            }
+            // Too big for the text buffer. Let the decoder handle it.
+        }
+
         boolean last = false;
-        // Frame is fully received
         // Convert bytes to UTF-8
         while (true) {
             CoderResult cr = utf8DecoderMessage.decode(messageBufferBinary, messageBufferText, last);
@@ -541,6 +586,87 @@ public abstract class WsFrameBase {
     }
 
 
+    /*
+     * Binary payloads are passed to the message handler as views of the input buffer, after unmasking in place, rather
+     * than being copied to the message buffer. The views are only valid until the message handler returns.
+     */
+    private boolean useZeroCopy() {
+        if (!binaryZeroCopy || rsv != 0 || !(transformation instanceof TerminalTransformation) ||
+                !inputBuffer.hasArray()) {
+            return false;
+        }
+        if (usePartial()) {
+            return true;
+        }
+        // Whole message handler. Only use the input buffer if it holds the
+        // entire message.
+        return payloadWritten == 0 && !continuationExpected && messageBufferBinary.position() == 0 &&
+                payloadLength <= messageBufferBinary.capacity() && payloadLength <= inputBuffer.remaining();
+    }
+
+
+    private boolean processDataBinaryZeroCopy() throws IOException {
+        int len = (int) Math.min(payloadLength - payloadWritten, inputBuffer.remaining());
+        int position = inputBuffer.position();
+        byte[] bytes = inputBuffer.array();
+        int offset = inputBuffer.arrayOffset() + position;
+        if (isMasked()) {
+            maskIndex = unmask(bytes, offset, bytes, offset, len, mask, maskIndex);
+        }
+        ByteBuffer payload = ByteBuffer.wrap(bytes, offset, len).slice();
+        inputBuffer.position(position + len);
+        payloadWritten += len;
+
+        if (payloadWritten < payloadLength) {
+            // Only reached for partial message handlers
+            if (len > 0) {
+                sendMessageBinary(payload, false);
+            }
+            return false;
+        }
+
+        sendMessageBinary(payload, !continuationExpected);
+        if (continuationExpected) {
+            // More data for this message expected, start a new frame
+            newFrame();
+        } else {
+            // Message is complete, start a new message
+            newMessage();
+        }
+        return true;
+    }
+
+
+    /*
+     * Unmasks len bytes from src into dest, which may be the same array, starting at the given index into the mask.
+     * Returns the index into the mask for the next byte.
+     */
+    private static int unmask(byte[] src, int srcOffset, byte[] dest, int destOffset, int len, byte[] mask,
+            int maskIndex) {
+        int i = 0;
+        // Align with the start of the mask
+        while (maskIndex != 0 && i < len) {
+            dest[destOffset + i] = (byte) (src[srcOffset + i] ^ mask[maskIndex]);
+            maskIndex = (maskIndex + 1) & 0x03;
+            i++;
+        }
+        // Unmask eight bytes at a time
+        if (len - i >= 8) {
+            long m = (mask[0] & 0xFFL) << 24 | (mask[1] & 0xFFL) << 16 | (mask[2] & 0xFFL) << 8 | mask[3] & 0xFFL;
+            m = m << 32 | m;
+            for (; len - i >= 8; i += 8) {
+                LONG_VIEW.set(dest, destOffset + i, (long) LONG_VIEW.get(src, srcOffset + i) ^ m);
+            }
+        }
+        while (i < len) {
+            dest[destOffset + i] = (byte) (src[srcOffset + i] ^ mask[maskIndex]);
+            maskIndex = (maskIndex + 1) & 0x03;
+            i++;
+        }
+        return maskIndex;
+    }
+
+
     private void handleThrowableOnSend(Throwable t) throws WsIOException {
         ExceptionUtils.handleThrowable(t);
         wsSession.getLocal().onError(wsSession, t);
@@ -954,14 +1080,24 @@ public abstract class WsFrameBase {
             // opCode is ignored as the transformation is the same for all
             // opCodes
             // rsv is ignored as it known to be zero at this point
-            while (payloadWritten < payloadLength && inputBuffer.remaining() > 0 && dest.hasRemaining()) {
-                byte b = (byte) ((inputBuffer.get() ^ mask[maskIndex]) & 0xFF);
-                maskIndex++;
-                if (maskIndex == 4) {
-                    maskIndex = 0;
+            if (inputBuffer.hasArray() && dest.hasArray()) {
+                long toWrite = Math.min(payloadLength - payloadWritten, inputBuffer.remaining());
+                int len = (int) Math.min(toWrite, dest.remaining());
+                maskIndex = unmask(inputBuffer.array(), inputBuffer.arrayOffset() + inputBuffer.position(),
+                        dest.array(), dest.arrayOffset() + dest.position(), len, mask, maskIndex);
+                inputBuffer.position(inputBuffer.position() + len);
+                dest.position(dest.position() + len);
+                payloadWritten += len;
+            } else {
+                while (payloadWritten < payloadLength && inputBuffer.remaining() > 0 && dest.hasRemaining()) {
+                    byte b = (byte) ((inputBuffer.get() ^ mask[maskIndex]) & 0xFF);
+                    maskIndex++;
+                    if (maskIndex == 4) {
+                        maskIndex = 0;
+                    }
+                    payloadWritten++;
+                    dest.put(b);
                 }
-                payloadWritten++;
-                dest.put(b);
             }
             if (payloadWritten == payloadLength) {
                 return TransformationResult.END_OF_FRAME;
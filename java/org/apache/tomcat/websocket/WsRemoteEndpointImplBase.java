@@ -33,6 +33,8 @@ import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.naming.NamingException;
@@ -67,7 +69,11 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     private Transformation transformation = null;
     protected final Semaphore messagePartInProgress = new Semaphore(1);
     private final Queue<MessagePart> messagePartQueue = new ArrayDeque<>();
-    private final Object messagePartLock = new Object();
+    /*
+     * java.util.concurrent locks are used throughout the send path rather than synchronized so that an application
+     * sending messages from a virtual thread never pins the carrier thread.
+     */
+    private final ReentrantLock messagePartLock = new ReentrantLock();
 
     // State
     private volatile boolean closed = false;
@@ -83,6 +89,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     private final ByteBuffer encoderBuffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
     private final AtomicBoolean batchingAllowed = new AtomicBoolean(false);
     private volatile long sendTimeout = -1;
+    private final AtomicInteger broadcastSkipCount = new AtomicInteger();
     private WsSession wsSession;
     private List<EncoderEntry> encoderEntries = new ArrayList<>();
 
@@ -133,7 +140,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
         if (data == null) {
             throw new IllegalArgumentException(sm.getString("wsRemoteEndpoint.nullData"));
         }
-        stateMachine.binaryStart();
+        fullStartBlocking(false);
         sendMessageBlock(Constants.OPCODE_BINARY, data, true);
         stateMachine.complete(true);
     }
@@ -191,11 +198,35 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
         if (text == null) {
             throw new IllegalArgumentException(sm.getString("wsRemoteEndpoint.nullData"));
         }
-        stateMachine.textStart();
+        fullStartBlocking(true);
         sendMessageBlock(CharBuffer.wrap(text), true);
     }
 
 
+    /*
+     * If a blocking send queue has been configured, wait in the queue until any message currently being sent has been
+     * completed. Otherwise, fail immediately if a message is currently being sent.
+     */
+    private void fullStartBlocking(boolean text) throws IOException {
+        int maxQueued = getBlockingSendQueueSize();
+        if (maxQueued <= 0) {
+            if (text) {
+                stateMachine.textStart();
+            } else {
+                stateMachine.binaryStart();
+            }
+            return;
+        }
+        try {
+            if (!stateMachine.queuedFullStart(text, getTimeoutExpiry(getBlockingSendTimeout()), maxQueued)) {
+                throw new SocketTimeoutException(sm.getString("wsRemoteEndpoint.sendQueueTimeout"));
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(sm.getString("wsRemoteEndpoint.sendInterrupt"), e);
+        }
+    }
+
+
     public Future<Void> sendStringByFuture(String text) {
         FutureToSendHandler f2sh = new FutureToSendHandler(wsSession);
         sendStringByCompletion(text, f2sh);
@@ -342,6 +373,95 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     }
 
 
+    /**
+     * Start sending a complete, pre-encoded and unmasked frame. The frame bypasses the transformation pipeline so it
+     * must only use the RSV bits of extensions that allow a message to be sent without further transformation. The
+     * write is never queued. If the endpoint is busy sending another message, is batching messages or has been closed
+     * then the frame is not sent.
+     *
+     * @param frame         The frame (header and payload) to write. The buffer is not modified by other endpoints so
+     *                          may be a view of a buffer shared between endpoints.
+     * @param payloadLength The length of the payload, for statistics
+     * @param handler       The handler to notify when the frame has been written
+     *
+     * @return {@code true} if the write was started, otherwise {@code false}
+     */
+    boolean sendEncodedFrame(ByteBuffer frame, int payloadLength, SendHandler handler) {
+        if (closed || getBatchingAllowed() || !stateMachine.tryFullStart()) {
+            return false;
+        }
+
+        boolean doWrite = false;
+        messagePartLock.lock();
+        try {
+            if (messagePartInProgress.tryAcquire()) {
+                if (closed) {
+                    messagePartInProgress.release();
+                } else {
+                    doWrite = true;
+                }
+            }
+        } finally {
+            messagePartLock.unlock();
+        }
+        if (!doWrite) {
+            stateMachine.complete(true);
+            return false;
+        }
+
+        wsSession.updateLastActiveWrite();
+        // The state machine ensures that a fragmented message is not in
+        // progress
+        nextFragmented = false;
+        nextText = false;
+        doWrite(new EndMessageHandler(this, new StateUpdateSendHandler(handler, stateMachine)), -1, frame);
+        updateStats(payloadLength);
+        return true;
+    }
+
+
+    int getBroadcastSkipCount() {
+        return broadcastSkipCount.get();
+    }
+
+
+    int incrementBroadcastSkipCount() {
+        return broadcastSkipCount.incrementAndGet();
+    }
+
+
+    void resetBroadcastSkipCount() {
+        broadcastSkipCount.set(0);
+    }
+
+
+    /**
+     * Close the session without blocking the calling thread. The close, including sending the close message and
+     * notifying the endpoint, is performed by a container thread. If that is not possible, the connection is aborted
+     * without sending a close message.
+     *
+     * @param closeReasonMessage The close reason to send to the remote endpoint
+     * @param closeReasonLocal   The close reason to pass to the local endpoint
+     */
+    void closeNonBlocking(CloseReason closeReasonMessage, CloseReason closeReasonLocal) {
+        if (!dispatch(() -> wsSession.doClose(closeReasonMessage, closeReasonLocal, true))) {
+            doClose();
+        }
+    }
+
+
+    /**
+     * Execute the given task using a container thread.
+     *
+     * @param task The task to execute
+     *
+     * @return {@code true} if the task was passed to a container thread, {@code false} if the task was not executed
+     */
+    protected boolean dispatch(Runnable task) {
+        return false;
+    }
+
+
     /**
      * Acquire the semaphore that allows a message part to be written.
      *
@@ -385,7 +505,8 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
         MessagePart mp = messageParts.remove(0);
 
         boolean doWrite = false;
-        synchronized (messagePartLock) {
+        messagePartLock.lock();
+        try {
             if (Constants.OPCODE_CLOSE == mp.getOpCode() && getBatchingAllowed()) {
                 // Should not happen. To late to send batched messages now since
                 // the session has been closed. Complain loudly.
@@ -407,9 +528,11 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
             }
             // Add any remaining messages to the queue
             messagePartQueue.addAll(messageParts);
+        } finally {
+            messagePartLock.unlock();
         }
         if (doWrite) {
-            // Actual write has to be outside sync block to avoid possible
+            // Actual write has to be outside locked block to avoid possible
             // deadlock between messagePartLock and writeLock in
             // o.a.coyote.http11.upgrade.AbstractServletOutputStream
             writeMessagePart(mp);
@@ -420,7 +543,8 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     void endMessage(SendHandler handler, SendResult result) {
         boolean doWrite = false;
         MessagePart mpNext = null;
-        synchronized (messagePartLock) {
+        messagePartLock.lock();
+        try {
 
             fragmented = nextFragmented;
             text = nextText;
@@ -435,9 +559,11 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
                 // the message.
                 doWrite = true;
             }
+        } finally {
+            messagePartLock.unlock();
         }
         if (doWrite) {
-            // Actual write has to be outside sync block to avoid possible
+            // Actual write has to be outside locked block to avoid possible
             // deadlock between messagePartLock and writeLock in
             // o.a.coyote.http11.upgrade.AbstractServletOutputStream
             writeMessagePart(mpNext);
@@ -475,6 +601,8 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
             nextText = text;
             if (mp.getOpCode() == Constants.OPCODE_CLOSE) {
                 closed = true;
+                // Release any application threads queued to send a message
+                stateMachine.close();
             }
             first = true;
         } else {
@@ -539,6 +667,15 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     }
 
 
+    private int getBlockingSendQueueSize() {
+        Object obj = wsSession.getUserProperties().get(Constants.BLOCKING_SEND_QUEUE_SIZE_PROPERTY);
+        if (obj instanceof Integer) {
+            return ((Integer) obj).intValue();
+        }
+        return Constants.DEFAULT_BLOCKING_SEND_QUEUE_SIZE;
+    }
+
+
     private long getBlockingSendTimeout() {
         Object obj = wsSession.getUserProperties().get(Constants.BLOCKING_SEND_TIMEOUT_PROPERTY);
         Long userTimeout = null;
@@ -750,6 +887,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
         // The transformation handles both input and output. It only needs to be
         // closed once so it is closed here on the output side.
         transformation.close();
+        stateMachine.close();
         doClose();
     }
 
@@ -763,7 +901,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
     protected abstract ReentrantLock getLock();
 
 
-    private static void writeHeader(ByteBuffer headerBuffer, boolean fin, int rsv, byte opCode, boolean masked,
+    static void writeHeader(ByteBuffer headerBuffer, boolean fin, int rsv, byte opCode, boolean masked,
             ByteBuffer payload, byte[] mask, boolean first) {
 
         byte b = 0;
@@ -995,7 +1133,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
         private final WsRemoteEndpointImplBase endpoint;
         private final ByteBuffer buffer = ByteBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
-        private final Object closeLock = new Object();
+        private final ReentrantLock closeLock = new ReentrantLock();
         private volatile boolean closed = false;
         private volatile boolean used = false;
 
@@ -1061,11 +1199,14 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
         @Override
         public void close() throws IOException {
-            synchronized (closeLock) {
+            closeLock.lock();
+            try {
                 if (closed) {
                     return;
                 }
                 closed = true;
+            } finally {
+                closeLock.unlock();
             }
 
             doWrite(true);
@@ -1086,7 +1227,7 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
         private final WsRemoteEndpointImplBase endpoint;
         private final CharBuffer buffer = CharBuffer.allocate(Constants.DEFAULT_BUFFER_SIZE);
-        private final Object closeLock = new Object();
+        private final ReentrantLock closeLock = new ReentrantLock();
         private volatile boolean closed = false;
         private volatile boolean used = false;
 
@@ -1137,11 +1278,14 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
         @Override
         public void close() throws IOException {
-            synchronized (closeLock) {
+            closeLock.lock();
+            try {
                 if (closed) {
                     return;
                 }
                 closed = true;
+            } finally {
+                closeLock.unlock();
             }
 
             doWrite(true);
@@ -1193,55 +1337,151 @@ public abstract class WsRemoteEndpointImplBase implements RemoteEndpoint {
 
 
     private static class StateMachine {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition openCondition = lock.newCondition();
         private State state = State.OPEN;
+        private int queued = 0;
+        private boolean closed = false;
 
-        public synchronized void streamStart() {
-            checkState(State.OPEN);
-            state = State.STREAM_WRITING;
+        public void streamStart() {
+            start(State.STREAM_WRITING, State.OPEN);
         }
 
-        public synchronized void writeStart() {
-            checkState(State.OPEN);
-            state = State.WRITER_WRITING;
+        public void writeStart() {
+            start(State.WRITER_WRITING, State.OPEN);
         }
 
-        public synchronized void binaryPartialStart() {
-            checkState(State.OPEN, State.BINARY_PARTIAL_READY);
-            state = State.BINARY_PARTIAL_WRITING;
+        public void binaryPartialStart() {
+            start(State.BINARY_PARTIAL_WRITING, State.OPEN, State.BINARY_PARTIAL_READY);
         }
 
-        public synchronized void binaryStart() {
-            checkState(State.OPEN);
-            state = State.BINARY_FULL_WRITING;
+        public void binaryStart() {
+            start(State.BINARY_FULL_WRITING, State.OPEN);
         }
 
-        public synchronized void textPartialStart() {
-            checkState(State.OPEN, State.TEXT_PARTIAL_READY);
-            state = State.TEXT_PARTIAL_WRITING;
+        public void textPartialStart() {
+            start(State.TEXT_PARTIAL_WRITING, State.OPEN, State.TEXT_PARTIAL_READY);
         }
 
-        public synchronized void textStart() {
-            checkState(State.OPEN);
-            state = State.TEXT_FULL_WRITING;
+        public void textStart() {
+            start(State.TEXT_FULL_WRITING, State.OPEN);
         }
 
-        public synchronized void complete(boolean last) {
-            if (last) {
-                checkState(State.TEXT_PARTIAL_WRITING, State.TEXT_FULL_WRITING, State.BINARY_PARTIAL_WRITING,
-                        State.BINARY_FULL_WRITING, State.STREAM_WRITING, State.WRITER_WRITING);
-                state = State.OPEN;
-            } else {
-                checkState(State.TEXT_PARTIAL_WRITING, State.BINARY_PARTIAL_WRITING, State.STREAM_WRITING,
-                        State.WRITER_WRITING);
-                if (state == State.TEXT_PARTIAL_WRITING) {
-                    state = State.TEXT_PARTIAL_READY;
-                } else if (state == State.BINARY_PARTIAL_WRITING) {
-                    state = State.BINARY_PARTIAL_READY;
-                } else if (state == State.WRITER_WRITING) {
-                    // NO-OP. Leave state as is.
-                } else if (state == State.STREAM_WRITING) {
-                    // NO-OP. Leave state as is.
+        private void start(State newState, State... required) {
+            lock.lock();
+            try {
+                checkState(required);
+                state = newState;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean tryFullStart() {
+            lock.lock();
+            try {
+                if (state != State.OPEN || queued > 0) {
+                    return false;
                 }
+                // Text and binary are treated the same when completing a message
+                state = State.BINARY_FULL_WRITING;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Start sending a complete text or binary message. If another message is being sent, wait in a FIFO queue for
+         * that message to complete.
+         *
+         * @param text          {@code true} for a text message, {@code false} for a binary message
+         * @param timeoutExpiry The time at which to stop waiting
+         * @param maxQueued     The maximum number of threads that may be waiting to send a message
+         *
+         * @return {@code true} if the message may be sent, {@code false} if the timeout expired first
+         *
+         * @throws InterruptedException  If the thread is interrupted while waiting
+         * @throws IllegalStateException If the queue is full or the endpoint has been closed
+         */
+        public boolean queuedFullStart(boolean text, long timeoutExpiry, int maxQueued) throws InterruptedException {
+            lock.lock();
+            try {
+                if (state == State.OPEN && queued == 0) {
+                    state = text ? State.TEXT_FULL_WRITING : State.BINARY_FULL_WRITING;
+                    return true;
+                }
+                if (queued >= maxQueued) {
+                    throw new IllegalStateException(sm.getString("wsRemoteEndpoint.sendQueueFull",
+                            Integer.valueOf(maxQueued), state));
+                }
+                queued++;
+                boolean started = false;
+                try {
+                    while (true) {
+                        if (closed) {
+                            throw new IllegalStateException(sm.getString("wsRemoteEndpoint.closed"));
+                        }
+                        if (state == State.OPEN) {
+                            state = text ? State.TEXT_FULL_WRITING : State.BINARY_FULL_WRITING;
+                            started = true;
+                            return true;
+                        }
+                        long timeout = timeoutExpiry - System.currentTimeMillis();
+                        if (timeout <= 0) {
+                            return false;
+                        }
+                        openCondition.await(timeout, TimeUnit.MILLISECONDS);
+                    }
+                } finally {
+                    queued--;
+                    if (!started && state == State.OPEN && queued > 0) {
+                        // This thread may have been signalled. Pass the
+                        // signal on so the next thread in the queue does not
+                        // wait unnecessarily.
+                        openCondition.signal();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void complete(boolean last) {
+            lock.lock();
+            try {
+                if (last) {
+                    checkState(State.TEXT_PARTIAL_WRITING, State.TEXT_FULL_WRITING, State.BINARY_PARTIAL_WRITING,
+                            State.BINARY_FULL_WRITING, State.STREAM_WRITING, State.WRITER_WRITING);
+                    state = State.OPEN;
+                    if (queued > 0) {
+                        openCondition.signal();
+                    }
+                } else {
+                    checkState(State.TEXT_PARTIAL_WRITING, State.BINARY_PARTIAL_WRITING, State.STREAM_WRITING,
+                            State.WRITER_WRITING);
+                    if (state == State.TEXT_PARTIAL_WRITING) {
+                        state = State.TEXT_PARTIAL_READY;
+                    } else if (state == State.BINARY_PARTIAL_WRITING) {
+                        state = State.BINARY_PARTIAL_READY;
+                    } else if (state == State.WRITER_WRITING) {
+                        // NO-OP. Leave state as is.
+                    } else if (state == State.STREAM_WRITING) {
+                        // NO-OP. Leave state as is.
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                openCondition.signalAll();
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -288,6 +288,11 @@ public class WsSession implements Session {
     }
 
 
+    WsRemoteEndpointImplBase getWsRemoteEndpoint() {
+        return wsRemoteEndpoint;
+    }
+
+
     public InstanceManager getInstanceManager() {
         return webSocketContainer.getInstanceManager(applicationClassLoader);
     }
@@ -96,6 +96,8 @@ public class WsWebSocketContainer implements WebSocketContainer, BackgroundProce
     private volatile long defaultMaxSessionIdleTimeout = 0;
     private int backgroundProcessCount = 0;
     private int processPeriod = Constants.DEFAULT_PROCESS_PERIOD;
+    private final PerMessageDeflateCodecPool perMessageDeflateCodecPool = new PerMessageDeflateCodecPool();
+    private volatile int perMessageDeflateServerMaxWindowBits = 15;
 
     private InstanceManager instanceManager;
 
@@ -406,7 +408,7 @@ public class WsWebSocketContainer implements WebSocketContainer, BackgroundProce
             for (Extension extension : extensionsAgreed) {
                 List<List<Extension.Parameter>> wrapper = new ArrayList<>(1);
                 wrapper.add(extension.getParameters());
-                Transformation t = factory.create(extension.getName(), wrapper, false);
+                Transformation t = factory.create(extension.getName(), wrapper, false, this);
                 if (t == null) {
                     throw new DeploymentException(sm.getString("wsWebSocketContainer.invalidExtensionParameters"));
                 }
@@ -971,6 +973,47 @@ public class WsWebSocketContainer implements WebSocketContainer, BackgroundProce
     }
 
 
+    /**
+     * Obtain the pool of the compression codecs used by sessions created from this container that negotiated the
+     * permessage-deflate extension. The pool also provides the metrics for the native memory used by those codecs.
+     *
+     * @return The codec pool for this container
+     */
+    public PerMessageDeflateCodecPool getPerMessageDeflateCodecPool() {
+        return perMessageDeflateCodecPool;
+    }
+
+
+    /**
+     * Obtain the largest LZ77 window, expressed as a number of bits, that the server will use when compressing
+     * messages for the permessage-deflate extension.
+     *
+     * @return The maximum server window size in bits
+     */
+    public int getPerMessageDeflateServerMaxWindowBits() {
+        return perMessageDeflateServerMaxWindowBits;
+    }
+
+
+    /**
+     * Configure the largest LZ77 window, expressed as a number of bits, that the server will use when compressing
+     * messages for the permessage-deflate extension. The default is 15. The JRE does not allow the window size to be
+     * controlled so, if a smaller value is configured, it is included in the server_max_window_bits negotiation and
+     * messages are compressed without back references (Huffman coding only). This reduces the memory required by
+     * clients to decompress messages at the cost of a lower compression ratio. It also allows the server to accept
+     * offers from clients that require a server window smaller than 15 bits which would otherwise be declined.
+     *
+     * @param perMessageDeflateServerMaxWindowBits The maximum server window size in bits, from 8 to 15 inclusive
+     */
+    public void setPerMessageDeflateServerMaxWindowBits(int perMessageDeflateServerMaxWindowBits) {
+        if (perMessageDeflateServerMaxWindowBits < 8 || perMessageDeflateServerMaxWindowBits > 15) {
+            throw new IllegalArgumentException(sm.getString("wsWebSocketContainer.invalidWindowBits",
+                    Integer.valueOf(perMessageDeflateServerMaxWindowBits)));
+        }
+        this.perMessageDeflateServerMaxWindowBits = perMessageDeflateServerMaxWindowBits;
+    }
+
+
     /**
      * Cleans up the resources still in use by WebSocket sessions created from this container. This includes closing
      * sessions and cancelling {@link Future}s associated with blocking read/writes.
@@ -996,6 +1039,8 @@ public class WsWebSocketContainer implements WebSocketContainer, BackgroundProce
                 }
             }
         }
+
+        perMessageDeflateCodecPool.clear();
     }
 
 
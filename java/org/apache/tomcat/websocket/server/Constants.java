@@ -23,6 +23,11 @@ public class Constants {
 
     public static final String BINARY_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM = "org.apache.tomcat.websocket.binaryBufferSize";
     public static final String TEXT_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM = "org.apache.tomcat.websocket.textBufferSize";
+    public static final String BROADCAST_MAX_SKIPS_SERVLET_CONTEXT_INIT_PARAM = "org.apache.tomcat.websocket.broadcastMaxSkips";
+    public static final String DEFLATE_MAX_IDLE_CODECS_SERVLET_CONTEXT_INIT_PARAM =
+            "org.apache.tomcat.websocket.perMessageDeflateMaxIdleCodecs";
+    public static final String DEFLATE_SERVER_MAX_WINDOW_BITS_SERVLET_CONTEXT_INIT_PARAM =
+            "org.apache.tomcat.websocket.perMessageDeflateServerMaxWindowBits";
 
     public static final String SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE = "jakarta.websocket.server.ServerContainer";
 
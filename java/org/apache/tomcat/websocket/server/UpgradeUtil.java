@@ -137,7 +137,7 @@ public class UpgradeUtil {
         // to this connection. Note than an extension may be dropped at this
         // point if the client has requested a configuration that the server is
         // unable to support.
-        List<Transformation> transformations = createTransformations(negotiatedExtensionsPhase1);
+        List<Transformation> transformations = createTransformations(sc, negotiatedExtensionsPhase1);
 
         List<Extension> negotiatedExtensionsPhase2;
         if (transformations.isEmpty()) {
@@ -249,7 +249,8 @@ public class UpgradeUtil {
     }
 
 
-    private static List<Transformation> createTransformations(List<Extension> negotiatedExtensions) {
+    private static List<Transformation> createTransformations(WsServerContainer sc,
+            List<Extension> negotiatedExtensions) {
 
         TransformationFactory factory = TransformationFactory.getInstance();
 
@@ -264,7 +265,7 @@ public class UpgradeUtil {
         }
 
         for (Map.Entry<String, List<List<Extension.Parameter>>> entry : extensionPreferences.entrySet()) {
-            Transformation transformation = factory.create(entry.getKey(), entry.getValue(), true);
+            Transformation transformation = factory.create(entry.getKey(), entry.getValue(), true, sc);
             if (transformation != null) {
                 result.add(transformation);
             }
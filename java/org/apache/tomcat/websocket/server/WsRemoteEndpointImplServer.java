@@ -305,6 +305,17 @@ public class WsRemoteEndpointImplServer extends WsRemoteEndpointImplBase {
     }
 
 
+    @Override
+    protected boolean dispatch(Runnable task) {
+        try {
+            socketWrapper.execute(task);
+            return true;
+        } catch (RejectedExecutionException ree) {
+            return false;
+        }
+    }
+
+
     protected long getTimeoutExpiry() {
         return timeoutExpiry;
     }
@@ -17,7 +17,9 @@
 package org.apache.tomcat.websocket.server;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Map;
@@ -25,6 +27,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 
+import javax.management.ObjectName;
 import javax.naming.NamingException;
 
 import jakarta.servlet.DispatcherType;
@@ -37,13 +40,19 @@ import jakarta.websocket.CloseReason;
 import jakarta.websocket.CloseReason.CloseCodes;
 import jakarta.websocket.DeploymentException;
 import jakarta.websocket.Encoder;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.Session;
 import jakarta.websocket.server.ServerContainer;
 import jakarta.websocket.server.ServerEndpoint;
 import jakarta.websocket.server.ServerEndpointConfig;
 import jakarta.websocket.server.ServerEndpointConfig.Configurator;
 
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.InstanceManager;
+import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.websocket.WsBroadcastMessage;
 import org.apache.tomcat.websocket.WsSession;
 import org.apache.tomcat.websocket.WsWebSocketContainer;
 import org.apache.tomcat.websocket.pojo.PojoMethodMapping;
@@ -54,6 +63,9 @@ import org.apache.tomcat.websocket.pojo.PojoMethodMapping;
  * <ul>
  * <li>{@link Constants#BINARY_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM}</li>
  * <li>{@link Constants#TEXT_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM}</li>
+ * <li>{@link Constants#BROADCAST_MAX_SKIPS_SERVLET_CONTEXT_INIT_PARAM}</li>
+ * <li>{@link Constants#DEFLATE_MAX_IDLE_CODECS_SERVLET_CONTEXT_INIT_PARAM}</li>
+ * <li>{@link Constants#DEFLATE_SERVER_MAX_WINDOW_BITS_SERVLET_CONTEXT_INIT_PARAM}</li>
  * </ul>
  */
 public class WsServerContainer extends WsWebSocketContainer implements ServerContainer {
@@ -63,6 +75,8 @@ public class WsServerContainer extends WsWebSocketContainer implements ServerCon
     private static final CloseReason AUTHENTICATED_HTTP_SESSION_CLOSED = new CloseReason(CloseCodes.VIOLATED_POLICY,
             "This connection was established under an authenticated " + "HTTP session that has ended.");
 
+    private final Log log = LogFactory.getLog(WsServerContainer.class); // must not be static
+
     private final WsWriteTimeout wsWriteTimeout = new WsWriteTimeout();
 
     private final ServletContext servletContext;
@@ -71,6 +85,8 @@ public class WsServerContainer extends WsWebSocketContainer implements ServerCon
     private final Map<String, Set<WsSession>> authenticatedSessions = new ConcurrentHashMap<>();
     private volatile boolean endpointsRegistered = false;
     private volatile boolean deploymentFailed = false;
+    private volatile int broadcastMaxSkips = -1;
+    private volatile ObjectName codecPoolOname = null;
 
     WsServerContainer(ServletContext servletContext) {
 
@@ -88,6 +104,21 @@ public class WsServerContainer extends WsWebSocketContainer implements ServerCon
             setDefaultMaxTextMessageBufferSize(Integer.parseInt(value));
         }
 
+        value = servletContext.getInitParameter(Constants.BROADCAST_MAX_SKIPS_SERVLET_CONTEXT_INIT_PARAM);
+        if (value != null) {
+            setBroadcastMaxSkips(Integer.parseInt(value));
+        }
+
+        value = servletContext.getInitParameter(Constants.DEFLATE_MAX_IDLE_CODECS_SERVLET_CONTEXT_INIT_PARAM);
+        if (value != null) {
+            getPerMessageDeflateCodecPool().setMaxIdle(Integer.parseInt(value));
+        }
+
+        value = servletContext.getInitParameter(Constants.DEFLATE_SERVER_MAX_WINDOW_BITS_SERVLET_CONTEXT_INIT_PARAM);
+        if (value != null) {
+            setPerMessageDeflateServerMaxWindowBits(Integer.parseInt(value));
+        }
+
         FilterRegistration.Dynamic fr = servletContext.addFilter("Tomcat WebSocket (JSR356) Filter", new WsFilter());
         if (fr != null) {
             fr.setAsyncSupported(true);
@@ -96,6 +127,64 @@ public class WsServerContainer extends WsWebSocketContainer implements ServerCon
 
             fr.addMappingForUrlPatterns(types, true, "/*");
         }
+
+        registerPerMessageDeflateCodecPool();
+    }
+
+
+    /*
+     * Expose the permessage-deflate codec pool metrics for this web application over JMX. Tomcat reports the virtual
+     * server name as "engine/host" which is used to construct an ObjectName consistent with the other MBeans
+     * registered for the web application.
+     */
+    private void registerPerMessageDeflateCodecPool() {
+        String virtualServerName = servletContext.getVirtualServerName();
+        String domain = "Catalina";
+        String hostName = virtualServerName;
+        if (virtualServerName != null) {
+            int slash = virtualServerName.indexOf('/');
+            if (slash > 0) {
+                domain = virtualServerName.substring(0, slash);
+                hostName = virtualServerName.substring(slash + 1);
+            }
+        }
+        if (hostName == null || hostName.isEmpty()) {
+            hostName = "DEFAULT";
+        }
+        String contextPath = servletContext.getContextPath();
+        if (contextPath == null || contextPath.isEmpty()) {
+            contextPath = "/";
+        }
+
+        try {
+            ObjectName oname = new ObjectName(domain + ":type=WebSocketCodecPool,WebModule=//" + hostName +
+                    contextPath + ",J2EEApplication=none,J2EEServer=none");
+            Registry.getRegistry(null, null).registerComponent(getPerMessageDeflateCodecPool(), oname, null);
+            codecPoolOname = oname;
+        } catch (Exception e) {
+            log.warn(sm.getString("serverContainer.codecPoolRegistrationFail", contextPath, virtualServerName), e);
+        }
+    }
+
+
+    /**
+     * Returns the name under which the permessage-deflate codec pool for this container has been registered with JMX.
+     *
+     * @return the name of the codec pool MBean or {@code null} if the pool has not been registered
+     */
+    public ObjectName getPerMessageDeflateCodecPoolObjectName() {
+        return codecPoolOname;
+    }
+
+
+    @Override
+    public void destroy() {
+        ObjectName oname = codecPoolOname;
+        if (oname != null) {
+            Registry.getRegistry(null, null).unregisterComponent(oname);
+            codecPoolOname = null;
+        }
+        super.destroy();
     }
 
 
@@ -318,6 +407,78 @@ public class WsServerContainer extends WsWebSocketContainer implements ServerCon
     }
 
 
+    /**
+     * Obtain the number of consecutive broadcast messages that may be skipped for a session that is still sending a
+     * previous message before that session is closed.
+     *
+     * @return The maximum number of consecutive skipped messages. A negative value means that slow sessions are never
+     *             closed.
+     */
+    public int getBroadcastMaxSkips() {
+        return broadcastMaxSkips;
+    }
+
+
+    /**
+     * Configure the number of consecutive broadcast messages that may be skipped for a session that is still sending a
+     * previous message before that session is closed.
+     *
+     * @param broadcastMaxSkips The maximum number of consecutive skipped messages. A negative value means that slow
+     *                              sessions are never closed.
+     */
+    public void setBroadcastMaxSkips(int broadcastMaxSkips) {
+        this.broadcastMaxSkips = broadcastMaxSkips;
+    }
+
+
+    /**
+     * Send a text message to each of the provided sessions. This is a Tomcat specific extension to the WebSocket API.
+     * The message is encoded once and the encoded frame is shared by all of the sessions. The caller is never blocked.
+     * A session that is still sending a previous message is skipped.
+     *
+     * @param sessions The sessions to send the message to
+     * @param text     The message to send
+     * @param handler  The handler to notify of the result for each session, may be {@code null}
+     *
+     * @return The number of sessions for which sending the message was started
+     *
+     * @see #setBroadcastMaxSkips(int)
+     */
+    public int broadcast(Collection<? extends Session> sessions, String text, SendHandler handler) {
+        return broadcast(sessions, WsBroadcastMessage.text(text), handler);
+    }
+
+
+    /**
+     * Send a binary message to each of the provided sessions. This is a Tomcat specific extension to the WebSocket API.
+     * The message is encoded once and the encoded frame is shared by all of the sessions. The caller is never blocked.
+     * A session that is still sending a previous message is skipped.
+     *
+     * @param sessions The sessions to send the message to
+     * @param data     The message to send
+     * @param handler  The handler to notify of the result for each session, may be {@code null}
+     *
+     * @return The number of sessions for which sending the message was started
+     *
+     * @see #setBroadcastMaxSkips(int)
+     */
+    public int broadcast(Collection<? extends Session> sessions, ByteBuffer data, SendHandler handler) {
+        return broadcast(sessions, WsBroadcastMessage.binary(data), handler);
+    }
+
+
+    private int broadcast(Collection<? extends Session> sessions, WsBroadcastMessage message, SendHandler handler) {
+        int maxSkips = broadcastMaxSkips;
+        int sent = 0;
+        for (Session session : sessions) {
+            if (message.send(session, maxSkips, handler)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+
     protected WsWriteTimeout getTimeout() {
         return wsWriteTimeout;
     }
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.Servlet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Globals;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+public class TestApplicationFilterFactory extends TomcatBaseTest {
+
+    @Test
+    public void testOrderAndMatching() throws Exception {
+        StandardContext ctx = createContext();
+        Wrapper wrapper = (Wrapper) ctx.findChild("servlet");
+
+        addFilter(ctx, "servletName", null, "servlet", FilterMap.REQUEST);
+        addFilter(ctx, "all", "/*", null, FilterMap.REQUEST);
+        addFilter(ctx, "api", "/api/*", null, FilterMap.REQUEST);
+        addFilter(ctx, "json", "*.json", null, FilterMap.REQUEST);
+        addFilter(ctx, "forward", "/*", null, FilterMap.FORWARD);
+        addFilter(ctx, "star", "*", null, FilterMap.REQUEST);
+
+        getTomcatInstance().start();
+
+        // URL pattern mappings first, then servlet name mappings
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/api/data.json", "all", "api", "json", "star",
+                "servletName");
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/api", "all", "api", "star", "servletName");
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/other/data.json", "all", "json", "star",
+                "servletName");
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/apiother", "all", "star", "servletName");
+        assertChain(ctx, wrapper, DispatcherType.FORWARD, "/api/data.json", "forward");
+        // Repeat to use the cached entry
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/api/data.json", "all", "api", "json", "star",
+                "servletName");
+    }
+
+
+    @Test
+    public void testPathIndependent() throws Exception {
+        StandardContext ctx = createContext();
+        Wrapper wrapper = (Wrapper) ctx.findChild("servlet");
+
+        addFilter(ctx, "all", "/*", null, FilterMap.REQUEST);
+        addFilter(ctx, "star", "*", null, FilterMap.REQUEST);
+        addFilter(ctx, "servletName", null, "servlet", FilterMap.REQUEST);
+        // Mapped by both URL pattern and servlet name
+        addFilter(ctx, "both", "/*", "servlet", FilterMap.REQUEST);
+
+        getTomcatInstance().start();
+
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/a", "all", "star", "both", "servletName");
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/b", "all", "star", "both", "servletName");
+        // Named dispatch - no request path so "/*" does not match
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, null, "star", "servletName", "both");
+    }
+
+
+    @Test
+    public void testInvalidation() throws Exception {
+        StandardContext ctx = createContext();
+        Wrapper wrapper = (Wrapper) ctx.findChild("servlet");
+
+        addFilter(ctx, "first", "/*", null, FilterMap.REQUEST);
+
+        getTomcatInstance().start();
+
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/a", "first");
+        Assert.assertEquals(1, ctx.getFilterChainCache().size());
+
+        // Filters added after start are not initialised so are not added to the chain but adding the mapping must
+        // still clear the cache
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName("first");
+        filterMap.addServletName("servlet");
+        ctx.addFilterMapBefore(filterMap);
+        Assert.assertEquals(0, ctx.getFilterChainCache().size());
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/a", "first");
+
+        ctx.removeFilterMap(filterMap);
+        Assert.assertEquals(0, ctx.getFilterChainCache().size());
+
+        ctx.filterStop();
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/a");
+        ctx.filterStart();
+        assertChain(ctx, wrapper, DispatcherType.REQUEST, "/a", "first");
+    }
+
+
+    private StandardContext createContext() {
+        // No file system docBase required
+        StandardContext ctx = (StandardContext) getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "servlet", new HelloWorldServlet());
+        ctx.addServletMappingDecoded("/", "servlet");
+        return ctx;
+    }
+
+
+    private static void addFilter(StandardContext ctx, String name, String urlPattern, String servletName,
+            int dispatcherMapping) {
+        FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName(name);
+        filterDef.setFilter((Filter) (request, response, chain) -> chain.doFilter(request, response));
+        ctx.addFilterDef(filterDef);
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(name);
+        if (urlPattern != null) {
+            filterMap.addURLPatternDecoded(urlPattern);
+        }
+        if (servletName != null) {
+            filterMap.addServletName(servletName);
+        }
+        if ((dispatcherMapping & FilterMap.REQUEST) != 0) {
+            filterMap.setDispatcher(DispatcherType.REQUEST.name());
+        }
+        if ((dispatcherMapping & FilterMap.FORWARD) != 0) {
+            filterMap.setDispatcher(DispatcherType.FORWARD.name());
+        }
+        ctx.addFilterMap(filterMap);
+    }
+
+
+    private static void assertChain(StandardContext ctx, Wrapper wrapper, DispatcherType dispatcherType,
+            String requestPath, String... expected) throws Exception {
+        Request request = new Request(null, new org.apache.coyote.Request());
+        request.setAttribute(Globals.DISPATCHER_TYPE_ATTR, dispatcherType);
+        if (requestPath != null) {
+            request.setAttribute(Globals.DISPATCHER_REQUEST_PATH_ATTR, requestPath);
+        }
+        Servlet servlet = wrapper.allocate();
+        ApplicationFilterChain chain = ApplicationFilterFactory.createFilterChain(request, wrapper, servlet);
+        ApplicationFilterConfig[] filters = chain.getFilters();
+        wrapper.deallocate(servlet);
+        String[] actual = new String[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            actual[i] = filters[i].getFilterName();
+        }
+        Assert.assertArrayEquals(expected, actual);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.GenericFilter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+public class TestStandardContextLoadOnStartup extends TomcatBaseTest {
+
+    @Test
+    public void testParallelLoadOnStartup() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        tomcat.getServer().setUtilityThreads(4);
+        StandardContext ctx = (StandardContext) getProgrammaticRootContext();
+        ctx.setParallelLoadOnStartup(true);
+
+        // Each filter and servlet only completes initialization once all of them in the same group are initializing
+        CountDownLatch filterLatch = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            FilterDef filterDef = new FilterDef();
+            filterDef.setFilterName("filter" + i);
+            filterDef.setFilter(new LatchFilter(filterLatch));
+            ctx.addFilterDef(filterDef);
+            FilterMap filterMap = new FilterMap();
+            filterMap.setFilterName("filter" + i);
+            filterMap.addURLPattern("/*");
+            ctx.addFilterMap(filterMap);
+        }
+
+        CountDownLatch servletLatch = new CountDownLatch(3);
+        LatchServlet[] servlets = new LatchServlet[3];
+        for (int i = 0; i < servlets.length; i++) {
+            servlets[i] = new LatchServlet(servletLatch);
+            Wrapper wrapper = Tomcat.addServlet(ctx, "servlet" + i, servlets[i]);
+            wrapper.setLoadOnStartup(1);
+            ctx.addServletMappingDecoded("/servlet" + i, "servlet" + i);
+        }
+        // Initialized after all the servlets with a lower load on startup value
+        LatchServlet last = new LatchServlet(servletLatch);
+        Tomcat.addServlet(ctx, "last", last).setLoadOnStartup(2);
+
+        tomcat.start();
+
+        Assert.assertTrue(ctx.getState().isAvailable());
+        for (LatchServlet servlet : servlets) {
+            Assert.assertTrue(servlet.initialized);
+        }
+        Assert.assertTrue(last.initialized);
+        Assert.assertEquals(0, last.countOnInit);
+        for (int i = 0; i < 2; i++) {
+            ApplicationFilterConfig filterConfig = (ApplicationFilterConfig) ctx.findFilterConfig("filter" + i);
+            Assert.assertNotNull(filterConfig);
+            Assert.assertTrue(filterConfig.getLoadTime() >= 0);
+        }
+
+        ByteChunk res = getUrl("http://localhost:" + getPort() + "/servlet0");
+        Assert.assertEquals("OK", res.toString());
+    }
+
+
+    @Test
+    public void testBackgroundLoadOnStartup() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        StandardContext ctx = (StandardContext) getProgrammaticRootContext();
+        ctx.setBackgroundLoadOnStartup(5);
+
+        LatchServlet critical = new LatchServlet(new CountDownLatch(0));
+        Tomcat.addServlet(ctx, "critical", critical).setLoadOnStartup(1);
+        ctx.addServletMappingDecoded("/critical", "critical");
+
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingServlet background = new BlockingServlet(release);
+        Tomcat.addServlet(ctx, "background", background).setLoadOnStartup(5);
+        ctx.addServletMappingDecoded("/background", "background");
+
+        tomcat.start();
+
+        // The context is available before the background servlet has been initialized
+        Assert.assertTrue(ctx.getState().isAvailable());
+        Assert.assertTrue(critical.initialized);
+        Assert.assertFalse(background.initialized);
+        Assert.assertEquals("OK", getUrl("http://localhost:" + getPort() + "/critical").toString());
+
+        release.countDown();
+        // A request for the background servlet waits for it to be initialized
+        Assert.assertEquals("OK", getUrl("http://localhost:" + getPort() + "/background").toString());
+        Assert.assertTrue(background.initialized);
+        Assert.assertEquals(1, background.initCount);
+    }
+
+
+    @Test
+    public void testStopDuringBackgroundLoadOnStartup() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        StandardContext ctx = (StandardContext) getProgrammaticRootContext();
+        ctx.setBackgroundLoadOnStartup(1);
+
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingServlet first = new BlockingServlet(release);
+        Tomcat.addServlet(ctx, "first", first).setLoadOnStartup(1);
+        BlockingServlet second = new BlockingServlet(new CountDownLatch(0));
+        Tomcat.addServlet(ctx, "second", second).setLoadOnStartup(2);
+
+        tomcat.start();
+
+        // Wait for the first servlet to start initializing, then stop the context
+        Assert.assertTrue(first.initializing.await(10, TimeUnit.SECONDS));
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            release.countDown();
+        });
+        releaser.start();
+        ctx.stop();
+        releaser.join();
+
+        Assert.assertEquals(1, first.initCount);
+        // Servlets that had not started loading are not loaded
+        Assert.assertEquals(0, second.initCount);
+    }
+
+
+    private static class LatchFilter extends GenericFilter {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch latch;
+
+        LatchFilter(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void init(FilterConfig filterConfig) throws ServletException {
+            latch.countDown();
+            try {
+                if (!latch.await(10, TimeUnit.SECONDS)) {
+                    throw new ServletException("Filters not initialized in parallel");
+                }
+            } catch (InterruptedException e) {
+                throw new ServletException(e);
+            }
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            chain.doFilter(request, response);
+        }
+    }
+
+
+    private static class LatchServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch latch;
+        private volatile boolean initialized = false;
+        private volatile long countOnInit = -1;
+
+        LatchServlet(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void init() throws ServletException {
+            countOnInit = latch.getCount();
+            if (countOnInit > 0) {
+                latch.countDown();
+                try {
+                    if (!latch.await(10, TimeUnit.SECONDS)) {
+                        throw new ServletException("Servlets not initialized in parallel");
+                    }
+                } catch (InterruptedException e) {
+                    throw new ServletException(e);
+                }
+            }
+            initialized = true;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.getWriter().print("OK");
+        }
+    }
+
+
+    private static class BlockingServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch release;
+        private final transient CountDownLatch initializing = new CountDownLatch(1);
+        private volatile boolean initialized = false;
+        private volatile int initCount = 0;
+
+        BlockingServlet(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void init() throws ServletException {
+            initCount++;
+            initializing.countDown();
+            try {
+                if (!release.await(10, TimeUnit.SECONDS)) {
+                    throw new ServletException("Not released");
+                }
+            } catch (InterruptedException e) {
+                throw new ServletException(e);
+            }
+            initialized = true;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.getWriter().print("OK");
+        }
+    }
+}
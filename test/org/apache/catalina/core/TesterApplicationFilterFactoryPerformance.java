@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.Servlet;
+
+import org.junit.Test;
+
+import org.apache.catalina.Globals;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * Each test is run once with the filter chain cache in use and once with the cache cleared before every call, which
+ * approximates the cost of matching every filter mapping on every request.
+ */
+public class TesterApplicationFilterFactoryPerformance extends TomcatBaseTest {
+
+    private static final int ITERATIONS = 10000000;
+
+
+    @Test
+    public void testMatchAll05() throws Exception {
+        doTest(5, false);
+    }
+
+
+    @Test
+    public void testMatchAll20() throws Exception {
+        doTest(20, false);
+    }
+
+
+    @Test
+    public void testMatchAll50() throws Exception {
+        doTest(50, false);
+    }
+
+
+    @Test
+    public void testMixed05() throws Exception {
+        doTest(5, true);
+    }
+
+
+    @Test
+    public void testMixed20() throws Exception {
+        doTest(20, true);
+    }
+
+
+    @Test
+    public void testMixed50() throws Exception {
+        doTest(50, true);
+    }
+
+
+    private void doTest(int filterCount, boolean mixed) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        StandardContext ctx = (StandardContext) getProgrammaticRootContext();
+        Wrapper wrapper = Tomcat.addServlet(ctx, "servlet", new HelloWorldServlet());
+        ctx.addServletMappingDecoded("/", "servlet");
+
+        for (int i = 0; i < filterCount; i++) {
+            FilterDef filterDef = new FilterDef();
+            filterDef.setFilterName("filter" + i);
+            filterDef.setFilter((Filter) (request, response, chain) -> chain.doFilter(request, response));
+            ctx.addFilterDef(filterDef);
+            FilterMap filterMap = new FilterMap();
+            filterMap.setFilterName("filter" + i);
+            if (!mixed) {
+                filterMap.addURLPatternDecoded("/*");
+            } else {
+                switch (i % 4) {
+                    case 0:
+                        filterMap.addURLPatternDecoded("/*");
+                        break;
+                    case 1:
+                        filterMap.addURLPatternDecoded("/api/*");
+                        break;
+                    case 2:
+                        filterMap.addURLPatternDecoded("*.json");
+                        break;
+                    default:
+                        filterMap.addServletName("servlet");
+                }
+            }
+            ctx.addFilterMap(filterMap);
+        }
+
+        tomcat.start();
+
+        Servlet servlet = wrapper.allocate();
+        Request request = new Request(null, new org.apache.coyote.Request());
+        request.setAttribute(Globals.DISPATCHER_TYPE_ATTR, DispatcherType.REQUEST);
+        request.setAttribute(Globals.DISPATCHER_REQUEST_PATH_ATTR, "/api/data.json");
+
+        // Warm-up
+        doTestCreateFilterChain(ctx, request, wrapper, servlet, true);
+        doTestCreateFilterChain(ctx, request, wrapper, servlet, false);
+
+        long start = System.nanoTime();
+        doTestCreateFilterChain(ctx, request, wrapper, servlet, true);
+        long cached = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        doTestCreateFilterChain(ctx, request, wrapper, servlet, false);
+        long uncached = System.nanoTime() - start;
+
+        System.out.println("Filters [" + filterCount + "], mixed [" + mixed + "]: cached [" + cached / ITERATIONS +
+                "] ns per chain, uncached [" + uncached / ITERATIONS + "] ns per chain");
+
+        wrapper.deallocate(servlet);
+    }
+
+
+    private void doTestCreateFilterChain(StandardContext ctx, Request request, Wrapper wrapper, Servlet servlet,
+            boolean useCache) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (!useCache) {
+                ctx.getFilterChainCache().clear();
+            }
+            ApplicationFilterChain filterChain = ApplicationFilterFactory.createFilterChain(request, wrapper, servlet);
+            filterChain.release();
+        }
+    }
+}
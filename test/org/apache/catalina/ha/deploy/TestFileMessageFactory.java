@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.deploy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.startup.LoggingBaseTest;
+
+public class TestFileMessageFactory extends LoggingBaseTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+
+    @Test
+    public void testOutOfOrderWithMissingMessages() throws Exception {
+        byte[] content = createContent(10 * CHUNK_SIZE + 10);
+        File source = new File(getTemporaryDirectory(), "source.war");
+        Files.write(source.toPath(), content);
+        File target = new File(getTemporaryDirectory(), "target.war");
+
+        FileMessageFactory reader = FileMessageFactory.getInstance(source, false, CHUNK_SIZE);
+        FileMessageFactory writer = FileMessageFactory.getInstance(target, true);
+        try {
+            Assert.assertEquals(11, reader.getTotalNrOfMessages());
+            byte[] hash = reader.getFileHash();
+
+            // Messages 3, 6 and 7 are lost and message 5 is corrupted
+            for (int n : new int[] { 2, 1, 4, 5, 8, 10, 9 }) {
+                FileMessage msg = createMessage(reader, n, hash);
+                if (n == 5) {
+                    msg.getData()[0]++;
+                }
+                Assert.assertFalse(writer.writeMessage(msg));
+            }
+            Assert.assertArrayEquals(new long[] { 3, 3, 5, 7, 11, 11 }, writer.getMissingMessages());
+
+            for (int n : new int[] { 11, 7, 6, 5 }) {
+                Assert.assertFalse(writer.writeMessage(createMessage(reader, n, hash)));
+            }
+            Assert.assertArrayEquals(new long[] { 3, 3 }, writer.getMissingMessages());
+            Assert.assertTrue(writer.writeMessage(createMessage(reader, 3, hash)));
+        } finally {
+            reader.cleanup();
+            writer.cleanup();
+        }
+        Assert.assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+
+    @Test
+    public void testHashMismatch() throws Exception {
+        byte[] content = createContent(2 * CHUNK_SIZE);
+        File source = new File(getTemporaryDirectory(), "source.war");
+        Files.write(source.toPath(), content);
+        File target = new File(getTemporaryDirectory(), "target.war");
+
+        FileMessageFactory reader = FileMessageFactory.getInstance(source, false, CHUNK_SIZE);
+        FileMessageFactory writer = FileMessageFactory.getInstance(target, true);
+        try {
+            Assert.assertEquals(2, reader.getTotalNrOfMessages());
+            byte[] hash = reader.getFileHash().clone();
+            hash[0]++;
+            Assert.assertFalse(writer.writeMessage(createMessage(reader, 1, hash)));
+            try {
+                writer.writeMessage(createMessage(reader, 2, hash));
+                Assert.fail();
+            } catch (IOException expected) {
+                // Expected
+            }
+        } finally {
+            reader.cleanup();
+            writer.cleanup();
+        }
+        Assert.assertFalse(target.exists());
+    }
+
+
+    @Test
+    public void testMessagesWithoutChecksum() throws Exception {
+        byte[] content = createContent(2 * CHUNK_SIZE + 10);
+        File source = new File(getTemporaryDirectory(), "source.war");
+        Files.write(source.toPath(), content);
+        File target = new File(getTemporaryDirectory(), "target.war");
+
+        FileMessageFactory reader = FileMessageFactory.getInstance(source, false, CHUNK_SIZE);
+        FileMessageFactory writer = FileMessageFactory.getInstance(target, true);
+        try {
+            // Messages from older members have no checksum and no file hash
+            for (int n = 1; n <= 3; n++) {
+                FileMessage read = createMessage(reader, n, null);
+                FileMessage msg = new FileMessage(null, "target.war", "/target");
+                msg.setMessageNumber(read.getMessageNumber());
+                msg.setTotalNrOfMsgs(read.getTotalNrOfMsgs());
+                msg.setData(read.getData(), read.getDataLength());
+                Assert.assertEquals(-1, msg.getChecksum());
+                Assert.assertEquals(n == 3, writer.writeMessage(msg));
+            }
+        } finally {
+            reader.cleanup();
+            writer.cleanup();
+        }
+        Assert.assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+
+    private static FileMessage createMessage(FileMessageFactory reader, int messageNumber, byte[] hash)
+            throws IOException {
+        FileMessage msg = new FileMessage(null, "target.war", "/target");
+        reader.readMessage(msg, messageNumber);
+        msg.setFileHash(hash);
+        // Each message is received as a new instance
+        msg.setData(Arrays.copyOf(msg.getData(), msg.getDataLength()), msg.getDataLength());
+        return msg;
+    }
+
+
+    private static byte[] createContent(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+}
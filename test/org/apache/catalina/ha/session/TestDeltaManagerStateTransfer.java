@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.ha.ClusterMessage;
+import org.apache.catalina.ha.tcp.SimpleTcpCluster;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.membership.MemberImpl;
+import org.apache.tomcat.unittest.TesterContext;
+
+public class TestDeltaManagerStateTransfer {
+
+    @Test
+    public void testPartitionedTransfer() throws Exception {
+        Map<Member,DeltaManager> network = new HashMap<>();
+        List<DeltaManager> peers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            DeltaManager peer = createManager(network, 4001 + i);
+            for (int j = 0; j < 20; j++) {
+                DeltaSession session = (DeltaSession) peer.createEmptySession();
+                session.setValid(true);
+                session.setId("SESSION" + j, false);
+                session.setAttribute("index", Integer.valueOf(j), false);
+            }
+            peers.add(peer);
+        }
+        DeltaManager joiner = createManager(network, 4000);
+        joiner.setStateTransferPartitions(4);
+
+        joiner.getAllClusterSessions();
+
+        Assert.assertTrue(joiner.getStateTransferred());
+        Assert.assertEquals(3, joiner.getCounterSend_EVT_GET_ALL_SESSIONS());
+        Assert.assertEquals(3, joiner.getCounterReceive_EVT_ALL_SESSION_TRANSFERCOMPLETE());
+        // Every session is received once
+        Assert.assertEquals(20, joiner.getActiveSessions());
+        Assert.assertEquals(0, joiner.getSessionReplaceCounter());
+        for (int j = 0; j < 20; j++) {
+            Session session = joiner.findSession("SESSION" + j);
+            Assert.assertNotNull(session);
+            Assert.assertEquals(Integer.valueOf(j), ((DeltaSession) session).getAttribute("index"));
+        }
+        // Each member is asked once for its share of the partitions
+        for (DeltaManager peer : peers) {
+            Assert.assertEquals(1, peer.getCounterReceive_EVT_GET_ALL_SESSIONS());
+            Assert.assertEquals(1, peer.getCounterSend_EVT_ALL_SESSION_TRANSFERCOMPLETE());
+        }
+    }
+
+
+    @Test
+    public void testPartitions() throws Exception {
+        DeltaManager manager = new DeltaManager();
+        boolean[] partitions = new boolean[] { true, false, false, true, false };
+        Assert.assertTrue(
+                Arrays.equals(partitions, manager.deserializePartitions(manager.serializePartitions(partitions))));
+
+        for (byte[] invalid : new byte[][] { new byte[0], new byte[] { 0, 0, 0, 0 }, new byte[] { 0, 0, 0, 2, 1 } }) {
+            try {
+                manager.deserializePartitions(invalid);
+                Assert.fail();
+            } catch (IOException expected) {
+                // Expected
+            }
+        }
+
+        for (int i = 0; i < 100; i++) {
+            int partition = DeltaManager.getStateTransferPartition(Integer.toString(i * 7919), 3);
+            Assert.assertTrue(partition >= 0 && partition < 3);
+        }
+    }
+
+
+    private static DeltaManager createManager(Map<Member,DeltaManager> network, int port) throws IOException {
+        DeltaManager manager = new DeltaManager();
+        manager.setName("test");
+        manager.setContext(new TesterContext());
+        manager.setSendAllSessionsSize(3);
+        manager.setSendAllSessionsWaitTime(0);
+        manager.setStateTransferTimeout(5);
+        manager.setCluster(new TesterCluster(network, new MemberImpl("localhost", port, 0)));
+        network.put(((TesterCluster) manager.getCluster()).localMember, manager);
+        return manager;
+    }
+
+
+    /*
+     * Delivers the messages synchronously to the manager of the destination member.
+     */
+    private static class TesterCluster extends SimpleTcpCluster {
+
+        private final Map<Member,DeltaManager> network;
+        private final Member localMember;
+
+        TesterCluster(Map<Member,DeltaManager> network, Member localMember) {
+            this.network = network;
+            this.localMember = localMember;
+        }
+
+        @Override
+        public Member[] getMembers() {
+            List<Member> members = new ArrayList<>(network.keySet());
+            members.remove(localMember);
+            members.sort((m1, m2) -> Integer.compare(m1.getPort(), m2.getPort()));
+            return members.toArray(new Member[0]);
+        }
+
+        @Override
+        public void send(ClusterMessage msg, Member dest, int sendOptions) {
+            msg.setAddress(localMember);
+            network.get(dest).messageDataReceived(msg);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.tcp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.ha.ClusterListener;
+import org.apache.catalina.ha.ClusterMessage;
+import org.apache.catalina.ha.session.DeltaManager;
+import org.apache.catalina.ha.session.SessionMessage;
+import org.apache.catalina.ha.session.SessionMessageImpl;
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.membership.MemberImpl;
+
+public class TestReplicationBatcher {
+
+    private ScheduledExecutorService executor;
+    private TesterCluster cluster;
+    private TesterManager manager;
+    private ReplicationBatcher batcher;
+
+
+    @Before
+    public void setUp() {
+        executor = new ScheduledThreadPoolExecutor(1);
+        cluster = new TesterCluster();
+        cluster.setReplicationBatchSize(3);
+        manager = new TesterManager();
+        batcher = new ReplicationBatcher(cluster);
+    }
+
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    public void testNotStarted() {
+        Assert.assertFalse(batcher.add(manager, "A"));
+        Assert.assertFalse(cluster.queueReplication(manager, "A"));
+        Assert.assertEquals(0, batcher.getPendingCount());
+    }
+
+
+    @Test
+    public void testCoalesce() {
+        batcher.start(executor, 3600000);
+        Assert.assertTrue(batcher.add(manager, "A"));
+        Assert.assertTrue(batcher.add(manager, "B"));
+        Assert.assertTrue(batcher.add(manager, "A"));
+        Assert.assertEquals(2, batcher.getPendingCount());
+
+        batcher.flush();
+
+        // One message per session, sent in the order the sessions were first queued
+        Assert.assertEquals(List.of("A", "B"), manager.completed);
+        Assert.assertEquals(1, cluster.sent.size());
+        ClusterMessageBatch batch = (ClusterMessageBatch) cluster.sent.get(0);
+        Assert.assertEquals(2, batch.getMessages().length);
+        Assert.assertEquals("A", ((SessionMessage) batch.getMessages()[0]).getSessionID());
+        Assert.assertEquals("B", ((SessionMessage) batch.getMessages()[1]).getSessionID());
+        Assert.assertEquals(Channel.SEND_OPTIONS_ASYNCHRONOUS, cluster.sendOptions.get(0).intValue());
+        Assert.assertEquals(0, batcher.getPendingCount());
+        Assert.assertEquals(1, batcher.getBatchCount());
+        Assert.assertEquals(2, batcher.getMessageCount());
+
+        // Nothing to send
+        batcher.flush();
+        Assert.assertEquals(1, cluster.sent.size());
+    }
+
+
+    @Test
+    public void testSingleMessageAndSendOptions() {
+        cluster.setReplicationBatchSendOptions("sync,use_ack");
+        batcher.start(executor, 3600000);
+        batcher.add(manager, "A");
+        // Sessions without changes are not replicated
+        manager.unchanged = "B";
+        batcher.add(manager, "B");
+        batcher.flush();
+
+        Assert.assertEquals(1, cluster.sent.size());
+        Assert.assertTrue(cluster.sent.get(0) instanceof SessionMessage);
+        Assert.assertEquals(Channel.SEND_OPTIONS_SYNCHRONIZED_ACK | Channel.SEND_OPTIONS_USE_ACK,
+                cluster.sendOptions.get(0).intValue());
+    }
+
+
+    @Test
+    public void testFlushOnSize() throws Exception {
+        batcher.start(executor, 3600000);
+        for (int i = 0; i < 7; i++) {
+            batcher.add(manager, Integer.toString(i));
+        }
+        int count = 0;
+        while (batcher.getMessageCount() < 6 && count < 100) {
+            Thread.sleep(50);
+            count++;
+        }
+        Assert.assertTrue(batcher.getMessageCount() >= 3);
+
+        // Stopping sends the remaining changes in batches of at most three messages
+        batcher.stop();
+        Assert.assertEquals(0, batcher.getPendingCount());
+        Assert.assertEquals(7, batcher.getMessageCount());
+        for (ClusterMessage msg : cluster.sent) {
+            if (msg instanceof ClusterMessageBatch) {
+                Assert.assertTrue(((ClusterMessageBatch) msg).getMessages().length <= 3);
+            }
+        }
+        Assert.assertFalse(batcher.add(manager, "A"));
+    }
+
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        batcher.start(executor, 50);
+        batcher.add(manager, "A");
+        int count = 0;
+        while (batcher.getMessageCount() == 0 && count < 100) {
+            Thread.sleep(50);
+            count++;
+        }
+        Assert.assertEquals(1, batcher.getMessageCount());
+        Assert.assertTrue(batcher.getMaxLag() >= batcher.getAverageLag());
+        batcher.resetStatistics();
+        Assert.assertEquals(0, batcher.getMessageCount());
+    }
+
+
+    @Test
+    public void testReceive() {
+        List<ClusterMessage> received = new ArrayList<>();
+        cluster.addClusterListener(new ClusterListener() {
+            @Override
+            public void messageReceived(ClusterMessage msg) {
+                received.add(msg);
+            }
+
+            @Override
+            public boolean accept(ClusterMessage msg) {
+                return msg instanceof SessionMessage;
+            }
+        });
+        Member member = new MemberImpl();
+        ClusterMessage[] messages = new ClusterMessage[] { manager.requestCompleted("A"),
+                manager.requestCompleted("B") };
+        ClusterMessageBatch batch = new ClusterMessageBatch(messages, "BATCH");
+        batch.setAddress(member);
+
+        cluster.messageReceived(batch);
+
+        Assert.assertEquals(2, received.size());
+        Assert.assertSame(messages[0], received.get(0));
+        Assert.assertSame(messages[1], received.get(1));
+        Assert.assertSame(member, received.get(0).getAddress());
+        Assert.assertSame(member, received.get(1).getAddress());
+    }
+
+
+    private static class TesterCluster extends SimpleTcpCluster {
+
+        private final List<ClusterMessage> sent = new ArrayList<>();
+        private final List<Integer> sendOptions = new ArrayList<>();
+
+        @Override
+        public synchronized void send(ClusterMessage msg, Member dest, int sendOptions) {
+            sent.add(msg);
+            this.sendOptions.add(Integer.valueOf(sendOptions));
+        }
+    }
+
+
+    private static class TesterManager extends DeltaManager {
+
+        private final List<String> completed = new ArrayList<>();
+        private volatile String unchanged;
+
+        @Override
+        public synchronized ClusterMessage requestCompleted(String sessionId) {
+            completed.add(sessionId);
+            if (sessionId.equals(unchanged)) {
+                return null;
+            }
+            return new SessionMessageImpl(getName(), SessionMessage.EVT_SESSION_DELTA, new byte[0], sessionId,
+                    sessionId + "-" + System.currentTimeMillis());
+        }
+    }
+}
@@ -17,6 +17,17 @@
 package org.apache.catalina.loader;
 
 import java.io.File;
+import java.lang.instrument.ClassFileTransformer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.servlet.ServletContainerInitializer;
+import jakarta.servlet.ServletContext;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -105,4 +116,117 @@ public class TestVirtualWebappLoader extends TomcatBaseTest {
         // see tearDown()!
         tomcat.start();
     }
+
+    @Test
+    public void testClassList() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        File appDir = new File("test/webapp");
+        StandardContext ctx = (StandardContext) tomcat.addContext("",
+                appDir.getAbsolutePath());
+
+        WebappLoader loader = new WebappLoader();
+
+        loader.setContext(ctx);
+        ctx.setLoader(loader);
+
+        ctx.setResources(new StandardRoot(ctx));
+        ctx.resourcesStart();
+
+        File classList = new File(getTemporaryDirectory(), "classlist.txt");
+        addDeleteOnTearDown(classList);
+        loader.setClassListFile(classList.getAbsolutePath());
+
+        // Training run
+        loader.setRecordClassList(true);
+        loader.start();
+        loader.getClassLoader().loadClass("org.apache.tomcat.Bug58096");
+        // Loaded by the parent class loader so not recorded
+        loader.getClassLoader().loadClass("java.lang.String");
+        Assert.assertEquals(0, loader.getPreloadedClassCount());
+        loader.stop();
+
+        List<String> classNames = Files.readAllLines(classList.toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(Arrays.asList("org.apache.tomcat.Bug58096"), classNames);
+
+        // Classes that cannot be loaded are ignored
+        Files.write(classList.toPath(), Arrays.asList("# Comment", "org.apache.tomcat.Bug58096", "",
+                "org.apache.tomcat.DoesNotExist"), StandardCharsets.UTF_8);
+
+        // The classes are loaded once the Context has started
+        loader.setRecordClassList(false);
+        loader.start();
+        Assert.assertEquals(0, loader.getPreloadedClassCount());
+        loader.stop();
+
+        tomcat.start();
+        waitForPreload(loader, 1);
+        WebappClassLoaderBase cl = (WebappClassLoaderBase) loader.getClassLoader();
+        Assert.assertEquals(Arrays.asList("org.apache.tomcat.Bug58096"), cl.getLoadedClassNames());
+    }
+
+    @Test
+    public void testClassListTransformer() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        File appDir = new File("test/webapp");
+        StandardContext ctx = (StandardContext) tomcat.addContext("",
+                appDir.getAbsolutePath());
+
+        WebappLoader loader = new WebappLoader();
+
+        loader.setContext(ctx);
+        ctx.setLoader(loader);
+
+        File classList = new File(getTemporaryDirectory(), "classlist.txt");
+        addDeleteOnTearDown(classList);
+        Files.write(classList.toPath(), Arrays.asList("org.apache.tomcat.Bug58096"), StandardCharsets.UTF_8);
+        loader.setClassListFile(classList.getAbsolutePath());
+
+        // The transformer is registered after the loader has started
+        TesterTransformer transformer = new TesterTransformer();
+        ctx.addServletContainerInitializer(new TransformerInitializer(transformer), null);
+
+        tomcat.start();
+        waitForPreload(loader, 1);
+        Assert.assertTrue(transformer.classNames.contains("org/apache/tomcat/Bug58096"));
+    }
+
+
+    private static void waitForPreload(WebappLoader loader, int count) throws InterruptedException {
+        int wait = 0;
+        while (loader.getPreloadedClassCount() < count && wait < 100) {
+            Thread.sleep(100);
+            wait++;
+        }
+        Assert.assertEquals(count, loader.getPreloadedClassCount());
+    }
+
+
+    private static class TransformerInitializer implements ServletContainerInitializer {
+
+        private final ClassFileTransformer transformer;
+
+        TransformerInitializer(ClassFileTransformer transformer) {
+            this.transformer = transformer;
+        }
+
+        @Override
+        public void onStartup(Set<Class<?>> c, ServletContext ctx) {
+            ((WebappClassLoaderBase) ctx.getClassLoader()).addTransformer(transformer);
+        }
+    }
+
+
+    private static class TesterTransformer implements ClassFileTransformer {
+
+        private final Set<String> classNames = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            classNames.add(className);
+            return null;
+        }
+    }
 }
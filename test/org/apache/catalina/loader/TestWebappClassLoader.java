@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -172,4 +173,73 @@ public class TestWebappClassLoader extends TomcatBaseTest {
             }
         }
     }
+
+
+    @Test
+    public void testNegativeLookupCache() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        File appDir = new File("test/webapp");
+        StandardContext ctx = (StandardContext) tomcat.addContext("", appDir.getAbsolutePath());
+        tomcat.start();
+
+        WebappClassLoaderBase cl = (WebappClassLoaderBase) ctx.getLoader().getClassLoader();
+        long hits = cl.getNegativeLookupHitCount();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cl.loadClass("org.apache.tomcat.Missing");
+                Assert.fail();
+            } catch (ClassNotFoundException expected) {
+                // Expected
+            }
+        }
+        Assert.assertEquals(1, cl.getNegativeLookupCacheSize());
+        Assert.assertEquals(hits + 1, cl.getNegativeLookupHitCount());
+        Assert.assertNull(cl.getResource("org/apache/tomcat/Missing.class"));
+        Assert.assertEquals(hits + 2, cl.getNegativeLookupHitCount());
+
+        // Classes that are present are not affected
+        Assert.assertNotNull(cl.loadClass("org.apache.tomcat.Bug58096"));
+
+        // Disabling the cache clears it
+        cl.setNegativeLookupCacheMaxSize(0);
+        Assert.assertEquals(0, cl.getNegativeLookupCacheSize());
+        try {
+            cl.loadClass("org.apache.tomcat.Missing");
+            Assert.fail();
+        } catch (ClassNotFoundException expected) {
+            // Expected
+        }
+        Assert.assertEquals(0, cl.getNegativeLookupCacheSize());
+        Assert.assertEquals(hits + 2, cl.getNegativeLookupHitCount());
+    }
+
+
+    @Test
+    public void testModifiedWithWatchService() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        File appDir = new File(getTemporaryDirectory(), "watched");
+        File libDir = new File(appDir, "WEB-INF/lib");
+        Assert.assertTrue(libDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+        StandardContext ctx = (StandardContext) tomcat.addContext("", appDir.getAbsolutePath());
+        ctx.setReloadable(true);
+        WebappLoader loader = new WebappLoader();
+        loader.setUseWatchService(true);
+        ctx.setLoader(loader);
+        // Disable the automatic reload
+        tomcat.getEngine().setBackgroundProcessorDelay(-1);
+        tomcat.start();
+
+        Assert.assertFalse(loader.modified());
+
+        // Adding a JAR is detected
+        Files.copy(new File("test/webresources/dir1.jar").toPath(), new File(libDir, "dir1.jar").toPath());
+        int count = 0;
+        while (!loader.modified() && count < 100) {
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertTrue(loader.modified());
+    }
 }
@@ -16,9 +16,18 @@
  */
 package org.apache.catalina.mapper;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.core.StandardWrapper;
 import org.apache.tomcat.util.buf.MessageBytes;
 
 /*
@@ -70,4 +79,64 @@ public class TestMapperPerformance extends TestMapper {
         return time;
     }
 
+
+    /*
+     * Many contexts on a single host (e.g. one per tenant) with deep prefix mappings in each context.
+     */
+    @Test
+    public void testPerformanceManyContexts() throws Exception {
+        final int contextCount = 5000;
+        Mapper mapper = new Mapper();
+        Host host = new StandardHost();
+        host.setName("tenants.example.com");
+        mapper.addHost("tenants.example.com", new String[0], host);
+        mapper.setDefaultHostName("tenants.example.com");
+
+        String[] wildcards = new String[] { "/api/*", "/api/v1/*", "/api/v1/orders/*", "/api/v1/orders/items/*",
+                "/api/v1/orders/items/history/*", "/static/*", "/admin/reports/daily/*" };
+        for (int i = 0; i < contextCount; i++) {
+            String path = "/tenant" + i;
+            Context context = new StandardContext();
+            context.setName(path);
+            List<WrapperMappingInfo> wrappers = new ArrayList<>();
+            for (String wildcard : wildcards) {
+                Wrapper wrapper = new StandardWrapper();
+                wrapper.setName(wildcard);
+                wrappers.add(new WrapperMappingInfo(wildcard, wrapper, false, false));
+            }
+            Wrapper defaultWrapper = new StandardWrapper();
+            defaultWrapper.setName("default");
+            wrappers.add(new WrapperMappingInfo("/", defaultWrapper, false, false));
+            mapper.addContextVersion("tenants.example.com", host, path, "0", context, new String[0], null, wrappers);
+        }
+
+        String[] uris = new String[] { "/tenant2500/api/v1/orders/items/history/2024/06/01",
+                "/tenant4999/static/css/site.css", "/tenant17/api/v2/users", "/tenant3333/unmapped/path/to/resource" };
+        for (String uri : uris) {
+            // Warm-up
+            testPerformanceImpl(mapper, "tenants.example.com", uri);
+            long time = testPerformanceImpl(mapper, "tenants.example.com", uri);
+            log.info("Contexts [" + contextCount + "], URI [" + uri + "], Time [" + time + "]ms");
+            Assert.assertTrue(String.valueOf(time), time < 5000);
+        }
+    }
+
+
+    private long testPerformanceImpl(Mapper mapper, String requestedHostName, String requestedUri)
+            throws Exception {
+        MappingData mappingData = new MappingData();
+        MessageBytes host = MessageBytes.newInstance();
+        host.setString(requestedHostName);
+        MessageBytes uri = MessageBytes.newInstance();
+        uri.setString(requestedUri);
+        uri.toChars();
+        uri.getCharChunk().setLimit(-1);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 1000000; i++) {
+            mappingData.recycle();
+            mapper.map(host, uri, null, mappingData);
+        }
+        return System.currentTimeMillis() - start;
+    }
 }
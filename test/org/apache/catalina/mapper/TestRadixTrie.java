@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.mapper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.tomcat.util.buf.CharChunk;
+
+public class TestRadixTrie {
+
+    @Test
+    public void testGet() {
+        RadixTrie<String> trie = RadixTrie.empty(false);
+        trie = trie.put("/foo", "foo").put("/foobar", "foobar").put("/fo", "fo").put("", "root");
+
+        Assert.assertEquals("foo", trie.get(chunk("/foo")));
+        Assert.assertEquals("foobar", trie.get(chunk("/foobar")));
+        Assert.assertEquals("fo", trie.get(chunk("/fo")));
+        Assert.assertEquals("root", trie.get(chunk("")));
+        Assert.assertNull(trie.get(chunk("/f")));
+        Assert.assertNull(trie.get(chunk("/foob")));
+        Assert.assertNull(trie.get(chunk("/FOO")));
+        Assert.assertNull(trie.get(chunk("/foobarx")));
+    }
+
+
+    @Test
+    public void testGetIgnoreCase() {
+        RadixTrie<String> trie = RadixTrie.empty(true);
+        trie = trie.put("Example.com", "a").put("example.org", "b");
+
+        Assert.assertEquals("a", trie.get(chunk("EXAMPLE.COM")));
+        Assert.assertEquals("a", trie.get(chunk("example.com")));
+        Assert.assertEquals("b", trie.get(chunk("Example.Org")));
+        Assert.assertNull(trie.get(chunk("example.net")));
+    }
+
+
+    @Test
+    public void testGetLongestPathPrefix() {
+        RadixTrie<String> trie = RadixTrie.empty(false);
+        trie = trie.put("/a", "a").put("/a/b", "ab").put("/a/bc/d", "abcd");
+
+        Assert.assertEquals("a", trie.getLongestPathPrefix(chunk("/a")));
+        Assert.assertEquals("a", trie.getLongestPathPrefix(chunk("/a/")));
+        Assert.assertEquals("ab", trie.getLongestPathPrefix(chunk("/a/b/c")));
+        // Not a path prefix
+        Assert.assertEquals("a", trie.getLongestPathPrefix(chunk("/a/bc")));
+        Assert.assertEquals("abcd", trie.getLongestPathPrefix(chunk("/a/bc/d/e")));
+        Assert.assertEquals("a", trie.getLongestPathPrefix(chunk("/a/bc/de")));
+        Assert.assertNull(trie.getLongestPathPrefix(chunk("/ab")));
+        Assert.assertNull(trie.getLongestPathPrefix(chunk("/b")));
+
+        // The empty key always matches
+        trie = trie.put("", "root");
+        Assert.assertEquals("root", trie.getLongestPathPrefix(chunk("/ab")));
+        Assert.assertEquals("root", trie.getLongestPathPrefix(chunk("")));
+        Assert.assertEquals("root", trie.getLongestPathPrefix(chunk("b")));
+    }
+
+
+    @Test
+    public void testCopyOnWrite() {
+        RadixTrie<String> empty = RadixTrie.empty(false);
+        RadixTrie<String> one = empty.put("/foo", "foo");
+        RadixTrie<String> two = one.put("/foobar", "foobar");
+
+        Assert.assertNull(empty.get(chunk("/foo")));
+        Assert.assertEquals("foo", one.get(chunk("/foo")));
+        Assert.assertNull(one.get(chunk("/foobar")));
+        Assert.assertEquals("foobar", two.get(chunk("/foobar")));
+
+        RadixTrie<String> removed = two.remove("/foo");
+        Assert.assertNull(removed.get(chunk("/foo")));
+        Assert.assertEquals("foobar", removed.get(chunk("/foobar")));
+        Assert.assertEquals("foo", two.get(chunk("/foo")));
+
+        // Removing a key that is not present returns the same trie
+        Assert.assertSame(removed, removed.remove("/foo"));
+        Assert.assertSame(removed, removed.remove("/foob"));
+        Assert.assertSame(removed, removed.remove("/x"));
+    }
+
+
+    @Test
+    public void testRemove() {
+        String[] keys = new String[] { "", "/a", "/ab", "/abc", "/abd", "/b", "/b/c", "/b/cd/e" };
+        RadixTrie<String> trie = RadixTrie.empty(false);
+        for (String key : keys) {
+            trie = trie.put(key, key);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            trie = trie.remove(keys[i]);
+            for (int j = 0; j < keys.length; j++) {
+                if (j <= i) {
+                    Assert.assertNull(trie.get(chunk(keys[j])));
+                } else {
+                    Assert.assertEquals(keys[j], trie.get(chunk(keys[j])));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testReplace() {
+        RadixTrie<String> trie = RadixTrie.empty(false);
+        trie = trie.put("/foo", "a").put("/foo", "b");
+        Assert.assertEquals("b", trie.get(chunk("/foo")));
+    }
+
+
+    private static CharChunk chunk(String s) {
+        // Offset the content to check the start of the chunk is respected
+        CharChunk result = new CharChunk();
+        String padded = "xx" + s + "yy";
+        result.setChars(padded.toCharArray(), 2, s.length());
+        return result;
+    }
+}
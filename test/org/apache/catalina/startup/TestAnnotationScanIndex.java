@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import jakarta.servlet.ServletContainerInitializer;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.annotation.HandlesTypes;
+import jakarta.servlet.http.HttpServlet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.tomcat.util.bcel.classfile.ClassParser;
+
+public class TestAnnotationScanIndex extends TomcatBaseTest {
+
+    @Before
+    public void clearHandlesTypes() {
+        HttpServletSci.CLASS_NAMES.clear();
+    }
+
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File dir = new File(getTemporaryDirectory(), "annotation-scan-index");
+        Assert.assertTrue(dir.mkdirs());
+        addDeleteOnTearDown(dir);
+        File jarFile = new File(dir, "test.jar");
+        writeJar(jarFile, false, ParamServlet.class, TesterServletWithAnnotations.class);
+        URL url = jarFile.toURI().toURL();
+        File indexFile = new File(dir, AnnotationScanIndex.FILE_NAME);
+
+        AnnotationScanIndex index = AnnotationScanIndex.load(indexFile);
+        Assert.assertNull(index.get(url));
+        List<AnnotationScanIndex.ClassInfo> classInfos = new ArrayList<>();
+        classInfos.add(createClassInfo(ParamServlet.class));
+        classInfos.add(createClassInfo(TesterServletWithAnnotations.class));
+        index.put(url, classInfos);
+        index.save();
+        Assert.assertTrue(indexFile.isFile());
+
+        index = AnnotationScanIndex.load(indexFile);
+        List<AnnotationScanIndex.ClassInfo> loaded = index.get(url);
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals(2, loaded.size());
+
+        AnnotationScanIndex.ClassInfo paramServlet = loaded.get(0);
+        Assert.assertEquals(ParamServlet.class.getName(), paramServlet.getClassName());
+        Assert.assertEquals(entryName(ParamServlet.class), paramServlet.getEntryName());
+        Assert.assertEquals(HttpServlet.class.getName(), paramServlet.getSuperclassName());
+        Assert.assertTrue(paramServlet.hasWebAnnotations());
+        Assert.assertFalse(paramServlet.isAnnotation());
+        Assert.assertArrayEquals(new String[] { "Ljakarta/servlet/annotation/WebServlet;" },
+                paramServlet.getAnnotationTypes());
+
+        AnnotationScanIndex.ClassInfo annotatedServlet = loaded.get(1);
+        Assert.assertEquals(TesterServletWithAnnotations.class.getName(), annotatedServlet.getClassName());
+        Assert.assertFalse(annotatedServlet.hasWebAnnotations());
+        Assert.assertEquals(0, annotatedServlet.getInterfaceNames().length);
+
+        // Any change to the JAR invalidates the entry
+        Assert.assertTrue(jarFile.delete());
+        writeJar(jarFile, false, ParamServlet.class);
+        Assert.assertNull(index.get(url));
+    }
+
+
+    @Test
+    public void testCorruptIndex() throws Exception {
+        File dir = new File(getTemporaryDirectory(), "annotation-scan-index");
+        Assert.assertTrue(dir.mkdirs());
+        addDeleteOnTearDown(dir);
+        File indexFile = new File(dir, AnnotationScanIndex.FILE_NAME);
+        try (OutputStream os = new FileOutputStream(indexFile)) {
+            os.write(new byte[] { 0x54, 0x53, 0x43, 0x49, 0, 0, 0, 1, 0, 0, 0, 1, 0 });
+        }
+        File jarFile = new File(dir, "test.jar");
+        writeJar(jarFile, false, ParamServlet.class);
+
+        // A corrupt index is treated as empty
+        AnnotationScanIndex index = AnnotationScanIndex.load(indexFile);
+        Assert.assertNull(index.get(jarFile.toURI().toURL()));
+    }
+
+
+    @Test
+    public void testStartWithIndex() throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "annotation-scan-index-app");
+        File libDir = new File(appDir, "WEB-INF/lib");
+        Assert.assertTrue(libDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+        File jarFile = new File(libDir, "test.jar");
+        writeJar(jarFile, true, ParamServlet.class, TesterServletWithAnnotations.class);
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addWebapp(null, "/test", appDir.getAbsolutePath());
+        ctx.setUseAnnotationScanIndex(true);
+        tomcat.start();
+
+        File workDir = (File) ctx.getServletContext().getAttribute(ServletContext.TEMPDIR);
+        File indexFile = new File(workDir, AnnotationScanIndex.FILE_NAME);
+        Assert.assertTrue(indexFile.isFile());
+        Assert.assertNotNull(ctx.findChild("param"));
+        // The class path is also scanned for HandlesTypes matches
+        Set<String> expected = new HashSet<>(HttpServletSci.CLASS_NAMES);
+        Assert.assertTrue(expected.contains(ParamServlet.class.getName()));
+        Assert.assertTrue(expected.contains(TesterServletWithAnnotations.class.getName()));
+
+        // Restart using the index. The index is not rewritten as the JAR has not changed.
+        long lastModified = indexFile.lastModified();
+        ctx.stop();
+        HttpServletSci.CLASS_NAMES.clear();
+        ctx.start();
+        Assert.assertEquals(lastModified, indexFile.lastModified());
+        Assert.assertNotNull(ctx.findChild("param"));
+        Assert.assertEquals(expected, HttpServletSci.CLASS_NAMES);
+
+        // Change the JAR
+        ctx.stop();
+        Assert.assertTrue(jarFile.delete());
+        writeJar(jarFile, true, TesterServletWithAnnotations.class);
+        ctx.start();
+        Assert.assertNull(ctx.findChild("param"));
+    }
+
+
+    private static AnnotationScanIndex.ClassInfo createClassInfo(Class<?> clazz) throws Exception {
+        try (InputStream is = clazz.getResourceAsStream("/" + entryName(clazz))) {
+            return AnnotationScanIndex.ClassInfo.create(entryName(clazz), new ClassParser(is).parse());
+        }
+    }
+
+
+    private static String entryName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+
+    private static void writeJar(File jarFile, boolean addSci, Class<?>... classes) throws Exception {
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (Class<?> clazz : classes) {
+                jos.putNextEntry(new JarEntry(entryName(clazz)));
+                try (InputStream is = clazz.getResourceAsStream("/" + entryName(clazz))) {
+                    is.transferTo(jos);
+                }
+                jos.closeEntry();
+            }
+            if (addSci) {
+                jos.putNextEntry(new JarEntry("META-INF/services/" + ServletContainerInitializer.class.getName()));
+                jos.write(HttpServletSci.class.getName().getBytes(StandardCharsets.UTF_8));
+                jos.closeEntry();
+            }
+        }
+    }
+
+
+    @HandlesTypes(HttpServlet.class)
+    public static class HttpServletSci implements ServletContainerInitializer {
+
+        static final Set<String> CLASS_NAMES = new CopyOnWriteArraySet<>();
+
+        @Override
+        public void onStartup(Set<Class<?>> c, ServletContext ctx) {
+            if (c != null) {
+                for (Class<?> clazz : c) {
+                    CLASS_NAMES.add(clazz.getName());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.util.ContextName;
+
+/**
+ * Tests the detection of changes to deployed applications using a watch service.
+ */
+public class TestHostConfigWatchService extends TomcatBaseTest {
+
+    private static final ContextName APP_NAME = new ContextName("myapp", false);
+    private static final File DIR_SOURCE = new File("test/deployment/dirNoContext");
+    private static final File XML_SOURCE = new File("test/deployment/context.xml");
+
+    private static final String WEB_XML = "<web-app xmlns=\"https://jakarta.ee/xml/ns/jakartaee\" version=\"6.0\"/>";
+
+
+    @Test
+    public void testDirectory() throws Exception {
+        StandardHost host = startHost();
+        HostConfig hostConfig = getHostConfig(host);
+        long past = System.currentTimeMillis() - 20 * HostConfig.FILE_MODIFICATION_RESOLUTION_MS;
+
+        // Addition
+        File dir = new File(host.getAppBaseFile(), APP_NAME.getBaseName());
+        recursiveCopy(DIR_SOURCE.toPath(), dir.toPath());
+        File webXml = new File(dir, "WEB-INF/web.xml");
+        Assert.assertTrue(webXml.getParentFile().mkdir());
+        Files.writeString(webXml.toPath(), WEB_XML);
+        Assert.assertTrue(webXml.setLastModified(past));
+        waitFor(host, () -> hostConfig.isDeployed(APP_NAME.getName()));
+        StandardContext context = (StandardContext) host.findChild(APP_NAME.getName());
+        Assert.assertTrue(context.getState().isAvailable());
+
+        // No changes
+        long startTime = context.getStartTime();
+        Thread.sleep(2 * HostConfig.FILE_MODIFICATION_RESOLUTION_MS);
+        host.backgroundProcess();
+        host.backgroundProcess();
+        Assert.assertEquals(startTime, context.getStartTime());
+
+        // Modification of a reload resource
+        Assert.assertTrue(webXml.setLastModified(past + 10 * HostConfig.FILE_MODIFICATION_RESOLUTION_MS));
+        waitFor(host, () -> context.getStartTime() != startTime);
+        Assert.assertSame(context, host.findChild(APP_NAME.getName()));
+        Assert.assertTrue(context.getState().isAvailable());
+
+        // Deletion
+        ExpandWar.delete(dir);
+        waitFor(host, () -> !hostConfig.isDeployed(APP_NAME.getName()));
+        Assert.assertNull(host.findChild(APP_NAME.getName()));
+    }
+
+
+    @Test
+    public void testDescriptor() throws Exception {
+        StandardHost host = startHost();
+        HostConfig hostConfig = getHostConfig(host);
+        long past = System.currentTimeMillis() - 20 * HostConfig.FILE_MODIFICATION_RESOLUTION_MS;
+
+        File dir = new File(host.getAppBaseFile(), APP_NAME.getBaseName());
+        recursiveCopy(DIR_SOURCE.toPath(), dir.toPath());
+        waitFor(host, () -> hostConfig.isDeployed(APP_NAME.getName()));
+        Context context = (Context) host.findChild(APP_NAME.getName());
+
+        // Adding a descriptor in the configBase triggers a redeploy
+        File xml = new File(host.getConfigBaseFile(), APP_NAME.getBaseName() + ".xml");
+        Files.copy(XML_SOURCE.toPath(), xml.toPath());
+        addDeleteOnTearDown(xml);
+        Assert.assertTrue(xml.setLastModified(past));
+        waitFor(host, () -> host.findChild(APP_NAME.getName()) != context &&
+                host.findChild(APP_NAME.getName()) != null);
+        Context newContext = (Context) host.findChild(APP_NAME.getName());
+        Assert.assertEquals("XML_CONTEXT", newContext.getSessionCookieName());
+        Assert.assertTrue(newContext.getState().isAvailable());
+    }
+
+
+    private StandardHost startHost() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // Disable background thread
+        tomcat.getEngine().setBackgroundProcessorDelay(-1);
+        // Reload the web applications if web.xml changes
+        File contextXml = new File(getTemporaryDirectory(), Constants.DefaultContextXml);
+        Assert.assertTrue(contextXml.getParentFile().mkdirs() || contextXml.getParentFile().isDirectory());
+        Files.writeString(contextXml.toPath(), "<Context><WatchedResource>WEB-INF/web.xml</WatchedResource></Context>");
+        addDeleteOnTearDown(contextXml);
+        StandardHost host = (StandardHost) tomcat.getHost();
+        host.setUseWatchService(true);
+        host.addLifecycleListener(new HostConfig());
+        tomcat.start();
+        Assert.assertTrue(host.getConfigBaseFile().isDirectory());
+        host.backgroundProcess();
+        Assert.assertEquals(0, host.findChildren().length);
+        return host;
+    }
+
+
+    private static HostConfig getHostConfig(StandardHost host) {
+        for (Object listener : host.findLifecycleListeners()) {
+            if (listener instanceof HostConfig) {
+                HostConfig hostConfig = (HostConfig) listener;
+                Assert.assertTrue(hostConfig.isUseWatchService());
+                return hostConfig;
+            }
+        }
+        Assert.fail();
+        return null;
+    }
+
+
+    private static void waitFor(StandardHost host, BooleanSupplier condition) throws InterruptedException {
+        int count = 0;
+        while (count < 100) {
+            host.backgroundProcess();
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.fail("Change not detected");
+    }
+}
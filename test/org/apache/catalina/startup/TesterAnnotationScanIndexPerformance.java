@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * The web application contains JAR_COUNT copies of a JAR built from the Catalina classes. Start times are reported
+ * without the index, with an empty index and with a fully populated index.
+ */
+public class TesterAnnotationScanIndexPerformance extends TomcatBaseTest {
+
+    private static final int JAR_COUNT = 50;
+    private static final int RESTARTS = 5;
+
+
+    @Test
+    public void testStartup() throws Exception {
+        File appDir = new File(getTemporaryDirectory(), "annotation-scan-index-perf");
+        File libDir = new File(appDir, "WEB-INF/lib");
+        if (!libDir.mkdirs()) {
+            throw new IllegalStateException();
+        }
+        addDeleteOnTearDown(appDir);
+
+        File firstJar = new File(libDir, "test-0.jar");
+        createJar(firstJar);
+        for (int i = 1; i < JAR_COUNT; i++) {
+            Files.copy(firstJar.toPath(), new File(libDir, "test-" + i + ".jar").toPath());
+        }
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addWebapp(null, "/test", appDir.getAbsolutePath());
+        tomcat.start();
+
+        // Warm-up
+        long withoutIndex = restart(ctx);
+
+        withoutIndex = 0;
+        for (int i = 0; i < RESTARTS; i++) {
+            withoutIndex += restart(ctx);
+        }
+
+        ctx.setUseAnnotationScanIndex(true);
+        long emptyIndex = restart(ctx);
+
+        long withIndex = 0;
+        for (int i = 0; i < RESTARTS; i++) {
+            withIndex += restart(ctx);
+        }
+
+        System.out.println("JARs [" + JAR_COUNT + "]: without index [" + withoutIndex / RESTARTS +
+                "] ms per start, empty index [" + emptyIndex + "] ms, with index [" + withIndex / RESTARTS +
+                "] ms per start");
+    }
+
+
+    private static long restart(Context ctx) throws Exception {
+        ctx.stop();
+        long start = System.nanoTime();
+        ctx.start();
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+
+    private static void createJar(File jarFile) throws Exception {
+        // Package the Catalina classes, wherever they are loaded from, into a single JAR
+        Path root = new File(Context.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toPath();
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile))) {
+            if (Files.isDirectory(root)) {
+                List<Path> classes;
+                try (Stream<Path> paths = Files.walk(root.resolve("org/apache/catalina"))) {
+                    classes = paths.filter(p -> p.toString().endsWith(".class")).collect(Collectors.toList());
+                }
+                for (Path path : classes) {
+                    jos.putNextEntry(new JarEntry(root.relativize(path).toString().replace(File.separatorChar, '/')));
+                    Files.copy(path, jos);
+                    jos.closeEntry();
+                }
+            } else {
+                try (JarFile source = new JarFile(root.toFile())) {
+                    for (JarEntry entry : source.stream().collect(Collectors.toList())) {
+                        if (entry.getName().endsWith(".class")) {
+                            jos.putNextEntry(new JarEntry(entry.getName()));
+                            try (InputStream is = source.getInputStream(entry)) {
+                                is.transferTo(jos);
+                            }
+                            jos.closeEntry();
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
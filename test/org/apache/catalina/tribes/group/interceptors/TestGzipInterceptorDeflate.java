@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.group.interceptors;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.ChannelException;
+import org.apache.catalina.tribes.ChannelMessage;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.group.ChannelInterceptorBase;
+import org.apache.catalina.tribes.group.InterceptorPayload;
+import org.apache.catalina.tribes.io.ChannelData;
+import org.apache.catalina.tribes.io.XByteBuffer;
+import org.apache.catalina.tribes.membership.MemberImpl;
+
+public class TestGzipInterceptorDeflate {
+
+    private MemberImpl local;
+    private MemberImpl remote;
+    private List<byte[]> received;
+    private int dictionaryMessages;
+
+    @Before
+    public void setUp() throws Exception {
+        local = new MemberImpl("localhost", 4000, 0);
+        remote = new MemberImpl("localhost", 4001, 0);
+        received = new ArrayList<>();
+        dictionaryMessages = 0;
+    }
+
+
+    @Test
+    public void testGzipToDeflate() throws Exception {
+        GzipInterceptor sender = new GzipInterceptor();
+        GzipInterceptor receiver = new GzipInterceptor();
+        receiver.setCodec(GzipInterceptor.CODEC_DEFLATE);
+        doTestMessages(sender, receiver, 10);
+    }
+
+
+    @Test
+    public void testDeflateToGzip() throws Exception {
+        GzipInterceptor sender = new GzipInterceptor();
+        sender.setCodec(GzipInterceptor.CODEC_DEFLATE);
+        GzipInterceptor receiver = new GzipInterceptor();
+        doTestMessages(sender, receiver, 10);
+    }
+
+
+    @Test
+    public void testDictionary() throws Exception {
+        GzipInterceptor plain = new GzipInterceptor();
+        plain.setCodec(GzipInterceptor.CODEC_DEFLATE);
+        plain.setStatsEnabled(true);
+        doTestMessages(plain, new GzipInterceptor(), 100);
+        Assert.assertEquals(0, dictionaryMessages);
+
+        setUp();
+        GzipInterceptor sender = new GzipInterceptor();
+        sender.setCodec(GzipInterceptor.CODEC_DEFLATE);
+        sender.setDictionarySize(4096);
+        sender.setDictionarySamples(20);
+        sender.setStatsEnabled(true);
+        doTestMessages(sender, new GzipInterceptor(), 100);
+        // The dictionary is only sent once
+        Assert.assertEquals(1, dictionaryMessages);
+        Assert.assertTrue(sender.getCompressionRatioTX() < plain.getCompressionRatioTX());
+
+        // The dictionary is sent again when the member rejoins
+        sender.memberDisappeared(remote);
+        doTestMessages(sender, new GzipInterceptor(), 1);
+        Assert.assertEquals(2, dictionaryMessages);
+    }
+
+
+    @Test
+    public void testTrainDictionary() {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            samples.add(createMessage(i));
+        }
+        byte[] dictionary = GzipInterceptor.trainDictionary(samples, 1000);
+        Assert.assertTrue(dictionary.length > 0);
+        Assert.assertTrue(dictionary.length <= 1000);
+
+        // Random data has nothing in common
+        Random random = new Random(1);
+        samples.clear();
+        for (int i = 0; i < 50; i++) {
+            byte[] sample = new byte[200];
+            random.nextBytes(sample);
+            samples.add(sample);
+        }
+        Assert.assertEquals(0, GzipInterceptor.trainDictionary(samples, 1000).length);
+    }
+
+
+    private void doTestMessages(GzipInterceptor sender, GzipInterceptor receiver, int count) throws Exception {
+        sender.setNext(new Link(receiver));
+        receiver.setPrevious(new Collector());
+        int start = received.size();
+        for (int i = 0; i < count; i++) {
+            byte[] data = createMessage(i);
+            ChannelData msg = new ChannelData(true);
+            msg.setAddress(local);
+            msg.setMessage(new XByteBuffer(data, false));
+            sender.sendMessage(new Member[] { remote }, msg, null);
+            Assert.assertEquals(start + i + 1, received.size());
+            Assert.assertTrue(Arrays.equals(data, received.get(start + i)));
+        }
+    }
+
+
+    private static byte[] createMessage(int i) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("org.apache.catalina.ha.session.DeltaRequest$AttributeInfo");
+        sb.append("sessionId=").append(Integer.toHexString(i * 7919)).append(';');
+        sb.append("attribute.name.user=user").append(i).append(';');
+        sb.append("attribute.name.lastAccessedTime=").append(1000000L + i).append(';');
+        sb.append("java.util.HashMap:loadFactor,threshold");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private class Link extends ChannelInterceptorBase {
+
+        private final GzipInterceptor receiver;
+
+        Link(GzipInterceptor receiver) {
+            this.receiver = receiver;
+        }
+
+        @Override
+        public void sendMessage(Member[] destination, ChannelMessage msg, InterceptorPayload payload)
+                throws ChannelException {
+            if (msg.getMessage().getLength() > GzipInterceptor.DICTIONARY_DATA.length && Arrays.equals(
+                    GzipInterceptor.DICTIONARY_DATA, Arrays.copyOf(msg.getMessage().getBytes(),
+                    GzipInterceptor.DICTIONARY_DATA.length))) {
+                dictionaryMessages++;
+            }
+            receiver.messageReceived((ChannelMessage) msg.deepclone());
+        }
+
+        @Override
+        public Member getLocalMember(boolean incAlive) {
+            return local;
+        }
+    }
+
+
+    private class Collector extends ChannelInterceptorBase {
+
+        @Override
+        public void messageReceived(ChannelMessage msg) {
+            received.add(msg.getMessage().getBytes());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.group.interceptors;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ChannelException;
+import org.apache.catalina.tribes.ChannelMessage;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.group.ChannelInterceptorBase;
+import org.apache.catalina.tribes.group.GroupChannel;
+import org.apache.catalina.tribes.group.InterceptorPayload;
+import org.apache.catalina.tribes.io.ChannelData;
+import org.apache.catalina.tribes.io.XByteBuffer;
+import org.apache.catalina.tribes.membership.MemberImpl;
+
+public class TestMessageDispatchInterceptor {
+
+    private MessageDispatchInterceptor interceptor;
+    private RecordingInterceptor recorder;
+    private Member chatty;
+    private Member quiet;
+
+    @Before
+    public void setUp() throws Exception {
+        interceptor = new MessageDispatchInterceptor();
+        interceptor.setChannel(new GroupChannel());
+        interceptor.setMaxThreads(1);
+        interceptor.setMaxSpareThreads(1);
+        recorder = new RecordingInterceptor();
+        interceptor.setNext(recorder);
+        chatty = new MemberImpl("localhost", 4000, 0);
+        quiet = new MemberImpl("localhost", 4001, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        interceptor.stop(Channel.SND_TX_SEQ);
+    }
+
+    @Test
+    public void testSharedQueue() throws Exception {
+        // Messages are sent in the order they were queued
+        Assert.assertEquals(10, doTestFairness());
+    }
+
+    @Test
+    public void testMemberQueues() throws Exception {
+        interceptor.setMaxMemberQueueSize(1024 * 1024);
+        // The quiet member's message is sent once the message being sent to the chatty member has been sent
+        Assert.assertEquals(1, doTestFairness());
+        Assert.assertEquals(0, interceptor.getCurrentSize());
+        // The queues are removed once they have been drained
+        int wait = 0;
+        while (!interceptor.destinationQueues.isEmpty() && wait < 100) {
+            Thread.sleep(50);
+            wait++;
+        }
+        Assert.assertTrue(interceptor.destinationQueues.isEmpty());
+    }
+
+    @Test
+    public void testMemberQueueFull() throws Exception {
+        interceptor.setMaxMemberQueueSize(5 * 16);
+        interceptor.setAlwaysSend(false);
+        interceptor.start(Channel.SND_TX_SEQ);
+        for (int i = 0; i < 5; i++) {
+            send(chatty);
+        }
+        try {
+            send(chatty);
+            Assert.fail();
+        } catch (ChannelException expected) {
+            // Expected
+        }
+        // Other members are not affected
+        send(quiet);
+        recorder.release.countDown();
+        recorder.awaitSent(6);
+    }
+
+    private int doTestFairness() throws Exception {
+        interceptor.start(Channel.SND_TX_SEQ);
+        for (int i = 0; i < 10; i++) {
+            send(chatty);
+        }
+        send(quiet);
+        recorder.release.countDown();
+        recorder.awaitSent(11);
+        return recorder.sent.indexOf(quiet);
+    }
+
+    private void send(Member member) throws ChannelException {
+        ChannelData msg = new ChannelData(true);
+        msg.setAddress(chatty);
+        msg.setOptions(Channel.SEND_OPTIONS_ASYNCHRONOUS);
+        XByteBuffer buf = new XByteBuffer(16, false);
+        buf.append(new byte[16], 0, 16);
+        msg.setMessage(buf);
+        interceptor.sendMessage(new Member[] { member }, msg, null);
+    }
+
+
+    private static class RecordingInterceptor extends ChannelInterceptorBase {
+
+        private final List<Member> sent = new CopyOnWriteArrayList<>();
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void sendMessage(Member[] destination, ChannelMessage msg, InterceptorPayload payload)
+                throws ChannelException {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ChannelException(e);
+            }
+            sent.add(destination[0]);
+        }
+
+        private void awaitSent(int count) throws InterruptedException {
+            int wait = 0;
+            while (sent.size() < count && wait < 100) {
+                Thread.sleep(50);
+                wait++;
+            }
+            Assert.assertEquals(count, sent.size());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.group.interceptors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.ChannelMessage;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.group.ChannelInterceptorBase;
+import org.apache.catalina.tribes.io.ChannelData;
+import org.apache.catalina.tribes.io.XByteBuffer;
+import org.apache.catalina.tribes.membership.MemberImpl;
+
+/**
+ * Tests the ordering of received messages by {@link OrderInterceptor} when a window is used.
+ */
+public class TestOrderInterceptorWindow {
+
+    private OrderInterceptor interceptor;
+    private final List<Integer> received = new ArrayList<>();
+    private Member member;
+
+    @Before
+    public void setUp() throws Exception {
+        interceptor = new OrderInterceptor();
+        interceptor.setWindowSize(4);
+        interceptor.setExpire(Long.MAX_VALUE);
+        interceptor.setPrevious(new ChannelInterceptorBase() {
+            @Override
+            public void messageReceived(ChannelMessage msg) {
+                received.add(Integer.valueOf(XByteBuffer.toInt(msg.getMessage().getBytesDirect(), 0)));
+            }
+        });
+        member = new MemberImpl("localhost", 4000, 0);
+    }
+
+    @Test
+    public void testReorder() {
+        receive(1, 3, 4, 2, 5);
+        Assert.assertEquals(List.of(1, 2, 3, 4, 5), received);
+        Assert.assertEquals(2, interceptor.getReorderedCount());
+        Assert.assertEquals(2, interceptor.getMaxReorderDepth());
+        Assert.assertEquals(0, interceptor.getGapCount());
+    }
+
+    @Test
+    public void testWindowFull() {
+        receive(2, 3, 4, 5, 6);
+        // Message 1 is skipped once message 6 no longer fits in the window
+        Assert.assertEquals(List.of(2, 3, 4, 5, 6), received);
+        Assert.assertEquals(1, interceptor.getGapCount());
+        Assert.assertEquals(1, interceptor.getMissingCount());
+
+        // Late messages are forwarded or dropped
+        receive(1);
+        Assert.assertEquals(6, received.size());
+        interceptor.setForwardExpired(false);
+        receive(1);
+        Assert.assertEquals(6, received.size());
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        interceptor.setExpire(10);
+        receive(1, 3);
+        Assert.assertEquals(List.of(1), received);
+        Thread.sleep(50);
+        interceptor.heartbeat();
+        Assert.assertEquals(List.of(1, 3), received);
+        receive(4);
+        Assert.assertEquals(List.of(1, 3, 4), received);
+        Assert.assertTrue(interceptor.getMaxReorderTime() >= 10);
+    }
+
+    @Test
+    public void testMemberDisappeared() {
+        receive(1, 3, 4);
+        interceptor.memberDisappeared(member);
+        Assert.assertEquals(List.of(1, 3, 4), received);
+        // A member that joins again starts a new sequence
+        receive(1);
+        Assert.assertEquals(List.of(1, 3, 4, 1), received);
+    }
+
+    private void receive(int... msgNrs) {
+        for (int msgNr : msgNrs) {
+            ChannelData msg = new ChannelData(true);
+            msg.setAddress(member);
+            msg.setOptions(interceptor.getOptionFlag());
+            XByteBuffer buf = new XByteBuffer(8, false);
+            buf.append(msgNr);
+            buf.append(msgNr);
+            msg.setMessage(buf);
+            interceptor.messageReceived(msg);
+        }
+    }
+}
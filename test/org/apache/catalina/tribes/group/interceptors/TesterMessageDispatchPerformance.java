@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.group.interceptors;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ChannelException;
+import org.apache.catalina.tribes.ChannelMessage;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.group.ChannelInterceptorBase;
+import org.apache.catalina.tribes.group.GroupChannel;
+import org.apache.catalina.tribes.group.InterceptorPayload;
+import org.apache.catalina.tribes.io.ChannelData;
+import org.apache.catalina.tribes.io.XByteBuffer;
+import org.apache.catalina.tribes.membership.MemberImpl;
+import org.apache.tomcat.util.compat.JreCompat;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * A burst of messages for one member is queued, followed by a few messages for each of a number of other members.
+ * Sending each message takes 1ms, simulating a slow network.
+ */
+public class TesterMessageDispatchPerformance {
+
+    private static final int CHATTY_MESSAGES = 5000;
+    private static final int QUIET_MEMBERS = 9;
+    private static final int QUIET_MESSAGES = 20;
+    private static final long SEND_TIME = 1;
+
+    @Test
+    public void testThreadPool() throws Exception {
+        doTest(false, 0, 1);
+    }
+
+    @Test
+    public void testThreadPoolMemberQueues() throws Exception {
+        doTest(false, 64 * 1024 * 1024, 1);
+        doTest(false, 64 * 1024 * 1024, 5);
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+        doTest(true, 0, 1);
+    }
+
+    @Test
+    public void testVirtualThreadsMemberQueues() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+        doTest(true, 64 * 1024 * 1024, 1);
+        doTest(true, 64 * 1024 * 1024, 100);
+    }
+
+
+    private void doTest(boolean useVirtualThreads, long maxMemberQueueSize, int maxMemberThreads) throws Exception {
+        MessageDispatchInterceptor interceptor = new MessageDispatchInterceptor();
+        interceptor.setChannel(new GroupChannel());
+        interceptor.setUseVirtualThreads(useVirtualThreads);
+        interceptor.setMaxMemberQueueSize(maxMemberQueueSize);
+        interceptor.setMaxMemberThreads(maxMemberThreads);
+        SlowInterceptor slow = new SlowInterceptor();
+        interceptor.setNext(slow);
+        interceptor.start(Channel.SND_TX_SEQ);
+        try {
+            Member chatty = new MemberImpl("localhost", 4000, 0);
+            Member[] quiet = new Member[QUIET_MEMBERS];
+            for (int i = 0; i < quiet.length; i++) {
+                quiet[i] = new MemberImpl("localhost", 4001 + i, 0);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < CHATTY_MESSAGES; i++) {
+                send(interceptor, chatty, false);
+            }
+            for (int i = 0; i < QUIET_MESSAGES; i++) {
+                for (Member member : quiet) {
+                    send(interceptor, member, true);
+                }
+            }
+            int total = CHATTY_MESSAGES + QUIET_MEMBERS * QUIET_MESSAGES;
+            while (slow.count.get() < total) {
+                Thread.sleep(10);
+            }
+            long duration = System.nanoTime() - start;
+            System.out.println("Virtual threads [" + useVirtualThreads + "], member queues [" +
+                    (maxMemberQueueSize > 0) + "], member threads [" + maxMemberThreads + "]: " + total +
+                    " messages sent in " + (duration / 1000000) + "ms, mean latency for quiet members " +
+                    (slow.quietLatency.get() / (QUIET_MEMBERS * QUIET_MESSAGES) / 1000000) + "ms");
+        } finally {
+            interceptor.stop(Channel.SND_TX_SEQ);
+        }
+    }
+
+
+    private static void send(MessageDispatchInterceptor interceptor, Member member, boolean quiet)
+            throws ChannelException {
+        ChannelData msg = new ChannelData(true);
+        msg.setAddress(member);
+        msg.setOptions(Channel.SEND_OPTIONS_ASYNCHRONOUS);
+        msg.setTimestamp(System.nanoTime());
+        XByteBuffer buf = new XByteBuffer(1024, false);
+        buf.append(quiet);
+        msg.setMessage(buf);
+        interceptor.sendMessage(new Member[] { member }, msg, null);
+    }
+
+
+    private static class SlowInterceptor extends ChannelInterceptorBase {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong quietLatency = new AtomicLong();
+
+        @Override
+        public void sendMessage(Member[] destination, ChannelMessage msg, InterceptorPayload payload)
+                throws ChannelException {
+            try {
+                Thread.sleep(SEND_TIME);
+            } catch (InterruptedException e) {
+                throw new ChannelException(e);
+            }
+            if (XByteBuffer.toBoolean(msg.getMessage().getBytesDirect(), 0)) {
+                quietLatency.addAndGet(System.nanoTime() - msg.getTimestamp());
+            }
+            count.incrementAndGet();
+        }
+    }
+}
@@ -16,9 +16,13 @@
  */
 package org.apache.catalina.tribes.io;
 
+import java.nio.ByteBuffer;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.catalina.tribes.membership.MemberImpl;
+
 public class TestChannelData {
 
     @Test
@@ -30,4 +34,52 @@ public class TestChannelData {
         Assert.assertTrue(original.getClass() == clone.getClass());
         Assert.assertTrue(original.equals(clone));
     }
+
+
+    @Test
+    public void testPackageBuffers() throws Exception {
+        ChannelData[] sent = new ChannelData[3];
+        XByteBuffer received = new XByteBuffer(64, false);
+        for (int i = 0; i < sent.length; i++) {
+            sent[i] = new ChannelData(true);
+            sent[i].setOptions(i);
+            sent[i].setTimestamp(1000 + i);
+            sent[i].setAddress(new MemberImpl("localhost", 4000 + i, 0));
+            byte[] payload = new byte[100 * i];
+            for (int j = 0; j < payload.length; j++) {
+                payload[j] = (byte) (i + j);
+            }
+            sent[i].setMessage(new XByteBuffer(payload, false));
+            ByteBuffer[] bufs = XByteBuffer.createDataPackageBuffers(sent[i]);
+            // The buffers must produce the same package as the single copy
+            byte[] expected = XByteBuffer.createDataPackage(sent[i]);
+            ByteBuffer actual = ByteBuffer.allocate(expected.length);
+            for (ByteBuffer buf : bufs) {
+                actual.put(buf);
+            }
+            Assert.assertArrayEquals(expected, actual.array());
+            received.append(expected, 0, expected.length);
+        }
+        // Incomplete package
+        byte[] partial = XByteBuffer.createDataPackage(sent[1]);
+        received.append(partial, 0, partial.length - 1);
+
+        ChannelData[] result = received.extractPackages();
+        Assert.assertEquals(sent.length, result.length);
+        for (int i = 0; i < sent.length; i++) {
+            Assert.assertEquals(sent[i], result[i]);
+            Assert.assertEquals(sent[i].getOptions(), result[i].getOptions());
+            Assert.assertEquals(sent[i].getTimestamp(), result[i].getTimestamp());
+            Assert.assertEquals(sent[i].getAddress(), result[i].getAddress());
+            Assert.assertArrayEquals(sent[i].getMessage().getBytes(), result[i].getMessage().getBytes());
+        }
+        Assert.assertEquals(partial.length - 1, received.getLength());
+        Assert.assertEquals(0, received.extractPackages().length);
+
+        received.append(partial, partial.length - 1, 1);
+        result = received.extractPackages();
+        Assert.assertEquals(1, result.length);
+        Assert.assertEquals(sent[1], result[0]);
+        Assert.assertEquals(0, received.getLength());
+    }
 }
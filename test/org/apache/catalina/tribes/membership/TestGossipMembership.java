@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.membership;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ManagedChannel;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.group.GroupChannel;
+import org.apache.catalina.tribes.transport.ReceiverBase;
+
+/**
+ * Tests the discovery of members and the detection of failed members by {@link GossipMembershipService} with a
+ * number of members running in the same JVM.
+ */
+public class TestGossipMembership {
+
+    private static final int COUNT = 4;
+
+    private final ManagedChannel[] channels = new ManagedChannel[COUNT];
+    private final GossipMembershipService[] services = new GossipMembershipService[COUNT];
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < COUNT; i++) {
+            channels[i] = new GroupChannel();
+            channels[i].setName("Gossip-" + i);
+            ((ReceiverBase) channels[i].getChannelReceiver()).setHost("localhost");
+            services[i] = new GossipMembershipService();
+            services[i].setPort(46565);
+            services[i].setProtocolPeriod(100);
+            services[i].setPingTimeout(40);
+            services[i].setSuspicionTimeout(500);
+            channels[i].setMembershipService(services[i]);
+        }
+        // All the other members join via the first member
+        channels[0].start(Channel.DEFAULT);
+        String seed = "localhost:" + services[0].getLocalPort();
+        for (int i = 1; i < COUNT; i++) {
+            services[i].setSeeds(seed);
+            channels[i].start(Channel.DEFAULT);
+        }
+        for (ManagedChannel channel : channels) {
+            waitFor(() -> channel.getMembers().length == COUNT - 1);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (ManagedChannel channel : channels) {
+            try {
+                channel.stop(Channel.DEFAULT);
+            } catch (Exception e) {
+                // Ignore
+            }
+        }
+    }
+
+    @Test
+    public void testDiscovery() {
+        for (int i = 0; i < COUNT; i++) {
+            for (int j = 0; j < COUNT; j++) {
+                if (i != j) {
+                    Assert.assertNotNull(channels[i].getMember(channels[j].getLocalMember(false)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        Member failed = channels[COUNT - 1].getLocalMember(false);
+        // Stopping the receiver of the membership service closes its socket so the member stops replying
+        channels[COUNT - 1].stop(Channel.MBR_RX_SEQ);
+        for (int i = 0; i < COUNT - 1; i++) {
+            ManagedChannel channel = channels[i];
+            waitFor(() -> channel.getMember(failed) == null);
+            Assert.assertEquals(COUNT - 2, channel.getMembers().length);
+        }
+    }
+
+    @Test
+    public void testLeave() throws Exception {
+        Member left = channels[1].getLocalMember(false);
+        channels[1].stop(Channel.DEFAULT);
+        for (int i = 0; i < COUNT; i++) {
+            if (i != 1) {
+                ManagedChannel channel = channels[i];
+                waitFor(() -> channel.getMember(left) == null);
+            }
+        }
+
+        // The member rejoins with the same identity
+        channels[1].start(Channel.DEFAULT);
+        for (ManagedChannel channel : channels) {
+            waitFor(() -> channel.getMembers().length == COUNT - 1);
+        }
+    }
+
+
+    @Test
+    public void testUnknownSender() throws Exception {
+        Member target = channels[2].getLocalMember(false);
+        int targetPort = services[2].getLocalPort();
+        InetSocketAddress destination = new InetSocketAddress("localhost", services[0].getLocalPort());
+        try (DatagramSocket sender = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+                DatagramSocket other = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            // The member the sender claims to be does not match the address it sends from
+            Member unknown = new MemberImpl("localhost", 4000, 0);
+
+            // A ping with an update declaring a known member dead
+            send(sender, destination, GossipMembershipProvider.MSG_PING, unknown, sender.getLocalPort() + 1, null,
+                    0, GossipMembershipProvider.STATE_DEAD, target, targetPort);
+            // A leave sent on behalf of a known member
+            send(sender, destination, GossipMembershipProvider.MSG_LEAVE, target, targetPort, null, 0, 0, null, 0);
+            // A request to ping an address that is not a member
+            send(sender, destination, GossipMembershipProvider.MSG_PING_REQ, unknown, sender.getLocalPort() + 1,
+                    new MemberImpl("localhost", 4001, 0), other.getLocalPort(), 0, null, 0);
+
+            other.setSoTimeout(1000);
+            try {
+                other.receive(new DatagramPacket(new byte[GossipMembershipProvider.MAX_PACKET_SIZE],
+                        GossipMembershipProvider.MAX_PACKET_SIZE));
+                Assert.fail();
+            } catch (SocketTimeoutException expected) {
+                // Expected
+            }
+        }
+        Assert.assertNotNull(channels[0].getMember(target));
+        Assert.assertEquals(COUNT - 1, channels[0].getMembers().length);
+    }
+
+
+    /*
+     * Send a gossip message with at most one piggybacked update. All updates use the highest possible incarnation.
+     */
+    private static void send(DatagramSocket socket, InetSocketAddress destination, int type, Member sender,
+            int senderPort, Member target, int targetPort, int state, Member member, int memberPort)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(GossipMembershipProvider.MAX_PACKET_SIZE);
+        buf.put(GossipMembershipProvider.HEADER);
+        buf.put((byte) type);
+        buf.putLong(1);
+        writeUpdate(buf, GossipMembershipProvider.STATE_ALIVE, sender, senderPort);
+        if (target != null) {
+            writeUpdate(buf, GossipMembershipProvider.STATE_ALIVE, target, targetPort);
+        }
+        if (member == null) {
+            buf.putInt(0);
+        } else {
+            buf.putInt(1);
+            writeUpdate(buf, state, member, memberPort);
+        }
+        socket.send(new DatagramPacket(buf.array(), 0, buf.position(), destination));
+    }
+
+
+    private static void writeUpdate(ByteBuffer buf, int state, Member member, int port) {
+        byte[] data = member.getData(true, false);
+        buf.put((byte) state);
+        buf.putLong(Long.MAX_VALUE);
+        buf.putInt(port);
+        buf.putInt(data.length);
+        buf.put(data);
+    }
+
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        int count = 0;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Membership change not detected", count++ < 100);
+            Thread.sleep(100);
+        }
+    }
+}
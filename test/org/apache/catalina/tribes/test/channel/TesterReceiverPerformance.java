@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.test.channel;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.ByteMessage;
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ChannelListener;
+import org.apache.catalina.tribes.ManagedChannel;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.TesterUtil;
+import org.apache.catalina.tribes.group.GroupChannel;
+import org.apache.catalina.tribes.transport.ReceiverBase;
+import org.apache.tomcat.util.compat.JreCompat;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * A number of members send messages concurrently to a member whose processing of each message blocks for 1ms,
+ * simulating a listener that waits for a lock or for another member.
+ */
+public class TesterReceiverPerformance {
+
+    private static final int SENDERS = 4;
+    private static final int THREADS_PER_SENDER = 8;
+    private static final int MESSAGES_PER_THREAD = 250;
+
+    @Test
+    public void testThreadPool() throws Exception {
+        doTest(false, 15);
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+        doTest(true, 15);
+        doTest(true, 200);
+    }
+
+
+    private void doTest(boolean useVirtualThreads, int maxThreads) throws Exception {
+        GroupChannel receiver = new GroupChannel();
+        ((ReceiverBase) receiver.getChannelReceiver()).setUseVirtualThreads(useVirtualThreads);
+        ((ReceiverBase) receiver.getChannelReceiver()).setMaxThreads(maxThreads);
+        Listener listener = new Listener();
+        receiver.addChannelListener(listener);
+        GroupChannel[] senders = new GroupChannel[SENDERS];
+        ManagedChannel[] channels = new ManagedChannel[SENDERS + 1];
+        channels[0] = receiver;
+        for (int i = 0; i < SENDERS; i++) {
+            senders[i] = new GroupChannel();
+            channels[i + 1] = senders[i];
+        }
+        TesterUtil.addRandomDomain(channels);
+        for (ManagedChannel channel : channels) {
+            channel.start(Channel.DEFAULT);
+        }
+        try {
+            Thread.sleep(1000);
+            Member[] destination = new Member[] { receiver.getLocalMember(false) };
+            ByteMessage msg = new ByteMessage(new byte[1024]);
+            Thread[] threads = new Thread[SENDERS * THREADS_PER_SENDER];
+            for (int i = 0; i < threads.length; i++) {
+                GroupChannel sender = senders[i % SENDERS];
+                threads[i] = new Thread(() -> {
+                    try {
+                        for (int j = 0; j < MESSAGES_PER_THREAD; j++) {
+                            sender.send(destination, msg,
+                                    Channel.SEND_OPTIONS_USE_ACK | Channel.SEND_OPTIONS_SYNCHRONIZED_ACK);
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long duration = System.nanoTime() - start;
+            int total = threads.length * MESSAGES_PER_THREAD;
+            Assert.assertEquals(total, listener.count.get());
+            System.out.println("Virtual threads [" + useVirtualThreads + "], max threads [" + maxThreads + "]: " +
+                    total + " messages received in " + (duration / 1000000) + "ms");
+        } finally {
+            for (ManagedChannel channel : channels) {
+                channel.stop(Channel.DEFAULT);
+            }
+        }
+    }
+
+
+    private static class Listener implements ChannelListener {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public boolean accept(Serializable msg, Member sender) {
+            return msg instanceof ByteMessage;
+        }
+
+        @Override
+        public void messageReceived(Serializable msg, Member sender) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count.incrementAndGet();
+        }
+    }
+}
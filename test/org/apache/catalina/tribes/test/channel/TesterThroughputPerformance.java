@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.test.channel;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.ByteMessage;
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ChannelListener;
+import org.apache.catalina.tribes.ManagedChannel;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.TesterUtil;
+import org.apache.catalina.tribes.group.GroupChannel;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ */
+public class TesterThroughputPerformance {
+
+    private static final int[] MESSAGE_SIZES = { 1024, 16 * 1024, 256 * 1024, 1024 * 1024 };
+    private static final long BYTES_PER_RUN = 512L * 1024 * 1024;
+
+    private GroupChannel channel1;
+    private GroupChannel channel2;
+    private Listener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        channel1 = new GroupChannel();
+        channel2 = new GroupChannel();
+        listener = new Listener();
+        channel2.addChannelListener(listener);
+        TesterUtil.addRandomDomain(new ManagedChannel[] { channel1, channel2 });
+        channel1.start(Channel.DEFAULT);
+        channel2.start(Channel.DEFAULT);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        channel1.stop(Channel.DEFAULT);
+        channel2.stop(Channel.DEFAULT);
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        Member[] destination = new Member[] { channel2.getLocalMember(false) };
+        for (int size : MESSAGE_SIZES) {
+            // Warm up
+            doTestThroughput(destination, size, BYTES_PER_RUN / 8);
+            long start = System.nanoTime();
+            doTestThroughput(destination, size, BYTES_PER_RUN);
+            long duration = System.nanoTime() - start;
+            System.out.println("Sent " + BYTES_PER_RUN + " bytes in messages of " + size + " bytes in " +
+                    (duration / 1000000) + "ms (" + (BYTES_PER_RUN * 1000 / duration) + " MB/s)");
+        }
+    }
+
+
+    private void doTestThroughput(Member[] destination, int size, long total) throws Exception {
+        ByteMessage msg = new ByteMessage(new byte[size]);
+        long count = total / size;
+        listener.bytes.set(0);
+        for (long i = 0; i < count; i++) {
+            channel1.send(destination, msg, Channel.SEND_OPTIONS_USE_ACK | Channel.SEND_OPTIONS_SYNCHRONIZED_ACK);
+        }
+        Assert.assertEquals(count * size, listener.bytes.get());
+    }
+
+
+    private static class Listener implements ChannelListener {
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        @Override
+        public boolean accept(Serializable msg, Member sender) {
+            return msg instanceof ByteMessage;
+        }
+
+        @Override
+        public void messageReceived(Serializable msg, Member sender) {
+            bytes.addAndGet(((ByteMessage) msg).getMessage().length);
+        }
+    }
+}
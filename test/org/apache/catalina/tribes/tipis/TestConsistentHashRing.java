@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.tipis;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.membership.MemberImpl;
+
+public class TestConsistentHashRing {
+
+    private static final int KEYS = 20000;
+
+
+    @Test
+    public void testDistribution() throws Exception {
+        Member[] members = createMembers(10);
+        ConsistentHashRing ring = new ConsistentHashRing(members, 100);
+
+        Map<Member,Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.getMember("SESSION" + i), Integer.valueOf(1),
+                    (a, b) -> Integer.valueOf(a.intValue() + b.intValue()));
+        }
+        Assert.assertEquals(members.length, counts.size());
+        for (Integer count : counts.values()) {
+            // Each member should get roughly a tenth of the keys
+            Assert.assertTrue(count.toString(), count.intValue() > KEYS / 20 && count.intValue() < KEYS / 5);
+        }
+    }
+
+
+    @Test
+    public void testMembershipChange() throws Exception {
+        Member[] members = createMembers(10);
+        ConsistentHashRing ring = new ConsistentHashRing(members, 100);
+
+        // Only the keys of a removed member move
+        Member[] remaining = Arrays.copyOf(members, 9);
+        ConsistentHashRing smaller = new ConsistentHashRing(remaining, 100);
+        for (int i = 0; i < KEYS; i++) {
+            String key = "SESSION" + i;
+            Member before = ring.getMember(key);
+            if (!before.equals(members[9])) {
+                Assert.assertEquals(before, smaller.getMember(key));
+            }
+        }
+
+        // Keys only move to an added member
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "SESSION" + i;
+            Member after = ring.getMember(key);
+            if (!smaller.getMember(key).equals(after)) {
+                Assert.assertEquals(members[9], after);
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > KEYS / 20 && moved < KEYS / 5);
+    }
+
+
+    @Test
+    public void testGetMembers() throws Exception {
+        Member[] members = createMembers(5);
+        ConsistentHashRing ring = new ConsistentHashRing(members, 50);
+        Assert.assertTrue(ring.hasMembers(members));
+        Assert.assertFalse(ring.hasMembers(Arrays.copyOf(members, 4)));
+
+        for (int i = 0; i < 100; i++) {
+            String key = "SESSION" + i;
+            Member[] ordered = ring.getMembers(key);
+            Assert.assertEquals(members.length, ordered.length);
+            Assert.assertEquals(members.length, new HashSet<>(Arrays.asList(ordered)).size());
+            Assert.assertEquals(ring.getMember(key), ordered[0]);
+        }
+
+        ConsistentHashRing empty = new ConsistentHashRing(new Member[0], 50);
+        Assert.assertNull(empty.getMember("SESSION"));
+        Assert.assertEquals(0, empty.getMembers("SESSION").length);
+    }
+
+
+    private static Member[] createMembers(int count) throws Exception {
+        Member[] members = new Member[count];
+        for (int i = 0; i < count; i++) {
+            members[i] = new MemberImpl("192.168.0." + (i + 1), 4000, 0);
+        }
+        return members;
+    }
+}
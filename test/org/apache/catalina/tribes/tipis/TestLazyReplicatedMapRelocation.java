@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.tipis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ChannelException;
+import org.apache.catalina.tribes.ChannelMessage;
+import org.apache.catalina.tribes.ManagedChannel;
+import org.apache.catalina.tribes.Member;
+import org.apache.catalina.tribes.group.ChannelInterceptorBase;
+import org.apache.catalina.tribes.group.GroupChannel;
+import org.apache.catalina.tribes.group.InterceptorPayload;
+import org.apache.catalina.tribes.transport.ReceiverBase;
+
+/**
+ * Tests the batched relocation of {@link LazyReplicatedMap} entries.
+ */
+public class TestLazyReplicatedMapRelocation {
+
+    private static final int COUNT = 4;
+
+    private final ManagedChannel[] channels = new ManagedChannel[COUNT];
+    @SuppressWarnings("unchecked")
+    private final LazyReplicatedMap<String,String>[] maps = new LazyReplicatedMap[COUNT];
+    private final FailingInterceptor failing = new FailingInterceptor();
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < COUNT; i++) {
+            channels[i] = new GroupChannel();
+            channels[i].setName("Relocation-" + i);
+            ((ReceiverBase) channels[i].getChannelReceiver()).setHost("localhost");
+            if (i == 0) {
+                channels[i].addInterceptor(failing);
+            }
+            channels[i].start(Channel.DEFAULT);
+        }
+        for (ManagedChannel channel : channels) {
+            waitFor(() -> channel.getMembers().length >= COUNT - 1);
+        }
+        for (int i = 0; i < COUNT; i++) {
+            maps[i] = new LazyReplicatedMap<>(null, channels[i], 5000, "TestRelocation", null);
+        }
+        for (LazyReplicatedMap<String,String> map : maps) {
+            waitFor(() -> map.getMapMembers().length == COUNT - 1);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (int i = 0; i < COUNT; i++) {
+            if (maps[i] != null) {
+                maps[i].breakdown();
+            }
+            channels[i].stop(Channel.DEFAULT);
+        }
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        maps[0].setVirtualNodes(16);
+        maps[0].setRelocationBatchSize(2);
+        for (int i = 0; i < 40; i++) {
+            maps[0].put("key" + i, "value" + i);
+        }
+
+        Member[] members = maps[0].getMapMembers();
+        Member gone = maps[0].getInternal("key0").getBackupNodes()[0];
+        Member unreachable = null;
+        Member survivor = null;
+        for (Member member : members) {
+            if (!member.equals(gone)) {
+                if (unreachable == null) {
+                    unreachable = member;
+                } else {
+                    survivor = member;
+                }
+            }
+        }
+        List<String> relocated = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            if (maps[0].getInternal("key" + i).getBackupNodes()[0].equals(gone)) {
+                relocated.add("key" + i);
+            }
+        }
+
+        // The entries that move to the unreachable member are published to the survivor instead
+        failing.member = unreachable;
+        maps[0].memberDisappeared(gone);
+        for (String key : relocated) {
+            Member[] backup = maps[0].getInternal(key).getBackupNodes();
+            Assert.assertEquals(1, backup.length);
+            Assert.assertEquals(survivor, backup[0]);
+        }
+        LazyReplicatedMap<String,String> map = maps[indexOf(survivor)];
+        for (String key : relocated) {
+            waitFor(() -> map.getInternal(key) != null && map.getInternal(key).isBackup());
+        }
+    }
+
+
+    private int indexOf(Member member) {
+        for (int i = 0; i < COUNT; i++) {
+            if (channels[i].getLocalMember(false).equals(member)) {
+                return i;
+            }
+        }
+        Assert.fail("Unknown member " + member);
+        return -1;
+    }
+
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        int count = 0;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Condition not met", count++ < 100);
+            Thread.sleep(100);
+        }
+    }
+
+
+    private static class FailingInterceptor extends ChannelInterceptorBase {
+
+        private volatile Member member;
+
+        @Override
+        public void sendMessage(Member[] destination, ChannelMessage msg, InterceptorPayload payload)
+                throws ChannelException {
+            Member member = this.member;
+            if (member != null) {
+                for (Member m : destination) {
+                    if (m.equals(member)) {
+                        ChannelException x = new ChannelException("Unreachable");
+                        x.addFaultyMember(m, new Exception("Unreachable"));
+                        throw x;
+                    }
+                }
+            }
+            super.sendMessage(destination, msg, payload);
+        }
+    }
+}
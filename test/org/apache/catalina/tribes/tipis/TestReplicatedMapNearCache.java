@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.tribes.tipis;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ManagedChannel;
+import org.apache.catalina.tribes.group.GroupChannel;
+import org.apache.catalina.tribes.transport.ReceiverBase;
+
+/**
+ * Tests the reads of {@link LazyReplicatedMap} entries through the near cache.
+ */
+public class TestReplicatedMapNearCache {
+
+    private static final int COUNT = 3;
+
+    private final ManagedChannel[] channels = new ManagedChannel[COUNT];
+    @SuppressWarnings("unchecked")
+    private final LazyReplicatedMap<String,String>[] maps = new LazyReplicatedMap[COUNT];
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < COUNT; i++) {
+            channels[i] = new GroupChannel();
+            channels[i].setName("NearCache-" + i);
+            ((ReceiverBase) channels[i].getChannelReceiver()).setHost("localhost");
+            channels[i].start(Channel.DEFAULT);
+        }
+        for (ManagedChannel channel : channels) {
+            waitFor(() -> channel.getMembers().length >= COUNT - 1);
+        }
+        for (int i = 0; i < COUNT; i++) {
+            maps[i] = new LazyReplicatedMap<>(null, channels[i], 5000, "TestNearCache", null);
+            maps[i].setNearCacheSize(10);
+        }
+        for (LazyReplicatedMap<String,String> map : maps) {
+            waitFor(() -> map.getMapMembers().length == COUNT - 1);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (int i = 0; i < COUNT; i++) {
+            if (maps[i] != null) {
+                maps[i].breakdown();
+            }
+            channels[i].stop(Channel.DEFAULT);
+        }
+    }
+
+    @Test
+    public void testReadThrough() throws Exception {
+        maps[0].put("key", "value1");
+        LazyReplicatedMap<String,String> proxy = waitForProxy("key");
+        NearCache nearCache = proxy.getNearCache();
+
+        Assert.assertEquals("value1", proxy.get("key"));
+        Assert.assertEquals(1, nearCache.getMissCount());
+        Assert.assertEquals("value1", proxy.get("key"));
+        Assert.assertEquals(1, nearCache.getHitCount());
+        // Reading does not make the proxy the primary
+        Assert.assertTrue(proxy.getInternal("key").isProxy());
+        Assert.assertTrue(maps[0].getInternal("key").isPrimary());
+
+        // A change by the primary invalidates the cached value
+        maps[0].put("key", "value2");
+        LazyReplicatedMap<String,String> newProxy = waitForProxy("key");
+        Assert.assertEquals(0, newProxy.getNearCache().getSize());
+        long misses = newProxy.getNearCache().getMissCount();
+        Assert.assertEquals("value2", newProxy.get("key"));
+        Assert.assertEquals(misses + 1, newProxy.getNearCache().getMissCount());
+
+        maps[0].remove("key");
+        waitFor(() -> newProxy.getInternal("key") == null);
+        Assert.assertNull(newProxy.get("key"));
+    }
+
+    @Test
+    public void testVersion() throws Exception {
+        maps[0].put("key", "value1");
+        LazyReplicatedMap<String,String> proxy = waitForProxy("key");
+        long version = maps[0].getInternal("key").getVersion();
+        Assert.assertTrue(version > 0);
+        Assert.assertEquals(version, proxy.getInternal("key").getVersion());
+
+        // A value older than the latest version known to the proxy is not cached
+        proxy.getInternal("key").setVersion(version + 1);
+        Assert.assertEquals("value1", proxy.get("key"));
+        Assert.assertEquals(0, proxy.getNearCache().getSize());
+        Assert.assertEquals(1, proxy.getNearCache().getStaleCount());
+    }
+
+    @Test
+    public void testEviction() {
+        NearCache nearCache = new NearCache(2);
+        nearCache.put("a", "1", 1);
+        nearCache.put("b", "2", 1);
+        Assert.assertEquals("1", nearCache.get("a", 1));
+        nearCache.put("c", "3", 1);
+        // b is the least recently used
+        Assert.assertNull(nearCache.get("b", 1));
+        Assert.assertEquals("3", nearCache.get("c", 1));
+        Assert.assertEquals(1, nearCache.getEvictionCount());
+        // A later version of the entry is known
+        Assert.assertNull(nearCache.get("a", 2));
+        Assert.assertEquals(1, nearCache.getSize());
+    }
+
+
+    private LazyReplicatedMap<String,String> waitForProxy(String key) throws InterruptedException {
+        long version = maps[0].getInternal(key).getVersion();
+        for (int i = 1; i < COUNT; i++) {
+            LazyReplicatedMap<String,String> map = maps[i];
+            waitFor(() -> map.getInternal(key) != null && map.getInternal(key).getVersion() == version);
+        }
+        for (int i = 1; i < COUNT; i++) {
+            if (maps[i].getInternal(key).isProxy()) {
+                return maps[i];
+            }
+        }
+        Assert.fail("No proxy for " + key);
+        return null;
+    }
+
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        int count = 0;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Condition not met", count++ < 100);
+            Thread.sleep(100);
+        }
+    }
+}
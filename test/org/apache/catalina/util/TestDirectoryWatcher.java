@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.startup.ExpandWar;
+import org.apache.catalina.startup.LoggingBaseTest;
+
+public class TestDirectoryWatcher extends LoggingBaseTest {
+
+    @Test
+    public void testWatch() throws Exception {
+        File root = new File(getTemporaryDirectory(), "watched");
+        File dir = new File(root, "dir");
+        Assert.assertTrue(dir.mkdirs());
+        File other = new File(getTemporaryDirectory(), "not-watched");
+        Assert.assertTrue(other.mkdirs());
+
+        DirectoryWatcher watcher = DirectoryWatcher.create();
+        Assert.assertNotNull(watcher);
+        try {
+            Assert.assertTrue(watcher.register(root, true));
+            Assert.assertFalse(watcher.register(new File(root, "missing"), false));
+            Assert.assertTrue(watcher.poll().isEmpty());
+
+            // Changes in existing directories
+            File file1 = new File(root, "file1.txt");
+            Files.writeString(file1.toPath(), "1");
+            File file2 = new File(dir, "file2.txt");
+            Files.writeString(file2.toPath(), "2");
+            Files.writeString(new File(other, "file3.txt").toPath(), "3");
+            Set<File> changed = waitForChanges(watcher, file1, file2);
+            Assert.assertFalse(changed.contains(new File(other, "file3.txt").getAbsoluteFile()));
+
+            // New directories are watched once their creation has been reported
+            File newDir = new File(dir, "new");
+            Assert.assertTrue(newDir.mkdir());
+            waitForChanges(watcher, newDir);
+            File file4 = new File(newDir, "file4.txt");
+            Files.writeString(file4.toPath(), "4");
+            waitForChanges(watcher, file4);
+
+            // Deleting a watched directory reports the directory
+            ExpandWar.delete(dir);
+            waitForChanges(watcher, dir, newDir);
+        } finally {
+            watcher.close();
+        }
+
+        Assert.assertNull(watcher.poll());
+    }
+
+
+    @Test
+    public void testSharedWatchService() throws Exception {
+        File root1 = new File(getTemporaryDirectory(), "watched1");
+        File dir1 = new File(root1, "dir");
+        Assert.assertTrue(dir1.mkdirs());
+        File root2 = new File(getTemporaryDirectory(), "watched2");
+        Assert.assertTrue(root2.mkdirs());
+
+        // Many more watchers than the default Linux limit of 128 inotify instances per user
+        List<DirectoryWatcher> watchers = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                DirectoryWatcher watcher = DirectoryWatcher.create();
+                Assert.assertNotNull(watcher);
+                watchers.add(watcher);
+            }
+            DirectoryWatcher watcher1 = watchers.get(0);
+            DirectoryWatcher watcher2 = watchers.get(1);
+            DirectoryWatcher watcher3 = watchers.get(2);
+            Assert.assertTrue(watcher1.register(root1, true));
+            Assert.assertTrue(watcher2.register(root2, false));
+            // Also registered by watcher1
+            Assert.assertTrue(watcher3.register(dir1, false));
+
+            // Changes are only reported to the watchers of the directory
+            File file1 = new File(root1, "file1.txt");
+            Files.writeString(file1.toPath(), "1");
+            File file2 = new File(root2, "file2.txt");
+            Files.writeString(file2.toPath(), "2");
+            File file3 = new File(dir1, "file3.txt");
+            Files.writeString(file3.toPath(), "3");
+            Set<File> changed1 = waitForChanges(watcher1, file1, file3);
+            Set<File> changed2 = waitForChanges(watcher2, file2);
+            Set<File> changed3 = waitForChanges(watcher3, file3);
+            Assert.assertFalse(changed1.contains(file2.getAbsoluteFile()));
+            Assert.assertFalse(changed2.contains(file1.getAbsoluteFile()));
+            Assert.assertFalse(changed3.contains(file1.getAbsoluteFile()));
+
+            // Closing a watcher does not affect other watchers of the same directory
+            watcher1.close();
+            File file4 = new File(dir1, "file4.txt");
+            Files.writeString(file4.toPath(), "4");
+            waitForChanges(watcher3, file4);
+        } finally {
+            for (DirectoryWatcher watcher : watchers) {
+                watcher.close();
+            }
+        }
+    }
+
+
+    private static Set<File> waitForChanges(DirectoryWatcher watcher, File... expected) throws InterruptedException {
+        Set<File> changed = new HashSet<>();
+        Set<File> remaining = new HashSet<>();
+        for (File file : expected) {
+            remaining.add(file.getAbsoluteFile());
+        }
+        int count = 0;
+        while (!remaining.isEmpty() && count < 100) {
+            Set<File> result = watcher.poll();
+            Assert.assertNotNull(result);
+            changed.addAll(result);
+            remaining.removeAll(result);
+            if (!remaining.isEmpty()) {
+                Thread.sleep(100);
+                count++;
+            }
+        }
+        Assert.assertTrue("Changes not reported for " + remaining, remaining.isEmpty());
+        return changed;
+    }
+}
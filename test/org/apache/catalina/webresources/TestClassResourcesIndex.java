@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceSet;
+
+public class TestClassResourcesIndex {
+
+    private static final String MOUNT = "/WEB-INF/classes";
+
+
+    @Test
+    public void testIndex() {
+        TesterWebResourceRoot root = new TesterWebResourceRoot();
+        WebResourceSet dir1 = createJarResourceSet(root, "dir1.jar");
+        WebResourceSet nonStatic = createJarResourceSet(root, "non-static-resources.jar");
+        List<WebResourceSet> classResources = new ArrayList<>();
+        classResources.add(dir1);
+        classResources.add(nonStatic);
+
+        ClassResourcesIndex index = ClassResourcesIndex.create(classResources);
+
+        List<WebResourceSet> sets = index.getResourceSets(MOUNT + "/d1/d1-f1.txt");
+        Assert.assertEquals(1, sets.size());
+        Assert.assertSame(dir1, sets.get(0));
+
+        sets = index.getResourceSets(MOUNT + "/META-INF/resources/");
+        Assert.assertEquals(1, sets.size());
+        Assert.assertSame(nonStatic, sets.get(0));
+
+        // Both JARs have entries at the root, in the order they are searched
+        sets = index.getResourceSets(MOUNT + "/f1.txt");
+        Assert.assertEquals(2, sets.size());
+        Assert.assertSame(dir1, sets.get(0));
+        Assert.assertSame(nonStatic, sets.get(1));
+
+        Assert.assertTrue(index.getResourceSets(MOUNT + "/org/apache/Foo.class").isEmpty());
+
+        // Paths the index can't be used for
+        Assert.assertNull(index.getResourceSets(MOUNT));
+        Assert.assertNull(index.getResourceSets(MOUNT + "/"));
+        Assert.assertNull(index.getResourceSets("/WEB-INF/lib/foo.jar"));
+    }
+
+
+    @Test
+    public void testNotAvailable() {
+        TesterWebResourceRoot root = new TesterWebResourceRoot();
+        List<WebResourceSet> classResources = new ArrayList<>();
+        classResources.add(createJarResourceSet(root, "dir1.jar"));
+        classResources.add(new DirResourceSet(root, MOUNT, new File("test/webresources/dir1").getAbsolutePath(), "/"));
+
+        ClassResourcesIndex index = ClassResourcesIndex.create(classResources);
+
+        Assert.assertNull(index.getResourceSets(MOUNT + "/d1/d1-f1.txt"));
+    }
+
+
+    @Test
+    public void testClassLoaderResources() throws Exception {
+        TesterWebResourceRoot root = new TesterWebResourceRoot();
+        root.setMainResources(new DirResourceSet(root, "/",
+                new File("test/webresources/dir3").getAbsolutePath(), "/"));
+        root.addClassResources(createJarResourceSet(root, "dir1.jar"));
+        root.addClassResources(createJarResourceSet(root, "non-static-resources.jar"));
+
+        WebResource webResource = root.getClassLoaderResource("/d1/d1-f1.txt");
+        Assert.assertTrue(webResource.exists());
+        Assert.assertEquals(MOUNT + "/d1/d1-f1.txt", webResource.getWebappPath());
+
+        webResource = root.getClassLoaderResource("/d2");
+        Assert.assertTrue(webResource.isDirectory());
+
+        webResource = root.getClassLoaderResource("/META-INF/resources/WEB-INF/classes/org/apache/tomcat/unittest/foo.txt");
+        Assert.assertTrue(webResource.exists());
+
+        Assert.assertFalse(root.getClassLoaderResource("/d1/missing.txt").exists());
+        Assert.assertFalse(root.getClassLoaderResource("/org/apache/Missing.class").exists());
+
+        // Adding a resource set rebuilds the index
+        root.addClassResources(createJarResourceSet(root, "dir1-internal.jar"));
+        Assert.assertTrue(root.getClassLoaderResource("/dir1/d1/d1-f1.txt").exists());
+    }
+
+
+    private static WebResourceSet createJarResourceSet(TesterWebResourceRoot root, String name) {
+        File jar = new File("test/webresources/" + name);
+        return new JarResourceSet(root, MOUNT, jar.getAbsolutePath(), "/");
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import jakarta.servlet.ServletContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.WebResource;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+
+public class TestNestedJarIndex extends TomcatBaseTest {
+
+    private static final String STORED_JAR = "WEB-INF/lib/stored.jar";
+    private static final String DEFLATED_JAR = "WEB-INF/lib/deflated.jar";
+    private static final String STORED_ENTRY = "org/apache/test/stored.txt";
+    private static final String DEFLATED_ENTRY = "org/apache/test/deflated.txt";
+
+    private static final byte[] STORED_CONTENT = "Stored entry".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DEFLATED_CONTENT;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("Deflated entry ").append(i).append('\n');
+        }
+        DEFLATED_CONTENT = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    @Before
+    public void register() {
+        TomcatURLStreamHandlerFactory.register();
+    }
+
+
+    @Test
+    public void testIndex() throws Exception {
+        File dir = new File(getTemporaryDirectory(), "nested-jar-index");
+        Assert.assertTrue(dir.mkdirs());
+        addDeleteOnTearDown(dir);
+        File war = new File(dir, "test.war");
+        writeWar(war);
+        File indexFile = new File(dir, NestedJarIndex.FILE_NAME);
+
+        NestedJarIndex index = NestedJarIndex.load(war, indexFile);
+        try {
+            NestedJarIndex.NestedJar storedJar = index.getNestedJar(STORED_JAR);
+            Assert.assertNotNull(storedJar);
+            Assert.assertTrue(storedJar.isRandomAccess());
+            assertEntries(storedJar.getJarEntries());
+            Assert.assertArrayEquals(STORED_CONTENT, read(index.getInputStream(storedJar, STORED_ENTRY)));
+            Assert.assertArrayEquals(DEFLATED_CONTENT, read(index.getInputStream(storedJar, DEFLATED_ENTRY)));
+            Assert.assertNull(index.getInputStream(storedJar, "org/apache/test/missing.txt"));
+
+            // Entries of a compressed JAR are listed but can't be read directly
+            NestedJarIndex.NestedJar deflatedJar = index.getNestedJar(DEFLATED_JAR);
+            Assert.assertNotNull(deflatedJar);
+            Assert.assertFalse(deflatedJar.isRandomAccess());
+            assertEntries(deflatedJar.getJarEntries());
+            Assert.assertNull(index.getInputStream(deflatedJar, STORED_ENTRY));
+
+            Assert.assertNull(index.getNestedJar("WEB-INF/lib/missing.jar"));
+
+            index.save();
+            Assert.assertTrue(indexFile.isFile());
+        } finally {
+            index.close();
+        }
+
+        index = NestedJarIndex.load(war, indexFile);
+        try {
+            NestedJarIndex.NestedJar storedJar = index.getNestedJar(STORED_JAR);
+            Assert.assertTrue(storedJar.isRandomAccess());
+            assertEntries(storedJar.getJarEntries());
+            Assert.assertArrayEquals(DEFLATED_CONTENT, read(index.getInputStream(storedJar, DEFLATED_ENTRY)));
+            assertEntries(index.getNestedJar(DEFLATED_JAR).getJarEntries());
+        } finally {
+            index.close();
+        }
+    }
+
+
+    @Test
+    public void testInterruptedRead() throws Exception {
+        NestedJarIndex index = createIndex("nested-jar-index-interrupt");
+        try {
+            NestedJarIndex.NestedJar storedJar = index.getNestedJar(STORED_JAR);
+            InputStream other = index.getInputStream(storedJar, DEFLATED_ENTRY);
+            InputStream interrupted = index.getInputStream(storedJar, STORED_ENTRY);
+
+            // An interrupted read closes the shared channel
+            Thread.currentThread().interrupt();
+            try {
+                interrupted.read();
+                Assert.fail();
+            } catch (ClosedByInterruptException expected) {
+                // Expected
+            } finally {
+                Thread.interrupted();
+                interrupted.close();
+            }
+
+            // Other streams and new streams are not affected
+            Assert.assertArrayEquals(DEFLATED_CONTENT, read(other));
+            Assert.assertArrayEquals(STORED_CONTENT, read(index.getInputStream(storedJar, STORED_ENTRY)));
+        } finally {
+            index.close();
+        }
+    }
+
+
+    @Test
+    public void testCloseInUse() throws Exception {
+        NestedJarIndex index = createIndex("nested-jar-index-close");
+        NestedJarIndex.NestedJar storedJar = index.getNestedJar(STORED_JAR);
+        InputStream is = index.getInputStream(storedJar, DEFLATED_ENTRY);
+
+        // The channel is not closed until the stream is closed
+        index.close();
+        Assert.assertArrayEquals(DEFLATED_CONTENT, read(is));
+    }
+
+
+    private NestedJarIndex createIndex(String name) throws IOException {
+        File dir = new File(getTemporaryDirectory(), name);
+        Assert.assertTrue(dir.mkdirs());
+        addDeleteOnTearDown(dir);
+        File war = new File(dir, "test.war");
+        writeWar(war);
+        return NestedJarIndex.load(war, null);
+    }
+
+
+    @Test
+    public void testStartWithIndex() throws Exception {
+        File dir = new File(getTemporaryDirectory(), "nested-jar-index-app");
+        Assert.assertTrue(dir.mkdirs());
+        addDeleteOnTearDown(dir);
+        File war = new File(dir, "test.war");
+        writeWar(war);
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addContext("/test", war.getAbsolutePath());
+        StandardRoot root = new StandardRoot(ctx);
+        root.setUseNestedJarIndex(true);
+        ctx.setResources(root);
+        tomcat.start();
+
+        File workDir = (File) ctx.getServletContext().getAttribute(ServletContext.TEMPDIR);
+        File indexFile = new File(workDir, NestedJarIndex.FILE_NAME);
+
+        assertResources(ctx);
+
+        ctx.stop();
+        Assert.assertTrue(indexFile.isFile());
+
+        // Restart using the saved index
+        ctx.start();
+        assertResources(ctx);
+    }
+
+
+    private static void assertResources(Context ctx) throws IOException {
+        WebResource resource = ctx.getResources().getClassLoaderResource("/" + STORED_ENTRY);
+        Assert.assertTrue(resource.isFile());
+        Assert.assertEquals(STORED_CONTENT.length, resource.getContentLength());
+        Assert.assertArrayEquals(STORED_CONTENT, resource.getContent());
+
+        resource = ctx.getResources().getClassLoaderResource("/org/apache/test");
+        Assert.assertTrue(resource.isDirectory());
+
+        ClassLoader cl = ctx.getLoader().getClassLoader();
+        try (InputStream is = cl.getResourceAsStream(DEFLATED_ENTRY)) {
+            Assert.assertArrayEquals(DEFLATED_CONTENT, read(is));
+        }
+        Assert.assertNull(cl.getResource("org/apache/test/missing.txt"));
+    }
+
+
+    private static void assertEntries(Map<String,JarEntry> entries) {
+        JarEntry entry = entries.get(STORED_ENTRY);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(STORED_CONTENT.length, entry.getSize());
+        entry = entries.get(DEFLATED_ENTRY);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(DEFLATED_CONTENT.length, entry.getSize());
+        Assert.assertTrue(entries.get("org/apache/test/").isDirectory());
+    }
+
+
+    private static byte[] read(InputStream is) throws IOException {
+        Assert.assertNotNull(is);
+        try (InputStream in = is) {
+            return in.readAllBytes();
+        }
+    }
+
+
+    private static void writeWar(File war) throws IOException {
+        byte[] jar = createJar();
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(war))) {
+            addEntry(jos, "WEB-INF/", null, ZipEntry.STORED);
+            addEntry(jos, "WEB-INF/lib/", null, ZipEntry.STORED);
+            addEntry(jos, STORED_JAR, jar, ZipEntry.STORED);
+            addEntry(jos, DEFLATED_JAR, jar, ZipEntry.DEFLATED);
+        }
+    }
+
+
+    private static byte[] createJar() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (JarOutputStream jos = new JarOutputStream(baos)) {
+            addEntry(jos, "org/", null, ZipEntry.STORED);
+            addEntry(jos, "org/apache/", null, ZipEntry.STORED);
+            addEntry(jos, "org/apache/test/", null, ZipEntry.STORED);
+            addEntry(jos, STORED_ENTRY, STORED_CONTENT, ZipEntry.STORED);
+            addEntry(jos, DEFLATED_ENTRY, DEFLATED_CONTENT, ZipEntry.DEFLATED);
+        }
+        return baos.toByteArray();
+    }
+
+
+    private static void addEntry(JarOutputStream jos, String name, byte[] content, int method) throws IOException {
+        JarEntry entry = new JarEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            byte[] data = content == null ? new byte[0] : content;
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        jos.putNextEntry(entry);
+        if (content != null) {
+            jos.write(content);
+        }
+        jos.closeEntry();
+    }
+}
@@ -286,6 +286,10 @@ public class SimpleAjpClient {
         socket = null;
     }
 
+    public void setSoTimeout(int timeout) throws IOException {
+        socket.setSoTimeout(timeout);
+    }
+
     /*
      * Create a message to request the given URL.
      */
@@ -353,15 +357,22 @@ public class SimpleAjpClient {
 
     public TesterAjpMessage sendMessage(TesterAjpMessage headers, TesterAjpMessage body) throws IOException {
         // Send the headers
-        socket.getOutputStream().write(headers.getBuffer(), 0, headers.getLen());
+        writeMessage(headers);
         if (body != null) {
             // Send the body of present
-            socket.getOutputStream().write(body.getBuffer(), 0, body.getLen());
+            writeMessage(body);
         }
         // Read the response
         return readMessage();
     }
 
+    /*
+     * Sends an TesterAjpMessage to the server without reading the response.
+     */
+    public void writeMessage(TesterAjpMessage message) throws IOException {
+        socket.getOutputStream().write(message.getBuffer(), 0, message.getLen());
+    }
+
     /*
      * Tests the connection to the server and returns the CPONG response.
      */
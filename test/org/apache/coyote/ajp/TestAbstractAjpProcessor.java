@@ -19,15 +19,21 @@ package org.apache.coyote.ajp;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -937,6 +943,249 @@ public class TestAbstractAjpProcessor extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testResponseHeaderEncoding() throws Exception {
+
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "headers", new ResponseHeadersServlet());
+        ctx.addServletMappingDecoded("/*", "headers");
+
+        tomcat.start();
+
+        SimpleAjpClient ajpClient = new SimpleAjpClient();
+        ajpClient.setPort(getPort());
+        ajpClient.connect();
+
+        // Pre-encoded status code
+        doTestResponseHeaderEncoding(ajpClient, 201);
+        // Status code that is not pre-encoded
+        doTestResponseHeaderEncoding(ajpClient, 999);
+
+        ajpClient.disconnect();
+    }
+
+
+    private void doTestResponseHeaderEncoding(SimpleAjpClient ajpClient, int status) throws Exception {
+        ajpClient.setUri("/" + status);
+        TesterAjpMessage forwardMessage = ajpClient.createForwardMessage();
+        forwardMessage.end();
+
+        TesterAjpMessage message = ajpClient.sendMessage(forwardMessage, null);
+        message.processHeader(false);
+        Assert.assertEquals(Constants.JK_AJP13_SEND_HEADERS, message.readByte());
+        Assert.assertEquals(status, message.readInt());
+        Assert.assertEquals(Integer.toString(status), message.readString());
+
+        Map<String,String> headers = new HashMap<>();
+        Map<String,Byte> firstBytes = new HashMap<>();
+        int headerCount = message.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            byte firstByte = message.buf[message.pos];
+            String name = message.readHeaderName();
+            headers.put(name, message.readString());
+            firstBytes.put(name, Byte.valueOf(firstByte));
+        }
+        // A header name with an AJP code is sent as the code
+        Assert.assertEquals("text/plain;charset=UTF-8", headers.get("Content-Type"));
+        Assert.assertEquals((byte) 0xA0, firstBytes.get("Content-Type").byteValue());
+        // Other header names, pre-encoded or not, are sent as a string
+        Assert.assertEquals("no-cache", headers.get("Cache-Control"));
+        Assert.assertEquals(0, firstBytes.get("Cache-Control").byteValue());
+        Assert.assertEquals("value", headers.get("X-Custom"));
+        Assert.assertEquals(0, firstBytes.get("X-Custom").byteValue());
+
+        validateResponseBody(ajpClient.readMessage(), "OK");
+        validateResponseEnd(ajpClient.readMessage(), true);
+    }
+
+
+    private static class ResponseHeadersServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            resp.setStatus(Integer.parseInt(req.getPathInfo().substring(1)));
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setHeader("Cache-Control", "no-cache");
+            resp.setHeader("X-Custom", "value");
+            resp.getWriter().print("OK");
+        }
+    }
+
+
+    @Test
+    public void testBlockingResponseCoalesced() throws Exception {
+
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        CoalescedResponseServlet servlet = new CoalescedResponseServlet();
+        Tomcat.addServlet(ctx, "coalesced", servlet);
+        ctx.addServletMappingDecoded("/", "coalesced");
+
+        // Large enough for the whole response
+        tomcat.getConnector().setProperty("socket.appWriteBufSize", "65536");
+
+        tomcat.start();
+
+        SimpleAjpClient ajpClient = new SimpleAjpClient();
+        ajpClient.setPort(getPort());
+        ajpClient.connect();
+
+        TesterAjpMessage forwardMessage = ajpClient.createForwardMessage();
+        forwardMessage.end();
+        ajpClient.writeMessage(forwardMessage);
+
+        // The response has been committed but nothing has been flushed
+        Assert.assertTrue(servlet.committed.await(10, TimeUnit.SECONDS));
+        ajpClient.setSoTimeout(1000);
+        try {
+            ajpClient.readMessage();
+            Assert.fail("The response headers should not have been flushed");
+        } catch (SocketTimeoutException expected) {
+            // Expected
+        }
+        ajpClient.setSoTimeout(0);
+
+        // The headers, body and end are sent together at the end of the response
+        servlet.release.countDown();
+        validateCoalescedResponse(ajpClient, ajpClient.readMessage());
+
+        ajpClient.disconnect();
+    }
+
+
+    /*
+     * Validates the headers, body chunks and end messages of a response from CoalescedResponseServlet.
+     */
+    private void validateCoalescedResponse(SimpleAjpClient ajpClient, TesterAjpMessage headers) throws Exception {
+        validateResponseHeaders(headers, 200, "200");
+        int bodyLength = 0;
+        TesterAjpMessage message = ajpClient.readMessage();
+        while (message.buf[Constants.H_SIZE] == Constants.JK_AJP13_SEND_BODY_CHUNK) {
+            bodyLength += extractResponseBody(message).length();
+            message = ajpClient.readMessage();
+        }
+        Assert.assertEquals(CoalescedResponseServlet.BODY_LENGTH, bodyLength);
+        validateResponseEnd(message, true);
+    }
+
+
+    private static class CoalescedResponseServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        // Larger than the response buffer
+        private static final int BODY_LENGTH = 10000;
+
+        private final CountDownLatch committed = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            // Commit the response and write the first body chunk to the socket
+            resp.setContentType("text/plain");
+            resp.getOutputStream().write(new byte[BODY_LENGTH]);
+            committed.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ServletException(e);
+            }
+        }
+    }
+
+
+    @Test
+    public void testNonBlockingResponseFlushed() throws Exception {
+
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        NonBlockingResponseServlet servlet = new NonBlockingResponseServlet();
+        Tomcat.addServlet(ctx, "nonblocking", servlet).setAsyncSupported(true);
+        ctx.addServletMappingDecoded("/", "nonblocking");
+
+        tomcat.start();
+
+        SimpleAjpClient ajpClient = new SimpleAjpClient();
+        ajpClient.setPort(getPort());
+        ajpClient.connect();
+
+        TesterAjpMessage forwardMessage = ajpClient.createForwardMessage();
+        forwardMessage.end();
+
+        // The headers and the first body chunk are sent as soon as they are written
+        ajpClient.setSoTimeout(5000);
+        TesterAjpMessage headers = ajpClient.sendMessage(forwardMessage, null);
+        validateResponseHeaders(headers, 200, "200");
+        int bodyLength = extractResponseBody(ajpClient.readMessage()).length();
+        Assert.assertTrue(bodyLength > 0);
+
+        servlet.release.countDown();
+        TesterAjpMessage message = ajpClient.readMessage();
+        while (message.buf[Constants.H_SIZE] == Constants.JK_AJP13_SEND_BODY_CHUNK) {
+            bodyLength += extractResponseBody(message).length();
+            message = ajpClient.readMessage();
+        }
+        Assert.assertEquals(CoalescedResponseServlet.BODY_LENGTH, bodyLength);
+        validateResponseEnd(message, true);
+
+        ajpClient.disconnect();
+    }
+
+
+    private static class NonBlockingResponseServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            resp.setContentType("text/plain");
+            AsyncContext asyncContext = req.startAsync();
+            ServletOutputStream os = resp.getOutputStream();
+            os.setWriteListener(new WriteListener() {
+
+                private boolean written = false;
+
+                @Override
+                public void onWritePossible() throws IOException {
+                    if (!written) {
+                        written = true;
+                        os.write(new byte[CoalescedResponseServlet.BODY_LENGTH]);
+                        if (!os.isReady()) {
+                            return;
+                        }
+                    }
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    asyncContext.complete();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    asyncContext.complete();
+                }
+            });
+        }
+    }
+
+
     /**
      * Process response header packet and checks the status. Any other data is ignored.
      */
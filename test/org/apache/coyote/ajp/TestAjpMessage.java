@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.ajp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAjpMessage {
+
+    @Test
+    public void testAppendEncodedBytes() {
+        // Encode a status line the usual way
+        AjpMessage expected = new AjpMessage(64);
+        expected.reset();
+        expected.appendByte(Constants.JK_AJP13_SEND_HEADERS);
+        expected.appendInt(200);
+        byte[] reason = "200".getBytes(StandardCharsets.ISO_8859_1);
+        expected.appendBytes(reason, 0, reason.length);
+        expected.end();
+
+        // The same data, pre-encoded
+        byte[] encoded = new byte[] { 0x00, (byte) 0xC8, 0x00, 0x03, '2', '0', '0', 0x00 };
+        AjpMessage actual = new AjpMessage(64);
+        actual.reset();
+        actual.appendByte(Constants.JK_AJP13_SEND_HEADERS);
+        actual.appendEncodedBytes(encoded);
+        actual.end();
+
+        Assert.assertEquals(expected.getLen(), actual.getLen());
+        Assert.assertArrayEquals(Arrays.copyOf(expected.getBuffer(), expected.getLen()),
+                Arrays.copyOf(actual.getBuffer(), actual.getLen()));
+    }
+
+
+    @Test
+    public void testAppendEncodedBytesFull() {
+        AjpMessage message = new AjpMessage(16);
+        message.reset();
+        // Fill the packet after the 4 byte header
+        message.appendEncodedBytes(new byte[12]);
+        Assert.assertEquals(16, message.pos);
+    }
+
+
+    @Test
+    public void testAppendEncodedBytesOverflow() {
+        AjpMessage message = new AjpMessage(16);
+        message.reset();
+        message.appendEncodedBytes(new byte[] { 1, 2 });
+        // Too large - nothing is appended
+        message.appendEncodedBytes(new byte[11]);
+        Assert.assertEquals(6, message.pos);
+        message.end();
+        Assert.assertEquals(1, message.getBuffer()[4]);
+        Assert.assertEquals(2, message.getBuffer()[5]);
+    }
+}
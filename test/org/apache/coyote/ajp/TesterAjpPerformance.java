@@ -0,0 +1,132 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.ajp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+
+/*
+ * Throughput benchmark for the AJP connector. Each client thread acts like a
+ * mod_jk worker on loopback, sending forward requests over a single persistent
+ * connection and reading the response packets until the end message.
+ */
+public class TesterAjpPerformance extends TomcatBaseTest {
+
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 20000;
+
+
+    @Override
+    protected String getProtocol() {
+        return "org.apache.coyote.ajp.AjpNioProtocol";
+    }
+
+
+    @Test
+    public void testThroughput() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector c = tomcat.getConnector();
+        c.setProperty("secretRequired", "false");
+        c.setProperty("connectionTimeout", "-1");
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "helloWorld", new HelloWorldServlet());
+        ctx.addServletMappingDecoded("/", "helloWorld");
+
+        tomcat.start();
+
+        // Warm up
+        doRequests(THREADS, REQUESTS_PER_THREAD / 10);
+
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            doRequests(THREADS, REQUESTS_PER_THREAD);
+            long duration = System.nanoTime() - start;
+            long total = (long) THREADS * REQUESTS_PER_THREAD;
+            log.info("Completed [" + total + "] AJP requests in [" + duration / 1000000 + "] ms: [" +
+                    total * 1000000000L / duration + "] requests per second");
+        }
+    }
+
+
+    private void doRequests(int threadCount, int requestCount) throws Exception {
+        AtomicInteger errorCount = new AtomicInteger();
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new AjpClientRunnable(requestCount, errorCount));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, errorCount.get());
+    }
+
+
+    private class AjpClientRunnable implements Runnable {
+
+        private final int requestCount;
+        private final AtomicInteger errorCount;
+
+        AjpClientRunnable(int requestCount, AtomicInteger errorCount) {
+            this.requestCount = requestCount;
+            this.errorCount = errorCount;
+        }
+
+        @Override
+        public void run() {
+            SimpleAjpClient ajpClient = new SimpleAjpClient();
+            ajpClient.setPort(getPort());
+            try {
+                ajpClient.connect();
+
+                TesterAjpMessage forwardMessage = ajpClient.createForwardMessage();
+                forwardMessage.addHeader(0xA00B, "localhost");
+                forwardMessage.addHeader("User-Agent", "TesterAjpPerformance");
+                forwardMessage.end();
+
+                for (int i = 0; i < requestCount; i++) {
+                    TesterAjpMessage message = ajpClient.sendMessage(forwardMessage);
+                    // Read packets until the end response message
+                    while (message.readByte() != Constants.JK_AJP13_END_RESPONSE) {
+                        message = ajpClient.readMessage();
+                    }
+                    if (message.readByte() == 0) {
+                        // Connection not reusable
+                        errorCount.incrementAndGet();
+                        break;
+                    }
+                }
+
+                ajpClient.disconnect();
+            } catch (Exception e) {
+                log.error("AJP client failed", e);
+                errorCount.incrementAndGet();
+            }
+        }
+    }
+}
@@ -1326,6 +1326,11 @@ public class TesterContext implements Context {
     @Override
     public void setParallelAnnotationScanning(boolean parallelAnnotationScanning) {}
 
+    @Override
+    public boolean getUseAnnotationScanIndex() { return false; }
+    @Override
+    public void setUseAnnotationScanIndex(boolean useAnnotationScanIndex) {}
+
     @Override
     public boolean getMetadataComplete() { return false; }
     @Override
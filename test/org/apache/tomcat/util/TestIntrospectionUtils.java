@@ -16,6 +16,9 @@
  */
 package org.apache.tomcat.util;
 
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.junit.Assert;
@@ -156,4 +159,144 @@ public class TestIntrospectionUtils {
         properties.setProperty("replaceMe", "something ${replaceMe}");
         IntrospectionUtils.replaceProperties("${replaceMe}", properties, null, null);
     }
+
+
+    @Test
+    public void testSetProperty() throws Exception {
+        TesterBean bean = new TesterBean();
+        StringBuilder actualMethod = new StringBuilder();
+
+        Assert.assertTrue(IntrospectionUtils.setProperty(bean, "text", "abc", true, actualMethod));
+        Assert.assertEquals("abc", bean.getText());
+        Assert.assertEquals("setText(\"abc\")", actualMethod.toString());
+
+        Assert.assertTrue(IntrospectionUtils.setProperty(bean, "count", "42"));
+        Assert.assertEquals(42, bean.getCount());
+        Assert.assertTrue(IntrospectionUtils.setProperty(bean, "size", "123456789012"));
+        Assert.assertEquals(123456789012L, bean.getSize());
+        Assert.assertTrue(IntrospectionUtils.setProperty(bean, "enabled", "true"));
+        Assert.assertTrue(bean.isEnabled());
+        Assert.assertTrue(IntrospectionUtils.setProperty(bean, "address", "127.0.0.1"));
+        Assert.assertEquals(InetAddress.getByName("127.0.0.1"), bean.getAddress());
+
+        // The cached setter is reused and invalid values are still rejected
+        Assert.assertTrue(IntrospectionUtils.setProperty(bean, "count", "7"));
+        Assert.assertEquals(7, bean.getCount());
+        Assert.assertFalse(IntrospectionUtils.setProperty(bean, "count", "seven", false));
+        Assert.assertEquals(7, bean.getCount());
+
+        // The String setter is used in preference to the others
+        Assert.assertTrue(IntrospectionUtils.setProperty(bean, "level", "5"));
+        Assert.assertEquals("string:5", bean.level);
+
+        // Fall back to setProperty(String, String)
+        actualMethod.setLength(0);
+        Assert.assertTrue(IntrospectionUtils.setProperty(bean, "other", "value", true, actualMethod));
+        Assert.assertEquals("value", bean.properties.get("other"));
+        Assert.assertEquals("setProperty(\"other\", \"value\")", actualMethod.toString());
+        Assert.assertFalse(IntrospectionUtils.setProperty(bean, "rejected", "value"));
+        Assert.assertFalse(IntrospectionUtils.setProperty(bean, "unknown", "value", false));
+        Assert.assertNull(bean.properties.get("unknown"));
+
+        // Exceptions thrown by the setter are logged
+        Assert.assertFalse(IntrospectionUtils.setProperty(bean, "failure", "value"));
+    }
+
+
+    @Test
+    public void testGetProperty() {
+        TesterBean bean = new TesterBean();
+        bean.setText("abc");
+        bean.setCount(42);
+        bean.setEnabled(true);
+        bean.properties.put("other", "value");
+
+        Assert.assertEquals("abc", IntrospectionUtils.getProperty(bean, "text"));
+        Assert.assertEquals(Integer.valueOf(42), IntrospectionUtils.getProperty(bean, "count"));
+        Assert.assertEquals(Boolean.TRUE, IntrospectionUtils.getProperty(bean, "enabled"));
+        // Fall back to getProperty(String)
+        Assert.assertEquals("value", IntrospectionUtils.getProperty(bean, "other"));
+        Assert.assertNull(IntrospectionUtils.getProperty(bean, "unknown"));
+        // No getter at all
+        Assert.assertNull(IntrospectionUtils.getProperty(new Object(), "unknown"));
+
+        IntrospectionUtils.clear();
+        Assert.assertEquals(Integer.valueOf(42), IntrospectionUtils.getProperty(bean, "count"));
+    }
+
+
+    public static class TesterBean {
+
+        private String text;
+        private int count;
+        private long size;
+        private boolean enabled;
+        private InetAddress address;
+        private String level;
+        private final Map<String,String> properties = new HashMap<>();
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public InetAddress getAddress() {
+            return address;
+        }
+
+        public void setAddress(InetAddress address) {
+            this.address = address;
+        }
+
+        public void setLevel(int level) {
+            this.level = "int:" + level;
+        }
+
+        public void setLevel(String level) {
+            this.level = "string:" + level;
+        }
+
+        public void setFailure(String failure) {
+            throw new IllegalStateException();
+        }
+
+        public boolean setProperty(String name, String value) {
+            if ("rejected".equals(name)) {
+                return false;
+            }
+            properties.put(name, value);
+            return true;
+        }
+
+        public String getProperty(String name) {
+            return properties.get(name);
+        }
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.digester;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRuleMethod {
+
+    @Test
+    public void testMissingMethod() {
+        Class<?>[] paramTypes = new Class<?>[] { String.class };
+        RuleMethod method = RuleMethod.resolve(Target.class, "setMissing", paramTypes, paramTypes);
+        Assert.assertNotNull(method);
+        Assert.assertFalse(method.exists());
+        Assert.assertTrue(method.matches(Target.class, paramTypes));
+    }
+
+
+    @Test
+    public void testInvoke() throws Exception {
+        Target target = new Target();
+        RuleMethod method = resolve("setValue", long.class);
+        Assert.assertTrue(method.exists());
+        Assert.assertEquals("set", method.invoke(target, new Object[] { Long.valueOf(42) }));
+        Assert.assertEquals(42, target.value);
+    }
+
+
+    @Test
+    public void testInvokeWidening() throws Exception {
+        Target target = new Target();
+        RuleMethod method = resolve("setValue", long.class);
+        // Converted in the same way as by Method.invoke()
+        Assert.assertEquals("set", method.invoke(target, new Object[] { Integer.valueOf(7) }));
+        Assert.assertEquals(7, target.value);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvokeWrongType() throws Exception {
+        RuleMethod method = resolve("setValue", long.class);
+        method.invoke(new Target(), new Object[] { "42" });
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvokeNullPrimitive() throws Exception {
+        RuleMethod method = resolve("setValue", long.class);
+        method.invoke(new Target(), new Object[] { null });
+    }
+
+
+    @Test
+    public void testInvokeNullObject() throws Exception {
+        Target target = new Target();
+        RuleMethod method = resolve("setName", String.class);
+        Assert.assertNull(method.invoke(target, new Object[] { null }));
+        Assert.assertNull(target.name);
+    }
+
+
+    @Test
+    public void testInvokeException() throws Exception {
+        RuleMethod method = resolve("fail", String.class);
+        try {
+            method.invoke(new Target(), new Object[] { "failure" });
+            Assert.fail();
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            Assert.assertEquals("failure", e.getCause().getMessage());
+        }
+    }
+
+
+    private static RuleMethod resolve(String methodName, Class<?> paramType) {
+        Class<?>[] paramTypes = new Class<?>[] { paramType };
+        return RuleMethod.resolve(Target.class, methodName, paramTypes, paramTypes);
+    }
+
+
+    public static class Target {
+
+        private long value;
+        private String name = "initial";
+
+        public String setValue(long value) {
+            this.value = value;
+            return "set";
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.digester;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+public class TestRulesBase {
+
+    private static final String NAMESPACE = "urn:test";
+
+
+    @Test
+    public void testMatch() {
+        RulesBase rules = new RulesBase();
+        Rule exact = new TesterRule();
+        Rule tail = new TesterRule();
+        Rule longTail = new TesterRule();
+        Rule namespaced = new TesterRule();
+        namespaced.setNamespaceURI(NAMESPACE);
+        rules.add("a/b/c", exact);
+        rules.add("*/c", tail);
+        rules.add("*/b/c", longTail);
+        rules.add("*/b/c", namespaced);
+
+        assertRules(rules.match(null, "a/b/c"), exact);
+        // The most discriminant tail match
+        assertRules(rules.match(null, "x/b/c"), longTail, namespaced);
+        assertRules(rules.match(null, "b/c"), longTail, namespaced);
+        assertRules(rules.match(null, "x/y/c"), tail);
+        assertRules(rules.match(null, "c"), tail);
+        assertRules(rules.match(null, "x/bb/c"), tail);
+        assertRules(rules.match(null, "a/b"));
+        assertRules(rules.match(null, "x/c/d"));
+
+        // Rules for other namespaces are excluded
+        assertRules(rules.match(NAMESPACE, "x/b/c"), longTail, namespaced);
+        assertRules(rules.match("urn:other", "x/b/c"), longTail);
+        assertRules(rules.match("", "x/b/c"), longTail, namespaced);
+
+        // Repeated matches give the same result
+        assertRules(rules.match(null, "x/b/c"), longTail, namespaced);
+        assertRules(rules.match("urn:other", "x/b/c"), longTail);
+
+        // Adding rules discards the previous results
+        Rule added = new TesterRule();
+        rules.add("x/b/c", added);
+        assertRules(rules.match(null, "x/b/c"), added);
+        Rule addedTail = new TesterRule();
+        rules.add("*/y/c", addedTail);
+        assertRules(rules.match(null, "x/y/c"), addedTail);
+
+        rules.clear();
+        assertRules(rules.match(null, "a/b/c"));
+        assertRules(rules.match(null, "x/y/c"));
+    }
+
+
+    @Test
+    public void testParse() throws Exception {
+        Digester digester = new Digester();
+        digester.addObjectCreate("root", TesterBean.class.getName());
+        digester.addSetProperties("root");
+        digester.addObjectCreate("*/child", TesterBean.class.getName());
+        digester.addSetProperties("*/child");
+        digester.addSetNext("*/child", "addChild", TesterBean.class.getName());
+        digester.addRule("*/child/value", new CallMethodRule(0, "setValue", 0, new Class<?>[] { int.class }));
+
+        String xml = "<root name='root'><child name='a'><value>1</value>" +
+                "<child name='b'><value>2</value></child></child>" +
+                "<child name='c'><value>3</value></child></root>";
+        TesterBean root = (TesterBean) digester.parse(new InputSource(new StringReader(xml)));
+
+        Assert.assertEquals("root", root.getName());
+        Assert.assertEquals(2, root.getChildren().size());
+        TesterBean a = root.getChildren().get(0);
+        Assert.assertEquals("a", a.getName());
+        Assert.assertEquals(1, a.getValue());
+        Assert.assertEquals(1, a.getChildren().size());
+        Assert.assertEquals("b", a.getChildren().get(0).getName());
+        Assert.assertEquals(2, a.getChildren().get(0).getValue());
+        Assert.assertEquals("c", root.getChildren().get(1).getName());
+        Assert.assertEquals(3, root.getChildren().get(1).getValue());
+    }
+
+
+    private static void assertRules(List<Rule> actual, Rule... expected) {
+        Assert.assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertSame(expected[i], actual.get(i));
+        }
+    }
+
+
+    private static class TesterRule extends Rule {
+    }
+
+
+    public static class TesterBean {
+
+        private String name;
+        private int value;
+        private final List<TesterBean> children = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+
+        public List<TesterBean> getChildren() {
+            return children;
+        }
+
+        public void addChild(TesterBean child) {
+            children.add(child);
+        }
+    }
+}
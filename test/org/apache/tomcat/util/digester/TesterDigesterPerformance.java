@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.digester;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import org.apache.tomcat.util.descriptor.web.WebXml;
+import org.apache.tomcat.util.descriptor.web.WebXmlParser;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ */
+public class TesterDigesterPerformance {
+
+    private static final int ITERATIONS = 200;
+
+
+    @Test
+    public void testDefaultWebXml() throws Exception {
+        LogManager.getLogManager().getLogger("").setLevel(Level.OFF);
+        String webXml = Files.readString(new File("conf/web.xml").toPath());
+        doTestParse("conf/web.xml", webXml);
+    }
+
+
+    @Test
+    public void testLargeWebXml() throws Exception {
+        LogManager.getLogManager().getLogger("").setLevel(Level.OFF);
+        doTestParse("generated web.xml", createWebXml(1000));
+    }
+
+
+    private void doTestParse(String name, String webXml) {
+        WebXmlParser parser = new WebXmlParser(false, false, true);
+        // Warm up
+        for (int i = 0; i < ITERATIONS; i++) {
+            parse(parser, webXml);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parse(parser, webXml);
+        }
+        long duration = System.nanoTime() - start;
+        System.out.println("Parsed [" + name + "] [" + ITERATIONS + "] times in [" + duration / 1000000 +
+                "] ms, [" + duration / ITERATIONS / 1000 + "] us per parse");
+    }
+
+
+    private static void parse(WebXmlParser parser, String webXml) {
+        WebXml dest = new WebXml();
+        Assert.assertTrue(parser.parseWebXml(new InputSource(new StringReader(webXml)), dest, false));
+    }
+
+
+    private static String createWebXml(int count) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<web-app xmlns=\"https://jakarta.ee/xml/ns/jakartaee\" version=\"6.1\">\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("  <context-param>\n");
+            sb.append("    <param-name>param").append(i).append("</param-name>\n");
+            sb.append("    <param-value>value").append(i).append("</param-value>\n");
+            sb.append("  </context-param>\n");
+            sb.append("  <filter>\n");
+            sb.append("    <description>Filter ").append(i).append("</description>\n");
+            sb.append("    <filter-name>filter").append(i).append("</filter-name>\n");
+            sb.append("    <filter-class>org.apache.tomcat.Filter").append(i).append("</filter-class>\n");
+            sb.append("    <async-supported>true</async-supported>\n");
+            sb.append("    <init-param>\n");
+            sb.append("      <param-name>name</param-name>\n");
+            sb.append("      <param-value>value</param-value>\n");
+            sb.append("    </init-param>\n");
+            sb.append("  </filter>\n");
+            sb.append("  <filter-mapping>\n");
+            sb.append("    <filter-name>filter").append(i).append("</filter-name>\n");
+            sb.append("    <url-pattern>/filter").append(i).append("/*</url-pattern>\n");
+            sb.append("    <dispatcher>REQUEST</dispatcher>\n");
+            sb.append("  </filter-mapping>\n");
+            sb.append("  <servlet>\n");
+            sb.append("    <description>Servlet ").append(i).append("</description>\n");
+            sb.append("    <servlet-name>servlet").append(i).append("</servlet-name>\n");
+            sb.append("    <servlet-class>org.apache.tomcat.Servlet").append(i).append("</servlet-class>\n");
+            sb.append("    <init-param>\n");
+            sb.append("      <param-name>name</param-name>\n");
+            sb.append("      <param-value>value</param-value>\n");
+            sb.append("    </init-param>\n");
+            sb.append("    <load-on-startup>").append(i % 10).append("</load-on-startup>\n");
+            sb.append("    <security-role-ref>\n");
+            sb.append("      <role-name>role</role-name>\n");
+            sb.append("      <role-link>admin</role-link>\n");
+            sb.append("    </security-role-ref>\n");
+            sb.append("  </servlet>\n");
+            sb.append("  <servlet-mapping>\n");
+            sb.append("    <servlet-name>servlet").append(i).append("</servlet-name>\n");
+            sb.append("    <url-pattern>/servlet").append(i).append("</url-pattern>\n");
+            sb.append("  </servlet-mapping>\n");
+            sb.append("  <env-entry>\n");
+            sb.append("    <env-entry-name>entry").append(i).append("</env-entry-name>\n");
+            sb.append("    <env-entry-type>java.lang.String</env-entry-type>\n");
+            sb.append("    <env-entry-value>value").append(i).append("</env-entry-value>\n");
+            sb.append("  </env-entry>\n");
+        }
+        sb.append("  <security-role>\n");
+        sb.append("    <role-name>admin</role-name>\n");
+        sb.append("  </security-role>\n");
+        sb.append("</web-app>\n");
+        return sb.toString();
+    }
+}
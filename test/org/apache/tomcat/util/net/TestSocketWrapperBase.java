@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.tomcat.util.net.SocketWrapperBase.BlockingMode;
+import org.apache.tomcat.util.net.SocketWrapperBase.CompletionState;
+
+public class TestSocketWrapperBase {
+
+    @Test
+    public void testAwaitCompletionZeroTimeout() throws Exception {
+        doTestAwaitCompletionNoTimeout(0);
+    }
+
+
+    @Test
+    public void testAwaitCompletionNegativeTimeout() throws Exception {
+        doTestAwaitCompletionNoTimeout(-1);
+    }
+
+
+    @Test
+    public void testAwaitCompletionTimeout() throws Exception {
+        SocketWrapperBase<NioChannel>.OperationState<Void> state = createOperationState();
+        Assert.assertFalse(state.awaitCompletion(100, TimeUnit.MILLISECONDS));
+        state.signalCompletion(CompletionState.DONE);
+        Assert.assertTrue(state.awaitCompletion(100, TimeUnit.MILLISECONDS));
+    }
+
+
+    private void doTestAwaitCompletionNoTimeout(long timeout) throws Exception {
+        SocketWrapperBase<NioChannel>.OperationState<Void> state = createOperationState();
+        AtomicBoolean completed = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                completed.set(state.awaitCompletion(timeout, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                // Leave completed false
+            }
+        });
+        waiter.start();
+        waiter.join(500);
+        // A timeout of zero or less means no timeout
+        Assert.assertTrue(waiter.isAlive());
+
+        state.signalCompletion(CompletionState.DONE);
+        waiter.join(5000);
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertTrue(completed.get());
+    }
+
+
+    private static SocketWrapperBase<NioChannel>.OperationState<Void> createOperationState() {
+        NioEndpoint endpoint = new NioEndpoint();
+        NioEndpoint.NioSocketWrapper wrapper =
+                new NioEndpoint.NioSocketWrapper(new NioChannel(SocketBufferHandler.EMPTY), endpoint);
+        return wrapper.newOperationState(false, new ByteBuffer[0], 0, 0, BlockingMode.BLOCK, 0,
+                TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE, null, null, null);
+    }
+}
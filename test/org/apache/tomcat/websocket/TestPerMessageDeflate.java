@@ -150,6 +150,164 @@ public class TestPerMessageDeflate {
         Assert.assertEquals(mp2, compressedParts.get(1));
     }
 
+    @Test
+    public void testCodecPoolNoContextTakeover() throws IOException {
+        List<Parameter> parameters = new ArrayList<>();
+        parameters.add(new WsExtensionParameter("server_no_context_takeover", null));
+        parameters.add(new WsExtensionParameter("client_no_context_takeover", null));
+        List<List<Parameter>> preferences = new ArrayList<>();
+        preferences.add(parameters);
+
+        WsWebSocketContainer container = new WsWebSocketContainer();
+        PerMessageDeflateCodecPool pool = container.getPerMessageDeflateCodecPool();
+
+        PerMessageDeflate perMessageDeflateTx = PerMessageDeflate.negotiate(preferences, true, container);
+        perMessageDeflateTx.setNext(new TesterTransformation());
+
+        // No codecs are created until a message is compressed
+        Assert.assertEquals(0, pool.getDeflaterCount());
+
+        MessagePart compressedPart = null;
+        for (int i = 0; i < 3; i++) {
+            compressedPart = compress(perMessageDeflateTx, "Message " + i);
+            // The deflater is returned to the pool at the end of each message
+            Assert.assertEquals(1, pool.getDeflaterCount());
+            Assert.assertEquals(1, pool.getIdleDeflaterCount());
+        }
+
+        PerMessageDeflate perMessageDeflateRx = PerMessageDeflate.negotiate(preferences, true, container);
+        perMessageDeflateRx.setNext(new TesterTransformation(compressedPart.getPayload()));
+        Assert.assertEquals("Message 2", decompress(perMessageDeflateRx, compressedPart));
+        Assert.assertEquals(1, pool.getInflaterCount());
+        Assert.assertEquals(1, pool.getIdleInflaterCount());
+
+        Assert.assertEquals(PerMessageDeflateCodecPool.DEFLATER_NATIVE_MEMORY +
+                PerMessageDeflateCodecPool.INFLATER_NATIVE_MEMORY, pool.getNativeMemoryInUse());
+
+        perMessageDeflateTx.close();
+        perMessageDeflateRx.close();
+
+        container.destroy();
+        Assert.assertEquals(0, pool.getDeflaterCount());
+        Assert.assertEquals(0, pool.getInflaterCount());
+        Assert.assertEquals(0, pool.getNativeMemoryInUse());
+    }
+
+
+    @Test
+    public void testCodecPoolContextTakeover() throws IOException {
+        List<Parameter> parameters = Collections.emptyList();
+        List<List<Parameter>> preferences = new ArrayList<>();
+        preferences.add(parameters);
+
+        WsWebSocketContainer container = new WsWebSocketContainer();
+        PerMessageDeflateCodecPool pool = container.getPerMessageDeflateCodecPool();
+
+        PerMessageDeflate perMessageDeflateTx = PerMessageDeflate.negotiate(preferences, true, container);
+        perMessageDeflateTx.setNext(new TesterTransformation());
+
+        compress(perMessageDeflateTx, "Message");
+        // The deflater is retained for the life of the session
+        Assert.assertEquals(1, pool.getDeflaterCount());
+        Assert.assertEquals(0, pool.getIdleDeflaterCount());
+
+        perMessageDeflateTx.close();
+        Assert.assertEquals(0, pool.getDeflaterCount());
+        Assert.assertEquals(0, pool.getIdleDeflaterCount());
+
+        container.destroy();
+    }
+
+
+    @Test
+    public void testServerMaxWindowBitsDefault() {
+        List<Parameter> parameters = new ArrayList<>();
+        parameters.add(new WsExtensionParameter("server_max_window_bits", "10"));
+        List<List<Parameter>> preferences = new ArrayList<>();
+        preferences.add(parameters);
+
+        WsWebSocketContainer container = new WsWebSocketContainer();
+
+        // The server can't limit the window by default
+        Assert.assertNull(PerMessageDeflate.negotiate(preferences, true, container));
+    }
+
+
+    @Test
+    public void testServerMaxWindowBitsConfigured() throws IOException {
+        List<Parameter> parameters = new ArrayList<>();
+        parameters.add(new WsExtensionParameter("server_max_window_bits", "12"));
+        List<List<Parameter>> preferences = new ArrayList<>();
+        preferences.add(parameters);
+
+        WsWebSocketContainer container = new WsWebSocketContainer();
+        container.setPerMessageDeflateServerMaxWindowBits(10);
+
+        PerMessageDeflate perMessageDeflateTx = PerMessageDeflate.negotiate(preferences, true, container);
+        Assert.assertNotNull(perMessageDeflateTx);
+        perMessageDeflateTx.setNext(new TesterTransformation());
+
+        List<Parameter> response = perMessageDeflateTx.getExtensionResponse().getParameters();
+        Assert.assertEquals(1, response.size());
+        Assert.assertEquals("server_max_window_bits", response.get(0).getName());
+        Assert.assertEquals("10", response.get(0).getValue());
+
+        // Check messages compressed without back references can be read
+        String msg = "Repeated content, Repeated content, Repeated content";
+        MessagePart compressedPart = compress(perMessageDeflateTx, msg);
+
+        PerMessageDeflate perMessageDeflateRx = PerMessageDeflate.negotiate(preferences, false, container);
+        perMessageDeflateRx.setNext(new TesterTransformation(compressedPart.getPayload()));
+        Assert.assertEquals(msg, decompress(perMessageDeflateRx, compressedPart));
+
+        perMessageDeflateTx.close();
+        perMessageDeflateRx.close();
+        container.destroy();
+    }
+
+
+    @Test
+    public void testServerMaxWindowBitsNotOffered() {
+        List<Parameter> parameters = Collections.emptyList();
+        List<List<Parameter>> preferences = new ArrayList<>();
+        preferences.add(parameters);
+
+        WsWebSocketContainer container = new WsWebSocketContainer();
+        container.setPerMessageDeflateServerMaxWindowBits(9);
+
+        PerMessageDeflate perMessageDeflate = PerMessageDeflate.negotiate(preferences, true, container);
+
+        // The server may limit the window even if the client did not offer to
+        List<Parameter> response = perMessageDeflate.getExtensionResponse().getParameters();
+        Assert.assertEquals(1, response.size());
+        Assert.assertEquals("server_max_window_bits", response.get(0).getName());
+        Assert.assertEquals("9", response.get(0).getValue());
+    }
+
+
+    private static MessagePart compress(PerMessageDeflate perMessageDeflate, String msg) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8));
+        MessagePart mp = new MessagePart(true, 0, Constants.OPCODE_TEXT, bb, null, null, -1);
+
+        List<MessagePart> uncompressedParts = new ArrayList<>();
+        uncompressedParts.add(mp);
+        List<MessagePart> compressedParts = perMessageDeflate.sendMessagePart(uncompressedParts);
+        Assert.assertEquals(1, compressedParts.size());
+        return compressedParts.get(0);
+    }
+
+
+    private static String decompress(PerMessageDeflate perMessageDeflate, MessagePart compressedPart)
+            throws IOException {
+        ByteBuffer received = ByteBuffer.allocate(8192);
+        TransformationResult tr = perMessageDeflate.getMoreData(compressedPart.getOpCode(), compressedPart.isFin(),
+                compressedPart.getRsv(), received);
+        Assert.assertEquals(TransformationResult.END_OF_FRAME, tr);
+        received.flip();
+        return StandardCharsets.UTF_8.decode(received).toString();
+    }
+
+
     /*
      * Minimal implementation to enable other transformations to be tested. It is NOT robust.
      */
@@ -16,8 +16,15 @@
  */
 package org.apache.tomcat.websocket;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import jakarta.websocket.EncodeException;
 import jakarta.websocket.Encoder;
@@ -442,4 +449,64 @@ public class TestUtil {
     public void testParseExtensionHeaderInvalid02() {
         Util.parseExtensionHeader(new ArrayList<>(), "ext;a=1\";b=2");
     }
+
+    @Test
+    public void testUtf8LengthValid() {
+        doTestUtf8Length("");
+        doTestUtf8Length("ASCII only {\"key\":\"value\"}");
+        doTestUtf8Length("\u00e9\u00e8 two byte");
+        doTestUtf8Length("\u20ac\ud7ff\ue000\uffff three byte");
+        doTestUtf8Length("\ud800\udc00\udbff\udfff four byte");
+    }
+
+    private void doTestUtf8Length(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(s.length(), Util.utf8Length(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testUtf8LengthInvalid() {
+        // Continuation byte without a lead byte
+        doTestUtf8LengthInvalid(0x80);
+        // Overlong encodings
+        doTestUtf8LengthInvalid(0xC0, 0xAF);
+        doTestUtf8LengthInvalid(0xE0, 0x80, 0xAF);
+        doTestUtf8LengthInvalid(0xF0, 0x80, 0x80, 0xAF);
+        // Surrogate
+        doTestUtf8LengthInvalid(0xED, 0xA0, 0x80);
+        // Above U+10FFFF
+        doTestUtf8LengthInvalid(0xF4, 0x90, 0x80, 0x80);
+        doTestUtf8LengthInvalid(0xF5, 0x80, 0x80, 0x80);
+        // Truncated
+        doTestUtf8LengthInvalid(0xE2, 0x82);
+        doTestUtf8LengthInvalid(0x41, 0xF0, 0x9F, 0x98);
+    }
+
+    private void doTestUtf8LengthInvalid(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        Assert.assertEquals(-1, Util.utf8Length(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testUtf8LengthRandom() {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        Random random = new Random(1);
+        byte[] bytes = new byte[8];
+        for (int i = 0; i < 200000; i++) {
+            random.nextBytes(bytes);
+            int len = random.nextInt(bytes.length + 1);
+            int expected;
+            try {
+                CharBuffer cb = decoder.reset().decode(ByteBuffer.wrap(bytes, 0, len));
+                expected = cb.remaining();
+            } catch (CharacterCodingException e) {
+                expected = -1;
+            }
+            Assert.assertEquals(expected, Util.utf8Length(bytes, 0, len));
+        }
+    }
 }
@@ -0,0 +1,321 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.Extension;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicBinary;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicHandler;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicText;
+import org.apache.tomcat.websocket.TesterMessageCountClient.TesterProgrammaticEndpoint;
+import org.apache.tomcat.websocket.server.TesterEndpointConfig;
+import org.apache.tomcat.websocket.server.WsServerContainer;
+
+public class TestWsBroadcastMessage extends WebSocketBaseTest {
+
+    private static final String MESSAGE = "Broadcast message that is long enough to be worth compressing. " +
+            "Broadcast message that is long enough to be worth compressing.";
+
+    private static final Queue<Session> serverSessions = new ConcurrentLinkedQueue<>();
+    private static final Queue<String> serverMessages = new ConcurrentLinkedQueue<>();
+    private static volatile Thread serverOnCloseThread;
+
+
+    @Test
+    public void testBroadcastText() throws Exception {
+        doTestBroadcast(null, false);
+    }
+
+
+    @Test
+    public void testBroadcastBinary() throws Exception {
+        doTestBroadcast(null, true);
+    }
+
+
+    @Test
+    public void testBroadcastTextPerMessageDeflate() throws Exception {
+        doTestBroadcast(Boolean.FALSE, false);
+    }
+
+
+    @Test
+    public void testBroadcastTextPerMessageDeflateNoContextTakeover() throws Exception {
+        doTestBroadcast(Boolean.TRUE, false);
+    }
+
+
+    @Test
+    public void testBroadcastBinaryPerMessageDeflateNoContextTakeover() throws Exception {
+        doTestBroadcast(Boolean.TRUE, true);
+    }
+
+
+    /*
+     * deflate: null for no permessage-deflate, otherwise whether to request server_no_context_takeover
+     */
+    private void doTestBroadcast(Boolean deflate, boolean binary) throws Exception {
+        serverSessions.clear();
+
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        List<Extension> extensions = new ArrayList<>(1);
+        if (deflate != null) {
+            WsExtension perMessageDeflate = new WsExtension(PerMessageDeflate.NAME);
+            if (deflate.booleanValue()) {
+                perMessageDeflate.addParameter(new WsExtensionParameter("server_no_context_takeover", null));
+            }
+            extensions.add(perMessageDeflate);
+        }
+        ClientEndpointConfig clientConfig = ClientEndpointConfig.Builder.create().extensions(extensions).build();
+
+        int clientCount = 3;
+        int messageCount = 5;
+        CountDownLatch latch = new CountDownLatch(clientCount * messageCount);
+        List<BasicHandler<?>> handlers = new ArrayList<>();
+
+        WebSocketContainer wsContainer = ContainerProvider.getWebSocketContainer();
+        URI uri = new URI("ws://localhost:" + getPort() + Config.PATH);
+        for (int i = 0; i < clientCount; i++) {
+            Session wsSession = wsContainer.connectToServer(TesterProgrammaticEndpoint.class, clientConfig, uri);
+            BasicHandler<?> handler;
+            if (binary) {
+                handler = new BasicBinary(latch);
+            } else {
+                handler = new BasicText(latch);
+            }
+            wsSession.addMessageHandler(handler);
+            handlers.add(handler);
+        }
+
+        // Wait for the server side of each connection to open
+        int count = 0;
+        while (serverSessions.size() < clientCount && count < 50) {
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertEquals(clientCount, serverSessions.size());
+
+        WsServerContainer sc = (WsServerContainer) serverSessions.peek().getContainer();
+        for (int i = 0; i < messageCount; i++) {
+            // Wait for the previous broadcast to complete so no session is skipped
+            CountDownLatch sent = new CountDownLatch(clientCount);
+            SendHandler sendHandler = result -> {
+                if (result.isOK()) {
+                    sent.countDown();
+                }
+            };
+            int started;
+            if (binary) {
+                started = sc.broadcast(serverSessions, ByteBuffer.wrap(MESSAGE.getBytes()), sendHandler);
+            } else {
+                started = sc.broadcast(serverSessions, MESSAGE, sendHandler);
+            }
+            Assert.assertEquals(clientCount, started);
+            Assert.assertTrue(sent.await(10, TimeUnit.SECONDS));
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        for (BasicHandler<?> handler : handlers) {
+            Assert.assertEquals(messageCount, handler.getMessages().size());
+            for (Object message : handler.getMessages()) {
+                if (binary) {
+                    ByteBuffer bb = (ByteBuffer) message;
+                    byte[] bytes = new byte[bb.remaining()];
+                    bb.get(bytes);
+                    Assert.assertEquals(MESSAGE, new String(bytes));
+                } else {
+                    Assert.assertEquals(MESSAGE, message);
+                }
+            }
+        }
+
+        ((WsWebSocketContainer) wsContainer).destroy();
+    }
+
+
+    @Test
+    public void testSlowSessionSkipped() throws Exception {
+        serverSessions.clear();
+        serverOnCloseThread = null;
+
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        WebSocketContainer wsContainer = ContainerProvider.getWebSocketContainer();
+        URI uri = new URI("ws://localhost:" + getPort() + Config.PATH);
+        Session wsSession = wsContainer.connectToServer(TesterProgrammaticEndpoint.class,
+                ClientEndpointConfig.Builder.create().build(), uri);
+
+        int count = 0;
+        while (serverSessions.size() < 1 && count < 50) {
+            Thread.sleep(100);
+            count++;
+        }
+        Session serverSession = serverSessions.peek();
+        Assert.assertNotNull(serverSession);
+
+        // Simulate a session that is still sending a previous message
+        WsRemoteEndpointImplBase endpoint = ((WsSession) serverSession).getWsRemoteEndpoint();
+        serverSession.getBasicRemote().getSendWriter();
+
+        WsBroadcastMessage message = WsBroadcastMessage.text(MESSAGE);
+        Assert.assertFalse(message.send(serverSession, 1, null));
+        Assert.assertEquals(1, endpoint.getBroadcastSkipCount());
+        Assert.assertTrue(serverSession.isOpen());
+
+        Assert.assertFalse(message.send(serverSession, 1, null));
+        Assert.assertEquals(2, endpoint.getBroadcastSkipCount());
+
+        // The session is closed by a container thread
+        count = 0;
+        while (serverOnCloseThread == null && count < 50) {
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertNotNull(serverOnCloseThread);
+        Assert.assertNotSame(Thread.currentThread(), serverOnCloseThread);
+        Assert.assertFalse(serverSession.isOpen());
+
+        wsSession.close();
+        ((WsWebSocketContainer) wsContainer).destroy();
+    }
+
+
+    @Test
+    public void testSlowUnsharedSessionSkipped() throws Exception {
+        serverSessions.clear();
+        serverMessages.clear();
+
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        WebSocketContainer wsContainer = ContainerProvider.getWebSocketContainer();
+        URI uri = new URI("ws://localhost:" + getPort() + Config.PATH);
+        // Client sessions mask each frame so they use the unshared send
+        List<Session> clientSessions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            clientSessions.add(wsContainer.connectToServer(TesterProgrammaticEndpoint.class,
+                    ClientEndpointConfig.Builder.create().build(), uri));
+        }
+
+        int count = 0;
+        while (serverSessions.size() < 2 && count < 50) {
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertEquals(2, serverSessions.size());
+        WsServerContainer sc = (WsServerContainer) serverSessions.peek().getContainer();
+
+        // Simulate a session that is still sending a previous message
+        Session busy = clientSessions.get(0);
+        busy.getBasicRemote().getSendWriter();
+
+        Queue<SendResult> results = new ConcurrentLinkedQueue<>();
+        Assert.assertEquals(1, sc.broadcast(clientSessions, MESSAGE, results::add));
+        Assert.assertEquals(1, ((WsSession) busy).getWsRemoteEndpoint().getBroadcastSkipCount());
+
+        // The session after the busy session still receives the message
+        count = 0;
+        while (serverMessages.isEmpty() && count < 50) {
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertEquals(MESSAGE, serverMessages.poll());
+        Assert.assertEquals(2, results.size());
+        int failed = 0;
+        for (SendResult result : results) {
+            if (!result.isOK()) {
+                failed++;
+            }
+        }
+        Assert.assertEquals(1, failed);
+
+        ((WsWebSocketContainer) wsContainer).destroy();
+    }
+
+
+    public static class BroadcastEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(String.class, serverMessages::add);
+            serverSessions.add(session);
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            serverOnCloseThread = Thread.currentThread();
+        }
+    }
+
+
+    public static class Config extends TesterEndpointConfig {
+
+        public static final String PATH = "/broadcast";
+
+        @Override
+        protected ServerEndpointConfig getServerEndpointConfig() {
+            return ServerEndpointConfig.Builder.create(BroadcastEndpoint.class, PATH).build();
+        }
+    }
+}
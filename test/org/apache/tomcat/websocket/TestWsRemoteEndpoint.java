@@ -25,6 +25,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import jakarta.websocket.ClientEndpointConfig.Builder;
 import jakarta.websocket.ContainerProvider;
@@ -41,6 +43,7 @@ import org.apache.catalina.startup.Tomcat;
 import org.apache.tomcat.websocket.TesterMessageCountClient.AsyncBinary;
 import org.apache.tomcat.websocket.TesterMessageCountClient.AsyncHandler;
 import org.apache.tomcat.websocket.TesterMessageCountClient.AsyncText;
+import org.apache.tomcat.websocket.TesterMessageCountClient.BasicText;
 import org.apache.tomcat.websocket.TesterMessageCountClient.TesterAnnotatedEndpoint;
 import org.apache.tomcat.websocket.TesterMessageCountClient.TesterEndpoint;
 import org.apache.tomcat.websocket.TesterMessageCountClient.TesterProgrammaticEndpoint;
@@ -244,4 +247,120 @@ public class TestWsRemoteEndpoint extends WebSocketBaseTest {
         Assert.assertEquals(1, messages.size());
         Assert.assertEquals(TesterEchoServer.WriterError.RESULT_PASS, messages.get(0));
     }
+
+
+    @Test
+    public void testBlockingSendQueue() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(TesterEchoServer.Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        WebSocketContainer wsContainer = ContainerProvider.getWebSocketContainer();
+
+        tomcat.start();
+
+        URI uri = new URI("ws://localhost:" + getPort() + TesterEchoServer.Config.PATH_BASIC);
+        Session wsSession =
+                wsContainer.connectToServer(TesterProgrammaticEndpoint.class, Builder.create().build(), uri);
+
+        int threadCount = 20;
+        int messagesPerThread = 50;
+        wsSession.getUserProperties().put(Constants.BLOCKING_SEND_QUEUE_SIZE_PROPERTY, Integer.valueOf(threadCount));
+
+        CountDownLatch latch = new CountDownLatch(threadCount * messagesPerThread);
+        BasicText handler = new BasicText(latch);
+        wsSession.addMessageHandler(handler);
+
+        // Without the queue, concurrent sends would trigger IllegalStateExceptions
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < messagesPerThread; j++) {
+                    try {
+                        wsSession.getBasicRemote().sendText(SEQUENCE);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(0, errors.get());
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (String message : handler.getMessages()) {
+            Assert.assertEquals(SEQUENCE, message);
+        }
+
+        wsSession.close();
+    }
+
+    @Test
+    public void testBlockingSendQueueFull() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(TesterEchoServer.Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        WebSocketContainer wsContainer = ContainerProvider.getWebSocketContainer();
+
+        tomcat.start();
+
+        URI uri = new URI("ws://localhost:" + getPort() + TesterEchoServer.Config.PATH_BASIC);
+        Session wsSession =
+                wsContainer.connectToServer(TesterProgrammaticEndpoint.class, Builder.create().build(), uri);
+        wsSession.getUserProperties().put(Constants.BLOCKING_SEND_QUEUE_SIZE_PROPERTY, Integer.valueOf(1));
+
+        CountDownLatch latch = new CountDownLatch(2);
+        BasicText handler = new BasicText(latch);
+        wsSession.addMessageHandler(handler);
+
+        // Occupy the endpoint so the next sender has to wait
+        Writer w = wsSession.getBasicRemote().getSendWriter();
+        w.write(SEQUENCE);
+
+        AtomicReference<Exception> queuedError = new AtomicReference<>();
+        Thread queued = new Thread(() -> {
+            try {
+                wsSession.getBasicRemote().sendText(SEQUENCE);
+            } catch (Exception e) {
+                queuedError.set(e);
+            }
+        });
+        queued.start();
+
+        // Wait for the thread to join the queue
+        int count = 0;
+        while (queued.getState() != Thread.State.TIMED_WAITING && count < 100) {
+            Thread.sleep(50);
+            count++;
+        }
+        Assert.assertEquals(Thread.State.TIMED_WAITING, queued.getState());
+
+        // The queue is full
+        try {
+            wsSession.getBasicRemote().sendText(SEQUENCE);
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+
+        // Completing the current message releases the queued sender
+        w.close();
+        queued.join(10000);
+        Assert.assertFalse(queued.isAlive());
+        Assert.assertNull(queuedError.get());
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        wsSession.close();
+    }
 }
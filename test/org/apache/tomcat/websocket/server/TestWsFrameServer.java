@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.websocket.server;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.WebSocketBaseTest;
+
+/*
+ * Functional tests for the reading of text and binary frames by the server. Frames are written directly to the socket
+ * so the tests control exactly where messages are split into frames and where frames are split across reads.
+ */
+public class TestWsFrameServer extends WebSocketBaseTest {
+
+    // Two, three and four byte UTF-8 sequences
+    private static final String MESSAGE_UTF8 = "{\"symbol\":\"ÅSF€\",\"emoji\":\"😀\",\"end\":\"ü\"}";
+    private static final byte[] MASK = new byte[] { 0x12, 0x34, 0x56, 0x78 };
+
+    private static final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+
+
+    @Test
+    public void testUtf8SplitAcrossFrames() throws Exception {
+        TesterWsClient client = connect("/text");
+
+        byte[] payload = MESSAGE_UTF8.getBytes(StandardCharsets.UTF_8);
+        // Split the message into two frames at every possible position
+        for (int i = 1; i < payload.length; i++) {
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            frames.write(createFrame(false, 1, payload, 0, i));
+            frames.write(createFrame(true, 0, payload, i, payload.length - i));
+            client.write(frames.toByteArray());
+            Assert.assertEquals("Split at [" + i + "]", MESSAGE_UTF8, results.poll(10, TimeUnit.SECONDS));
+        }
+
+        // One byte per frame
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < payload.length; i++) {
+            frames.write(createFrame(i == payload.length - 1, i == 0 ? 1 : 0, payload, i, 1));
+        }
+        client.write(frames.toByteArray());
+        Assert.assertEquals(MESSAGE_UTF8, results.poll(10, TimeUnit.SECONDS));
+
+        client.closeSocket();
+    }
+
+
+    @Test
+    public void testUtf8SplitAcrossReads() throws Exception {
+        TesterWsClient client = connect("/text");
+
+        byte[] payload = MESSAGE_UTF8.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = createFrame(true, 1, payload, 0, payload.length);
+        // Split the single frame across two writes at every position in the
+        // payload so the server has to handle partial multi-byte sequences at
+        // the end of the input buffer
+        for (int i = 6; i < frame.length; i++) {
+            writeSplit(client, frame, i);
+            Assert.assertEquals("Split at [" + i + "]", MESSAGE_UTF8, results.poll(10, TimeUnit.SECONDS));
+        }
+
+        client.closeSocket();
+    }
+
+
+    @Test
+    public void testBinaryWhole() throws Exception {
+        doTestBinaryWhole("/binary", false);
+    }
+
+
+    @Test
+    public void testBinaryWholeZeroCopy() throws Exception {
+        doTestBinaryWhole("/binaryZeroCopy", true);
+    }
+
+
+    private void doTestBinaryWhole(String path, boolean expectView) throws Exception {
+        TesterWsClient client = connect(path);
+
+        byte[] payload = createBinaryPayload(1000);
+
+        // Single frame
+        client.write(createFrame(true, 2, payload, 0, payload.length));
+        BinaryResult result = (BinaryResult) results.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(payload, result.data);
+        Assert.assertEquals(Boolean.valueOf(expectView), Boolean.valueOf(result.view));
+
+        // Message split across frames is always copied to the message buffer
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        frames.write(createFrame(false, 2, payload, 0, 333));
+        frames.write(createFrame(true, 0, payload, 333, payload.length - 333));
+        client.write(frames.toByteArray());
+        result = (BinaryResult) results.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(payload, result.data);
+        Assert.assertFalse(result.view);
+
+        // Single frame split across reads is always copied to the message
+        // buffer
+        writeSplit(client, createFrame(true, 2, payload, 0, payload.length), 500);
+        result = (BinaryResult) results.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(payload, result.data);
+        Assert.assertFalse(result.view);
+
+        client.closeSocket();
+    }
+
+
+    @Test
+    public void testBinaryPartial() throws Exception {
+        doTestBinaryPartial("/binaryPartial", false);
+    }
+
+
+    @Test
+    public void testBinaryPartialZeroCopy() throws Exception {
+        doTestBinaryPartial("/binaryPartialZeroCopy", true);
+    }
+
+
+    private void doTestBinaryPartial(String path, boolean expectView) throws Exception {
+        TesterWsClient client = connect(path);
+
+        byte[] payload = createBinaryPayload(1000);
+
+        // Two frames with the second frame split across reads
+        client.write(createFrame(false, 2, payload, 0, 333));
+        writeSplit(client, createFrame(true, 0, payload, 333, payload.length - 333), 300);
+        BinaryResult result = (BinaryResult) results.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(payload, result.data);
+        Assert.assertEquals(Boolean.valueOf(expectView), Boolean.valueOf(result.view));
+
+        client.closeSocket();
+    }
+
+
+    private TesterWsClient connect(String path) throws Exception {
+        results.clear();
+
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        TesterWsClient client = new TesterWsClient("localhost", getPort());
+        client.httpUpgrade(path);
+        return client;
+    }
+
+
+    private static void writeSplit(TesterWsClient client, byte[] bytes, int split) throws Exception {
+        byte[] first = new byte[split];
+        byte[] second = new byte[bytes.length - split];
+        System.arraycopy(bytes, 0, first, 0, split);
+        System.arraycopy(bytes, split, second, 0, second.length);
+        client.write(first);
+        // Give the server a chance to process the first part on its own
+        Thread.sleep(20);
+        client.write(second);
+    }
+
+
+    private static byte[] createBinaryPayload(int length) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) (i * 31);
+        }
+        return result;
+    }
+
+
+    private static byte[] createFrame(boolean fin, int opCode, byte[] payload, int offset, int len) {
+        int headerLength = len < 126 ? 6 : 8;
+        byte[] frame = new byte[headerLength + len];
+        frame[0] = (byte) (opCode | (fin ? 0x80 : 0));
+        if (len < 126) {
+            frame[1] = (byte) (0x80 | len);
+        } else {
+            Assert.assertTrue(len < 65536);
+            frame[1] = (byte) (0x80 | 126);
+            frame[2] = (byte) (len >> 8);
+            frame[3] = (byte) len;
+        }
+        System.arraycopy(MASK, 0, frame, headerLength - 4, 4);
+        for (int i = 0; i < len; i++) {
+            frame[headerLength + i] = (byte) (payload[offset + i] ^ MASK[i % 4]);
+        }
+        return frame;
+    }
+
+
+    private static class BinaryResult {
+        private final byte[] data;
+        private final boolean view;
+
+        BinaryResult(byte[] data, boolean view) {
+            this.data = data;
+            this.view = view;
+        }
+    }
+
+
+    /*
+     * A copied message owns its backing array whereas a zero copy message is a view of the larger socket input buffer.
+     */
+    private static boolean isView(ByteBuffer message) {
+        return message.hasArray() && message.array().length > message.remaining();
+    }
+
+
+    public static class TextEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(String.class, new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    results.add(message);
+                }
+            });
+        }
+    }
+
+
+    public static class BinaryEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(ByteBuffer.class, new MessageHandler.Whole<ByteBuffer>() {
+                @Override
+                public void onMessage(ByteBuffer message) {
+                    boolean view = isView(message);
+                    // Views are only valid until this method returns
+                    byte[] data = new byte[message.remaining()];
+                    message.get(data);
+                    results.add(new BinaryResult(data, view));
+                }
+            });
+        }
+    }
+
+
+    public static class BinaryPartialEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(ByteBuffer.class, new MessageHandler.Partial<ByteBuffer>() {
+
+                private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+                private boolean view = false;
+
+                @Override
+                public void onMessage(ByteBuffer message, boolean last) {
+                    view |= isView(message);
+                    // Views are only valid until this method returns
+                    byte[] part = new byte[message.remaining()];
+                    message.get(part);
+                    data.writeBytes(part);
+                    if (last) {
+                        results.add(new BinaryResult(data.toByteArray(), view));
+                        data.reset();
+                        view = false;
+                    }
+                }
+            });
+        }
+    }
+
+
+    public static class Config extends WsContextListener {
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            super.contextInitialized(sce);
+            WsServerContainer sc = (WsServerContainer) sce.getServletContext()
+                    .getAttribute(Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+            try {
+                sc.addEndpoint(ServerEndpointConfig.Builder.create(TextEndpoint.class, "/text").build());
+                addBinaryEndpoint(sc, BinaryEndpoint.class, "/binary", false);
+                addBinaryEndpoint(sc, BinaryEndpoint.class, "/binaryZeroCopy", true);
+                addBinaryEndpoint(sc, BinaryPartialEndpoint.class, "/binaryPartial", false);
+                addBinaryEndpoint(sc, BinaryPartialEndpoint.class, "/binaryPartialZeroCopy", true);
+            } catch (DeploymentException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private static void addBinaryEndpoint(WsServerContainer sc, Class<? extends Endpoint> clazz, String path,
+                boolean zeroCopy) throws DeploymentException {
+            ServerEndpointConfig sec = ServerEndpointConfig.Builder.create(clazz, path).build();
+            if (zeroCopy) {
+                sec.getUserProperties().put(org.apache.tomcat.websocket.Constants.BINARY_ZERO_COPY_PROPERTY,
+                        Boolean.TRUE);
+            }
+            sc.addEndpoint(sec);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.websocket.server;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.compat.JreCompat;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.apache.tomcat.websocket.WebSocketBaseTest;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestWsRemoteEndpointImplServer extends WebSocketBaseTest {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int SENDERS = 16;
+    private static final int MESSAGE_SIZE = 1024 * 1024;
+    // Server frames are not masked and use an eight byte extended length
+    private static final int FRAME_SIZE = MESSAGE_SIZE + 10;
+
+    private static volatile CountDownLatch sendersStarted;
+    private static volatile CountDownLatch sendersDone;
+    private static final AtomicInteger errors = new AtomicInteger();
+
+
+    /*
+     * Several virtual threads make blocking sends of large messages to a client that is not reading. One sender blocks
+     * waiting for the socket write to complete and the others wait in the session's blocking send queue. None of those
+     * waits may pin the carrier thread.
+     */
+    @Test
+    public void testBlockingSendVirtualThreadNotPinned() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        sendersStarted = new CountDownLatch(SENDERS);
+        sendersDone = new CountDownLatch(SENDERS);
+        errors.set(0);
+
+        File jfrFile = new File(getTemporaryDirectory(), "pinned.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            TesterWsClient client = new TesterWsClient("localhost", getPort());
+            client.httpUpgrade(Config.PATH);
+            client.sendTextMessage(Integer.toString(SENDERS));
+
+            // Don't read anything until all the senders are blocked
+            Assert.assertTrue(sendersStarted.await(10, TimeUnit.SECONDS));
+            Thread.sleep(1000);
+            Assert.assertEquals(SENDERS, sendersDone.getCount());
+
+            byte[] buffer = new byte[8192];
+            long remaining = (long) SENDERS * FRAME_SIZE;
+            while (remaining > 0) {
+                int read = client.read(buffer);
+                Assert.assertTrue(read > 0);
+                remaining -= read;
+            }
+
+            Assert.assertTrue(sendersDone.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, errors.get());
+            client.closeSocket();
+
+            recording.stop();
+            recording.dump(jfrFile.toPath());
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(jfrFile.toPath());
+        for (RecordedEvent event : events) {
+            log.error(event);
+        }
+        Assert.assertEquals(0, events.size());
+    }
+
+
+    public static class SenderEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(String.class, new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    int senders = Integer.parseInt(message);
+                    session.getUserProperties().put(
+                            org.apache.tomcat.websocket.Constants.BLOCKING_SEND_QUEUE_SIZE_PROPERTY,
+                            Integer.valueOf(senders));
+                    session.getUserProperties().put(
+                            org.apache.tomcat.websocket.Constants.BLOCKING_SEND_TIMEOUT_PROPERTY,
+                            Long.valueOf(TimeUnit.SECONDS.toMillis(60)));
+                    VirtualThreadExecutor executor = new VirtualThreadExecutor("ws-sender-");
+                    for (int i = 0; i < senders; i++) {
+                        executor.execute(() -> {
+                            sendersStarted.countDown();
+                            try {
+                                session.getBasicRemote().sendBinary(ByteBuffer.allocate(MESSAGE_SIZE));
+                            } catch (Exception e) {
+                                errors.incrementAndGet();
+                            }
+                            sendersDone.countDown();
+                        });
+                    }
+                    executor.shutdown();
+                }
+            });
+        }
+    }
+
+
+    public static class Config extends WsContextListener {
+
+        public static final String PATH = "/senders";
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            super.contextInitialized(sce);
+            WsServerContainer sc = (WsServerContainer) sce.getServletContext()
+                    .getAttribute(Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+            try {
+                sc.addEndpoint(ServerEndpointConfig.Builder.create(SenderEndpoint.class, PATH).build());
+            } catch (DeploymentException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -26,6 +26,10 @@ import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterRegistration;
 import jakarta.servlet.http.HttpServletResponse;
@@ -49,6 +53,7 @@ import org.apache.catalina.filters.TesterHttpServletResponse;
 import org.apache.catalina.servlets.DefaultServlet;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.tomcat.unittest.TesterServletContext;
+import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.websocket.Constants;
 import org.apache.tomcat.websocket.TesterEchoServer;
 import org.apache.tomcat.websocket.TesterMessageCountClient.BasicText;
@@ -108,6 +113,40 @@ public class TestWsServerContainer extends WebSocketBaseTest {
     }
 
 
+    @Test
+    public void testPerMessageDeflateCodecPoolMBean() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(Bug54807Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        Assert.assertEquals(LifecycleState.STARTED, ctx.getState());
+
+        WsServerContainer sc = (WsServerContainer) ctx.getServletContext()
+                .getAttribute(org.apache.tomcat.websocket.server.Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+        ObjectName oname = sc.getPerMessageDeflateCodecPoolObjectName();
+        Assert.assertNotNull(oname);
+        Assert.assertEquals(tomcat.getEngine().getName(), oname.getDomain());
+        Assert.assertEquals("//localhost/", oname.getKeyProperty("WebModule"));
+
+        MBeanServer mbeanServer = Registry.getRegistry(null, null).getMBeanServer();
+        Assert.assertTrue(mbeanServer.isRegistered(oname));
+        Assert.assertEquals(Integer.valueOf(0), mbeanServer.getAttribute(oname, "deflaterCount"));
+        Assert.assertEquals(Long.valueOf(0), mbeanServer.getAttribute(oname, "nativeMemoryInUse"));
+
+        mbeanServer.setAttribute(oname, new Attribute("maxIdle", Integer.valueOf(4)));
+        Assert.assertEquals(4, sc.getPerMessageDeflateCodecPool().getMaxIdle());
+
+        ctx.stop();
+
+        Assert.assertFalse(mbeanServer.isRegistered(oname));
+    }
+
+
     public static class Bug54807Config extends TesterEndpointConfig {
 
         @Override
@@ -0,0 +1,198 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.WebSocketBaseTest;
+
+/*
+ * Measures the rate at which the server can parse small, masked, single frame messages such as JSON events. The client
+ * writes pre-encoded frames directly to the socket so the figures reflect the server's frame parsing and decoding
+ * rather than the client's encoding.
+ */
+public class TesterWsFrameReadPerformance extends WebSocketBaseTest {
+
+    private static final String MESSAGE = "{\"type\":\"quote\",\"symbol\":\"ASF\",\"bid\":101.25,\"ask\":101.5," +
+            "\"time\":1717171717171,\"seq\":42}";
+    private static final String MESSAGE_UTF8 = "{\"type\":\"quote\",\"symbol\":\"ÅSF€\",\"bid\":101.25," +
+            "\"ask\":101.5,\"time\":1717171717171}";
+    private static final int FRAMES_PER_WRITE = 1000;
+    private static final int WRITES = 1000;
+    private static final byte[] MASK = new byte[] { 0x12, 0x34, 0x56, 0x78 };
+
+    private static volatile CountDownLatch latch;
+    private static final AtomicInteger errors = new AtomicInteger();
+
+
+    @Test
+    public void testTextAscii() throws Exception {
+        doTest("/text", MESSAGE, 1);
+    }
+
+
+    @Test
+    public void testTextUtf8() throws Exception {
+        doTest("/text", MESSAGE_UTF8, 1);
+    }
+
+
+    @Test
+    public void testBinary() throws Exception {
+        doTest("/binary", MESSAGE, 2);
+    }
+
+
+    @Test
+    public void testBinaryZeroCopy() throws Exception {
+        doTest("/binaryZeroCopy", MESSAGE, 2);
+    }
+
+
+    private void doTest(String path, String message, int opCode) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        byte[] frames = createFrames(message.getBytes(StandardCharsets.UTF_8), opCode, FRAMES_PER_WRITE);
+
+        TesterWsClient client = new TesterWsClient("localhost", getPort());
+        client.httpUpgrade(path);
+
+        // Warm up
+        send(client, frames, WRITES / 10);
+
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            send(client, frames, WRITES);
+            long duration = System.nanoTime() - start;
+            long total = (long) FRAMES_PER_WRITE * WRITES;
+            log.info("Path [" + path + "] received [" + total + "] messages in [" + duration / 1000000 + "] ms: [" +
+                    total * 1000000000L / duration + "] messages per second");
+        }
+
+        Assert.assertEquals(0, errors.get());
+        client.closeSocket();
+    }
+
+
+    private static void send(TesterWsClient client, byte[] frames, int writes) throws Exception {
+        latch = new CountDownLatch(FRAMES_PER_WRITE * writes);
+        for (int i = 0; i < writes; i++) {
+            client.write(frames);
+        }
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+    }
+
+
+    private static byte[] createFrames(byte[] payload, int opCode, int count) {
+        // Payloads are less than 126 bytes so the length fits in the first
+        // length byte
+        Assert.assertTrue(payload.length < 126);
+        int frameLength = 6 + payload.length;
+        byte[] result = new byte[frameLength * count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * frameLength;
+            result[offset] = (byte) (0x80 | opCode);
+            result[offset + 1] = (byte) (0x80 | payload.length);
+            System.arraycopy(MASK, 0, result, offset + 2, 4);
+            for (int j = 0; j < payload.length; j++) {
+                result[offset + 6 + j] = (byte) (payload[j] ^ MASK[j % 4]);
+            }
+        }
+        return result;
+    }
+
+
+    public static class TextEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(String.class, new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    if (message.charAt(0) != '{' || message.charAt(message.length() - 1) != '}') {
+                        errors.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+    }
+
+
+    public static class BinaryEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(ByteBuffer.class, new MessageHandler.Whole<ByteBuffer>() {
+                @Override
+                public void onMessage(ByteBuffer message) {
+                    if (message.get(message.position()) != '{' || message.get(message.limit() - 1) != '}') {
+                        errors.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+    }
+
+
+    public static class Config extends WsContextListener {
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            super.contextInitialized(sce);
+            WsServerContainer sc = (WsServerContainer) sce.getServletContext()
+                    .getAttribute(Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+            try {
+                sc.addEndpoint(ServerEndpointConfig.Builder.create(TextEndpoint.class, "/text").build());
+                sc.addEndpoint(ServerEndpointConfig.Builder.create(BinaryEndpoint.class, "/binary").build());
+                ServerEndpointConfig zeroCopy =
+                        ServerEndpointConfig.Builder.create(BinaryEndpoint.class, "/binaryZeroCopy").build();
+                zeroCopy.getUserProperties().put(org.apache.tomcat.websocket.Constants.BINARY_ZERO_COPY_PROPERTY,
+                        Boolean.TRUE);
+                sc.addEndpoint(zeroCopy);
+            } catch (DeploymentException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.websocket.server;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.compat.JreCompat;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.apache.tomcat.websocket.TesterMessageCountClient.TesterProgrammaticEndpoint;
+import org.apache.tomcat.websocket.WebSocketBaseTest;
+import org.apache.tomcat.websocket.WsWebSocketContainer;
+
+/*
+ * Many virtual threads concurrently send a message using the same server session's basic remote endpoint. The
+ * senders wait in the session's blocking send queue. As none of the waits pin a carrier thread, all the senders make
+ * progress using the small number of carrier threads of the default virtual thread scheduler.
+ */
+public class TesterWsRemoteEndpointVirtualThreadPerformance extends WebSocketBaseTest {
+
+    private static final int SENDERS = 10000;
+    private static final String MESSAGE = "{\"type\":\"tick\"}";
+
+    private static final Set<String> carriers = ConcurrentHashMap.newKeySet();
+    private static final AtomicInteger errors = new AtomicInteger();
+
+
+    @Test
+    public void testVirtualThreadSenders() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+
+        Tomcat tomcat = getTomcatInstance();
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+        ctx.addApplicationListener(Config.class.getName());
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMappingDecoded("/", "default");
+
+        tomcat.start();
+
+        CountDownLatch latch = new CountDownLatch(SENDERS);
+        WebSocketContainer wsContainer = ContainerProvider.getWebSocketContainer();
+        Session wsSession = wsContainer.connectToServer(TesterProgrammaticEndpoint.class,
+                ClientEndpointConfig.Builder.create().build(), new URI("ws://localhost:" + getPort() + Config.PATH));
+        wsSession.addMessageHandler(String.class, new MessageHandler.Whole<String>() {
+            @Override
+            public void onMessage(String message) {
+                latch.countDown();
+            }
+        });
+
+        long start = System.nanoTime();
+        wsSession.getBasicRemote().sendText(Integer.toString(SENDERS));
+
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        long duration = System.nanoTime() - start;
+        log.info("[" + SENDERS + "] virtual thread senders completed in [" + duration / 1000000 + "] ms using [" +
+                carriers.size() + "] carrier threads");
+
+        Assert.assertEquals(0, errors.get());
+        Assert.assertTrue(carriers.size() <= Runtime.getRuntime().availableProcessors());
+
+        wsSession.close();
+        ((WsWebSocketContainer) wsContainer).destroy();
+    }
+
+
+    public static class SenderEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            session.addMessageHandler(String.class, new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    int senders = Integer.parseInt(message);
+                    session.getUserProperties().put(
+                            org.apache.tomcat.websocket.Constants.BLOCKING_SEND_QUEUE_SIZE_PROPERTY,
+                            Integer.valueOf(senders));
+                    session.getUserProperties().put(
+                            org.apache.tomcat.websocket.Constants.BLOCKING_SEND_TIMEOUT_PROPERTY,
+                            Long.valueOf(TimeUnit.SECONDS.toMillis(60)));
+                    VirtualThreadExecutor executor = new VirtualThreadExecutor("ws-sender-");
+                    for (int i = 0; i < senders; i++) {
+                        executor.execute(() -> {
+                            recordCarrier();
+                            try {
+                                session.getBasicRemote().sendText(MESSAGE);
+                            } catch (Exception e) {
+                                errors.incrementAndGet();
+                            }
+                            recordCarrier();
+                        });
+                    }
+                    executor.shutdown();
+                }
+            });
+        }
+
+        private static void recordCarrier() {
+            // Virtual threads report their current carrier as "...@<carrier name>"
+            String name = Thread.currentThread().toString();
+            int index = name.lastIndexOf('@');
+            if (index > -1) {
+                carriers.add(name.substring(index + 1));
+            }
+        }
+    }
+
+
+    public static class Config extends WsContextListener {
+
+        public static final String PATH = "/senders";
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+            super.contextInitialized(sce);
+            WsServerContainer sc = (WsServerContainer) sce.getServletContext()
+                    .getAttribute(Constants.SERVER_CONTAINER_SERVLET_CONTEXT_ATTRIBUTE);
+            try {
+                sc.addEndpoint(ServerEndpointConfig.Builder.create(SenderEndpoint.class, PATH).build());
+            } catch (DeploymentException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}